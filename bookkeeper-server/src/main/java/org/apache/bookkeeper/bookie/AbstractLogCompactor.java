@@ -26,6 +26,8 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Abstract entry log compactor used for compaction.
@@ -64,16 +66,84 @@ public abstract class AbstractLogCompactor {
 
     /**
      * class Throttler.
+     *
+     * <p>With a foreground latency target, the rate adapts to the latency of the foreground operations: it is
+     * halved when their p99 latency is above the target, and grows back by 25% when it is below half of the
+     * target, up to the max rate multiplier times the configured rate.
      */
     public static class Throttler {
+        private static final Logger LOG = LoggerFactory.getLogger(Throttler.class);
+
+        private static final long ADJUST_INTERVAL_MS = 1000;
+        // The rate is not lowered below the configured rate divided by this
+        private static final int MIN_RATE_DIVISOR = 16;
+
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
         private final AtomicBoolean cancelled = new AtomicBoolean(false);
 
+        private final double minRate;
+        private final double maxRate;
+        private final long journalSyncLatencyTargetNanos;
+        private final long readLatencyTargetNanos;
+        private volatile ForegroundLatencyMonitor latencyMonitor = null;
+        private volatile long lastAdjustTime = 0;
+
         Throttler(ServerConfiguration conf) {
             this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
-                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
+            double rate = this.isThrottleByBytes
+                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries();
+            this.rateLimiter = RateLimiter.create(rate);
+            this.minRate = rate / MIN_RATE_DIVISOR;
+            this.maxRate = rate * Math.max(conf.getCompactionMaxRateMultiplier(), 1);
+            this.journalSyncLatencyTargetNanos =
+                    TimeUnit.MILLISECONDS.toNanos(conf.getCompactionJournalSyncLatencyTargetMs());
+            this.readLatencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(conf.getCompactionReadLatencyTargetMs());
+        }
+
+        void setLatencyMonitor(ForegroundLatencyMonitor latencyMonitor) {
+            this.latencyMonitor = latencyMonitor;
+        }
+
+        public long getRate() {
+            return (long) rateLimiter.getRate();
+        }
+
+        private void adjustRate() {
+            ForegroundLatencyMonitor monitor = latencyMonitor;
+            if (monitor == null || (journalSyncLatencyTargetNanos <= 0 && readLatencyTargetNanos <= 0)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastAdjustTime < ADJUST_INTERVAL_MS) {
+                return;
+            }
+            lastAdjustTime = now;
+
+            // Ratio of the foreground latency to its target, no foreground operation means an idle disk
+            double pressure = 0;
+            if (journalSyncLatencyTargetNanos > 0) {
+                pressure = Math.max(pressure,
+                        (double) monitor.getJournalSyncP99Nanos() / journalSyncLatencyTargetNanos);
+            }
+            if (readLatencyTargetNanos > 0) {
+                pressure = Math.max(pressure, (double) monitor.getReadEntryP99Nanos() / readLatencyTargetNanos);
+            }
+
+            double rate = rateLimiter.getRate();
+            double newRate = rate;
+            if (pressure > 1.0) {
+                newRate = Math.max(minRate, rate / 2);
+            } else if (pressure < 0.5) {
+                newRate = Math.min(maxRate, rate * 1.25);
+            }
+            if (newRate != rate) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compaction rate set from {} to {} with a foreground latency at {} of the target",
+                            rate, newRate, pressure);
+                }
+                rateLimiter.setRate(newRate);
+            }
         }
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
@@ -87,7 +157,9 @@ public abstract class AbstractLogCompactor {
         public void acquire(int permits) throws IOException {
             long timeout = 100;
             long start = System.currentTimeMillis();
+            adjustRate();
             while (!tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+                adjustRate();
                 if (cancelled.get()) {
                     throw new IOException("Failed to get permits takes "
                             + (System.currentTimeMillis() - start)
@@ -0,0 +1,178 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_ARRIVAL_RATE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_SYNC_LATENCY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_WAIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * Group commit policy tuning the group wait from the observed fsync latency and arrival rate, to keep the
+ * add latency under journalGroupCommitTargetLatencyUSec.
+ *
+ * <p>An add waits for its group, then for the fsync, so the group wait is the time the target latency leaves
+ * after an fsync. It is also bounded by the fsync latency: the entries arriving while the previous group is
+ * being synced are grouped by the force write thread anyway. When less than one more entry is expected to
+ * arrive during the wait, grouping only adds latency, and the entries are flushed as soon as the queue is empty.
+ *
+ * <p>journalMaxGroupWaitMSec caps the group wait, and the byte and entry thresholds still apply.
+ */
+@StatsDoc(
+    name = JOURNAL_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Adaptive journal group commit stats"
+)
+public class AdaptiveGroupCommitPolicy extends DefaultGroupCommitPolicy {
+
+    // Weight of the last sample in the moving averages
+    private static final double EWMA_ALPHA = 0.2;
+
+    private long targetLatencyNanos;
+    private boolean alwaysFlushWhenQueueEmpty;
+
+    // Moving averages, of the fsync latency updated by the force write thread, and of the arrival rate
+    // updated by the journal thread
+    private volatile double syncNanosAvg = -1;
+    private volatile double entriesPerNanoAvg = -1;
+    private long lastFlushNanos = -1;
+
+    // Decisions, recomputed on each sample
+    private volatile long groupWaitNanos;
+    private volatile boolean flushWhenQueueEmptyDecision = true;
+
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_WAIT,
+        help = "Current max group wait of the journal, in microseconds"
+    )
+    private Gauge<Long> groupWaitGauge;
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_SYNC_LATENCY,
+        help = "Moving average of the journal fsync latency used to size the groups, in microseconds"
+    )
+    private Gauge<Long> syncLatencyGauge;
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_ARRIVAL_RATE,
+        help = "Moving average of the journal entries arrival rate used to size the groups, in entries per second"
+    )
+    private Gauge<Long> arrivalRateGauge;
+
+    @Override
+    public void initialize(ServerConfiguration conf, StatsLogger statsLogger) {
+        super.initialize(conf, statsLogger);
+        this.targetLatencyNanos = TimeUnit.MICROSECONDS.toNanos(conf.getJournalGroupCommitTargetLatencyUSec());
+        this.alwaysFlushWhenQueueEmpty = super.flushWhenQueueEmpty();
+
+        groupWaitGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return TimeUnit.NANOSECONDS.toMicros(groupWaitNanos);
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_GROUP_COMMIT_WAIT, groupWaitGauge);
+        syncLatencyGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return TimeUnit.NANOSECONDS.toMicros((long) Math.max(syncNanosAvg, 0));
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_GROUP_COMMIT_SYNC_LATENCY, syncLatencyGauge);
+        arrivalRateGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return (long) (Math.max(entriesPerNanoAvg, 0) * TimeUnit.SECONDS.toNanos(1));
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_GROUP_COMMIT_ARRIVAL_RATE, arrivalRateGauge);
+    }
+
+    @Override
+    public long getMaxGroupWaitNanos() {
+        return groupWaitNanos;
+    }
+
+    @Override
+    public boolean flushWhenQueueEmpty() {
+        return flushWhenQueueEmptyDecision;
+    }
+
+    @Override
+    public void onFlush(int entries, long bytes) {
+        long now = System.nanoTime();
+        if (lastFlushNanos >= 0 && now > lastFlushNanos) {
+            entriesPerNanoAvg = ewma(entriesPerNanoAvg, (double) entries / (now - lastFlushNanos));
+        }
+        lastFlushNanos = now;
+        updateGroupWait();
+    }
+
+    @Override
+    public void onSync(long syncNanos) {
+        syncNanosAvg = ewma(syncNanosAvg, syncNanos);
+        updateGroupWait();
+    }
+
+    private static double ewma(double avg, double sample) {
+        return avg < 0 ? sample : avg + EWMA_ALPHA * (sample - avg);
+    }
+
+    // Called by both the journal and force write threads, the last one wins until the next sample
+    private void updateGroupWait() {
+        double syncNanos = syncNanosAvg;
+        double entriesPerNano = entriesPerNanoAvg;
+        if (syncNanos < 0 || entriesPerNano < 0) {
+            // Not enough samples yet, don't wait
+            groupWaitNanos = 0;
+            flushWhenQueueEmptyDecision = true;
+            return;
+        }
+
+        long wait = (long) Math.min(Math.min(targetLatencyNanos - syncNanos, syncNanos), maxGroupWaitInNanos);
+        if (wait <= 0 || entriesPerNano * wait < 1) {
+            wait = 0;
+        }
+        groupWaitNanos = wait;
+        flushWhenQueueEmptyDecision = wait == 0 || alwaysFlushWhenQueueEmpty;
+    }
+}
@@ -135,6 +135,10 @@ public interface BookKeeperServerStats {
 
     // Counters
     String JOURNAL_WRITE_BYTES = "JOURNAL_WRITE_BYTES";
+    String JOURNAL_WRITE_COPIED_BYTES = "JOURNAL_WRITE_COPIED_BYTES";
+    String JOURNAL_REPLAY_RECORDS = "JOURNAL_REPLAY_RECORDS";
+    String JOURNAL_REPLAY_BYTES = "JOURNAL_REPLAY_BYTES";
+    String JOURNAL_REPLAY_REMAINING_BYTES = "JOURNAL_REPLAY_REMAINING_BYTES";
     String JOURNAL_QUEUE_SIZE = "JOURNAL_QUEUE_SIZE";
     String READ_BYTES = "READ_BYTES";
     String WRITE_BYTES = "WRITE_BYTES";
@@ -153,6 +157,7 @@ public interface BookKeeperServerStats {
     String MAJOR_COMPACTION_COUNT = "MAJOR_COMPACTION_TOTAL";
     String MINOR_COMPACTION_COUNT = "MINOR_COMPACTION_TOTAL";
     String ACTIVE_LEDGER_COUNT = "ACTIVE_LEDGER_TOTAL";
+    String COMPACTION_RATE = "COMPACTION_RATE";
     String DELETED_LEDGER_COUNT = "DELETED_LEDGER_TOTAL";
 
     // Index Related Counters
@@ -162,6 +167,9 @@ public interface BookKeeperServerStats {
     String JOURNAL_NUM_FLUSH_EMPTY_QUEUE = "JOURNAL_NUM_FLUSH_EMPTY_QUEUE";
     String JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES = "JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES";
     String JOURNAL_NUM_FLUSH_MAX_WAIT = "JOURNAL_NUM_FLUSH_MAX_WAIT";
+    String JOURNAL_GROUP_COMMIT_WAIT = "JOURNAL_GROUP_COMMIT_WAIT_USEC";
+    String JOURNAL_GROUP_COMMIT_SYNC_LATENCY = "JOURNAL_GROUP_COMMIT_SYNC_LATENCY_USEC";
+    String JOURNAL_GROUP_COMMIT_ARRIVAL_RATE = "JOURNAL_GROUP_COMMIT_ARRIVAL_RATE";
     String SKIP_LIST_FLUSH_BYTES = "SKIP_LIST_FLUSH_BYTES";
     String SKIP_LIST_THROTTLING = "SKIP_LIST_THROTTLING";
     String SKIP_LIST_THROTTLING_LATENCY = "SKIP_LIST_THROTTLING_LATENCY";
@@ -190,4 +198,9 @@ public interface BookKeeperServerStats {
     String NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE = "NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE";
     String NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS = "NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS";
     String ENTRYLOGS_PER_LEDGER = "ENTRYLOGS_PER_LEDGER";
+
+    // DefaultEntryLogger memory mapped reads Stats
+    String ENTRYLOG_MMAP_MAPPED_LOGS = "ENTRYLOG_MMAP_MAPPED_LOGS";
+    String ENTRYLOG_MMAP_MAPPED_BYTES = "ENTRYLOG_MMAP_MAPPED_BYTES";
+    String ENTRYLOG_MMAP_RESIDENT_BYTES = "ENTRYLOG_MMAP_RESIDENT_BYTES";
 }
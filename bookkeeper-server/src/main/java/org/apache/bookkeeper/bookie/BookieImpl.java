@@ -50,8 +50,12 @@ import java.util.Optional;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -62,6 +66,7 @@ import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.BookieStats;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.discover.BookieServiceInfo;
@@ -92,6 +97,8 @@ public class BookieImpl implements Bookie {
     private static final Logger LOG = LoggerFactory.getLogger(Bookie.class);
 
     final List<File> journalDirectories;
+    // Directories of the journals, with the stripes of each journal directory
+    final List<File> journalStripeDirectories;
     final ServerConfiguration conf;
 
     final SyncThread syncThread;
@@ -107,6 +114,11 @@ public class BookieImpl implements Bookie {
     public static final long METAENTRY_ID_FORCE_LEDGER  = -0x4000;
     static final long METAENTRY_ID_LEDGER_EXPLICITLAC  = -0x8000;
 
+    private static final long MB = 1024 * 1024;
+    // Max bytes of the journal records read but not applied yet by the replay executor
+    private static final int MAX_OUTSTANDING_REPLAY_BYTES = 64 * 1024 * 1024;
+    private static final int REPLAY_BATCH_SIZE = 256;
+
     private final LedgerDirsManager ledgerDirsManager;
     protected final Supplier<BookieServiceInfo> bookieServiceInfoProvider;
     private final LedgerDirsManager indexDirsManager;
@@ -124,6 +136,8 @@ public class BookieImpl implements Bookie {
     // Expose Stats
     final StatsLogger statsLogger;
     private final BookieStats bookieStats;
+    // Latency of the journal fsyncs and entry reads, for the compaction to back off
+    private final ForegroundLatencyMonitor foregroundLatencyMonitor = new ForegroundLatencyMonitor();
 
     private final ByteBufAllocator allocator;
 
@@ -184,8 +198,16 @@ public class BookieImpl implements Bookie {
             allLedgerDirs.addAll(indexDirsManager.getAllLedgerDirs());
         }
 
-        for (File journalDirectory : journalDirectories) {
-            checkDirectoryStructure(journalDirectory);
+        for (int i = 0; i < journalDirectories.size(); i++) {
+            checkDirectoryStructure(journalDirectories.get(i));
+            checkRemovedJournalStripes(journalDirectories.get(i), i);
+        }
+        for (File stripeDirectory : journalStripeDirectories) {
+            if (!stripeDirectory.exists() && !stripeDirectory.mkdirs()) {
+                String err = "Unable to create directory " + stripeDirectory;
+                LOG.error(err);
+                throw new IOException(err);
+            }
         }
 
         for (File dir : allLedgerDirs) {
@@ -196,6 +218,53 @@ public class BookieImpl implements Bookie {
         checkIfDirsOnSameDiskPartition(journalDirectories);
     }
 
+    /**
+     * Check that the stripes of a journal directory that are beyond the configured number of stripes have no
+     * record left to replay, as they are not replayed anymore. Their records after the last log mark were not
+     * flushed to the ledger storage if the bookie didn't shut down cleanly before the stripes were removed.
+     *
+     * @throws IOException if a removed stripe has records to replay
+     */
+    private void checkRemovedJournalStripes(File journalDirectory, int directoryIndex) throws IOException {
+        File[] stripeDirectories = journalDirectory.listFiles(
+                file -> file.isDirectory() && file.getName().startsWith(Journal.STRIPE_DIR_PREFIX));
+        if (stripeDirectories == null) {
+            return;
+        }
+        for (File stripeDirectory : stripeDirectories) {
+            int stripe;
+            try {
+                stripe = Integer.parseInt(stripeDirectory.getName().substring(Journal.STRIPE_DIR_PREFIX.length()));
+            } catch (NumberFormatException nfe) {
+                continue;
+            }
+            if (stripe < conf.getJournalStripesPerDirectory()
+                    || Journal.listJournalIds(stripeDirectory, null).isEmpty()) {
+                continue;
+            }
+
+            // Same journal index as when the stripe was configured, to read its last log mark
+            Journal journal = new Journal(stripe * journalDirectories.size() + directoryIndex, stripeDirectory,
+                    conf, ledgerDirsManager);
+            MutableBoolean hasRecords = new MutableBoolean(false);
+            for (Long id : getJournalIdsToReplay(journal)) {
+                journal.scanJournal(id, getJournalReplayPosition(journal, id),
+                        (journalVersion, offset, entry) -> hasRecords.setTrue(),
+                        conf.isSkipReplayJournalInvalidRecord());
+            }
+
+            if (hasRecords.isTrue()) {
+                String err = "Journal stripe " + stripeDirectory + " has records to replay but only "
+                        + conf.getJournalStripesPerDirectory() + " stripes per journal directory are configured,"
+                        + " restart the bookie with at least " + (stripe + 1) + " stripes to replay them";
+                LOG.error(err);
+                throw new IOException(err);
+            }
+            LOG.info("Journal stripe {} is not configured anymore and has no record to replay, its journal files"
+                    + " can be removed", stripeDirectory);
+        }
+    }
+
     /**
      * Checks if multiple directories are in same diskpartition/filesystem/device.
      * If ALLOW_MULTIPLEDIRS_UNDER_SAME_DISKPARTITION config parameter is not enabled, and
@@ -399,6 +468,8 @@ public class BookieImpl implements Bookie {
         for (File journalDirectory : conf.getJournalDirs()) {
             this.journalDirectories.add(getCurrentDirectory(journalDirectory));
         }
+        this.journalStripeDirectories = Journal.getStripeDirectories(journalDirectories,
+                conf.getJournalStripesPerDirectory());
         this.ledgerDirsManager = ledgerDirsManager;
         this.indexDirsManager = indexDirsManager;
         this.writeDataToJournal = conf.getJournalWriteData();
@@ -433,9 +504,10 @@ public class BookieImpl implements Bookie {
                 () -> BookieImpl.this.triggerBookieShutdown(ExitCode.BOOKIE_EXCEPTION);
         // instantiate the journals
         journals = Lists.newArrayList();
-        for (int i = 0; i < journalDirectories.size(); i++) {
-            journals.add(Journal.newJournal(i, journalDirectories.get(i),
+        for (int i = 0; i < journalStripeDirectories.size(); i++) {
+            journals.add(Journal.newJournal(i, journalStripeDirectories.get(i),
                     conf, ledgerDirsManager, statsLogger.scope(JOURNAL_SCOPE), allocator, journalAliveListener));
+            journals.get(i).setForegroundLatencyMonitor(foregroundLatencyMonitor);
         }
 
         this.entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
@@ -491,6 +563,7 @@ public class BookieImpl implements Bookie {
         ledgerStorage.setCheckpointSource(checkpointSource);
         ledgerStorage.setCheckpointer(syncThread);
         ledgerStorage.registerLedgerDeletionListener(ledgerDeletionListener);
+        ledgerStorage.setForegroundLatencyMonitor(foregroundLatencyMonitor);
         handles = new HandleFactoryImpl(ledgerStorage);
 
         // Expose Stats
@@ -525,107 +598,123 @@ public class BookieImpl implements Bookie {
         }
 
         long startTs = System.currentTimeMillis();
-        JournalScanner scanner = new JournalScanner() {
-            @Override
-            public void process(int journalVersion, long offset, ByteBuffer recBuff) throws IOException {
-                long ledgerId = recBuff.getLong();
-                long entryId = recBuff.getLong();
-                try {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Replay journal - ledger id : {}, entry id : {}.", ledgerId, entryId);
-                    }
-                    if (entryId == METAENTRY_ID_LEDGER_KEY) {
-                        if (journalVersion >= JournalChannel.V3) {
-                            int masterKeyLen = recBuff.getInt();
-                            byte[] masterKey = new byte[masterKeyLen];
-
-                            recBuff.get(masterKey);
-                            masterKeyCache.put(ledgerId, masterKey);
-
-                            // Force to re-insert the master key in ledger storage
-                            handles.getHandle(ledgerId, masterKey);
-                        } else {
-                            throw new IOException("Invalid journal. Contains journalKey "
-                                    + " but layout version (" + journalVersion
-                                    + ") is too old to hold this");
-                        }
-                    } else if (entryId == METAENTRY_ID_FENCE_KEY) {
-                        if (journalVersion >= JournalChannel.V4) {
-                            byte[] key = masterKeyCache.get(ledgerId);
-                            if (key == null) {
-                                key = ledgerStorage.readMasterKey(ledgerId);
-                            }
-                            LedgerDescriptor handle = handles.getHandle(ledgerId, key);
-                            handle.setFenced();
-                        } else {
-                            throw new IOException("Invalid journal. Contains fenceKey "
-                                    + " but layout version (" + journalVersion
-                                    + ") is too old to hold this");
-                        }
-                    } else if (entryId == METAENTRY_ID_LEDGER_EXPLICITLAC) {
-                        if (journalVersion >= JournalChannel.V6) {
-                            int explicitLacBufLength = recBuff.getInt();
-                            ByteBuf explicitLacBuf = Unpooled.buffer(explicitLacBufLength);
-                            byte[] explicitLacBufArray = new byte[explicitLacBufLength];
-                            recBuff.get(explicitLacBufArray);
-                            explicitLacBuf.writeBytes(explicitLacBufArray);
-                            byte[] key = masterKeyCache.get(ledgerId);
-                            if (key == null) {
-                                key = ledgerStorage.readMasterKey(ledgerId);
-                            }
-                            LedgerDescriptor handle = handles.getHandle(ledgerId, key);
-                            handle.setExplicitLac(explicitLacBuf);
-                        } else {
-                            throw new IOException("Invalid journal. Contains explicitLAC " + " but layout version ("
-                                    + journalVersion + ") is too old to hold this");
-                        }
-                    } else if (entryId < 0) {
-                        /*
-                         * this is possible if bookie code binary is rolledback
-                         * to older version but when it is trying to read
-                         * Journal which was created previously using newer
-                         * code/journalversion, which introduced new special
-                         * entry. So in anycase, if we see unrecognizable
-                         * special entry while replaying journal we should skip
-                         * (ignore) it.
-                         */
-                        LOG.warn("Read unrecognizable entryId: {} for ledger: {} while replaying Journal. Skipping it",
-                                entryId, ledgerId);
-                    } else {
-                        byte[] key = masterKeyCache.get(ledgerId);
-                        if (key == null) {
-                            key = ledgerStorage.readMasterKey(ledgerId);
-                        }
-                        LedgerDescriptor handle = handles.getHandle(ledgerId, key);
+        JournalReplayProgress progress = new JournalReplayProgress();
+        for (Journal journal : journals) {
+            for (Long id : getJournalIdsToReplay(journal)) {
+                progress.totalBytes += getJournalBytesToReplay(journal, id);
+            }
+        }
+        bookieStats.getJournalReplayRemainingBytes().set(progress.totalBytes);
+        LOG.info("Replaying {} MB of journal with {} threads", progress.totalBytes / MB,
+                conf.getJournalReplayThreads());
+
+        OrderedExecutor replayExecutor = null;
+        if (conf.getJournalReplayThreads() > 1) {
+            replayExecutor = OrderedExecutor.newBuilder().numThreads(conf.getJournalReplayThreads())
+                    .name("BookieJournalReplay").build();
+        }
+        try {
+            for (Journal journal : journals) {
+                replay(journal, replayExecutor, progress);
+            }
+        } finally {
+            if (replayExecutor != null) {
+                replayExecutor.shutdown();
+            }
+        }
+        long elapsedTs = System.currentTimeMillis() - startTs;
+        LOG.info("Finished replaying journal in {} ms : {} records, {} MB, {} MB/s.", elapsedTs,
+                progress.replayedRecords.sum(), progress.replayedBytes.sum() / MB,
+                elapsedTs > 0 ? progress.replayedBytes.sum() * 1000 / MB / elapsedTs : 0);
+    }
+
+    /**
+     * Apply a journal record to the ledger storage.
+     */
+    private void replayJournalRecord(int journalVersion, ByteBuffer recBuff) throws IOException {
+        long ledgerId = recBuff.getLong();
+        long entryId = recBuff.getLong();
+        try {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Replay journal - ledger id : {}, entry id : {}.", ledgerId, entryId);
+            }
+            if (entryId == METAENTRY_ID_LEDGER_KEY) {
+                if (journalVersion >= JournalChannel.V3) {
+                    int masterKeyLen = recBuff.getInt();
+                    byte[] masterKey = new byte[masterKeyLen];
+
+                    recBuff.get(masterKey);
+                    masterKeyCache.put(ledgerId, masterKey);
 
-                        recBuff.rewind();
-                        handle.addEntry(Unpooled.wrappedBuffer(recBuff));
+                    // Force to re-insert the master key in ledger storage
+                    handles.getHandle(ledgerId, masterKey);
+                } else {
+                    throw new IOException("Invalid journal. Contains journalKey "
+                            + " but layout version (" + journalVersion
+                            + ") is too old to hold this");
+                }
+            } else if (entryId == METAENTRY_ID_FENCE_KEY) {
+                if (journalVersion >= JournalChannel.V4) {
+                    byte[] key = masterKeyCache.get(ledgerId);
+                    if (key == null) {
+                        key = ledgerStorage.readMasterKey(ledgerId);
                     }
-                } catch (NoLedgerException nsle) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Skip replaying entries of ledger {} since it was deleted.", ledgerId);
+                    LedgerDescriptor handle = handles.getHandle(ledgerId, key);
+                    handle.setFenced();
+                } else {
+                    throw new IOException("Invalid journal. Contains fenceKey "
+                            + " but layout version (" + journalVersion
+                            + ") is too old to hold this");
+                }
+            } else if (entryId == METAENTRY_ID_LEDGER_EXPLICITLAC) {
+                if (journalVersion >= JournalChannel.V6) {
+                    int explicitLacBufLength = recBuff.getInt();
+                    ByteBuf explicitLacBuf = Unpooled.buffer(explicitLacBufLength);
+                    byte[] explicitLacBufArray = new byte[explicitLacBufLength];
+                    recBuff.get(explicitLacBufArray);
+                    explicitLacBuf.writeBytes(explicitLacBufArray);
+                    byte[] key = masterKeyCache.get(ledgerId);
+                    if (key == null) {
+                        key = ledgerStorage.readMasterKey(ledgerId);
                     }
-                } catch (BookieException be) {
-                    throw new IOException(be);
+                    LedgerDescriptor handle = handles.getHandle(ledgerId, key);
+                    handle.setExplicitLac(explicitLacBuf);
+                } else {
+                    throw new IOException("Invalid journal. Contains explicitLAC " + " but layout version ("
+                            + journalVersion + ") is too old to hold this");
                 }
-            }
-        };
+            } else if (entryId < 0) {
+                /*
+                 * this is possible if bookie code binary is rolledback
+                 * to older version but when it is trying to read
+                 * Journal which was created previously using newer
+                 * code/journalversion, which introduced new special
+                 * entry. So in anycase, if we see unrecognizable
+                 * special entry while replaying journal we should skip
+                 * (ignore) it.
+                 */
+                LOG.warn("Read unrecognizable entryId: {} for ledger: {} while replaying Journal. Skipping it",
+                        entryId, ledgerId);
+            } else {
+                byte[] key = masterKeyCache.get(ledgerId);
+                if (key == null) {
+                    key = ledgerStorage.readMasterKey(ledgerId);
+                }
+                LedgerDescriptor handle = handles.getHandle(ledgerId, key);
 
-        for (Journal journal : journals) {
-            replay(journal, scanner);
+                recBuff.rewind();
+                handle.addEntry(Unpooled.wrappedBuffer(recBuff));
+            }
+        } catch (NoLedgerException nsle) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Skip replaying entries of ledger {} since it was deleted.", ledgerId);
+            }
+        } catch (BookieException be) {
+            throw new IOException(be);
         }
-        long elapsedTs = System.currentTimeMillis() - startTs;
-        LOG.info("Finished replaying journal in {} ms.", elapsedTs);
     }
 
-    /**
-     * Replay journal files and updates journal's in-memory lastLogMark object.
-     *
-     * @param journal Journal object corresponding to a journalDir
-     * @param scanner Scanner to process replayed entries.
-     * @throws IOException
-     */
-    private void replay(Journal journal, JournalScanner scanner) throws IOException {
+    private List<Long> getJournalIdsToReplay(Journal journal) throws IOException {
         final LogMark markedLog = journal.getLastLogMark().getCurMark();
         List<Long> logs = Journal.listJournalIds(journal.getJournalDirectory(), journalId ->
             journalId >= markedLog.getLogFileId());
@@ -637,17 +726,92 @@ public class BookieImpl implements Bookie {
                 throw new IOException("Recovery log " + markedLog.getLogFileId() + " is missing at " + path);
             }
         }
+        return logs;
+    }
 
-        // TODO: When reading in the journal logs that need to be synced, we
-        // should use BufferedChannels instead to minimize the amount of
-        // system calls done.
-        for (Long id : logs) {
-            long logPosition = 0L;
-            if (id == markedLog.getLogFileId()) {
-                logPosition = markedLog.getLogFileOffset();
+    private long getJournalBytesToReplay(Journal journal, long id) {
+        long length = new File(journal.getJournalDirectory(), Long.toHexString(id) + ".txn").length();
+        return Math.max(length - getJournalReplayPosition(journal, id), 0);
+    }
+
+    private static long getJournalReplayPosition(Journal journal, long id) {
+        LogMark markedLog = journal.getLastLogMark().getCurMark();
+        return id == markedLog.getLogFileId() ? markedLog.getLogFileOffset() : 0L;
+    }
+
+    /**
+     * Replay journal files and updates journal's in-memory lastLogMark object.
+     *
+     * <p>The records are read on the calling thread. Without replay executor, they are applied to the ledger
+     * storage on the calling thread too, otherwise they are applied on the executor thread of their ledger,
+     * which keeps the order of the records of a ledger. The lastLogMark is only moved once all the records of
+     * the journal file are applied, as the ledger storage can be checkpointed during the replay.
+     *
+     * @param journal Journal object corresponding to a journalDir
+     * @param replayExecutor executor applying the records, or null to apply them on the calling thread
+     * @param progress progress of the journal replay
+     * @throws IOException
+     */
+    private void replay(Journal journal, OrderedExecutor replayExecutor, JournalReplayProgress progress)
+            throws IOException {
+        List<Long> logs = getJournalIdsToReplay(journal);
+        Semaphore outstandingBytes = new Semaphore(MAX_OUTSTANDING_REPLAY_BYTES);
+        AtomicReference<Throwable> replayError = new AtomicReference<>();
+        Map<ExecutorService, ReplayBatch> batches = new HashMap<>();
+
+        JournalScanner scanner = (journalVersion, offset, recBuff) -> {
+            int recordSize = recBuff.remaining();
+            progress.onRecordRead(recordSize);
+            if (replayExecutor == null) {
+                replayJournalRecord(journalVersion, recBuff);
+                progress.onRecordApplied(recordSize);
+                return;
+            }
+
+            if (replayError.get() != null) {
+                throw new IOException("Failed to replay journal record", replayError.get());
+            }
+            // The scanner reuses the record buffer
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            record.put(recBuff).flip();
+            int permits = Math.min(recordSize, MAX_OUTSTANDING_REPLAY_BYTES);
+            if (!outstandingBytes.tryAcquire(permits)) {
+                // The pending batches hold permits, submit them before waiting for the applied records
+                submitReplayBatches(batches, outstandingBytes, replayError, progress);
+                outstandingBytes.acquireUninterruptibly(permits);
             }
+            // Hand off the records in batches to each thread, to not submit a task per record
+            ExecutorService thread = replayExecutor.chooseThread(record.getLong(0));
+            ReplayBatch batch = batches.computeIfAbsent(thread, t -> new ReplayBatch(journalVersion));
+            batch.records.add(record);
+            if (batch.records.size() >= REPLAY_BATCH_SIZE) {
+                batches.remove(thread);
+                submitReplayBatch(thread, batch, outstandingBytes, replayError, progress);
+            }
+        };
+
+        for (Long id : logs) {
+            long logPosition = getJournalReplayPosition(journal, id);
+            long bytesToReplay = getJournalBytesToReplay(journal, id);
+            long remainingBytes = bookieStats.getJournalReplayRemainingBytes().get();
             LOG.info("Replaying journal {} from position {}", id, logPosition);
             long scanOffset = journal.scanJournal(id, logPosition, scanner, conf.isSkipReplayJournalInvalidRecord());
+            if (replayExecutor != null) {
+                submitReplayBatches(batches, outstandingBytes, replayError, progress);
+                // Wait for all the records of the journal file to be applied
+                outstandingBytes.acquireUninterruptibly(MAX_OUTSTANDING_REPLAY_BYTES);
+                outstandingBytes.release(MAX_OUTSTANDING_REPLAY_BYTES);
+                Throwable t = replayError.getAndSet(null);
+                if (t != null) {
+                    if (conf.isSkipReplayJournalInvalidRecord()) {
+                        LOG.warn("Failed to replay journal {}, and skipInvalidRecord is true, skip it", id, t);
+                    } else {
+                        throw new IOException("Failed to replay journal " + id, t);
+                    }
+                }
+            }
+            // The unread bytes are the zeros preallocated at the end of the journal file
+            bookieStats.getJournalReplayRemainingBytes().set(Math.max(remainingBytes - bytesToReplay, 0));
             // Update LastLogMark after completely replaying journal
             // scanOffset will point to EOF position
             // After LedgerStorage flush, SyncThread should persist this to disk
@@ -655,6 +819,82 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    private void submitReplayBatches(Map<ExecutorService, ReplayBatch> batches, Semaphore outstandingBytes,
+                                     AtomicReference<Throwable> replayError, JournalReplayProgress progress) {
+        for (Map.Entry<ExecutorService, ReplayBatch> e : batches.entrySet()) {
+            submitReplayBatch(e.getKey(), e.getValue(), outstandingBytes, replayError, progress);
+        }
+        batches.clear();
+    }
+
+    private void submitReplayBatch(ExecutorService thread, ReplayBatch batch, Semaphore outstandingBytes,
+                                   AtomicReference<Throwable> replayError, JournalReplayProgress progress) {
+        thread.execute(() -> {
+            for (ByteBuffer record : batch.records) {
+                int recordSize = record.remaining();
+                try {
+                    if (replayError.get() == null) {
+                        replayJournalRecord(batch.journalVersion, record);
+                        progress.onRecordApplied(recordSize);
+                    }
+                } catch (Throwable t) {
+                    LOG.error("Failed to replay journal record of ledger {}", record.getLong(0), t);
+                    replayError.compareAndSet(null, t);
+                } finally {
+                    outstandingBytes.release(Math.min(recordSize, MAX_OUTSTANDING_REPLAY_BYTES));
+                }
+            }
+        });
+    }
+
+    /**
+     * Records of a journal file to apply on the same replay thread.
+     */
+    private static class ReplayBatch {
+        final int journalVersion;
+        final List<ByteBuffer> records = new ArrayList<>(REPLAY_BATCH_SIZE);
+
+        ReplayBatch(int journalVersion) {
+            this.journalVersion = journalVersion;
+        }
+    }
+
+    /**
+     * Progress of the journal replay, read and applied records are counted apart as they are applied
+     * concurrently.
+     */
+    private class JournalReplayProgress {
+        private static final long LOG_INTERVAL_MS = 10000;
+
+        long totalBytes = 0;
+        final LongAdder replayedRecords = new LongAdder();
+        final LongAdder replayedBytes = new LongAdder();
+        private long readBytes = 0;
+        private final long startTs = System.currentTimeMillis();
+        private long lastLogTs = startTs;
+
+        // Called by the reading thread
+        void onRecordRead(int recordSize) {
+            readBytes += 4 + recordSize;
+            bookieStats.getJournalReplayRemainingBytes().addAndGet(-(4 + recordSize));
+            long now = System.currentTimeMillis();
+            if (now - lastLogTs >= LOG_INTERVAL_MS) {
+                lastLogTs = now;
+                LOG.info("Replayed {} MB of {} MB of journal ({}%) at {} MB/s", readBytes / MB, totalBytes / MB,
+                        totalBytes > 0 ? readBytes * 100 / totalBytes : 100,
+                        readBytes * 1000 / MB / Math.max(now - startTs, 1));
+            }
+        }
+
+        // Called by the threads applying the records
+        void onRecordApplied(int recordSize) {
+            replayedRecords.increment();
+            replayedBytes.add(recordSize);
+            bookieStats.getJournalReplayRecords().inc();
+            bookieStats.getJournalReplayBytes().addCount(recordSize);
+        }
+    }
+
     @Override
     public synchronized void start() {
         bookieThread = new BookieCriticalThread(() -> run(), "Bookie-" + conf.getBookiePort());
@@ -663,7 +903,7 @@ public class BookieImpl implements Bookie {
         ThreadRegistry.register("BookieThread", 0);
         if (LOG.isDebugEnabled()) {
             LOG.debug("I'm starting a bookie with journal directories {}",
-                    journalDirectories.stream().map(File::getName).collect(Collectors.joining(", ")));
+                    journalStripeDirectories.stream().map(File::getPath).collect(Collectors.joining(", ")));
         }
         //Start DiskChecker thread
         dirsMonitor.start();
@@ -1154,6 +1394,7 @@ public class BookieImpl implements Bookie {
             long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
             if (success) {
                 bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                foregroundLatencyMonitor.recordReadEntry(elapsedNanos);
                 bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
             } else {
                 bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
@@ -1162,6 +1403,38 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        long readBytes = 0;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading up to {} entries from {}@{}", maxCount, firstEntryId, ledgerId);
+            }
+            List<ByteBuf> entries = handle.readEntries(firstEntryId, maxCount, maxSize);
+            for (ByteBuf entry : entries) {
+                int entrySize = entry.readableBytes();
+                readBytes += entrySize;
+                bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
+            }
+            bookieStats.getReadBytes().addCount(readBytes);
+            success = true;
+            return entries;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (success) {
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                foregroundLatencyMonitor.recordReadEntry(elapsedNanos);
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerFailedValue(0);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -108,6 +108,15 @@ public class BufferedReadChannel extends BufferedChannelBase {
             } else if (currentPosition >= eof) {
                 // here we reached eof.
                 break;
+            } else if (length >= readCapacity) {
+                // Large reads go directly to the destination, instead of filling the buffer many times
+                int readBytes = dest.writeBytes(validateAndGetFileChannel(), currentPosition,
+                        (int) Math.min(length, eof - currentPosition));
+                if (readBytes <= 0) {
+                    throw new IOException("Reading from filechannel returned a non-positive value. Short read.");
+                }
+                currentPosition += readBytes;
+                length -= readBytes;
             } else {
                 // We don't have it in the buffer, so put necessary data in the buffer
                 readBufferStartPosition = currentPosition;
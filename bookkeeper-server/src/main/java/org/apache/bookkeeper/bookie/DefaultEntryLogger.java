@@ -60,6 +60,7 @@ import java.util.regex.Pattern;
 import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.VectoredEntryReader;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -287,6 +288,9 @@ public class DefaultEntryLogger implements EntryLogger {
 
     private final ByteBufAllocator allocator;
 
+    // Mappings of the sealed entry logs, null if the mapped reads are disabled
+    private final MappedEntryLogCache mappedEntryLogs;
+
     final ServerConfiguration conf;
 
     /**
@@ -322,6 +326,19 @@ public class DefaultEntryLogger implements EntryLogger {
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
+        if (!conf.isEntryLogMmapEnabled()) {
+            this.mappedEntryLogs = null;
+        } else if (!MappedEntryLogCache.isSupported()) {
+            LOG.warn("Memory mapped entry logs need -Dio.netty.tryReflectionSetAccessible=true and"
+                    + " --add-opens java.base/java.nio=ALL-UNNAMED, reading them through file channels");
+            this.mappedEntryLogs = null;
+        } else {
+            // The entry loggers of DbLedgerStorage have a directory each, tell their mappings apart
+            List<File> dirs = ledgerDirsManager.getAllLedgerDirs();
+            StatsLogger mmapStatsLogger = dirs.size() == 1
+                    ? statsLogger.scopeLabel("ledgerDir", dirs.get(0).getPath()) : statsLogger;
+            this.mappedEntryLogs = new MappedEntryLogCache(conf.getEntryLogMmapCacheMaxSize(), mmapStatsLogger);
+        }
         if (listener != null) {
             addListener(listener);
         }
@@ -519,6 +536,9 @@ public class DefaultEntryLogger implements EntryLogger {
     @Override
     public boolean removeEntryLog(long entryLogId) {
         removeFromChannelsAndClose(entryLogId);
+        if (mappedEntryLogs != null) {
+            mappedEntryLogs.remove(entryLogId);
+        }
         File entryLogFile;
         try {
             entryLogFile = findFile(entryLogId);
@@ -836,12 +856,54 @@ public class DefaultEntryLogger implements EntryLogger {
         return internalReadEntry(-1L, -1L, location, false /* validateEntry */);
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long[] entryLocations)
+            throws IOException, Bookie.NoEntryException {
+        return VectoredEntryReader.readEntries(this, this::readRange, VectoredEntryReader.DEFAULT_MAX_READ_SIZE,
+                ledgerId, firstEntryId, entryLocations);
+    }
+
+    private ByteBuf readRange(long entryLogId, long pos, int size) throws IOException {
+        ByteBuf mapped = getMappedLog(entryLogId);
+        if (mapped != null) {
+            try {
+                if (pos + size <= mapped.capacity()) {
+                    return MappedEntryLogCache.slice(mapped, (int) pos, size);
+                }
+            } finally {
+                mapped.release();
+            }
+        }
+
+        BufferedReadChannel fc = getChannelForLogId(entryLogId);
+        ByteBuf data = allocator.buffer(size, size);
+        int rc = readFromLogChannel(entryLogId, fc, data, pos);
+        if (rc != size) {
+            ReferenceCountUtil.release(data);
+            throw new IOException("Short read from log file id: " + entryLogId + "@" + pos
+                    + "(" + rc + "!=" + size + ")");
+        }
+        data.writerIndex(size);
+        return data;
+    }
+
 
     private ByteBuf internalReadEntry(long ledgerId, long entryId, long location, boolean validateEntry)
             throws IOException, Bookie.NoEntryException {
         long entryLogId = logIdForOffset(location);
         long pos = posForOffset(location);
 
+        ByteBuf mapped = getMappedLog(entryLogId);
+        if (mapped != null) {
+            try {
+                ByteBuf entry = readMappedEntry(ledgerId, entryId, entryLogId, pos, mapped, validateEntry);
+                if (entry != null) {
+                    return entry;
+                }
+            } finally {
+                mapped.release();
+            }
+        }
 
         BufferedReadChannel fc = null;
         int entrySize = -1;
@@ -872,11 +934,59 @@ public class DefaultEntryLogger implements EntryLogger {
     }
 
     /**
-     * Read the header of an entry log.
+     * Get the mapping of an entry log, if the mapped reads are enabled and the entry log is sealed, i.e. it has
+     * been rotated and flushed and won't change anymore.
+     *
+     * @return a retained mapping of the whole entry log, or null to read it through its channel
      */
-    private Header getHeaderForLogId(long entryLogId) throws IOException {
-        BufferedReadChannel bc = getChannelForLogId(entryLogId);
+    private ByteBuf getMappedLog(long entryLogId) throws IOException {
+        if (mappedEntryLogs == null || !entryLoggerAllocator.isSealed(entryLogId)
+                || !recentlyCreatedEntryLogsStatus.isFlushedLogId(entryLogId)) {
+            return null;
+        }
+        try {
+            return mappedEntryLogs.get(entryLogId, findFile(entryLogId));
+        } catch (FileNotFoundException e) {
+            // Let the read through the channel report the missing log
+            return null;
+        }
+    }
+
+    /**
+     * Read an entry as a slice of the mapping of its entry log, without copying it.
+     *
+     * @return the entry, or null if it's past the end of the mapping
+     */
+    private ByteBuf readMappedEntry(long ledgerId, long entryId, long entryLogId, long pos, ByteBuf mapped,
+                                    boolean validateEntry) throws IOException {
+        int sizeBufferSize = sizeBuffer.get().capacity();
+        if (pos < 4 || pos - 4 + sizeBufferSize > mapped.capacity()) {
+            return null;
+        }
+
+        ByteBuf sizeBuff = mapped.slice((int) pos - 4, sizeBufferSize);
+        int entrySize = sizeBuff.getInt(0);
+        if (validateEntry) {
+            try {
+                validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuff);
+            } catch (EntryLookupException e) {
+                throw new IOException("Bad entry read from log file id: " + entryLogId, e);
+            }
+        }
+
+        if (entrySize < 0 || pos + entrySize > mapped.capacity()) {
+            throw new IOException("Bad entry read from log file id: " + entryLogId,
+                    new EntryLookupException("Short read for " + ledgerId + "@"
+                                              + entryId + " in " + entryLogId + "@"
+                                              + pos + "(" + (mapped.capacity() - pos) + "!=" + entrySize + ")"));
+        }
+        return MappedEntryLogCache.slice(mapped, (int) pos, entrySize);
+    }
 
+    /**
+     * Read the header of an entry log.
+     */
+    private Header getHeaderForLogId(long entryLogId, BufferedReadChannel bc) throws IOException {
         // Allocate buffer to read (version, ledgersMapOffset, ledgerCount)
         ByteBuf headers = allocator.directBuffer(LOGFILE_HEADER_SIZE);
         try {
@@ -1070,7 +1180,16 @@ public class DefaultEntryLogger implements EntryLogger {
     }
 
     EntryLogMetadata extractEntryLogMetadataFromIndex(long entryLogId) throws IOException {
-        Header header = getHeaderForLogId(entryLogId);
+        // Read the index through a channel of its own instead of the cached read channels, to not keep all the
+        // entry logs open when the metadata of all of them is extracted, like on startup
+        try (FileChannel fc = new RandomAccessFile(findFile(entryLogId), "r").getChannel()) {
+            return extractEntryLogMetadataFromIndex(entryLogId, new BufferedReadChannel(fc, conf.getReadBufferBytes()));
+        }
+    }
+
+    private EntryLogMetadata extractEntryLogMetadataFromIndex(long entryLogId, BufferedReadChannel bc)
+            throws IOException {
+        Header header = getHeaderForLogId(entryLogId, bc);
 
         if (header.version < HEADER_V1) {
             throw new IOException("Old log file header without ledgers map on entryLogId " + entryLogId);
@@ -1085,13 +1204,13 @@ public class DefaultEntryLogger implements EntryLogger {
             LOG.debug("Recovering ledgers maps for log {} at offset: {}", entryLogId, header.ledgersMapOffset);
         }
 
-        BufferedReadChannel bc = getChannelForLogId(entryLogId);
-
         // There can be multiple entries containing the various components of the serialized ledgers map
         long offset = header.ledgersMapOffset;
         EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
 
-        final int maxMapSize = LEDGERS_MAP_HEADER_SIZE + LEDGERS_MAP_ENTRY_SIZE * LEDGERS_MAP_MAX_BATCH_SIZE;
+        // A batch of the ledgers map holds at most all the ledgers of the entry log
+        final int maxMapSize = LEDGERS_MAP_HEADER_SIZE
+                + LEDGERS_MAP_ENTRY_SIZE * Math.max(Math.min(header.ledgersCount, LEDGERS_MAP_MAX_BATCH_SIZE), 0);
         ByteBuf ledgersMap = allocator.directBuffer(maxMapSize);
 
         try {
@@ -1216,6 +1335,9 @@ public class DefaultEntryLogger implements EntryLogger {
                 IOUtils.close(LOG, compactionLogChannel);
             }
         }
+        if (mappedEntryLogs != null) {
+            mappedEntryLogs.close();
+        }
         // shutdown the pre-allocation thread
         entryLoggerAllocator.stop();
     }
@@ -0,0 +1,69 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Group commit policy with static thresholds: the entries are grouped for up to journalMaxGroupWaitMSec,
+ * and flushed earlier when they reach journalBufferedWritesThreshold bytes or journalBufferedEntriesThreshold
+ * entries.
+ */
+public class DefaultGroupCommitPolicy implements GroupCommitPolicy {
+
+    // Time after which we will stop grouping and issue the flush
+    protected long maxGroupWaitInNanos;
+    // Threshold after which we flush any buffered journal entries
+    protected long bufferedEntriesThreshold;
+    // Threshold after which we flush any buffered journal writes
+    protected long bufferedWritesThreshold;
+    // should we flush if the queue is empty
+    protected boolean flushWhenQueueEmpty;
+
+    @Override
+    public void initialize(ServerConfiguration conf, StatsLogger statsLogger) {
+        this.maxGroupWaitInNanos = TimeUnit.MILLISECONDS.toNanos(conf.getJournalMaxGroupWaitMSec());
+        this.bufferedWritesThreshold = conf.getJournalBufferedWritesThreshold();
+        this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
+        // Unless there is a cap on the max wait (which requires group force writes)
+        // we cannot skip flushing for queue empty
+        this.flushWhenQueueEmpty = maxGroupWaitInNanos <= 0 || conf.getJournalFlushWhenQueueEmpty();
+    }
+
+    @Override
+    public long getMaxGroupWaitNanos() {
+        return maxGroupWaitInNanos;
+    }
+
+    @Override
+    public boolean flushWhenQueueEmpty() {
+        return flushWhenQueueEmpty;
+    }
+
+    @Override
+    public boolean shouldFlush(int entries, long bytes) {
+        return (bufferedEntriesThreshold > 0 && entries > bufferedEntriesThreshold)
+                || bytes > bufferedWritesThreshold;
+    }
+}
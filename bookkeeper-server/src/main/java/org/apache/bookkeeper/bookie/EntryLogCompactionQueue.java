@@ -0,0 +1,196 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.Arrays;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * Priority queue of the entry logs to compact, the entry log reclaiming the most bytes per byte of I/O first.
+ *
+ * <p>Compacting an entry log reads the whole entry log and writes its remaining bytes again, so an entry log
+ * of total size T and remaining size R reclaims T - R bytes for T + R bytes of I/O. The queue is a binary heap
+ * indexed by entry log id, so the sizes of an entry log are updated in place when its ledgers are deleted,
+ * instead of sorting all the entry logs on each compaction.
+ *
+ * <p>This class is not thread safe, it is only used by the garbage collector thread.
+ */
+class EntryLogCompactionQueue {
+
+    /**
+     * Consumer of the entry logs of the queue.
+     */
+    interface EntryLogConsumer {
+        void accept(long entryLogId, long totalSize, long remainingSize);
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] entryLogIds = new long[INITIAL_CAPACITY];
+    private long[] totalSizes = new long[INITIAL_CAPACITY];
+    private long[] remainingSizes = new long[INITIAL_CAPACITY];
+    private double[] scores = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Index in the heap of each entry log
+    private final ConcurrentLongLongHashMap indexes = ConcurrentLongLongHashMap.newBuilder()
+            .expectedItems(INITIAL_CAPACITY)
+            .concurrencyLevel(1)
+            .build();
+
+    static double score(long totalSize, long remainingSize) {
+        if (totalSize <= 0) {
+            return 0.0d;
+        }
+        return (double) (totalSize - remainingSize) / (totalSize + remainingSize);
+    }
+
+    /**
+     * Add an entry log to the queue, or update its sizes if it is already in the queue.
+     */
+    void update(long entryLogId, long totalSize, long remainingSize) {
+        long index = indexes.get(entryLogId);
+        if (index < 0) {
+            if (size == entryLogIds.length) {
+                grow();
+            }
+            set(size, entryLogId, totalSize, remainingSize, score(totalSize, remainingSize));
+            siftUp(size++);
+        } else {
+            int i = (int) index;
+            if (totalSizes[i] == totalSize && remainingSizes[i] == remainingSize) {
+                return;
+            }
+            double previousScore = scores[i];
+            set(i, entryLogId, totalSize, remainingSize, score(totalSize, remainingSize));
+            if (scores[i] > previousScore) {
+                siftUp(i);
+            } else {
+                siftDown(i);
+            }
+        }
+    }
+
+    void remove(long entryLogId) {
+        long index = indexes.remove(entryLogId);
+        if (index < 0) {
+            return;
+        }
+        int i = (int) index;
+        size--;
+        if (i != size) {
+            set(i, entryLogIds[size], totalSizes[size], remainingSizes[size], scores[size]);
+            siftDown(i);
+            siftUp(i);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the entry log reclaiming the most bytes per byte of I/O, or -1 if the queue is empty
+     */
+    long peekEntryLogId() {
+        return size > 0 ? entryLogIds[0] : -1L;
+    }
+
+    long peekTotalSize() {
+        return totalSizes[0];
+    }
+
+    long peekRemainingSize() {
+        return remainingSizes[0];
+    }
+
+    void forEach(EntryLogConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(entryLogIds[i], totalSizes[i], remainingSizes[i]);
+        }
+    }
+
+    void clear() {
+        size = 0;
+        indexes.clear();
+    }
+
+    private void set(int i, long entryLogId, long totalSize, long remainingSize, double score) {
+        entryLogIds[i] = entryLogId;
+        totalSizes[i] = totalSize;
+        remainingSizes[i] = remainingSize;
+        scores[i] = score;
+        indexes.put(entryLogId, i);
+    }
+
+    // Ties are broken by the oldest entry log first
+    private boolean before(int i, int j) {
+        return scores[i] > scores[j] || (scores[i] == scores[j] && entryLogIds[i] < entryLogIds[j]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int child = left + 1 < size && before(left + 1, left) ? left + 1 : left;
+            if (!before(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long entryLogId = entryLogIds[i];
+        long totalSize = totalSizes[i];
+        long remainingSize = remainingSizes[i];
+        double score = scores[i];
+        set(i, entryLogIds[j], totalSizes[j], remainingSizes[j], scores[j]);
+        set(j, entryLogId, totalSize, remainingSize, score);
+    }
+
+    private void grow() {
+        int capacity = entryLogIds.length * 2;
+        entryLogIds = Arrays.copyOf(entryLogIds, capacity);
+        totalSizes = Arrays.copyOf(totalSizes, capacity);
+        remainingSizes = Arrays.copyOf(remainingSizes, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+}
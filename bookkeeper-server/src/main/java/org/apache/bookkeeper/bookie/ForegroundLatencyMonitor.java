@@ -0,0 +1,134 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Tracks the recent latency of the foreground operations of the bookie, the journal fsyncs and the entry reads,
+ * for the background tasks to back off when they hurt them.
+ *
+ * <p>The latencies are recorded along with the {@link BookKeeperServerStats#JOURNAL_SYNC} and
+ * {@link BookKeeperServerStats#READ_ENTRY} stats, as the stats providers do not expose their percentiles.
+ */
+public class ForegroundLatencyMonitor {
+
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyWindow journalSyncLatency = new LatencyWindow();
+    private final LatencyWindow readEntryLatency = new LatencyWindow();
+
+    public void recordJournalSync(long latencyNanos) {
+        journalSyncLatency.record(latencyNanos);
+    }
+
+    public void recordReadEntry(long latencyNanos) {
+        readEntryLatency.record(latencyNanos);
+    }
+
+    /**
+     * @return the p99 latency of the journal fsyncs of the last complete window, or 0 if there was none
+     */
+    public long getJournalSyncP99Nanos() {
+        return journalSyncLatency.getP99Nanos();
+    }
+
+    /**
+     * @return the p99 latency of the entry reads of the last complete window, or 0 if there was none
+     */
+    public long getReadEntryP99Nanos() {
+        return readEntryLatency.getP99Nanos();
+    }
+
+    /**
+     * Histogram of the latencies of a time window, with 8 buckets per power of two of microseconds.
+     */
+    static class LatencyWindow {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+        private volatile AtomicLongArray current = new AtomicLongArray(NUM_BUCKETS);
+        private AtomicLongArray previous = new AtomicLongArray(NUM_BUCKETS);
+        private long windowStartNanos = MathUtils.nowInNano();
+        private long p99Nanos = 0;
+
+        void record(long latencyNanos) {
+            current.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+
+        synchronized long getP99Nanos() {
+            long now = MathUtils.nowInNano();
+            if (now - windowStartNanos >= WINDOW_NANOS) {
+                // The latencies recorded while swapping may land in the next window, it does not matter here
+                AtomicLongArray window = current;
+                current = previous;
+                previous = window;
+                windowStartNanos = now;
+                p99Nanos = TimeUnit.MICROSECONDS.toNanos(percentile(window, 0.99));
+                for (int i = 0; i < NUM_BUCKETS; i++) {
+                    window.set(i, 0);
+                }
+            }
+            return p99Nanos;
+        }
+
+        static int bucket(long micros) {
+            if (micros < (1 << SUB_BUCKET_BITS)) {
+                return (int) Math.max(micros, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+            int subBucket = (int) (micros >>> exponent) & ((1 << SUB_BUCKET_BITS) - 1);
+            return ((exponent + 1) << SUB_BUCKET_BITS) + subBucket;
+        }
+
+        // Upper bound of the latencies of a bucket
+        static long bucketUpperBound(int bucket) {
+            if (bucket < (1 << SUB_BUCKET_BITS)) {
+                return bucket;
+            }
+            int exponent = (bucket >>> SUB_BUCKET_BITS) - 1;
+            long subBucket = (bucket & ((1 << SUB_BUCKET_BITS) - 1)) | (1 << SUB_BUCKET_BITS);
+            return ((subBucket + 1) << exponent) - 1;
+        }
+
+        static long percentile(AtomicLongArray window, double percentile) {
+            long count = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                count += window.get(i);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += window.get(i);
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return bucketUpperBound(NUM_BUCKETS - 1);
+        }
+    }
+}
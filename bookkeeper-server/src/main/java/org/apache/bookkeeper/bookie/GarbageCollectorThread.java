@@ -28,14 +28,18 @@ import com.google.common.base.Strings;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
@@ -49,6 +53,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,9 +65,13 @@ public class GarbageCollectorThread implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(GarbageCollectorThread.class);
     private static final int SECOND = 1000;
     private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // Max number of entry logs read ahead by each metadata loader thread
+    private static final int MAX_LOADING_ENTRY_LOGS_PER_THREAD = 4;
 
     // Maps entry log files to the set of ledgers that comprise the file and the size usage per ledger
     private EntryLogMetadataMap entryLogMetaMap;
+    // Entry logs of the metadata map by compaction priority, updated as the metadata map
+    private final EntryLogCompactionQueue compactionQueue = new EntryLogCompactionQueue();
 
     private final ScheduledExecutorService gcExecutor;
     Future<?> scheduledFuture = null;
@@ -76,6 +85,7 @@ public class GarbageCollectorThread implements Runnable {
     final double minorCompactionThreshold;
     final long minorCompactionInterval;
     final long minorCompactionMaxTimeMillis;
+    final long minorCompactionMaxIoBytes;
     long lastMinorCompactionTime;
 
     boolean isForceMajorCompactionAllow = false;
@@ -83,6 +93,7 @@ public class GarbageCollectorThread implements Runnable {
     final double majorCompactionThreshold;
     final long majorCompactionInterval;
     long majorCompactionMaxTimeMillis;
+    final long majorCompactionMaxIoBytes;
     long lastMajorCompactionTime;
 
     @Getter
@@ -177,7 +188,8 @@ public class GarbageCollectorThread implements Runnable {
             statsLogger,
             () -> numActiveEntryLogs,
             () -> totalEntryLogSize,
-            () -> garbageCollector.getNumActiveLedgers()
+            () -> garbageCollector.getNumActiveLedgers(),
+            () -> compactor.throttler.getRate()
         );
 
         this.garbageCleaner = ledgerId -> {
@@ -200,6 +212,8 @@ public class GarbageCollectorThread implements Runnable {
         isForceGCAllowWhenNoSpace = conf.getIsForceGCAllowWhenNoSpace();
         majorCompactionMaxTimeMillis = conf.getMajorCompactionMaxTimeMillis();
         minorCompactionMaxTimeMillis = conf.getMinorCompactionMaxTimeMillis();
+        majorCompactionMaxIoBytes = conf.getMajorCompactionMaxIoBytes();
+        minorCompactionMaxIoBytes = conf.getMinorCompactionMaxIoBytes();
 
         boolean isForceAllowCompaction = conf.isForceAllowCompaction();
 
@@ -441,7 +455,8 @@ public class GarbageCollectorThread implements Runnable {
                 LOG.info("Enter major compaction, suspendMajor {}", suspendMajor);
                 majorCompacting.set(true);
                 try {
-                    doCompactEntryLogs(majorCompactionThreshold, majorCompactionMaxTimeMillis);
+                    doCompactEntryLogs(majorCompactionThreshold, majorCompactionMaxTimeMillis,
+                            majorCompactionMaxIoBytes);
                 } finally {
                     lastMajorCompactionTime = System.currentTimeMillis();
                     // and also move minor compaction time
@@ -456,7 +471,8 @@ public class GarbageCollectorThread implements Runnable {
                 LOG.info("Enter minor compaction, suspendMinor {}", suspendMinor);
                 minorCompacting.set(true);
                 try {
-                    doCompactEntryLogs(minorCompactionThreshold, minorCompactionMaxTimeMillis);
+                    doCompactEntryLogs(minorCompactionThreshold, minorCompactionMaxTimeMillis,
+                            minorCompactionMaxIoBytes);
                 } finally {
                     lastMinorCompactionTime = System.currentTimeMillis();
                     gcStats.getMinorCompactionCounter().inc();
@@ -506,10 +522,14 @@ public class GarbageCollectorThread implements Runnable {
                         gcStats.getReclaimedSpaceViaDeletes().addCount(meta.getTotalSize());
                     } else {
                         gcStats.getReclaimFailedToDelete().inc();
+                        compactionQueue.update(entryLogId, meta.getTotalSize(), meta.getRemainingSize());
                     }
-                } else if (modified) {
-                    // update entryLogMetaMap only when the meta modified.
-                    entryLogMetaMap.put(meta.getEntryLogId(), meta);
+                } else {
+                    if (modified) {
+                        // update entryLogMetaMap only when the meta modified.
+                        entryLogMetaMap.put(meta.getEntryLogId(), meta);
+                    }
+                    compactionQueue.update(entryLogId, meta.getTotalSize(), meta.getRemainingSize());
                 }
             } catch (EntryLogMetadataMapException e) {
                 // Ignore and continue because ledger will not be cleaned up
@@ -547,84 +567,73 @@ public class GarbageCollectorThread implements Runnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
-     * Those entry log files whose remaining size percentage is higher than threshold
-     * would not be compacted.
+     * Compaction will be executed from the entry log reclaiming the most bytes per byte of I/O, taken from the
+     * compaction queue instead of scanning the entry log metadata map. Those entry log files whose remaining
+     * size percentage is higher than threshold would not be compacted. A compaction run stops once it ran
+     * for maxTimeMillis, or once the compacted entry logs took maxIoBytes of I/O.
      * </p>
      */
     @VisibleForTesting
-    void doCompactEntryLogs(double threshold, long maxTimeMillis) throws EntryLogMetadataMapException {
+    void doCompactEntryLogs(double threshold, long maxTimeMillis, long maxIoBytes)
+            throws EntryLogMetadataMapException {
         LOG.info("Do compaction to compact those files lower than {}", threshold);
 
         final int numBuckets = 10;
         int[] entryLogUsageBuckets = new int[numBuckets];
         int[] compactedBuckets = new int[numBuckets];
 
-        ArrayList<LinkedList<Long>> compactableBuckets = new ArrayList<>(numBuckets);
-        for (int i = 0; i < numBuckets; i++) {
-            compactableBuckets.add(new LinkedList<>());
-        }
-
-        long start = System.currentTimeMillis();
-        MutableLong end = new MutableLong(start);
-        MutableLong timeDiff = new MutableLong(0);
-
-        entryLogMetaMap.forEach((entryLogId, meta) -> {
-            double usage = meta.getUsage();
-            if (conf.isUseTargetEntryLogSizeForGc() && usage < 1.0d) {
-                usage = (double) meta.getRemainingSize() / Math.max(meta.getTotalSize(), conf.getEntryLogSizeLimit());
-            }
-            int bucketIndex = calculateUsageIndex(numBuckets, usage);
-            entryLogUsageBuckets[bucketIndex]++;
-
-            if (timeDiff.getValue() < maxTimeMillis) {
-                end.setValue(System.currentTimeMillis());
-                timeDiff.setValue(end.getValue() - start);
+        MutableLong compactableEntryLogs = new MutableLong(0);
+        compactionQueue.forEach((entryLogId, totalSize, remainingSize) -> {
+            double usage = getCompactionUsage(totalSize, remainingSize);
+            entryLogUsageBuckets[calculateUsageIndex(numBuckets, usage)]++;
+            if (usage < threshold) {
+                compactableEntryLogs.increment();
             }
-            if ((usage >= threshold
-                || (maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis)
-                || !running)) {
-                // We allow the usage limit calculation to continue so that we get an accurate
-                // report of where the usage was prior to running compaction.
-                return;
-            }
-
-            compactableBuckets.get(bucketIndex).add(meta.getEntryLogId());
         });
 
         LOG.info(
                 "Compaction: entry log usage buckets before compaction [10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
                 entryLogUsageBuckets);
 
-        final int maxBucket = calculateUsageIndex(numBuckets, threshold);
-        int totalEntryLogIds = 0;
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            totalEntryLogIds += compactableBuckets.get(currBucket).size();
-        }
+        long start = System.currentTimeMillis();
+        long ioBytes = 0;
         long lastPrintTimestamp = 0;
-        AtomicInteger processedEntryLogCnt = new AtomicInteger(0);
-
-        stopCompaction:
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            LinkedList<Long> entryLogIds = compactableBuckets.get(currBucket);
-            while (!entryLogIds.isEmpty()) {
-                if (timeDiff.getValue() < maxTimeMillis) {
-                    end.setValue(System.currentTimeMillis());
-                    timeDiff.setValue(end.getValue() - start);
+        int processedEntryLogCnt = 0;
+        // Entry logs taken from the queue, to put back the ones still there after compaction
+        List<long[]> polledEntryLogs = new ArrayList<>();
+
+        try {
+            while (!compactionQueue.isEmpty() && processedEntryLogCnt < compactableEntryLogs.longValue()) {
+                if ((maxTimeMillis > 0 && System.currentTimeMillis() - start >= maxTimeMillis) || !running) {
+                    break;
                 }
 
-                if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
-                    // We allow the usage limit calculation to continue so that we get an accurate
-                    // report of where the usage was prior to running compaction.
-                    break stopCompaction;
+                final long logId = compactionQueue.peekEntryLogId();
+                final long totalSize = compactionQueue.peekTotalSize();
+                final long remainingSize = compactionQueue.peekRemainingSize();
+                double usage = getCompactionUsage(totalSize, remainingSize);
+                if (usage >= threshold) {
+                    if (!conf.isUseTargetEntryLogSizeForGc()) {
+                        // The usage only grows along the queue
+                        break;
+                    }
+                    // The usage of the entry logs smaller than the target size is not ordered with the queue
+                    compactionQueue.remove(logId);
+                    polledEntryLogs.add(new long[] { logId, totalSize, remainingSize });
+                    continue;
+                }
+                if (maxIoBytes > 0 && ioBytes > 0 && ioBytes + totalSize + remainingSize > maxIoBytes) {
+                    break;
                 }
 
-                final int bucketIndex = currBucket;
-                final long logId = entryLogIds.remove();
+                compactionQueue.remove(logId);
+                polledEntryLogs.add(new long[] { logId, totalSize, remainingSize });
+                ioBytes += totalSize + remainingSize;
+                processedEntryLogCnt++;
                 if (System.currentTimeMillis() - lastPrintTimestamp >= MINUTE) {
                     lastPrintTimestamp = System.currentTimeMillis();
                     LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
-                        processedEntryLogCnt.get(), totalEntryLogIds, logId);
+                        processedEntryLogCnt, compactableEntryLogs.longValue(), logId);
                 }
                 entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
                     if (meta == null) {
@@ -641,25 +650,46 @@ public class GarbageCollectorThread implements Runnable {
                     long priorRemainingSize = meta.getRemainingSize();
                     compactEntryLog(meta);
                     gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
-                    compactedBuckets[bucketIndex]++;
-                    processedEntryLogCnt.getAndIncrement();
+                    compactedBuckets[calculateUsageIndex(numBuckets, usage)]++;
                 });
             }
+        } finally {
+            // Put back the entry logs which were not compacted or failed to be compacted
+            for (long[] entryLog : polledEntryLogs) {
+                if (entryLogMetaMap.containsKey(entryLog[0])) {
+                    compactionQueue.update(entryLog[0], entryLog[1], entryLog[2]);
+                }
+            }
         }
 
         if (LOG.isDebugEnabled()) {
             if (!running) {
                 LOG.debug("Compaction exited due to gc not running");
             }
-            if (maxTimeMillis > 0 && timeDiff.getValue() > maxTimeMillis) {
+            long timeDiff = System.currentTimeMillis() - start;
+            if (maxTimeMillis > 0 && timeDiff > maxTimeMillis) {
                 LOG.debug("Compaction ran for {}ms but was limited by {}ms", timeDiff, maxTimeMillis);
             }
+            if (maxIoBytes > 0 && processedEntryLogCnt < compactableEntryLogs.longValue()) {
+                LOG.debug("Compaction did {} bytes of I/O and was limited by {} bytes", ioBytes, maxIoBytes);
+            }
         }
         LOG.info(
                 "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}",
                 entryLogUsageBuckets, compactedBuckets);
     }
 
+    /**
+     * Get the usage of an entry log compared to the compaction threshold.
+     */
+    private double getCompactionUsage(long totalSize, long remainingSize) {
+        double usage = totalSize == 0L ? 0.0d : (double) remainingSize / totalSize;
+        if (conf.isUseTargetEntryLogSizeForGc() && usage < 1.0d) {
+            usage = (double) remainingSize / Math.max(totalSize, conf.getEntryLogSizeLimit());
+        }
+        return usage;
+    }
+
     /**
      * Calculate the index for the batch based on the usage between 0 and 1.
      *
@@ -714,6 +744,7 @@ public class GarbageCollectorThread implements Runnable {
         if (entryLogger.removeEntryLog(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
             entryLogMetaMap.remove(entryLogId);
+            compactionQueue.remove(entryLogId);
             return true;
         }
 
@@ -755,6 +786,7 @@ public class GarbageCollectorThread implements Runnable {
      * @throws EntryLogMetadataMapException
      */
     protected void extractMetaFromEntryLogs() throws EntryLogMetadataMapException {
+        List<Long> entryLogIds = new ArrayList<>();
         for (long entryLogId : entryLogger.getFlushedLogIds()) {
             // Comb the current entry log file if it has not already been extracted.
             if (entryLogMetaMap.containsKey(entryLogId)) {
@@ -766,33 +798,91 @@ public class GarbageCollectorThread implements Runnable {
             if (!entryLogger.logExists(entryLogId)) {
                 continue;
             }
+            entryLogIds.add(entryLogId);
+        }
+        if (entryLogIds.isEmpty()) {
+            return;
+        }
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
-
+        long start = System.currentTimeMillis();
+        int numThreads = Math.min(conf.getGcEntryLogMetadataLoadThreads(), entryLogIds.size());
+        if (numThreads <= 1) {
+            for (long entryLogId : entryLogIds) {
+                try {
+                    addEntryLogMetadata(entryLogId, loadEntryLogMetadata(entryLogId));
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Premature exception when processing " + entryLogId
+                             + " recovery will take care of the problem", e);
+                }
+            }
+        } else {
+            // The entry logs are read by the loader threads, mostly their ledgers map index only, while their
+            // metadata is added to the map by the gc thread in the entry log order.
+            ExecutorService loader = Executors.newFixedThreadPool(numThreads,
+                    new DefaultThreadFactory("GarbageCollectorThread-metadata-loader"));
             try {
-                // Read through the entry log file and extract the entry log meta
-                EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
-                removeIfLedgerNotExists(entryLogMeta);
-                if (entryLogMeta.isEmpty()) {
-                    // This means the entry log is not associated with any active
-                    // ledgers anymore.
-                    // We can remove this entry log file now.
-                    LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
-                    if (removeEntryLog(entryLogId)) {
-                        gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
-                    } else {
-                        gcStats.getReclaimFailedToDelete().inc();
+                Iterator<Long> toLoad = entryLogIds.iterator();
+                Deque<Pair<Long, Future<EntryLogMetadata>>> loading = new ArrayDeque<>();
+                while (toLoad.hasNext() || !loading.isEmpty()) {
+                    while (toLoad.hasNext() && loading.size() < numThreads * MAX_LOADING_ENTRY_LOGS_PER_THREAD) {
+                        long entryLogId = toLoad.next();
+                        loading.add(Pair.of(entryLogId, loader.submit(() -> loadEntryLogMetadata(entryLogId))));
+                    }
+                    Pair<Long, Future<EntryLogMetadata>> loaded = loading.poll();
+                    long entryLogId = loaded.getLeft();
+                    try {
+                        addEntryLogMetadata(entryLogId, loaded.getRight().get());
+                    } catch (ExecutionException e) {
+                        LOG.warn("Premature exception when processing " + entryLogId
+                                 + " recovery will take care of the problem", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOG.info("Interrupted while extracting entry log meta");
+                        return;
                     }
-                } else {
-                    entryLogMetaMap.put(entryLogId, entryLogMeta);
                 }
-            } catch (IOException | RuntimeException e) {
-                LOG.warn("Premature exception when processing " + entryLogId
-                         + " recovery will take care of the problem", e);
+            } finally {
+                loader.shutdownNow();
+            }
+        }
+        LOG.info("Extracted entry log meta of {} entry logs in {} ms with {} threads", entryLogIds.size(),
+                System.currentTimeMillis() - start, Math.max(numThreads, 1));
+    }
+
+    private EntryLogMetadata loadEntryLogMetadata(long entryLogId) throws IOException {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Extracting entry log meta from entryLogId: {}", entryLogId);
+        }
+        // Read the ledgers map index of the entry log file, or read through it to extract the entry log meta
+        return entryLogger.getEntryLogMetadata(entryLogId, throttler);
+    }
+
+    private void addEntryLogMetadata(long entryLogId, EntryLogMetadata entryLogMeta)
+            throws EntryLogMetadataMapException {
+        removeIfLedgerNotExists(entryLogMeta);
+        if (entryLogMeta.isEmpty()) {
+            // This means the entry log is not associated with any active
+            // ledgers anymore.
+            // We can remove this entry log file now.
+            LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
+            if (removeEntryLog(entryLogId)) {
+                gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
+            } else {
+                gcStats.getReclaimFailedToDelete().inc();
             }
+        } else {
+            entryLogMetaMap.put(entryLogId, entryLogMeta);
         }
     }
 
+    /**
+     * Set the monitor of the foreground latency, for the compaction to back off when it hurts it.
+     */
+    public void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        throttler.setLatencyMonitor(foregroundLatencyMonitor);
+        compactor.throttler.setLatencyMonitor(foregroundLatencyMonitor);
+    }
+
     CompactableLedgerStorage getLedgerStorage() {
         return ledgerStorage;
     }
@@ -0,0 +1,153 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.bookkeeper.stats.Counter;
+
+/**
+ * A {@link BufferedChannel} writing the large direct buffers to the file channel with a gathering write on
+ * flush, instead of copying them to the write buffer.
+ *
+ * <p>The buffers smaller than the min gather size, or on heap, are still copied to the write buffer, as the
+ * gathering write of many small buffers costs more than the copy. The write buffer is cut at each gathered
+ * buffer, so the bytes are written in order, and the gathered buffers are retained until the next flush.
+ */
+public class GatheringBufferedChannel extends BufferedChannel {
+
+    // Max number of buffers of a gathering write, the IOV_MAX of linux
+    private static final int MAX_PENDING_BUFFERS = 1024;
+
+    private final int minGatherSize;
+    private final Counter copiedBytesCounter;
+
+    // Buffers to write on the next flush, in order: the cut parts of the write buffer and the gathered buffers
+    private final List<ByteBuffer> pendingBuffers = new ArrayList<>();
+    private final List<ByteBuf> gatheredBufs = new ArrayList<>();
+    private long pendingGatheredBytes = 0;
+    // Index up to which the write buffer is already in the pending buffers
+    private int writeBufferCutIndex = 0;
+
+    /**
+     * @param minGatherSize min size of the buffers to gather instead of copying them, or 0 to copy all of them
+     * @param copiedBytesCounter counter of the bytes copied to the write buffer
+     */
+    public GatheringBufferedChannel(ByteBufAllocator allocator, FileChannel fc, int capacity, int minGatherSize,
+                                    Counter copiedBytesCounter) throws IOException {
+        super(allocator, fc, capacity);
+        this.minGatherSize = minGatherSize;
+        this.copiedBytesCounter = copiedBytesCounter;
+    }
+
+    @Override
+    public void write(ByteBuf src) throws IOException {
+        int len = src.readableBytes();
+        if (minGatherSize <= 0 || len < minGatherSize || !src.isDirect()) {
+            super.write(src);
+            copiedBytesCounter.addCount(len);
+            return;
+        }
+
+        synchronized (this) {
+            int nioBufferCount = src.nioBufferCount();
+            if (pendingBuffers.size() + nioBufferCount + 1 > MAX_PENDING_BUFFERS) {
+                flush();
+            }
+            cutWriteBuffer();
+            if (nioBufferCount == 1) {
+                pendingBuffers.add(src.nioBuffer());
+            } else {
+                Collections.addAll(pendingBuffers, src.nioBuffers());
+            }
+            gatheredBufs.add(src.retain());
+            pendingGatheredBytes += len;
+            position += len;
+
+            // Bound the pending bytes as the write buffer bounds the copied bytes
+            if (pendingGatheredBytes >= writeCapacity) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (gatheredBufs.isEmpty()) {
+            super.flush();
+            return;
+        }
+
+        cutWriteBuffer();
+        ByteBuffer[] toWrite = pendingBuffers.toArray(new ByteBuffer[0]);
+        int first = 0;
+        while (first < toWrite.length) {
+            fileChannel.write(toWrite, first, toWrite.length - first);
+            while (first < toWrite.length && !toWrite[first].hasRemaining()) {
+                first++;
+            }
+        }
+        releaseGatheredBufs();
+        writeBuffer.clear();
+        writeBufferStartPosition.set(fileChannel.position());
+    }
+
+    @Override
+    public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
+        // The gathered bytes are not in the write buffer, make them readable from the file
+        if (!gatheredBufs.isEmpty()) {
+            flush();
+        }
+        return super.read(dest, pos, length);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        releaseGatheredBufs();
+        super.close();
+    }
+
+    private void cutWriteBuffer() {
+        int writerIndex = writeBuffer.writerIndex();
+        if (writerIndex > writeBufferCutIndex) {
+            pendingBuffers.add(writeBuffer.nioBuffer(writeBufferCutIndex, writerIndex - writeBufferCutIndex));
+            writeBufferCutIndex = writerIndex;
+        }
+    }
+
+    private void releaseGatheredBufs() {
+        for (ByteBuf buf : gatheredBufs) {
+            ReferenceCountUtil.release(buf);
+        }
+        gatheredBufs.clear();
+        pendingBuffers.clear();
+        pendingGatheredBytes = 0;
+        writeBufferCutIndex = 0;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.IOException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Decides when the journal flushes the group of entries it buffered, so that they are written and
+ * force written together.
+ *
+ * <p>The journal thread asks the policy at each step of its loop, and notifies it of each flush. The force
+ * write thread notifies it of each fsync, so {@link #onSync(long)} is called concurrently with the other
+ * methods.
+ */
+public interface GroupCommitPolicy {
+
+    /**
+     * @param policyClassName class name of the policy, with a public no-arg constructor
+     * @return a group commit policy, not initialized yet
+     * @throws IOException if the policy can't be instantiated
+     */
+    static GroupCommitPolicy newPolicy(String policyClassName) throws IOException {
+        try {
+            Class<?> policyClass = Class.forName(policyClassName);
+            Object obj = policyClass.getConstructor().newInstance();
+            return (GroupCommitPolicy) obj;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Initialize the policy, before the journal starts.
+     *
+     * @param conf server configuration
+     * @param statsLogger stats logger of the journal, to expose the decisions of the policy
+     */
+    void initialize(ServerConfiguration conf, StatsLogger statsLogger);
+
+    /**
+     * Get the max time the oldest buffered entry can wait for more entries to join its group.
+     *
+     * @return max group wait in nanoseconds, or 0 to not wait
+     */
+    long getMaxGroupWaitNanos();
+
+    /**
+     * Whether the buffered entries should be flushed as soon as there are no more entries in the queue,
+     * instead of waiting for more entries to join the group.
+     */
+    boolean flushWhenQueueEmpty();
+
+    /**
+     * Whether the buffered entries should be flushed, because the group is large enough.
+     *
+     * @param entries number of buffered entries
+     * @param bytes number of buffered bytes
+     */
+    boolean shouldFlush(int entries, long bytes);
+
+    /**
+     * Notify that the buffered entries were flushed.
+     *
+     * @param entries number of flushed entries
+     * @param bytes number of flushed bytes
+     */
+    default void onFlush(int entries, long bytes) {
+    }
+
+    /**
+     * Notify that the journal was force written to the disk.
+     *
+     * @param syncNanos duration of the fsync, in nanoseconds
+     */
+    default void onSync(long syncNanos) {
+    }
+}
@@ -174,6 +174,11 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         this.checkpointer = checkpointer;
     }
 
+    @Override
+    public void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        gcThread.setForegroundLatencyMonitor(foregroundLatencyMonitor);
+    }
+
     public void initializeWithEntryLogger(ServerConfiguration conf,
                 LedgerManager ledgerManager,
                 LedgerDirsManager ledgerDirsManager,
@@ -128,6 +128,28 @@ public class Journal implements CheckpointSource {
         return logs;
     }
 
+    /**
+     * Get the directories of all the journals of a bookie, with the stripes of each journal directory.
+     *
+     * <p>The journal at index {@code i} of the list writes to the directory at index {@code i}. The first
+     * stripe of a journal directory is the directory itself, and keeps the index of the directory, so the
+     * journal files and the last log marks written before striping the directories are still replayed. The
+     * other stripes are in sub directories, with indexes after the ones of the first stripes.
+     *
+     * @param journalDirs current directories of the journal directories
+     * @param stripesPerDirectory number of journals per journal directory
+     * @return journal directories, by journal index
+     */
+    public static List<File> getStripeDirectories(List<File> journalDirs, int stripesPerDirectory) {
+        List<File> stripeDirs = new ArrayList<>(journalDirs.size() * stripesPerDirectory);
+        for (int stripe = 0; stripe < stripesPerDirectory; stripe++) {
+            for (File journalDir : journalDirs) {
+                stripeDirs.add(stripe == 0 ? journalDir : new File(journalDir, STRIPE_DIR_PREFIX + stripe));
+            }
+        }
+        return stripeDirs;
+    }
+
     /**
      * A wrapper over log mark to provide a checkpoint for users of journal
      * to do checkpointing.
@@ -541,8 +563,13 @@ public class Journal implements CheckpointSource {
             long fsyncStartTime = MathUtils.nowInNano();
             try {
                 lastRequest.flushFileToDisk();
-                journalStats.getJournalSyncStats().registerSuccessfulEvent(MathUtils.elapsedNanos(fsyncStartTime),
-                        TimeUnit.NANOSECONDS);
+                long fsyncNanos = MathUtils.elapsedNanos(fsyncStartTime);
+                journalStats.getJournalSyncStats().registerSuccessfulEvent(fsyncNanos, TimeUnit.NANOSECONDS);
+                groupCommitPolicy.onSync(fsyncNanos);
+                ForegroundLatencyMonitor latencyMonitor = foregroundLatencyMonitor;
+                if (latencyMonitor != null) {
+                    latencyMonitor.recordJournalSync(fsyncNanos);
+                }
                 lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
             } catch (IOException ioe) {
                 journalStats.getJournalSyncStats()
@@ -593,6 +620,8 @@ public class Journal implements CheckpointSource {
     final long journalPreAllocSize;
     // write buffer size for the journal files
     final int journalWriteBufferSize;
+    // min size of the entries written from their buffers instead of being copied to the write buffer
+    final int journalGatherWriteMinSize;
     // number journal files kept before marked journal
     final int maxBackupJournals;
 
@@ -601,14 +630,9 @@ public class Journal implements CheckpointSource {
     final ForceWriteThread forceWriteThread;
     final FileChannelProvider fileChannelProvider;
 
-    // Time after which we will stop grouping and issue the flush
-    private final long maxGroupWaitInNanos;
-    // Threshold after which we flush any buffered journal entries
-    private final long bufferedEntriesThreshold;
-    // Threshold after which we flush any buffered journal writes
-    private final long bufferedWritesThreshold;
-    // should we flush if the queue is empty
-    private final boolean flushWhenQueueEmpty;
+    // Decides when to stop grouping and issue the flush
+    private final GroupCommitPolicy groupCommitPolicy;
+    private volatile ForegroundLatencyMonitor foregroundLatencyMonitor = null;
     // should we hint the filesystem to remove pages from cache after force write
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
@@ -625,6 +649,8 @@ public class Journal implements CheckpointSource {
 
     private static final String LAST_MARK_DEFAULT_NAME = "lastMark";
 
+    static final String STRIPE_DIR_PREFIX = "stripe-";
+
     private final String lastMarkFileName;
 
     private final Counter callbackTime;
@@ -669,7 +695,8 @@ public class Journal implements CheckpointSource {
         }
 
         // Adjust the journal max memory in case there are multiple journals configured.
-        long journalMaxMemory = conf.getJournalMaxMemorySizeMb() / conf.getJournalDirNames().length * 1024 * 1024;
+        long journalMaxMemory = conf.getJournalMaxMemorySizeMb()
+                / (conf.getJournalDirNames().length * conf.getJournalStripesPerDirectory()) * 1024 * 1024;
         this.memoryLimitController = new MemoryLimitController(journalMaxMemory);
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
@@ -677,13 +704,11 @@ public class Journal implements CheckpointSource {
         this.maxJournalSize = conf.getMaxJournalSizeMB() * MB;
         this.journalPreAllocSize = conf.getJournalPreAllocSizeMB() * MB;
         this.journalWriteBufferSize = conf.getJournalWriteBufferSizeKB() * KB;
+        this.journalGatherWriteMinSize = conf.getJournalGatherWriteMinSize();
         this.syncData = conf.getJournalSyncData();
         this.maxBackupJournals = conf.getMaxBackupJournals();
         this.forceWriteThread = new ForceWriteThread((__) -> this.interruptThread(),
                 conf.getJournalAdaptiveGroupWrites(), journalStatsLogger);
-        this.maxGroupWaitInNanos = TimeUnit.MILLISECONDS.toNanos(conf.getJournalMaxGroupWaitMSec());
-        this.bufferedWritesThreshold = conf.getJournalBufferedWritesThreshold();
-        this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
         this.journalFormatVersionToWrite = conf.getJournalFormatVersionToWrite();
         this.journalAlignmentSize = conf.getJournalAlignmentSize();
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
@@ -692,13 +717,9 @@ public class Journal implements CheckpointSource {
 
         this.journalTime = journalStatsLogger.getThreadScopedCounter("journal-thread-time");
 
-        // Unless there is a cap on the max wait (which requires group force writes)
-        // we cannot skip flushing for queue empty
-        this.flushWhenQueueEmpty = maxGroupWaitInNanos <= 0 || conf.getJournalFlushWhenQueueEmpty();
-
         this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
         // read last log mark
-        if (conf.getJournalDirs().length == 1) {
+        if (conf.getJournalDirs().length == 1 && journalIndex == 0) {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME;
         } else {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME + "." + journalIndex;
@@ -715,6 +736,14 @@ public class Journal implements CheckpointSource {
             throw new RuntimeException(e);
         }
 
+        try {
+            this.groupCommitPolicy = GroupCommitPolicy.newPolicy(conf.getJournalGroupCommitPolicy());
+        } catch (IOException e) {
+            LOG.error("Failed to initiate group commit policy: {}", conf.getJournalGroupCommitPolicy());
+            throw new RuntimeException(e);
+        }
+        groupCommitPolicy.initialize(conf, journalStatsLogger);
+
         // Expose Stats
         this.journalStats = new JournalStats(journalStatsLogger, journalMaxMemory,
                 () -> memoryLimitController.currentUsage());
@@ -739,6 +768,13 @@ public class Journal implements CheckpointSource {
         return this.journalStats;
     }
 
+    /**
+     * Set the monitor to record the fsync latency into.
+     */
+    void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        this.foregroundLatencyMonitor = foregroundLatencyMonitor;
+    }
+
     public File getJournalDirectory() {
         return journalDirectory;
     }
@@ -823,15 +859,17 @@ public class Journal implements CheckpointSource {
                     journalPos, conf, fileChannelProvider);
         }
         int journalVersion = recLog.getFormatVersion();
+        // The journal is read ahead, so the position of the channel is past the records read
+        JournalReader reader = new JournalReader(recLog);
         try {
             ByteBuffer lenBuff = ByteBuffer.allocate(4);
             ByteBuffer recBuff = ByteBuffer.allocate(64 * 1024);
             while (true) {
                 // entry start offset
-                long offset = recLog.fc.position();
+                long offset = reader.position;
                 // start reading entry
                 lenBuff.clear();
-                fullRead(recLog, lenBuff);
+                reader.fullRead(lenBuff);
                 if (lenBuff.remaining() != 0) {
                     break;
                 }
@@ -845,7 +883,7 @@ public class Journal implements CheckpointSource {
                     if (len == PADDING_MASK && journalVersion >= JournalChannel.V5) {
                         // skip padding bytes
                         lenBuff.clear();
-                        fullRead(recLog, lenBuff);
+                        reader.fullRead(lenBuff);
                         if (lenBuff.remaining() != 0) {
                             break;
                         }
@@ -865,7 +903,7 @@ public class Journal implements CheckpointSource {
                     recBuff = ByteBuffer.allocate(len);
                 }
                 recBuff.limit(len);
-                if (fullRead(recLog, recBuff) != len) {
+                if (reader.fullRead(recBuff) != len) {
                     // This seems scary, but it just means that this is where we
                     // left off writing
                     break;
@@ -875,14 +913,14 @@ public class Journal implements CheckpointSource {
                     scanner.process(journalVersion, offset, recBuff);
                 }
             }
-            return recLog.fc.position();
+            return reader.position;
         } catch (IOException e) {
             if (skipInvalidRecord) {
                 LOG.warn("Failed to parse journal file, and skipInvalidRecord is true, skip this journal file reply");
             } else {
                 throw e;
             }
-            return recLog.fc.position();
+            return reader.position;
         } finally {
             recLog.close();
         }
@@ -1019,6 +1057,9 @@ public class Journal implements CheckpointSource {
                     lastFlushPosition = bc.position();
                 }
 
+                final long maxGroupWaitInNanos = groupCommitPolicy.getMaxGroupWaitNanos();
+                final boolean flushWhenQueueEmpty = groupCommitPolicy.flushWhenQueueEmpty();
+
                 if (qe == null) {
                     if (dequeueStartTime != 0) {
                         journalStats.getJournalProcessTimeStats()
@@ -1073,8 +1114,7 @@ public class Journal implements CheckpointSource {
                         shouldFlush = true;
                         journalStats.getFlushMaxWaitCounter().inc();
                     } else if (qe != null
-                            && ((bufferedEntriesThreshold > 0 && toFlush.size() > bufferedEntriesThreshold)
-                            || (bc.position() > lastFlushPosition + bufferedWritesThreshold))) {
+                            && groupCommitPolicy.shouldFlush(toFlush.size(), bc.position() - lastFlushPosition)) {
                         // 2. If we have buffered more than the buffWriteThreshold or bufferedEntriesThreshold
                         groupWhenTimeout = false;
                         shouldFlush = true;
@@ -1132,6 +1172,7 @@ public class Journal implements CheckpointSource {
                             .registerSuccessfulValue(numEntriesToFlush);
                         journalStats.getForceWriteBatchBytesStats()
                             .registerSuccessfulValue(batchSize);
+                        groupCommitPolicy.onFlush(toFlush.size(), batchSize);
                         boolean shouldRolloverJournal = (lastFlushPosition > maxJournalSize);
                         // Trigger data sync to disk in the "Force-Write" thread.
                         // Trigger data sync to disk has three situations:
@@ -1236,7 +1277,8 @@ public class Journal implements CheckpointSource {
     }
 
     public BufferedChannelBuilder getBufferedChannelBuilder() {
-        return (FileChannel fc, int capacity) -> new BufferedChannel(allocator, fc, capacity);
+        return (FileChannel fc, int capacity) -> new GatheringBufferedChannel(allocator, fc, capacity,
+                journalGatherWriteMinSize, journalStats.getJournalWriteCopiedBytes());
     }
 
     /**
@@ -1264,16 +1306,44 @@ public class Journal implements CheckpointSource {
         }
     }
 
-    private static int fullRead(JournalChannel fc, ByteBuffer bb) throws IOException {
-        int total = 0;
-        while (bb.remaining() > 0) {
-            int rc = fc.read(bb);
-            if (rc <= 0) {
-                return total;
+    /**
+     * Reads a journal channel through a read ahead buffer, to not issue a read for each field of the records.
+     */
+    private static class JournalReader {
+        private static final int READ_AHEAD_SIZE = 1024 * 1024;
+
+        private final JournalChannel fc;
+        private final ByteBuffer readAhead = ByteBuffer.allocate(READ_AHEAD_SIZE);
+        // Position of the next byte to read
+        long position;
+
+        JournalReader(JournalChannel fc) throws IOException {
+            this.fc = fc;
+            this.position = fc.fc.position();
+            readAhead.flip();
+        }
+
+        int fullRead(ByteBuffer bb) throws IOException {
+            int total = 0;
+            while (bb.remaining() > 0) {
+                if (!readAhead.hasRemaining()) {
+                    readAhead.clear();
+                    int rc = fc.read(readAhead);
+                    readAhead.flip();
+                    if (rc <= 0) {
+                        break;
+                    }
+                }
+                int bytesToCopy = Math.min(bb.remaining(), readAhead.remaining());
+                ByteBuffer src = readAhead.duplicate();
+                src.limit(src.position() + bytesToCopy);
+                bb.put(src);
+                readAhead.position(readAhead.position() + bytesToCopy);
+                total += bytesToCopy;
             }
-            total += rc;
+            position += total;
+            return total;
         }
-        return total;
     }
 
     /**
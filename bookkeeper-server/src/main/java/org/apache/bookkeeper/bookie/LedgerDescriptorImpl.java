@@ -24,6 +24,7 @@ package org.apache.bookkeeper.bookie;
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -161,6 +162,11 @@ public class LedgerDescriptorImpl extends LedgerDescriptor {
         return ledgerStorage.getEntry(ledgerId, entryId);
     }
 
+    @Override
+    List<ByteBuf> readEntries(long firstEntryId, int maxCount, long maxSize) throws IOException, BookieException {
+        return ledgerStorage.getEntries(ledgerId, firstEntryId, maxCount, maxSize);
+    }
+
     @Override
     long getLastAddConfirmed() throws IOException, BookieException {
         return ledgerStorage.getLastAddConfirmed(ledgerId);
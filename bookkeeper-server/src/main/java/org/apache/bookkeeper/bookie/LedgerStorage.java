@@ -62,6 +62,13 @@ public interface LedgerStorage {
     void setCheckpointSource(CheckpointSource checkpointSource);
     void setCheckpointer(Checkpointer checkpointer);
 
+    /**
+     * Set the monitor of the latency of the foreground operations, for the background tasks of the storage,
+     * like compaction, to back off when they hurt them.
+     */
+    default void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+    }
+
     /**
      * Start any background threads belonging to the storage system. For example, garbage collection.
      */
@@ -144,6 +151,33 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read consecutive entries of a ledger, starting from {@code firstEntryId}, until {@code maxCount}
+     * entries are read, their total size reaches {@code maxSize}, or an entry can't be read.
+     *
+     * <p>The first entry is always read, or the error reading it is thrown.
+     */
+    default List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        List<ByteBuf> entries = new ArrayList<>();
+        long size = 0;
+        for (long entryId = firstEntryId; entries.size() < maxCount && size < maxSize; entryId++) {
+            ByteBuf entry;
+            if (entries.isEmpty()) {
+                entry = getEntry(ledgerId, entryId);
+            } else {
+                try {
+                    entry = getEntry(ledgerId, entryId);
+                } catch (IOException | BookieException e) {
+                    break;
+                }
+            }
+            entries.add(entry);
+            size += entry.readableBytes();
+        }
+        return entries;
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -0,0 +1,265 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOGGER_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOG_MMAP_MAPPED_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOG_MMAP_MAPPED_LOGS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOG_MMAP_RESIDENT_BYTES;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledDirectByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.internal.PlatformDependent;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded LRU of read-only memory mappings of sealed entry logs.
+ *
+ * <p>A mapping is a reference counted {@link ByteBuf}: the cache holds one reference, and the entries read
+ * from it are retained slices holding one more each. A mapping evicted from the cache, or removed when its
+ * entry log is garbage collected, is unmapped once the last slice read from it is released.
+ *
+ * <p>The mappings are read-only, so the slices read from them must be exposed as read-only buffers,
+ * see {@link #slice(ByteBuf, int, int)}.
+ */
+@StatsDoc(
+    name = ENTRYLOGGER_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Memory mapped entry logs related stats"
+)
+class MappedEntryLogCache implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedEntryLogCache.class);
+
+    // Attempts to get a mapping that is not evicted by concurrent mappings before it is retained
+    private static final int MAX_GET_ATTEMPTS = 3;
+
+    private final long maxMappedBytes;
+    private final Cache<Long, MappedEntryLog> mappings;
+    private final AtomicLong mappedBytes = new AtomicLong();
+
+    @StatsDoc(
+        name = ENTRYLOG_MMAP_MAPPED_LOGS,
+        help = "Number of entry logs in the mapped entry logs cache"
+    )
+    private final Gauge<Long> mappedLogsGauge;
+    @StatsDoc(
+        name = ENTRYLOG_MMAP_MAPPED_BYTES,
+        help = "Size of the memory mapped entry logs, including the evicted ones that are still read"
+    )
+    private final Gauge<Long> mappedBytesGauge;
+    @StatsDoc(
+        name = ENTRYLOG_MMAP_RESIDENT_BYTES,
+        help = "Size of the cached mapped entry logs that are entirely in the page cache"
+    )
+    private final Gauge<Long> residentBytesGauge;
+
+    MappedEntryLogCache(long maxMappedBytes, StatsLogger statsLogger) {
+        this.maxMappedBytes = maxMappedBytes;
+        // A single segment, as the max weight is split across the segments and a mapping heavier than
+        // its segment would be evicted as soon as it is loaded
+        this.mappings = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxMappedBytes)
+                .weigher((Long logId, MappedEntryLog log) -> log.capacity())
+                .removalListener((RemovalListener<Long, MappedEntryLog>) notification ->
+                        notification.getValue().release())
+                .build();
+
+        mappedLogsGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return mappings.size();
+            }
+        };
+        statsLogger.registerGauge(ENTRYLOG_MMAP_MAPPED_LOGS, mappedLogsGauge);
+        mappedBytesGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return mappedBytes.get();
+            }
+        };
+        statsLogger.registerGauge(ENTRYLOG_MMAP_MAPPED_BYTES, mappedBytesGauge);
+        residentBytesGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return residentBytes();
+            }
+        };
+        statsLogger.registerGauge(ENTRYLOG_MMAP_RESIDENT_BYTES, residentBytesGauge);
+    }
+
+    /**
+     * Whether the mappings can be exposed as netty buffers, which needs the reflective access to the
+     * no cleaner constructor of the direct byte buffers.
+     */
+    static boolean isSupported() {
+        return PlatformDependent.hasDirectBufferNoCleanerConstructor();
+    }
+
+    /**
+     * Get the mapping of a sealed entry log, mapping it if it's not in the cache.
+     *
+     * @return a retained buffer over the whole entry log, to be released by the caller, or null if
+     *         the entry log is empty, too large to be mapped, or keeps being evicted by concurrent mappings
+     */
+    ByteBuf get(long logId, File logFile) throws IOException {
+        for (int attempt = 0; attempt < MAX_GET_ATTEMPTS; attempt++) {
+            MappedEntryLog log;
+            try {
+                log = mappings.get(logId, () -> map(logFile));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                if (e.getCause() instanceof NotMappableException) {
+                    return null;
+                } else if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to map entry log " + logFile, e.getCause());
+            }
+
+            try {
+                return log.retain();
+            } catch (IllegalReferenceCountException e) {
+                // Evicted and unmapped between the lookup and the retain, map it again
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a retained read-only slice of a mapping, to be released by the caller
+     */
+    static ByteBuf slice(ByteBuf mapping, int index, int length) {
+        return mapping.retainedSlice(index, length).asReadOnly();
+    }
+
+    /**
+     * Remove the mapping of an entry log, which is unmapped once the entries read from it are released.
+     */
+    void remove(long logId) {
+        mappings.invalidate(logId);
+    }
+
+    @Override
+    public void close() {
+        mappings.invalidateAll();
+        mappings.cleanUp();
+    }
+
+    private long residentBytes() {
+        long bytes = 0;
+        for (MappedEntryLog log : mappings.asMap().values()) {
+            try {
+                log.retain();
+            } catch (IllegalReferenceCountException e) {
+                // Already unmapped
+                continue;
+            }
+            try {
+                if (log.mapped.isLoaded()) {
+                    bytes += log.capacity();
+                }
+            } finally {
+                log.release();
+            }
+        }
+        return bytes;
+    }
+
+    private MappedEntryLog map(File logFile) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size == 0 || size > Integer.MAX_VALUE || size > maxMappedBytes) {
+                throw new NotMappableException();
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mappedBytes.addAndGet(size);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Mapped entry log {} of {} bytes", logFile, size);
+            }
+            return new MappedEntryLog(mapped);
+        }
+    }
+
+    private static class NotMappableException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A direct buffer over the mapping of an entry log, unmapping it when released.
+     *
+     * <p>The netty direct buffers can't wrap a read-only byte buffer, so it wraps a view at the address
+     * of the mapping instead.
+     */
+    private class MappedEntryLog extends UnpooledDirectByteBuf {
+        private final MappedByteBuffer mapped;
+
+        MappedEntryLog(MappedByteBuffer mapped) {
+            super(UnpooledByteBufAllocator.DEFAULT,
+                    PlatformDependent.directBuffer(PlatformDependent.directBufferAddress(mapped), mapped.capacity()),
+                    mapped.capacity());
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            PlatformDependent.freeDirectBuffer(mapped);
+            mappedBytes.addAndGet(-mapped.capacity());
+        }
+    }
+}
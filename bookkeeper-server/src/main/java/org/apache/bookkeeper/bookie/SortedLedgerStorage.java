@@ -123,6 +123,11 @@ public class SortedLedgerStorage
         interleavedLedgerStorage.setCheckpointer(checkpointer);
     }
 
+    @Override
+    public void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        interleavedLedgerStorage.setForegroundLatencyMonitor(foregroundLatencyMonitor);
+    }
+
     @VisibleForTesting
     ScheduledExecutorService getScheduler() {
         return scheduler;
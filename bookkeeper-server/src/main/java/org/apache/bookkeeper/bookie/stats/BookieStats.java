@@ -32,10 +32,14 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_DIRS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_MAX_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_RECORDS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_REPLAY_REMAINING_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.WRITE_BYTES;
 
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
@@ -92,6 +96,14 @@ public class BookieStats {
     private final Gauge<Integer> journalDirsGauge;
     @StatsDoc(name = JOURNAL_QUEUE_MAX_SIZE, help = "maximum length of a journal queue")
     private final Gauge<Integer> journalQueueMaxQueueSizeGauge;
+    // Journal Replay Stats
+    @StatsDoc(name = JOURNAL_REPLAY_RECORDS, help = "journal records applied to the ledger storage on startup")
+    private final Counter journalReplayRecords;
+    @StatsDoc(name = JOURNAL_REPLAY_BYTES, help = "bytes of journal records applied to the ledger storage on startup")
+    private final Counter journalReplayBytes;
+    @StatsDoc(name = JOURNAL_REPLAY_REMAINING_BYTES, help = "bytes of journal files left to replay on startup")
+    private final Gauge<Long> journalReplayRemainingBytesGauge;
+    private final AtomicLong journalReplayRemainingBytes = new AtomicLong();
 
     public BookieStats(StatsLogger statsLogger, int numJournalDirs, int maxJournalQueueSize) {
         this.statsLogger = statsLogger;
@@ -128,6 +140,20 @@ public class BookieStats {
             }
         };
         statsLogger.registerGauge(JOURNAL_QUEUE_MAX_SIZE, journalQueueMaxQueueSizeGauge);
+        journalReplayRecords = statsLogger.getCounter(JOURNAL_REPLAY_RECORDS);
+        journalReplayBytes = statsLogger.getCounter(JOURNAL_REPLAY_BYTES);
+        journalReplayRemainingBytesGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return journalReplayRemainingBytes.get();
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_REPLAY_REMAINING_BYTES, journalReplayRemainingBytesGauge);
     }
 
 
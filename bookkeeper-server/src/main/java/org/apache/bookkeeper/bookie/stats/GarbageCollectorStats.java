@@ -24,6 +24,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_ENTRY_LO
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_LEDGER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.COMPACTION_RATE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.DELETED_LEDGER_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MAJOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MINOR_COMPACTION_COUNT;
@@ -102,11 +103,17 @@ public class GarbageCollectorStats {
         help = "Current number of active ledgers"
     )
     private final Gauge<Integer> activeLedgerCountGauge;
+    @StatsDoc(
+        name = COMPACTION_RATE,
+        help = "Current compaction rate, in entries or bytes per second, as adapted to the foreground latency"
+    )
+    private final Gauge<Long> compactionRateGauge;
 
     public GarbageCollectorStats(StatsLogger statsLogger,
                                  Supplier<Integer> activeEntryLogCountSupplier,
                                  Supplier<Long> activeEntryLogSpaceBytesSupplier,
-                                 Supplier<Integer> activeLedgerCountSupplier) {
+                                 Supplier<Integer> activeLedgerCountSupplier,
+                                 Supplier<Long> compactionRateSupplier) {
         this.statsLogger = statsLogger;
 
         this.minorCompactionCounter = statsLogger.getCounter(MINOR_COMPACTION_COUNT);
@@ -153,6 +160,18 @@ public class GarbageCollectorStats {
             }
         };
         statsLogger.registerGauge(ACTIVE_LEDGER_COUNT, activeLedgerCountGauge);
+        this.compactionRateGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return compactionRateSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(COMPACTION_RATE, compactionRateGauge);
     }
 
 }
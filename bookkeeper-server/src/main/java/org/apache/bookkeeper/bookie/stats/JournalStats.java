@@ -42,6 +42,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_S
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SYNC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_COPIED_BYTES;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.util.function.Supplier;
@@ -162,6 +163,11 @@ public class JournalStats {
         help = "The number of bytes appended to the journal"
     )
     private final Counter journalWriteBytes;
+    @StatsDoc(
+        name = JOURNAL_WRITE_COPIED_BYTES,
+        help = "The number of bytes copied to the journal write buffer, the others are written from the entries"
+    )
+    private final Counter journalWriteCopiedBytes;
     @StatsDoc(
             name = JOURNAL_MEMORY_MAX,
             help = "The max amount of memory in bytes that can be used by the bookie journal"
@@ -195,6 +201,7 @@ public class JournalStats {
                 statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES);
         flushEmptyQueueCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE);
         journalWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_BYTES);
+        journalWriteCopiedBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_COPIED_BYTES);
 
         journalMemoryMaxStats = new Gauge<Long>() {
             @Override
@@ -22,7 +22,9 @@ package org.apache.bookkeeper.bookie.storage;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
@@ -67,6 +69,32 @@ public interface EntryLogger extends AutoCloseable {
     ByteBuf readEntry(long ledgerId, long entryId, long entryLocation)
             throws IOException, NoEntryException;
 
+    /**
+     * Read consecutive entries of a ledger, and verify that they match the expected ledger and entry IDs.
+     * The entries stored back-to-back in the same entrylog can be read together, in which case they are
+     * returned as slices of a shared buffer.
+     * The read stops at the first entry that can't be read, and the error is only thrown for the first entry.
+     * @param ledgerId the ledgerID to match
+     * @param firstEntryId the entryID to match for the first location
+     * @param entryLocations the locations of the entries, sorted
+     * @return the entries read
+     */
+    default List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long[] entryLocations)
+            throws IOException, NoEntryException {
+        List<ByteBuf> entries = new ArrayList<>(entryLocations.length);
+        for (int i = 0; i < entryLocations.length; i++) {
+            try {
+                entries.add(readEntry(ledgerId, firstEntryId + i, entryLocations[i]));
+            } catch (IOException e) {
+                if (entries.isEmpty()) {
+                    throw e;
+                }
+                break;
+            }
+        }
+        return entries;
+    }
+
     /**
      * Flush any outstanding writes to disk.
      */
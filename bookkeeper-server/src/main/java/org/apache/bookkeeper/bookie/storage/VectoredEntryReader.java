@@ -0,0 +1,136 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vectored read of consecutive entries of a ledger from the entry logs.
+ *
+ * <p>The entries stored at increasing, close locations of the same entry log form a run, which is
+ * read with a single read and returned as slices of the buffer read. The size of an entry is only
+ * known once its header is read, so the read of a run stops at the size header of its last entry,
+ * and that entry is read as the start of the following run.
+ */
+public final class VectoredEntryReader {
+
+    /**
+     * Reader of a range of bytes of an entry log.
+     */
+    public interface RangeReader {
+        /**
+         * @return a buffer holding the {@code size} bytes at {@code pos}, to be released by the caller
+         */
+        ByteBuf read(long entryLogId, long pos, int size) throws IOException;
+    }
+
+    // Max size of a single read, including the entries of other ledgers stored between the requested ones
+    public static final int DEFAULT_MAX_READ_SIZE = 1024 * 1024;
+
+    private static final int MIN_ENTRY_SIZE = 2 * Long.BYTES;
+
+    private VectoredEntryReader() {
+    }
+
+    /**
+     * Read the entries at the given locations, starting from {@code firstEntryId}.
+     *
+     * <p>The read stops at the first entry that can't be read, and the error is only thrown if it's the first
+     * entry.
+     *
+     * @param singleEntryReader used for the entries that are not part of a run
+     */
+    public static List<ByteBuf> readEntries(EntryLogger singleEntryReader, RangeReader rangeReader, int maxReadSize,
+                                            long ledgerId, long firstEntryId, long[] entryLocations)
+            throws IOException {
+        List<ByteBuf> entries = new ArrayList<>(entryLocations.length);
+        try {
+            int first = 0;
+            while (first < entryLocations.length) {
+                int last = lastOfRun(entryLocations, first, maxReadSize);
+                if (last == first) {
+                    entries.add(singleEntryReader.readEntry(ledgerId, firstEntryId + first, entryLocations[first]));
+                    first++;
+                } else {
+                    readRun(rangeReader, ledgerId, firstEntryId, entryLocations, first, last, entries);
+                    first = last;
+                }
+            }
+        } catch (IOException e) {
+            if (entries.isEmpty()) {
+                throw e;
+            }
+            // Return the entries read so far
+        }
+        return entries;
+    }
+
+    private static int lastOfRun(long[] entryLocations, int first, int maxReadSize) {
+        long entryLogId = entryLocations[first] >> 32;
+        long firstPos = entryLocations[first] & 0xFFFFFFFFL;
+        int last = first;
+        while (last + 1 < entryLocations.length
+                && (entryLocations[last + 1] >> 32) == entryLogId
+                && entryLocations[last + 1] > entryLocations[last]
+                && (entryLocations[last + 1] & 0xFFFFFFFFL) - firstPos <= maxReadSize) {
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * Read the entries in [first, last), along with the size header of the entry at last.
+     */
+    private static void readRun(RangeReader rangeReader, long ledgerId, long firstEntryId, long[] entryLocations,
+                                int first, int last, List<ByteBuf> entries) throws IOException {
+        long entryLogId = entryLocations[first] >> 32;
+        long startPos = (entryLocations[first] & 0xFFFFFFFFL) - Integer.BYTES;
+        int size = (int) ((entryLocations[last] & 0xFFFFFFFFL) - startPos);
+
+        ByteBuf buf = rangeReader.read(entryLogId, startPos, size);
+        try {
+            for (int i = first; i < last; i++) {
+                long entryId = firstEntryId + i;
+                int offset = buf.readerIndex() + (int) ((entryLocations[i] & 0xFFFFFFFFL) - Integer.BYTES - startPos);
+                int entrySize = buf.getInt(offset);
+                if (entrySize < MIN_ENTRY_SIZE || offset + Integer.BYTES + entrySize > buf.writerIndex()) {
+                    throw new IOException("Invalid entry size " + entrySize + " for " + ledgerId + "@" + entryId
+                            + " in log " + entryLogId);
+                }
+
+                long thisLedgerId = buf.getLong(offset + Integer.BYTES);
+                long thisEntryId = buf.getLong(offset + Integer.BYTES + Long.BYTES);
+                if (thisLedgerId != ledgerId || thisEntryId != entryId) {
+                    throw new IOException("Found entry " + thisLedgerId + "@" + thisEntryId + " in log "
+                            + entryLogId + ", should have found entry " + ledgerId + "@" + entryId);
+                }
+
+                entries.add(buf.retainedSlice(offset + Integer.BYTES, entrySize));
+            }
+        } finally {
+            ReferenceCountUtil.release(buf);
+        }
+    }
+}
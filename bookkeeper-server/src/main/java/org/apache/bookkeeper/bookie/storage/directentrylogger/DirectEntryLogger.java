@@ -55,6 +55,8 @@ import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogIds;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.VectoredEntryReader;
+import org.apache.bookkeeper.common.util.nativeio.AsyncIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.slogger.Slogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -81,6 +83,7 @@ public class DirectEntryLogger implements EntryLogger {
 
     private List<Future<?>> pendingFlushes;
     private final NativeIO nativeIO;
+    private final AsyncIO asyncIO;
     private final List<Cache<?, ?>> allCaches = new CopyOnWriteArrayList<>();
     private final ThreadLocal<Cache<Integer, LogReader>> caches;
 
@@ -101,11 +104,37 @@ public class DirectEntryLogger implements EntryLogger {
                              int maxFdCacheTimeSeconds,
                              Slogger slogParent,
                              StatsLogger stats) throws IOException {
+        this(ledgerDir, ids, nativeIO, null, allocator, writeExecutor, flushExecutor, maxFileSize, maxSaneEntrySize,
+             totalWriteBufferSize, totalReadBufferSize, readBufferSize, numReadThreads, maxFdCacheTimeSeconds,
+             slogParent, stats);
+    }
+
+    /**
+     * @param asyncIO engine to submit the reads and writes of the entry logs to, or null to issue
+     *                blocking calls from the write executor and the reading threads
+     */
+    public DirectEntryLogger(File ledgerDir,
+                             EntryLogIds ids,
+                             NativeIO nativeIO,
+                             AsyncIO asyncIO,
+                             ByteBufAllocator allocator,
+                             ExecutorService writeExecutor,
+                             ExecutorService flushExecutor,
+                             long maxFileSize,
+                             int maxSaneEntrySize,
+                             long totalWriteBufferSize,
+                             long totalReadBufferSize,
+                             int readBufferSize,
+                             int numReadThreads,
+                             int maxFdCacheTimeSeconds,
+                             Slogger slogParent,
+                             StatsLogger stats) throws IOException {
         this.ledgerDir = ledgerDir;
         this.flushExecutor = flushExecutor;
         this.writeExecutor = writeExecutor;
         this.pendingFlushes = new ArrayList<>();
         this.nativeIO = nativeIO;
+        this.asyncIO = asyncIO;
         this.unflushedLogs = ConcurrentHashMap.newKeySet();
 
         this.maxFileSize = maxFileSize;
@@ -211,6 +240,25 @@ public class DirectEntryLogger implements EntryLogger {
         return internalReadEntry(ledgerId, entryId, entryLocation, true);
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long[] entryLocations)
+            throws IOException, NoEntryException {
+        return VectoredEntryReader.readEntries(this, this::readRange, VectoredEntryReader.DEFAULT_MAX_READ_SIZE,
+                ledgerId, firstEntryId, entryLocations);
+    }
+
+    private ByteBuf readRange(long entryLogId, long pos, int size) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ByteBuf buf = getReader((int) entryLogId).readBufferAt(pos, size);
+            stats.getReadEntryStats().registerSuccessfulEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return buf;
+        } catch (IOException e) {
+            stats.getReadEntryStats().registerFailedEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
     private LogReader getReader(int logId) throws IOException {
         Cache<Integer, LogReader> cache = caches.get();
         try {
@@ -443,14 +491,14 @@ public class DirectEntryLogger implements EntryLogger {
     @VisibleForTesting
     LogReader newDirectReader(int logId) throws IOException {
         return new DirectReader(logId, logFilename(ledgerDir, logId),
-                                allocator, nativeIO, readBufferSize,
+                                allocator, nativeIO, asyncIO, readBufferSize,
                                 maxSaneEntrySize, stats.getReadBlockStats());
     }
 
     private LogWriter newDirectWriter(int newId) throws IOException {
         unflushedLogs.add(newId);
         LogWriter writer = new DirectWriter(newId, logFilename(ledgerDir, newId), maxFileSize,
-                                            writeExecutor, writeBuffers, nativeIO, slog);
+                                            writeExecutor, writeBuffers, nativeIO, asyncIO, slog);
         ByteBuf buf = allocator.buffer(Buffer.ALIGNMENT);
         try {
             Header.writeEmptyHeader(buf);
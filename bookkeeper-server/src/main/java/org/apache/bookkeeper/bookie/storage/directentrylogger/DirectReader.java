@@ -28,7 +28,9 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.ReferenceCountUtil;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.nativeio.AsyncIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -36,6 +38,7 @@ import org.apache.bookkeeper.stats.OpStatsLogger;
 class DirectReader implements LogReader {
     private final ByteBufAllocator allocator;
     private final NativeIO nativeIO;
+    private final AsyncIO asyncIO;
     private final Buffer nativeBuffer;
     private final String filename;
     private final int logId;
@@ -50,7 +53,17 @@ class DirectReader implements LogReader {
     DirectReader(int logId, String filename, ByteBufAllocator allocator,
                  NativeIO nativeIO, int bufferSize,
                  int maxSaneEntrySize, OpStatsLogger readBlockStats) throws IOException {
+        this(logId, filename, allocator, nativeIO, null, bufferSize, maxSaneEntrySize, readBlockStats);
+    }
+
+    /**
+     * @param asyncIO engine to submit the reads to, or null to read with blocking calls
+     */
+    DirectReader(int logId, String filename, ByteBufAllocator allocator,
+                 NativeIO nativeIO, AsyncIO asyncIO, int bufferSize,
+                 int maxSaneEntrySize, OpStatsLogger readBlockStats) throws IOException {
         this.nativeIO = nativeIO;
+        this.asyncIO = asyncIO;
         this.allocator = allocator;
         this.logId = logId;
         this.filename = filename;
@@ -211,9 +224,7 @@ class DirectReader implements LogReader {
             while (true) {
                 long readSize = blockSize - bufferOffset;
                 long pointerWithOffset = nativeBuffer.pointer(bufferOffset, readSize);
-                bytesRead = nativeIO.pread(fd, pointerWithOffset,
-                                           readSize,
-                                           blockStart + bufferOffset);
+                bytesRead = pread(pointerWithOffset, readSize, blockStart + bufferOffset);
                 // offsets and counts must be aligned, so ensure that if we
                 // get a short read, we don't throw off the alignment. For example
                 // if we're trying to read 12K and we only managed 100 bytes,
@@ -246,6 +257,23 @@ class DirectReader implements LogReader {
         currentBlockEnd = blockStart + Math.min(blockSize, bytesAvailable);
     }
 
+    private long pread(long pointer, long size, long offset) throws IOException {
+        if (asyncIO == null) {
+            return nativeIO.pread(fd, pointer, size, offset);
+        }
+        try {
+            return asyncIO.pread(fd, pointer, size, offset).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof NativeIOException) {
+                throw (NativeIOException) ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+    }
+
     @Override
     public void close() throws IOException {
         synchronized (nativeBuffer) {
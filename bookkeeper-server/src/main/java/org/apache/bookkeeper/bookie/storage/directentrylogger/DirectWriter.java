@@ -29,8 +29,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import org.apache.bookkeeper.common.util.nativeio.AsyncIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
 import org.apache.bookkeeper.slogger.Slogger;
@@ -38,6 +40,7 @@ import org.apache.commons.lang3.SystemUtils;
 
 class DirectWriter implements LogWriter {
     final NativeIO nativeIO;
+    final AsyncIO asyncIO;
     final int fd;
     final int id;
     final String filename;
@@ -56,11 +59,24 @@ class DirectWriter implements LogWriter {
                  ExecutorService writeExecutor,
                  BufferPool bufferPool,
                  NativeIO nativeIO, Slogger slog) throws IOException {
+        this(id, filename, maxFileSize, writeExecutor, bufferPool, nativeIO, null, slog);
+    }
+
+    /**
+     * @param asyncIO engine to submit the writes to, or null to write with blocking calls from the write executor
+     */
+    DirectWriter(int id,
+                 String filename,
+                 long maxFileSize,
+                 ExecutorService writeExecutor,
+                 BufferPool bufferPool,
+                 NativeIO nativeIO, AsyncIO asyncIO, Slogger slog) throws IOException {
         checkArgument(maxFileSize > 0, "Max file size (%d) must be positive");
         this.id = id;
         this.filename = filename;
         this.writeExecutor = writeExecutor;
         this.nativeIO = nativeIO;
+        this.asyncIO = asyncIO;
         this.slog = slog.ctx(DirectWriter.class);
 
         offset = 0;
@@ -124,11 +140,32 @@ class DirectWriter implements LogWriter {
         Buffer tmpBuffer = bufferPool.acquire();
         tmpBuffer.reset();
         tmpBuffer.writeByteBuf(buf);
-        Future<?> f = writeExecutor.submit(() -> {
-            writeByteBuf(tmpBuffer, bytesToWrite, offset);
-            return null;
+        addOutstandingWrite(submitWrite(tmpBuffer, bytesToWrite, offset));
+    }
+
+    private Future<?> submitWrite(Buffer buffer, int bytesToWrite, long offsetToWrite) {
+        if (asyncIO == null) {
+            return writeExecutor.submit(() -> {
+                writeByteBuf(buffer, bytesToWrite, offsetToWrite);
+                return null;
+            });
+        }
+        return asyncIO.pwrite(fd, buffer.pointer(), bytesToWrite, offsetToWrite)
+            .handle((ret, t) -> {
+                try {
+                    if (t != null) {
+                        Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                        int errno = cause instanceof NativeIOException ? ((NativeIOException) cause).getErrno() : 0;
+                        throw new CompletionException(writeError(buffer, bytesToWrite, offsetToWrite, errno));
+                    }
+                    checkWriteSize(buffer, bytesToWrite, offsetToWrite, ret);
+                    return null;
+                } catch (IOException ioe) {
+                    throw new CompletionException(ioe);
+                } finally {
+                    bufferPool.release(buffer);
+                }
             });
-        addOutstandingWrite(f);
     }
 
     private void writeByteBuf(Buffer buffer, int bytesToWrite, long offsetToWrite) throws IOException{
@@ -137,28 +174,36 @@ class DirectWriter implements LogWriter {
                 return;
             }
             int ret = nativeIO.pwrite(fd, buffer.pointer(), bytesToWrite, offsetToWrite);
-            if (ret != bytesToWrite) {
-                throw new IOException(exMsg("Incomplete write")
-                    .kv("filename", filename)
-                    .kv("pointer", buffer.pointer())
-                    .kv("offset", offsetToWrite)
-                    .kv("writeSize", bytesToWrite)
-                    .kv("bytesWritten", ret)
-                    .toString());
-            }
+            checkWriteSize(buffer, bytesToWrite, offsetToWrite, ret);
         } catch (NativeIOException ne) {
-            throw new IOException(exMsg("Write error")
+            throw writeError(buffer, bytesToWrite, offsetToWrite, ne.getErrno());
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void checkWriteSize(Buffer buffer, int bytesToWrite, long offsetToWrite, long ret) throws IOException {
+        if (ret != bytesToWrite) {
+            throw new IOException(exMsg("Incomplete write")
                 .kv("filename", filename)
+                .kv("pointer", buffer.pointer())
                 .kv("offset", offsetToWrite)
                 .kv("writeSize", bytesToWrite)
-                .kv("pointer", buffer.pointer())
-                .kv("errno", ne.getErrno())
+                .kv("bytesWritten", ret)
                 .toString());
-        } finally {
-            bufferPool.release(buffer);
         }
     }
 
+    private IOException writeError(Buffer buffer, int bytesToWrite, long offsetToWrite, int errno) {
+        return new IOException(exMsg("Write error")
+            .kv("filename", filename)
+            .kv("offset", offsetToWrite)
+            .kv("writeSize", bytesToWrite)
+            .kv("pointer", buffer.pointer())
+            .kv("errno", errno)
+            .toString());
+    }
+
     @Override
     public int writeDelimited(ByteBuf buf) throws IOException {
         synchronized (bufferLock) {
@@ -300,11 +345,7 @@ class DirectWriter implements LogWriter {
                 long offsetToWrite = offset;
                 offset += bytesToWrite;
 
-                Future<?> f = writeExecutor.submit(() -> {
-                    writeByteBuf(bufferToFlush, bytesToWrite, offsetToWrite);
-                    return null;
-                });
-                addOutstandingWrite(f);
+                addOutstandingWrite(submitWrite(bufferToFlush, bytesToWrite, offsetToWrite));
 
                 // must acquire after triggering the write
                 // otherwise it could try to acquire a buffer without kicking off
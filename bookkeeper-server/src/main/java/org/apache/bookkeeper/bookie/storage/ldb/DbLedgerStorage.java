@@ -48,6 +48,7 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger;
+import org.apache.bookkeeper.bookie.ForegroundLatencyMonitor;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
 import org.apache.bookkeeper.bookie.LedgerCache;
@@ -61,7 +62,11 @@ import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigT
 import org.apache.bookkeeper.bookie.storage.ldb.SingleDirectoryDbLedgerStorage.LedgerLoggerProcessor;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.Watcher;
+import org.apache.bookkeeper.common.util.nativeio.AsyncIO;
+import org.apache.bookkeeper.common.util.nativeio.IoUringAsyncIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.common.util.nativeio.ThreadPoolAsyncIO;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.slogger.slf4j.Slf4jSlogger;
@@ -91,8 +96,17 @@ public class DbLedgerStorage implements LedgerStorage {
         "dbStorage_directIOEntryLoggerReadBufferSizeMB";
     public static final String DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS =
         "dbStorage_directIOEntryLoggerMaxFdCacheTimeSeconds";
+    public static final String DIRECT_IO_ENTRYLOGGER_IO_ENGINE = "dbStorage_directIOEntryLoggerIoEngine";
+    public static final String DIRECT_IO_ENTRYLOGGER_IO_QUEUE_DEPTH = "dbStorage_directIOEntryLoggerIoQueueDepth";
+    static final String DIRECT_IO_ENGINE_SYNC = "sync";
+    static final String DIRECT_IO_ENGINE_THREADPOOL = "threadpool";
+    static final String DIRECT_IO_ENGINE_IO_URING = "io_uring";
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
+    static final String FLUSH_THREADS = "dbStorage_flushThreads";
+    static final String WRITE_CACHE_SEGMENTS = "dbStorage_writeCacheSegments";
+    static final String WRITE_CACHE_MAX_BACKPRESSURE_DELAY_MICROS = "dbStorage_writeCacheMaxBackpressureDelayMicros";
+    static final String WRITE_CACHE_LEDGER_ORDERED_INDEX = "dbStorage_writeCacheLedgerOrderedIndex";
 
     private static final int MB = 1024 * 1024;
 
@@ -103,6 +117,16 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     static final String READ_AHEAD_CACHE_BATCH_BYTES_SIZE = "dbStorage_readAheadCacheBatchBytesSize";
+    static final String READ_AHEAD_CACHE_STRIPES = "dbStorage_readAheadCacheStripes";
+    static final String READ_AHEAD_CACHE_ADMISSION_POLICY = "dbStorage_readAheadCacheAdmissionPolicy";
+    static final String READ_AHEAD_CACHE_ADAPTIVE = "dbStorage_readAheadCacheAdaptive";
+    static final String READ_AHEAD_CACHE_MAX_BATCH_SIZE = "dbStorage_readAheadCacheMaxBatchSize";
+    static final String READ_AHEAD_CACHE_ASYNC_THREADS = "dbStorage_readAheadCacheAsyncThreads";
+    static final String READ_AHEAD_CACHE_ASYNC_MAX_PENDING = "dbStorage_readAheadCacheAsyncMaxPending";
+    static final String ENTRY_LOCATION_INDEX_STORAGE = "dbStorage_entryLocationIndexStorage";
+    static final String ENTRY_LOCATION_INDEX_STORAGE_ROCKSDB = "rocksdb";
+    static final String ENTRY_LOCATION_INDEX_STORAGE_MAPPED = "mapped";
+    static final String ENTRY_LOCATION_INDEX_RANGE_ENCODING = "dbStorage_entryLocationIndexRangeEncoding";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
     // the default value is -1. this feature(limit of read ahead bytes) is disabled
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
@@ -117,6 +141,8 @@ public class DbLedgerStorage implements LedgerStorage {
 
     private static final int DEFAULT_DIRECT_IO_MAX_FD_CACHE_TIME_SECONDS = 300;
 
+    private static final int DEFAULT_DIRECT_IO_QUEUE_DEPTH = 32;
+
     // use the storage assigned to ledger 0 for flags.
     // if the storage configuration changes, the flags may be lost
     // but in that case data integrity should kick off anyhow.
@@ -126,6 +152,7 @@ public class DbLedgerStorage implements LedgerStorage {
 
     private ExecutorService entryLoggerWriteExecutor = null;
     private ExecutorService entryLoggerFlushExecutor = null;
+    private final List<AsyncIO> entryLoggerAsyncIOs = new ArrayList<>();
 
     protected ByteBufAllocator allocator;
 
@@ -224,8 +251,14 @@ public class DbLedgerStorage implements LedgerStorage {
                     numReadThreads = conf.getServerNumIOThreads();
                 }
 
+                NativeIO nativeIO = new NativeIOImpl();
+                AsyncIO asyncIO = newDirectIOAsyncIO(conf, nativeIO, i);
+                if (asyncIO != null) {
+                    entryLoggerAsyncIOs.add(asyncIO);
+                }
+
                 entrylogger = new DirectEntryLogger(ledgerDir, new EntryLogIdsImpl(ldm, slog),
-                    new NativeIOImpl(),
+                    nativeIO, asyncIO,
                     allocator, entryLoggerWriteExecutor, entryLoggerFlushExecutor,
                     conf.getEntryLogSizeLimit(),
                     conf.getNettyMaxFrameSizeBytes() - 500,
@@ -301,6 +334,11 @@ public class DbLedgerStorage implements LedgerStorage {
         ledgerStorageList.forEach(s -> s.setCheckpointer(checkpointer));
     }
 
+    @Override
+    public void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        ledgerStorageList.forEach(s -> s.setForegroundLatencyMonitor(foregroundLatencyMonitor));
+    }
+
     @Override
     public void start() {
         ledgerStorageList.forEach(LedgerStorage::start);
@@ -318,6 +356,40 @@ public class DbLedgerStorage implements LedgerStorage {
         if (entryLoggerFlushExecutor != null) {
             entryLoggerFlushExecutor.shutdown();
         }
+        entryLoggerAsyncIOs.forEach(AsyncIO::close);
+    }
+
+    /**
+     * Create the engine submitting the I/O requests of the direct I/O entry logger of a directory, so that
+     * many requests can be in flight for each disk.
+     *
+     * @return the engine, or null to issue the blocking calls from the entry logger threads
+     */
+    private static AsyncIO newDirectIOAsyncIO(ServerConfiguration conf, NativeIO nativeIO, int dirIndex)
+            throws IOException {
+        String engine = conf.getString(DIRECT_IO_ENTRYLOGGER_IO_ENGINE, DIRECT_IO_ENGINE_SYNC);
+        int queueDepth = (int) getLongVariableOrDefault(conf, DIRECT_IO_ENTRYLOGGER_IO_QUEUE_DEPTH,
+                DEFAULT_DIRECT_IO_QUEUE_DEPTH);
+
+        if (DIRECT_IO_ENGINE_IO_URING.equalsIgnoreCase(engine)) {
+            if (IoUringAsyncIO.isSupported()) {
+                log.info(" - Direct I/O engine: io_uring, queue depth: {}", queueDepth);
+                return new IoUringAsyncIO(queueDepth, "EntryLoggerIoUring-" + dirIndex);
+            }
+            log.warn("io_uring is not supported (errno: {}), falling back to the {} direct I/O engine",
+                    IoUringAsyncIO.probeResult(), DIRECT_IO_ENGINE_THREADPOOL);
+            engine = DIRECT_IO_ENGINE_THREADPOOL;
+        }
+
+        if (DIRECT_IO_ENGINE_THREADPOOL.equalsIgnoreCase(engine)) {
+            log.info(" - Direct I/O engine: {}, threads: {}", DIRECT_IO_ENGINE_THREADPOOL, queueDepth);
+            return new ThreadPoolAsyncIO(nativeIO, queueDepth, "EntryLoggerIo-" + dirIndex);
+        }
+
+        if (!DIRECT_IO_ENGINE_SYNC.equalsIgnoreCase(engine)) {
+            throw new IOException("Unknown direct I/O engine: " + engine);
+        }
+        return null;
     }
 
     @Override
@@ -361,6 +433,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).getEntries(ledgerId, firstEntryId, maxCount, maxSize);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -484,9 +562,15 @@ public class DbLedgerStorage implements LedgerStorage {
         int dirIndex = MathUtils.signSafeMod(ledgerId, ledgerDirs.size());
         String indexBasePath = indexDirs.get(dirIndex).toString();
 
-        EntryLocationIndex entryLocationIndex = new EntryLocationIndex(serverConf,
-                (basePath, subPath, dbConfigType, conf1) ->
-                        new KeyValueStorageRocksDB(basePath, subPath, DbConfigType.Default, conf1, true),
+        KeyValueStorageFactory storageFactory;
+        if (isMappedEntryLocationIndex(serverConf)) {
+            storageFactory = (basePath, subPath, dbConfigType, conf1) ->
+                    new KeyValueStorageMappedFile(basePath, subPath, conf1, true);
+        } else {
+            storageFactory = (basePath, subPath, dbConfigType, conf1) ->
+                    new KeyValueStorageRocksDB(basePath, subPath, DbConfigType.Default, conf1, true);
+        }
+        EntryLocationIndex entryLocationIndex = new EntryLocationIndex(serverConf, storageFactory,
                 indexBasePath, NullStatsLogger.INSTANCE);
         try {
             long lastEntryId = entryLocationIndex.getLastEntryInLedger(ledgerId);
@@ -610,6 +694,28 @@ public class DbLedgerStorage implements LedgerStorage {
         }
     }
 
+    /**
+     * @return the factory of the key-value storage holding the entry location index
+     */
+    static KeyValueStorageFactory getEntryLocationIndexStorageFactory(ServerConfiguration conf) {
+        return isMappedEntryLocationIndex(conf) ? KeyValueStorageMappedFile.factory : KeyValueStorageRocksDB.factory;
+    }
+
+    private static boolean isMappedEntryLocationIndex(ServerConfiguration conf) {
+        String storage = conf.getString(ENTRY_LOCATION_INDEX_STORAGE, ENTRY_LOCATION_INDEX_STORAGE_ROCKSDB);
+        if (ENTRY_LOCATION_INDEX_STORAGE_MAPPED.equalsIgnoreCase(storage)) {
+            if (conf.getBoolean(ENTRY_LOCATION_INDEX_RANGE_ENCODING, false)) {
+                throw new IllegalArgumentException("The range encoding of the entry location index is not supported"
+                        + " by the " + ENTRY_LOCATION_INDEX_STORAGE_MAPPED + " storage");
+            }
+            return true;
+        } else if (ENTRY_LOCATION_INDEX_STORAGE_ROCKSDB.equalsIgnoreCase(storage)) {
+            return false;
+        } else {
+            throw new IllegalArgumentException("Unknown entry location index storage: " + storage);
+        }
+    }
+
     static boolean getBooleanVariableOrDefault(ServerConfiguration conf, String keyName, boolean defaultValue) {
         Object obj = conf.getProperty(keyName);
         if (obj instanceof Boolean) {
@@ -52,20 +52,32 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_MISSES = "write-cache-misses";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
+    private static final String READ_CACHE_HIT_RATIO = "read-cache-hit-ratio";
+    private static final String READ_CACHE_ADMISSION_REJECTS = "read-cache-admission-rejects";
+    private static final String READ_CACHE_EVICTIONS = "read-cache-evictions";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_PREFETCHED_ENTRIES = "readahead-prefetched-entries";
+    private static final String READAHEAD_CONSUMED_ENTRIES = "readahead-consumed-entries";
+    private static final String READAHEAD_EFFICIENCY = "readahead-efficiency";
+    private static final String READAHEAD_COALESCED = "readahead-coalesced";
+    private static final String READAHEAD_REJECTED = "readahead-rejected";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
     private static final String FLUSH_LEDGER_INDEX = "flush-ledger-index";
     private static final String FLUSH_SIZE = "flush-size";
+    private static final String FLUSH_SORT = "flush-sort";
+    private static final String FLUSH_ENTRYLOG_APPEND = "flush-entrylog-append";
+    private static final String FLUSH_LOCATIONS_INDEX_BUILD = "flush-locations-index-build";
 
     @Deprecated
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
     // throttled-write-requests is deprecated, use new metric: throttled-write
     private static final String THROTTLED_WRITE = "throttled-write";
     private static final String REJECTED_WRITE_REQUESTS = "rejected-write-requests";
+    private static final String WRITE_CACHE_BACKPRESSURE = "write-cache-backpressure";
     private static final String WRITE_CACHE_SIZE = "write-cache-size";
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
@@ -119,6 +131,22 @@ class DbLedgerStorageStats {
         parent = READ_ENTRY
     )
     private final Counter readCacheMissCounter;
+    @StatsDoc(
+        name = READ_CACHE_HIT_RATIO,
+        help = "ratio of read cache hits over the read cache lookups since the previous sample, in percent",
+        parent = READ_ENTRY
+    )
+    private final Gauge<Long> readCacheHitRatioGauge;
+    @StatsDoc(
+        name = READ_CACHE_ADMISSION_REJECTS,
+        help = "number of entries that the read cache admission policy refused to insert in the read cache"
+    )
+    private final Counter readCacheAdmissionRejectCounter;
+    @StatsDoc(
+        name = READ_CACHE_EVICTIONS,
+        help = "number of entries evicted from the read cache"
+    )
+    private final Counter readCacheEvictionCounter;
     @StatsDoc(
         name = READAHEAD_BATCH_COUNT,
         help = "the distribution of num of entries to read in one readahead batch"
@@ -134,6 +162,31 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+        name = READAHEAD_PREFETCHED_ENTRIES,
+        help = "number of entries prefetched by adaptive readahead"
+    )
+    private final Counter readAheadPrefetchedEntriesCounter;
+    @StatsDoc(
+        name = READAHEAD_CONSUMED_ENTRIES,
+        help = "number of entries prefetched by adaptive readahead that were later read from the read cache"
+    )
+    private final Counter readAheadConsumedEntriesCounter;
+    @StatsDoc(
+        name = READAHEAD_EFFICIENCY,
+        help = "the distribution of the percentage of prefetched entries that were read, for each ledger readahead"
+    )
+    private final OpStatsLogger readAheadEfficiencyStats;
+    @StatsDoc(
+        name = READAHEAD_COALESCED,
+        help = "number of asynchronous readahead skipped because the same entries were already being prefetched"
+    )
+    private final Counter readAheadCoalescedCounter;
+    @StatsDoc(
+        name = READAHEAD_REJECTED,
+        help = "number of asynchronous readahead skipped because too many readahead were pending"
+    )
+    private final Counter readAheadRejectedCounter;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -159,6 +212,21 @@ class DbLedgerStorageStats {
         help = "the distribution of number of bytes flushed from write cache to entry log files"
     )
     private final OpStatsLogger flushSizeStats;
+    @StatsDoc(
+        name = FLUSH_SORT,
+        help = "operation stats of sorting the write cache entries before flushing them"
+    )
+    private final OpStatsLogger flushSortStats;
+    @StatsDoc(
+        name = FLUSH_ENTRYLOG_APPEND,
+        help = "operation stats of appending the write cache entries of a flush shard to the entry log"
+    )
+    private final OpStatsLogger flushEntryLogAppendStats;
+    @StatsDoc(
+        name = FLUSH_LOCATIONS_INDEX_BUILD,
+        help = "operation stats of building the locations index batch of a flush shard"
+    )
+    private final OpStatsLogger flushLocationIndexBuildStats;
     @StatsDoc(
         name = THROTTLED_WRITE_REQUESTS,
         help = "The number of requests throttled due to write cache is full"
@@ -174,6 +242,11 @@ class DbLedgerStorageStats {
         help = "The number of requests rejected due to write cache is full"
     )
     private final Counter rejectedWriteRequests;
+    @StatsDoc(
+        name = WRITE_CACHE_BACKPRESSURE,
+        help = "The stats of writes delayed because many write cache segments are waiting to be flushed"
+    )
+    private final OpStatsLogger writeCacheBackpressureStats;
 
     @StatsDoc(
         name = WRITE_CACHE_SIZE,
@@ -209,18 +282,29 @@ class DbLedgerStorageStats {
         readCacheMissCounter = stats.getCounter(READ_CACHE_MISSES);
         writeCacheHitCounter = stats.getCounter(WRITE_CACHE_HITS);
         writeCacheMissCounter = stats.getCounter(WRITE_CACHE_MISSES);
+        readCacheAdmissionRejectCounter = stats.getCounter(READ_CACHE_ADMISSION_REJECTS);
+        readCacheEvictionCounter = stats.getCounter(READ_CACHE_EVICTIONS);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadPrefetchedEntriesCounter = stats.getCounter(READAHEAD_PREFETCHED_ENTRIES);
+        readAheadConsumedEntriesCounter = stats.getCounter(READAHEAD_CONSUMED_ENTRIES);
+        readAheadEfficiencyStats = stats.getOpStatsLogger(READAHEAD_EFFICIENCY);
+        readAheadCoalescedCounter = stats.getCounter(READAHEAD_COALESCED);
+        readAheadRejectedCounter = stats.getCounter(READAHEAD_REJECTED);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
         flushLedgerIndexStats = stats.getOpStatsLogger(FLUSH_LEDGER_INDEX);
         flushSizeStats = stats.getOpStatsLogger(FLUSH_SIZE);
+        flushSortStats = stats.getOpStatsLogger(FLUSH_SORT);
+        flushEntryLogAppendStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG_APPEND);
+        flushLocationIndexBuildStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX_BUILD);
 
         throttledWriteRequests = stats.getThreadScopedCounter(THROTTLED_WRITE_REQUESTS);
         throttledWriteStats = stats.getOpStatsLogger(THROTTLED_WRITE);
         rejectedWriteRequests = stats.getThreadScopedCounter(REJECTED_WRITE_REQUESTS);
+        writeCacheBackpressureStats = stats.getOpStatsLogger(WRITE_CACHE_BACKPRESSURE);
 
         writeCacheSizeGauge = new Gauge<Long>() {
             @Override
@@ -271,6 +355,34 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(READ_CACHE_COUNT, readCacheCountGauge);
+        readCacheHitRatioGauge = new Gauge<Long>() {
+
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            private long lastHits;
+            private long lastMisses;
+            private long lastRatio;
+
+            @Override
+            public synchronized Long getSample() {
+                // The ratio is computed over the lookups since the previous sample, so that it reflects
+                // the current workload instead of the whole history of the bookie
+                long hits = readCacheHitCounter.get();
+                long misses = readCacheMissCounter.get();
+                long windowHits = hits - lastHits;
+                long windowLookups = windowHits + misses - lastMisses;
+                lastHits = hits;
+                lastMisses = misses;
+                if (windowLookups > 0) {
+                    lastRatio = windowHits * 100 / windowLookups;
+                }
+                return lastRatio;
+            }
+        };
+        stats.registerGauge(READ_CACHE_HIT_RATIO, readCacheHitRatioGauge);
     }
 
 }
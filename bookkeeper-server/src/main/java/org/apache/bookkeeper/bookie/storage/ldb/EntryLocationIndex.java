@@ -21,8 +21,12 @@
 package org.apache.bookkeeper.bookie.storage.ldb;
 
 import com.google.common.collect.Iterables;
+import io.netty.util.concurrent.FastThreadLocal;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +38,7 @@ import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,17 +47,30 @@ import org.slf4j.LoggerFactory;
  *
  * <p>For each ledger multiple entries are stored in the same "record", represented
  * by the {@link LedgerIndexPage} class.
+ *
+ * <p>When range encoding is enabled, the locations of consecutive entries are stored in a
+ * single {@link EntryLocationRange} record. The records holding the location of a single
+ * entry, written before enabling it, are still used for the entries missing from the ranges.
  */
 public class EntryLocationIndex implements Closeable {
 
+    private static final FastThreadLocal<byte[]> RANGE_BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[EntryLocationRange.MAX_SERIALIZED_SIZE];
+        }
+    };
+
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
     private final EntryLocationIndexStats stats;
+    private final boolean rangeEncoding;
     private boolean isCompacting;
 
     public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
             StatsLogger stats) throws IOException {
         locationsDb = storageFactory.newKeyValueStorage(basePath, "locations", DbConfigType.EntryLocation, conf);
+        rangeEncoding = conf.getBoolean(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, false);
 
         this.stats = new EntryLocationIndexStats(
             stats,
@@ -70,7 +88,18 @@ public class EntryLocationIndex implements Closeable {
         locationsDb.close();
     }
 
+    /**
+     * @return true if the locations of consecutive entries are stored in range-encoded records
+     */
+    public boolean isRangeEncoding() {
+        return rangeEncoding;
+    }
+
     public long getLocation(long ledgerId, long entryId) throws IOException {
+        if (rangeEncoding) {
+            return getLocationFromRange(ledgerId, entryId);
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get();
 
@@ -98,6 +127,148 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    private long getLocationFromRange(long ledgerId, long entryId) throws IOException {
+        long firstEntryId = EntryLocationRange.firstEntryOfRange(entryId);
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+        byte[] value = RANGE_BUFFER.get();
+
+        long startTimeNanos = MathUtils.nowInNano();
+        boolean operationSuccess = false;
+        try {
+            long location = 0;
+            int length = locationsDb.get(key.array, value);
+            if (length > 0) {
+                if (EntryLocationRange.isRange(length)) {
+                    location = EntryLocationRange.getLocation(value, length, (int) (entryId - firstEntryId));
+                } else if (entryId == firstEntryId) {
+                    location = ArrayUtil.getLong(value, 0);
+                }
+            }
+
+            if (location == 0 && entryId != firstEntryId) {
+                // The entry might have been indexed before enabling the range encoding
+                key.set(ledgerId, entryId);
+                if (locationsDb.get(key.array, value) == Long.BYTES) {
+                    location = ArrayUtil.getLong(value, 0);
+                }
+            }
+
+            if (location == 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Entry not found {}@{} in db index", ledgerId, entryId);
+                }
+                return 0;
+            }
+            operationSuccess = true;
+            return location;
+        } finally {
+            key.recycle();
+            if (operationSuccess) {
+                stats.getLookupEntryLocationStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                stats.getLookupEntryLocationStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Get the locations of consecutive entries of a ledger, looking them up in a single batch.
+     *
+     * @return the locations of the entries starting from firstEntryId, with 0 for the entries not found
+     */
+    public long[] getLocations(long ledgerId, long firstEntryId, int count) throws IOException {
+        long startTimeNanos = MathUtils.nowInNano();
+        boolean operationSuccess = false;
+        try {
+            long[] locations = new long[count];
+            if (rangeEncoding) {
+                getLocationsFromRanges(ledgerId, firstEntryId, locations);
+            }
+            // Without range encoding, or for the entries indexed before enabling it, lookup the single
+            // entry records
+            getSingleLocations(ledgerId, firstEntryId, locations);
+            operationSuccess = true;
+            return locations;
+        } finally {
+            if (operationSuccess) {
+                stats.getLookupEntryLocationsStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                stats.getLookupEntryLocationsStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void getLocationsFromRanges(long ledgerId, long firstEntryId, long[] locations) throws IOException {
+        long firstRangeEntryId = EntryLocationRange.firstEntryOfRange(firstEntryId);
+        long lastRangeEntryId = EntryLocationRange.firstEntryOfRange(firstEntryId + locations.length - 1);
+
+        List<byte[]> keys = new ArrayList<>();
+        for (long rangeEntryId = firstRangeEntryId; rangeEntryId <= lastRangeEntryId;
+             rangeEntryId += EntryLocationRange.ENTRIES_PER_RANGE) {
+            keys.add(locationKey(ledgerId, rangeEntryId));
+        }
+
+        List<byte[]> values = locationsDb.multiGet(keys);
+        EntryLocationRange range = new EntryLocationRange();
+        for (int i = 0; i < values.size(); i++) {
+            byte[] value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+
+            long rangeEntryId = firstRangeEntryId + (long) i * EntryLocationRange.ENTRIES_PER_RANGE;
+            if (!EntryLocationRange.isRange(value.length)) {
+                // Single entry record of the first entry of the range
+                if (rangeEntryId >= firstEntryId) {
+                    locations[(int) (rangeEntryId - firstEntryId)] = ArrayUtil.getLong(value, 0);
+                }
+                continue;
+            }
+
+            range.deserialize(value, value.length);
+            for (int index = 0; index < EntryLocationRange.ENTRIES_PER_RANGE; index++) {
+                long entryId = rangeEntryId + index;
+                if (entryId >= firstEntryId && entryId < firstEntryId + locations.length) {
+                    locations[(int) (entryId - firstEntryId)] = range.get(index);
+                }
+            }
+        }
+    }
+
+    private void getSingleLocations(long ledgerId, long firstEntryId, long[] locations) throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < locations.length; i++) {
+            long entryId = firstEntryId + i;
+            if (locations[i] == 0
+                    && !(rangeEncoding && entryId == EntryLocationRange.firstEntryOfRange(entryId))) {
+                keys.add(locationKey(ledgerId, entryId));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> values = locationsDb.multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null && value.length == Long.BYTES) {
+                long entryId = ArrayUtil.getLong(keys.get(i), 8);
+                locations[(int) (entryId - firstEntryId)] = ArrayUtil.getLong(value, 0);
+            }
+        }
+    }
+
+    private static byte[] locationKey(long ledgerId, long entryId) {
+        byte[] key = new byte[16];
+        ArrayUtil.setLong(key, 0, ledgerId);
+        ArrayUtil.setLong(key, 8, entryId);
+        return key;
+    }
+
     public long getLastEntryInLedger(long ledgerId) throws IOException {
         if (deletedLedgers.contains(ledgerId)) {
             // Ledger already deleted
@@ -128,6 +299,13 @@ public class EntryLocationIndex implements Closeable {
             long lastEntryId = ArrayUtil.getLong(entry.getKey(), 8);
 
             if (foundLedgerId == ledgerId) {
+                byte[] value = entry.getValue();
+                if (EntryLocationRange.isRange(value.length)) {
+                    lastEntryId += EntryLocationRange.lastIndex(value, value.length);
+                } else if (rangeEncoding) {
+                    lastEntryId = Math.max(lastEntryId, getLastEntryInRange(ledgerId, lastEntryId));
+                }
+
                 if (log.isDebugEnabled()) {
                     log.debug("Found last page in storage db for ledger {} - last entry: {}", ledgerId, lastEntryId);
                 }
@@ -138,18 +316,54 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    /**
+     * @return the last entry in the range record containing the given entry, or -1 if there is no range record
+     */
+    private long getLastEntryInRange(long ledgerId, long entryId) throws IOException {
+        long firstEntryId = EntryLocationRange.firstEntryOfRange(entryId);
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+        byte[] value = RANGE_BUFFER.get();
+        try {
+            int length = locationsDb.get(key.array, value);
+            if (length > 0 && EntryLocationRange.isRange(length)) {
+                return firstEntryId + EntryLocationRange.lastIndex(value, length);
+            }
+            return -1;
+        } finally {
+            key.recycle();
+        }
+    }
+
     public void addLocation(long ledgerId, long entryId, long location) throws IOException {
-        Batch batch = locationsDb.newBatch();
+        Batch batch = newBatch();
         addLocation(batch, ledgerId, entryId, location);
         batch.flush();
         batch.close();
     }
 
     public Batch newBatch() {
+        return newBatch(null);
+    }
+
+    /**
+     * Create a batch of locations of entries that may not be durable yet.
+     *
+     * @param entriesFlusher makes the entries durable, before the batch writes any of their locations
+     *                       ahead of its own flush, or null if the entries are durable already
+     */
+    public Batch newBatch(Flushable entriesFlusher) {
+        if (rangeEncoding) {
+            return new RangeEncodingBatch(locationsDb.newBatch(), entriesFlusher);
+        }
         return locationsDb.newBatch();
     }
 
     public void addLocation(Batch batch, long ledgerId, long entryId, long location) throws IOException {
+        if (batch instanceof RangeEncodingBatch) {
+            ((RangeEncodingBatch) batch).addLocation(ledgerId, entryId, location);
+            return;
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get(location);
 
@@ -245,5 +459,136 @@ public class EntryLocationIndex implements Closeable {
                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) / 1000.0);
     }
 
+    /**
+     * Batch that accumulates the locations of the entries of the same range, and writes the
+     * range record once the entries of another range are added.
+     *
+     * <p>The new locations are merged with the range record already stored. If a range is
+     * updated again in the same batch, the batch is flushed before reading back the record,
+     * after the entries have been made durable.
+     */
+    private final class RangeEncodingBatch implements Batch {
+        private final Batch batch;
+        private final Flushable entriesFlusher;
+        private final EntryLocationRange range = new EntryLocationRange();
+        private final byte[] buffer = new byte[EntryLocationRange.MAX_SERIALIZED_SIZE];
+        private final ConcurrentLongLongPairHashMap writtenRanges = ConcurrentLongLongPairHashMap.newBuilder()
+                .concurrencyLevel(1)
+                .build();
+
+        private long ledgerId = -1;
+        private long firstEntryId = -1;
+
+        RangeEncodingBatch(Batch batch, Flushable entriesFlusher) {
+            this.batch = batch;
+            this.entriesFlusher = entriesFlusher;
+        }
+
+        void addLocation(long ledgerId, long entryId, long location) throws IOException {
+            if (log.isDebugEnabled()) {
+                log.debug("Add location - ledger: {} -- entry: {} -- location: {}", ledgerId, entryId, location);
+            }
+
+            long firstEntryId = EntryLocationRange.firstEntryOfRange(entryId);
+            if (ledgerId != this.ledgerId || firstEntryId != this.firstEntryId) {
+                writeRange();
+                loadRange(ledgerId, firstEntryId);
+            }
+            range.set((int) (entryId - firstEntryId), location);
+        }
+
+        private void loadRange(long ledgerId, long firstEntryId) throws IOException {
+            if (writtenRanges.containsKey(ledgerId, firstEntryId)) {
+                // The stored record must include the updates previously added to this batch, and
+                // the locations must not be stored before their entries are durable
+                if (entriesFlusher != null) {
+                    entriesFlusher.flush();
+                }
+                batch.flush();
+                batch.clear();
+                writtenRanges.clear();
+            }
+
+            this.ledgerId = ledgerId;
+            this.firstEntryId = firstEntryId;
+            range.clear();
+
+            LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+            try {
+                int length = locationsDb.get(key.array, buffer);
+                if (length > 0) {
+                    if (EntryLocationRange.isRange(length)) {
+                        range.deserialize(buffer, length);
+                    } else {
+                        range.set(0, ArrayUtil.getLong(buffer, 0));
+                    }
+                }
+            } finally {
+                key.recycle();
+            }
+        }
+
+        private void writeRange() throws IOException {
+            if (range.isEmpty()) {
+                return;
+            }
+
+            LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+            try {
+                int length = range.serialize(buffer);
+                byte[] value = new byte[length];
+                System.arraycopy(buffer, 0, value, 0, length);
+                batch.put(key.array, value);
+            } finally {
+                key.recycle();
+            }
+            writtenRanges.put(ledgerId, firstEntryId, 0, 0);
+            range.clear();
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            batch.put(key, value);
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            batch.remove(key);
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            batch.deleteRange(beginKey, endKey);
+        }
+
+        @Override
+        public void clear() {
+            range.clear();
+            ledgerId = -1;
+            firstEntryId = -1;
+            writtenRanges.clear();
+            batch.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeRange();
+            ledgerId = -1;
+            firstEntryId = -1;
+            batch.flush();
+            writtenRanges.clear();
+        }
+
+        @Override
+        public int batchCount() {
+            return batch.batchCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            batch.close();
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(EntryLocationIndex.class);
 }
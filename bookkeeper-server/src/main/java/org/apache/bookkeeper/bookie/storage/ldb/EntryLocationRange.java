@@ -0,0 +1,202 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.IOException;
+
+/**
+ * Range-encoded record of the entry location index, holding the locations of up to
+ * {@link #ENTRIES_PER_RANGE} consecutive entries of a ledger.
+ *
+ * <p>The record is stored with the key (ledgerId, firstEntryId), where the first entry id
+ * is aligned to {@link #ENTRIES_PER_RANGE}, so that each entry belongs to exactly one
+ * record. The serialized format is:
+ *
+ * <pre>
+ * [version: 1 byte][present entries bitmap: 8 bytes][first location: varint][location deltas: zigzag varints]
+ * </pre>
+ *
+ * <p>Entries written contiguously in the same entry log have a location delta equal to the
+ * previous entry size plus the size header, which usually fits in 2 bytes. A record is never
+ * 8 bytes long, which is the size of the single entry location records.
+ */
+class EntryLocationRange {
+
+    static final int ENTRIES_PER_RANGE = 64;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 1 + Long.BYTES;
+    private static final int MAX_VARINT_SIZE = 10;
+
+    static final int MAX_SERIALIZED_SIZE = HEADER_SIZE + ENTRIES_PER_RANGE * MAX_VARINT_SIZE;
+
+    private final long[] locations = new long[ENTRIES_PER_RANGE];
+    private long presentEntries;
+
+    static long firstEntryOfRange(long entryId) {
+        return entryId & ~(ENTRIES_PER_RANGE - 1);
+    }
+
+    /**
+     * @return true if a serialized value of the location index is range-encoded, false if it
+     *         is the location of a single entry
+     */
+    static boolean isRange(int valueLength) {
+        return valueLength != Long.BYTES;
+    }
+
+    boolean isEmpty() {
+        return presentEntries == 0;
+    }
+
+    void clear() {
+        presentEntries = 0;
+    }
+
+    void set(int index, long location) {
+        locations[index] = location;
+        presentEntries |= 1L << index;
+    }
+
+    /**
+     * @return the location of the entry at the given position, or 0 if the entry is not in the record
+     */
+    long get(int index) {
+        return (presentEntries & (1L << index)) != 0 ? locations[index] : 0;
+    }
+
+    /**
+     * Replace the content with the serialized record.
+     */
+    void deserialize(byte[] array, int length) throws IOException {
+        checkFormat(array, length);
+        presentEntries = ArrayUtil.getLong(array, 1);
+
+        int offset = HEADER_SIZE;
+        long location = 0;
+        boolean first = true;
+        for (long bitmap = presentEntries; bitmap != 0; bitmap &= bitmap - 1) {
+            long varint = readVarint(array, offset, length);
+            offset += varintSize(varint);
+            location = first ? varint : location + zigzagDecode(varint);
+            first = false;
+            locations[Long.numberOfTrailingZeros(bitmap)] = location;
+        }
+    }
+
+    /**
+     * @return the size of the serialized record
+     */
+    int serialize(byte[] array) {
+        array[0] = FORMAT_VERSION;
+        ArrayUtil.setLong(array, 1, presentEntries);
+
+        int offset = HEADER_SIZE;
+        long previous = 0;
+        boolean first = true;
+        for (long bitmap = presentEntries; bitmap != 0; bitmap &= bitmap - 1) {
+            long location = locations[Long.numberOfTrailingZeros(bitmap)];
+            offset = writeVarint(array, offset, first ? location : zigzagEncode(location - previous));
+            previous = location;
+            first = false;
+        }
+        return offset;
+    }
+
+    /**
+     * Get the location of an entry from a serialized record, decoding only the preceding entries.
+     *
+     * @return the entry location or 0 if the entry is not in the record
+     */
+    static long getLocation(byte[] array, int length, int index) throws IOException {
+        checkFormat(array, length);
+        long bitmap = ArrayUtil.getLong(array, 1);
+        if ((bitmap & (1L << index)) == 0) {
+            return 0;
+        }
+
+        int offset = HEADER_SIZE;
+        long varint = readVarint(array, offset, length);
+        long location = varint;
+        int preceding = Long.bitCount(bitmap & ((1L << index) - 1));
+        for (int i = 0; i < preceding; i++) {
+            offset += varintSize(varint);
+            varint = readVarint(array, offset, length);
+            location += zigzagDecode(varint);
+        }
+        return location;
+    }
+
+    /**
+     * @return the position of the last entry in the serialized record, or -1 if the record is empty
+     */
+    static int lastIndex(byte[] array, int length) throws IOException {
+        checkFormat(array, length);
+        return Long.BYTES * 8 - 1 - Long.numberOfLeadingZeros(ArrayUtil.getLong(array, 1));
+    }
+
+    private static void checkFormat(byte[] array, int length) throws IOException {
+        if (length < HEADER_SIZE || array[0] != FORMAT_VERSION) {
+            throw new IOException("Invalid entry location range record");
+        }
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] array, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            array[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        array[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarint(byte[] array, int offset, int length) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (offset >= length) {
+                throw new IOException("Truncated entry location range record");
+            }
+            byte b = array[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed entry location range record");
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
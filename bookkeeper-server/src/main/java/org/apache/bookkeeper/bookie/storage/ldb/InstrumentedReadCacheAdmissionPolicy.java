@@ -0,0 +1,66 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+/**
+ * Read cache admission policy that records the admission rejects and the evictions
+ * in the {@link DbLedgerStorageStats}, before delegating to the configured policy.
+ */
+class InstrumentedReadCacheAdmissionPolicy implements ReadCacheAdmissionPolicy {
+
+    private final ReadCacheAdmissionPolicy delegate;
+    private final DbLedgerStorageStats stats;
+
+    InstrumentedReadCacheAdmissionPolicy(ReadCacheAdmissionPolicy delegate, DbLedgerStorageStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    @Override
+    public void recordAccess(long ledgerId, long entryId) {
+        delegate.recordAccess(ledgerId, entryId);
+    }
+
+    @Override
+    public boolean admit(long ledgerId, long entryId) {
+        boolean admitted = delegate.admit(ledgerId, entryId);
+        if (!admitted) {
+            stats.getReadCacheAdmissionRejectCounter().inc();
+        }
+        return admitted;
+    }
+
+    @Override
+    public void recordEviction(long ledgerId, long entryId) {
+        delegate.recordEviction(ledgerId, entryId);
+    }
+
+    @Override
+    public void recordEvictions(long count) {
+        stats.getReadCacheEvictionCounter().addCount(count);
+        delegate.recordEvictions(count);
+    }
+
+    @Override
+    public boolean needsEvictedEntries() {
+        return delegate.needsEvictedEntries();
+    }
+}
@@ -0,0 +1,1574 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.PlatformDependent;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory-mapped key-value storage for the entry location index.
+ *
+ * <p>Only the fixed-size records of the location index are supported: 16 bytes keys made of
+ * (ledgerId, entryId) and 8 bytes values. Every flushed {@link Batch} is written as a new
+ * immutable segment file, containing the records sorted by key. The segments are memory-mapped
+ * and the lookups go through them from the newest to the oldest, so that the page cache is the
+ * only cache involved and there is no block cache to tune.
+ *
+ * <p>Each segment keeps in heap the key of one record every {@link #FENCE_INTERVAL}. Since the
+ * entry ids of a ledger are mostly dense, the position of an entry is first guessed from the
+ * closest fence key, which usually resolves a lookup with a single access to the mapped file. The
+ * lookup falls back to a binary search within the fence interval otherwise.
+ *
+ * <p>The segments and the ranges deleted with {@link Batch#deleteRange(byte[], byte[])} are listed
+ * in a manifest file. A segment is written in a temporary file, synced and renamed before the
+ * manifest is atomically replaced, so a batch flushed during the ledger storage checkpoint is
+ * either fully visible after a crash or not at all.
+ *
+ * <p>The single updates done with {@link #put(byte[], byte[])} and {@link #delete(byte[])} are
+ * buffered in heap, and written as a segment by {@link #sync()}, by the next batch flush or once
+ * {@link #MAX_PENDING_WRITES} updates are buffered.
+ *
+ * <p>Segments of similar size are merged in background, dropping the overwritten and deleted
+ * records. If the merges fall behind, the writers merge the newest segments themselves so that a
+ * lookup never goes through more than {@link #MAX_SEGMENTS} segments. {@link #compact()} merges all
+ * the segments into one.
+ */
+public class KeyValueStorageMappedFile implements KeyValueStorage {
+    private static final Logger log = LoggerFactory.getLogger(KeyValueStorageMappedFile.class);
+
+    static KeyValueStorageFactory factory = (defaultBasePath, subPath, dbConfigType, conf) ->
+            new KeyValueStorageMappedFile(defaultBasePath, subPath, conf);
+
+    static final int KEY_SIZE = 16;
+    static final int VALUE_SIZE = 8;
+
+    private static final int RECORD_SIZE = KEY_SIZE + VALUE_SIZE;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int SEGMENT_MAGIC = 0x4c4f4353; // "LOCS"
+    private static final int MANIFEST_MAGIC = 0x4c4f434d; // "LOCM"
+    private static final int CURRENT_VERSION = 1;
+
+    // A segment must be mappable with a single buffer
+    private static final int MAX_SEGMENT_RECORDS = (Integer.MAX_VALUE - SEGMENT_HEADER_SIZE) / RECORD_SIZE;
+
+    static final int FENCE_INTERVAL = 1024;
+
+    // The newest segments are merged together as long as the next older segment is not bigger than
+    // this factor times the size of the segments already selected
+    private static final int MERGE_SIZE_RATIO = 2;
+
+    // Max number of segments a lookup goes through
+    static final int MAX_SEGMENTS = 32;
+
+    // Max number of single updates buffered in heap before being written as a segment
+    static final int MAX_PENDING_WRITES = 64 * 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    // Value used to mark a deleted key in a segment
+    private static final long TOMBSTONE = -1L;
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final boolean readOnly;
+
+    // Serializes the changes to the list of segments and the manifest updates
+    private final Object writeLock = new Object();
+    // Serializes the segments merges
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    private final ExecutorService mergeExecutor;
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private volatile State state;
+
+    // Single updates not written in a segment yet, newer than all the segments. Only modified holding the write
+    // lock, and only cleared once their segment is visible in the state.
+    private final ConcurrentSkipListMap<PendingKey, Long> pendingWrites = new ConcurrentSkipListMap<>();
+    private volatile int pendingCount;
+    // Both the segments and the range deletions are ordered with sequence numbers taken from this counter
+    private long nextSequence;
+    private long nextFileId;
+
+    public KeyValueStorageMappedFile(String basePath, String subPath, ServerConfiguration conf) throws IOException {
+        this(basePath, subPath, conf, false);
+    }
+
+    public KeyValueStorageMappedFile(String basePath, String subPath, ServerConfiguration conf, boolean readOnly)
+            throws IOException {
+        this.dir = FileSystems.getDefault().getPath(basePath, subPath).toFile();
+        this.readOnly = readOnly;
+
+        File manifest = new File(dir, MANIFEST);
+        if (!manifest.exists()) {
+            String[] existing = dir.list((d, name) -> !name.endsWith(TMP_SUFFIX));
+            if (existing != null && existing.length > 0) {
+                throw new IOException("Directory " + dir + " already contains an index that was not created by "
+                        + KeyValueStorageMappedFile.class.getSimpleName()
+                        + ", the locations index must be rebuilt after changing its storage implementation");
+            }
+            if (readOnly) {
+                throw new IOException("Index not found in " + dir);
+            }
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Failed to create directory " + dir);
+            }
+
+            this.state = new State(new Segment[0], RangeDeletions.EMPTY);
+            writeManifest(state);
+        } else {
+            this.state = readManifest(manifest);
+            if (!readOnly) {
+                deleteUnreferencedFiles(state);
+            }
+        }
+
+        if (readOnly) {
+            this.mergeExecutor = null;
+        } else {
+            this.mergeExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-index-merge"));
+        }
+
+        log.info("Opened memory-mapped index at {} with {} segments, {} records", dir, state.segments.length,
+                count());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            if (!readOnly) {
+                flushPendingWrites();
+            }
+        } finally {
+            if (mergeExecutor != null) {
+                mergeExecutor.shutdown();
+                try {
+                    if (!mergeExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        log.warn("Timed out waiting for the index merge to complete at {}", dir);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while closing " + dir, e);
+                }
+            }
+
+            // The index is not read anymore once closed, so the segments are unmapped without waiting for the GC.
+            // The segments replaced by a merge are still released by the GC, since readers might be using them.
+            Segment[] segments = state.segments;
+            state = new State(new Segment[0], RangeDeletions.EMPTY);
+            for (Segment segment : segments) {
+                segment.unmap();
+            }
+        }
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) throws IOException {
+        checkKey(key);
+        checkArgument(value.length == VALUE_SIZE, "Only values of %s bytes are supported", VALUE_SIZE);
+        long location = ArrayUtil.getLong(value, 0);
+        checkArgument(location != TOMBSTONE, "Invalid value %s", location);
+        addPendingWrite(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8), location);
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws IOException {
+        byte[] value = new byte[VALUE_SIZE];
+        if (get(key, value) < 0) {
+            return null;
+        }
+        return value;
+    }
+
+    @Override
+    public int get(byte[] key, byte[] value) throws IOException {
+        checkKey(key);
+        if (value.length < VALUE_SIZE) {
+            throw new IOException("Value array is too small to fit the result");
+        }
+
+        long location = lookup(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8));
+        if (location == TOMBSTONE) {
+            return -1;
+        }
+
+        ArrayUtil.setLong(value, 0, location);
+        return VALUE_SIZE;
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getFloor(byte[] key) throws IOException {
+        checkKey(key);
+        Segment pending = pendingSegment();
+        State s = state;
+        Segment[] segments = withPending(pending, s.segments);
+        long keyFirst = ArrayUtil.getLong(key, 0);
+        long keySecond = ArrayUtil.getLong(key, 8);
+
+        while (true) {
+            Segment bestSegment = null;
+            int bestIdx = -1;
+            // Iterating from the newest segment, the best candidate comes from the newest segment with that key
+            for (Segment segment : segments) {
+                int idx = s.floorIndex(segment, keyFirst, keySecond);
+                if (idx >= 0 && (bestSegment == null || compare(segment.first(idx), segment.second(idx),
+                        bestSegment.first(bestIdx), bestSegment.second(bestIdx)) > 0)) {
+                    bestSegment = segment;
+                    bestIdx = idx;
+                }
+            }
+
+            if (bestSegment == null) {
+                return null;
+            }
+
+            keyFirst = bestSegment.first(bestIdx);
+            keySecond = bestSegment.second(bestIdx);
+            long value = bestSegment.value(bestIdx);
+            if (value != TOMBSTONE) {
+                return toEntry(keyFirst, keySecond, value);
+            }
+        }
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getCeil(byte[] key) throws IOException {
+        checkKey(key);
+        Segment pending = pendingSegment();
+        State s = state;
+        Segment[] segments = withPending(pending, s.segments);
+        long keyFirst = ArrayUtil.getLong(key, 0);
+        long keySecond = ArrayUtil.getLong(key, 8);
+
+        while (true) {
+            Segment bestSegment = null;
+            int bestIdx = -1;
+            for (Segment segment : segments) {
+                int idx = s.ceilIndex(segment, keyFirst, keySecond);
+                if (idx >= 0 && (bestSegment == null || compare(segment.first(idx), segment.second(idx),
+                        bestSegment.first(bestIdx), bestSegment.second(bestIdx)) < 0)) {
+                    bestSegment = segment;
+                    bestIdx = idx;
+                }
+            }
+
+            if (bestSegment == null) {
+                return null;
+            }
+
+            keyFirst = bestSegment.first(bestIdx);
+            keySecond = bestSegment.second(bestIdx);
+            long value = bestSegment.value(bestIdx);
+            if (value != TOMBSTONE) {
+                return toEntry(keyFirst, keySecond, value);
+            } else if (keySecond == Long.MAX_VALUE) {
+                keyFirst++;
+                keySecond = Long.MIN_VALUE;
+            } else {
+                keySecond++;
+            }
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) throws IOException {
+        checkKey(key);
+        addPendingWrite(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8), TOMBSTONE);
+    }
+
+    @Override
+    public void compact() throws IOException {
+        checkWritable();
+        flushPendingWrites();
+        mergeLock.lock();
+        try {
+            Segment[] segments = state.segments;
+            if (segments.length > 1 || (segments.length == 1 && !state.deletions.isEmpty())) {
+                merge(segments.length);
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    @Override
+    public String getDBPath() {
+        return dir.toString();
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys() {
+        return keys(null, null);
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys(byte[] firstKey, byte[] lastKey) {
+        Segment pending = pendingSegment();
+        State s = state;
+        MergingIterator it = new MergingIterator(s, withPending(pending, s.segments), firstKey, lastKey, false);
+        return new CloseableIterator<byte[]>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                it.next();
+                return toKey(it.first, it.second);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public CloseableIterator<Entry<byte[], byte[]>> iterator() {
+        Segment pending = pendingSegment();
+        State s = state;
+        MergingIterator it = new MergingIterator(s, withPending(pending, s.segments), null, null, false);
+        return new CloseableIterator<Entry<byte[], byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<byte[], byte[]> next() {
+                it.next();
+                return toEntry(it.first, it.second, it.value);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void sync() throws IOException {
+        // Every flushed batch is already durable, only the single updates are left to write
+        if (pendingCount > 0) {
+            checkWritable();
+            flushPendingWrites();
+            afterWrite();
+        }
+    }
+
+    /**
+     * @return the number of records in all the segments and in the single updates not written yet, which includes
+     *         the records that were overwritten or deleted since the last merge
+     */
+    @Override
+    public long count() {
+        long count = pendingCount;
+        for (Segment segment : state.segments) {
+            count += segment.size;
+        }
+        return count;
+    }
+
+    @Override
+    public Batch newBatch() {
+        return new MappedFileBatch();
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly) {
+            throw new IOException("Index at " + dir + " is opened in read-only mode");
+        }
+    }
+
+    private static void checkKey(byte[] key) {
+        checkArgument(key.length == KEY_SIZE, "Only keys of %s bytes are supported", KEY_SIZE);
+    }
+
+    private long lookup(long first, long second) {
+        // The pending updates are cleared only after their segment is visible, so reading them before the state
+        // never misses an update
+        if (pendingCount > 0) {
+            Long value = pendingWrites.get(new PendingKey(first, second));
+            if (value != null) {
+                return value;
+            }
+        }
+        return state.lookup(first, second);
+    }
+
+    /**
+     * @return a snapshot of the pending updates as an in-heap segment newer than all the others, or null if there is
+     *         no pending update
+     */
+    private Segment pendingSegment() {
+        if (pendingCount == 0) {
+            return null;
+        }
+
+        // The pending updates might change while they're copied
+        long[] records = new long[Math.max(1, pendingCount) * 3];
+        int count = 0;
+        for (Entry<PendingKey, Long> entry : pendingWrites.entrySet()) {
+            if ((count + 1) * 3 > records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            records[count * 3] = entry.getKey().first;
+            records[count * 3 + 1] = entry.getKey().second;
+            records[count * 3 + 2] = entry.getValue();
+            count++;
+        }
+        return count > 0 ? Segment.inHeap(records, count, Long.MAX_VALUE) : null;
+    }
+
+    private static Segment[] withPending(Segment pending, Segment[] segments) {
+        if (pending == null) {
+            return segments;
+        }
+
+        Segment[] res = new Segment[segments.length + 1];
+        res[0] = pending;
+        System.arraycopy(segments, 0, res, 1, segments.length);
+        return res;
+    }
+
+    private void addPendingWrite(long first, long second, long value) throws IOException {
+        checkWritable();
+        boolean flushed = false;
+        synchronized (writeLock) {
+            if (pendingWrites.put(new PendingKey(first, second), value) == null) {
+                pendingCount++;
+            }
+            if (pendingCount >= MAX_PENDING_WRITES) {
+                flushPendingWrites();
+                flushed = true;
+            }
+        }
+
+        if (flushed) {
+            afterWrite();
+        }
+    }
+
+    /**
+     * Write the pending single updates as a new segment, and make it visible.
+     */
+    private void flushPendingWrites() throws IOException {
+        synchronized (writeLock) {
+            if (pendingCount == 0) {
+                return;
+            }
+
+            State current = state;
+            List<Segment> newSegments = new ArrayList<>(1);
+            writePendingSegment(newSegments);
+            publish(current, newSegments, current.deletions);
+            clearPendingWrites();
+        }
+    }
+
+    // Must be called holding the write lock
+    private void writePendingSegment(List<Segment> newSegments) throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        // The pending updates are already sorted and unique
+        long[] records = new long[pendingCount * 4];
+        int count = 0;
+        for (Entry<PendingKey, Long> entry : pendingWrites.entrySet()) {
+            records[count * 4] = entry.getKey().first;
+            records[count * 4 + 1] = entry.getKey().second;
+            records[count * 4 + 2] = entry.getValue();
+            count++;
+        }
+        writeSegments(records, count, newSegments);
+    }
+
+    // Must be called holding the write lock, once the pending updates are visible in the state
+    private void clearPendingWrites() {
+        pendingWrites.clear();
+        pendingCount = 0;
+    }
+
+    private static int compare(long firstA, long secondA, long firstB, long secondB) {
+        int res = Long.compare(firstA, firstB);
+        return res != 0 ? res : Long.compare(secondA, secondB);
+    }
+
+    private static byte[] toKey(long first, long second) {
+        byte[] key = new byte[KEY_SIZE];
+        ArrayUtil.setLong(key, 0, first);
+        ArrayUtil.setLong(key, 8, second);
+        return key;
+    }
+
+    private static Entry<byte[], byte[]> toEntry(long first, long second, long value) {
+        byte[] valueArray = new byte[VALUE_SIZE];
+        ArrayUtil.setLong(valueArray, 0, value);
+        return new SimpleImmutableEntry<>(toKey(first, second), valueArray);
+    }
+
+    /**
+     * Write the records of a batch as new segments, and make them visible.
+     *
+     * @param records the batch records, in groups of (first, second, value, position in batch)
+     */
+    private void writeBatch(long[] records, int count, RangeDeletions.Builder deletions) throws IOException {
+        checkWritable();
+        // Records updated multiple times in the batch are de-duplicated keeping the last update
+        ArrayGroupSort.sort(records, 0, count * 4);
+        int uniqueCount = 0;
+        for (int i = 0; i < count; i++) {
+            int src = i * 4;
+            if (uniqueCount > 0) {
+                int last = (uniqueCount - 1) * 4;
+                if (records[last] == records[src] && records[last + 1] == records[src + 1]) {
+                    if (records[src + 3] > records[last + 3]) {
+                        System.arraycopy(records, src, records, last, 4);
+                    }
+                    continue;
+                }
+            }
+            System.arraycopy(records, src, records, uniqueCount * 4, 4);
+            uniqueCount++;
+        }
+
+        synchronized (writeLock) {
+            State current = state;
+
+            // The pending single updates were done before the batch flush, so they must be older than the batch
+            List<Segment> newSegments = new ArrayList<>();
+            writePendingSegment(newSegments);
+
+            // The range deletions must have a lower sequence than the segments of the same batch, since
+            // the records that were added after the range deletion must survive it
+            RangeDeletions newDeletions = deletions.isEmpty()
+                    ? current.deletions
+                    : current.deletions.with(deletions, nextSequence++);
+
+            writeSegments(records, uniqueCount, newSegments);
+
+            if (newSegments.isEmpty() && newDeletions == current.deletions) {
+                return;
+            }
+
+            publish(current, newSegments, newDeletions);
+            clearPendingWrites();
+        }
+
+        afterWrite();
+    }
+
+    /**
+     * Write sorted and unique records as new segments, from the oldest to the newest. Must be called holding the
+     * write lock.
+     *
+     * @param records the records, in groups of (first, second, value, position in batch)
+     */
+    private void writeSegments(long[] records, int count, List<Segment> newSegments) throws IOException {
+        for (int offset = 0; offset < count; offset += MAX_SEGMENT_RECORDS) {
+            int segmentRecords = Math.min(count - offset, MAX_SEGMENT_RECORDS);
+            try (SegmentWriter writer = new SegmentWriter(nextSequence++, nextFileId++)) {
+                for (int i = offset; i < offset + segmentRecords; i++) {
+                    writer.append(records[i * 4], records[i * 4 + 1], records[i * 4 + 2]);
+                }
+                newSegments.add(writer.finish());
+            }
+        }
+    }
+
+    /**
+     * Add the new segments, ordered from the oldest to the newest, to the state and persist it in the manifest. Must
+     * be called holding the write lock.
+     */
+    private void publish(State current, List<Segment> newSegments, RangeDeletions newDeletions) throws IOException {
+        Segment[] segments = new Segment[current.segments.length + newSegments.size()];
+        for (int i = 0; i < newSegments.size(); i++) {
+            segments[i] = newSegments.get(newSegments.size() - 1 - i);
+        }
+        System.arraycopy(current.segments, 0, segments, newSegments.size(), current.segments.length);
+
+        State newState = new State(segments, newDeletions.prune(segments));
+        writeManifest(newState);
+        state = newState;
+    }
+
+    private void afterWrite() throws IOException {
+        scheduleMergeIfNeeded();
+        if (state.segments.length > MAX_SEGMENTS) {
+            mergeExcessSegments();
+        }
+    }
+
+    /**
+     * Merge the newest segments until there are no more than {@link #MAX_SEGMENTS}, when the background merge falls
+     * behind the writes.
+     */
+    private void mergeExcessSegments() throws IOException {
+        mergeLock.lock();
+        try {
+            Segment[] segments;
+            while ((segments = state.segments).length > MAX_SEGMENTS) {
+                int mergeCount = Math.max(selectMergeCount(segments), segments.length - MAX_SEGMENTS + 1);
+                long mergeRecords = 0;
+                for (int i = 0; i < mergeCount; i++) {
+                    mergeRecords += segments[i].size;
+                }
+                if (mergeRecords > MAX_SEGMENT_RECORDS) {
+                    log.warn("Cannot merge the {} newest index segments at {} into a single segment", mergeCount,
+                            dir);
+                    return;
+                }
+                merge(mergeCount);
+            }
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    private void scheduleMergeIfNeeded() {
+        if (selectMergeCount(state.segments) > 0 && mergeScheduled.compareAndSet(false, true)) {
+            mergeExecutor.execute(() -> {
+                mergeScheduled.set(false);
+                mergeLock.lock();
+                try {
+                    int mergeCount;
+                    while ((mergeCount = selectMergeCount(state.segments)) > 0) {
+                        merge(mergeCount);
+                    }
+                } catch (Throwable t) {
+                    log.error("Failed to merge index segments at {}", dir, t);
+                } finally {
+                    mergeLock.unlock();
+                }
+            });
+        }
+    }
+
+    /**
+     * Select the newest segments to merge, so that the segments sizes grow geometrically from the newest to
+     * the oldest.
+     *
+     * @return the number of newest segments to merge, or 0 if no merge is needed
+     */
+    private static int selectMergeCount(Segment[] segments) {
+        if (segments.length < 2) {
+            return 0;
+        }
+
+        long totalSize = segments[0].size;
+        int count = 1;
+        while (count < segments.length
+                && segments[count].size <= totalSize * MERGE_SIZE_RATIO
+                && totalSize + segments[count].size <= MAX_SEGMENT_RECORDS) {
+            totalSize += segments[count].size;
+            count++;
+        }
+
+        return count > 1 ? count : 0;
+    }
+
+    /**
+     * Merge the given number of newest segments into a single segment. Must be called holding the merge lock.
+     */
+    private void merge(int mergeCount) throws IOException {
+        long startTime = System.nanoTime();
+        State snapshot = state;
+        Segment[] inputs = Arrays.copyOf(snapshot.segments, mergeCount);
+        boolean includesOldest = mergeCount == snapshot.segments.length;
+
+        long inputRecords = 0;
+        for (Segment segment : inputs) {
+            inputRecords += segment.size;
+        }
+
+        // The merged segment must stay older than the segments added after the snapshot, and the range deletions
+        // of the snapshot are applied while merging, so it takes the highest sequence among the newest input and
+        // these deletions. The deleted keys don't need to be remembered anymore if there is no older segment.
+        long sequence = inputs[0].sequence;
+        for (int i = 0; i < snapshot.deletions.size(); i++) {
+            sequence = Math.max(sequence, snapshot.deletions.sequence[i]);
+        }
+
+        Segment merged;
+        long fileId;
+        synchronized (writeLock) {
+            fileId = nextFileId++;
+        }
+        try (SegmentWriter writer = new SegmentWriter(sequence, fileId)) {
+            MergingIterator it = new MergingIterator(snapshot, inputs, null, null, !includesOldest);
+            while (it.hasNext()) {
+                it.next();
+                writer.append(it.first, it.second, it.value);
+            }
+            merged = writer.finish();
+        }
+
+        synchronized (writeLock) {
+            // New segments might have been added in the meantime, though they're all newer than the inputs
+            Segment[] current = state.segments;
+            int newerCount = current.length - snapshot.segments.length;
+            List<Segment> segments = new ArrayList<>(current.length);
+            segments.addAll(Arrays.asList(current).subList(0, newerCount));
+            if (merged != null) {
+                segments.add(merged);
+            }
+            segments.addAll(Arrays.asList(current).subList(newerCount + mergeCount, current.length));
+
+            Segment[] newSegments = segments.toArray(new Segment[0]);
+            State newState = new State(newSegments, state.deletions.prune(newSegments));
+            writeManifest(newState);
+            state = newState;
+        }
+
+        // Readers that are still using the old segments keep the files mapped
+        for (Segment segment : inputs) {
+            if (!segment.file.delete()) {
+                log.warn("Failed to delete merged index segment {}", segment.file);
+            }
+        }
+
+        log.info("Merged {} index segments with {} records into {} records at {} in {} ms", mergeCount,
+                inputRecords, merged != null ? merged.size : 0, dir,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private File segmentFile(long fileId) {
+        return new File(dir, String.format("%s%016x%s", SEGMENT_PREFIX, fileId, SEGMENT_SUFFIX));
+    }
+
+    private void writeManifest(State newState) throws IOException {
+        File tmpFile = new File(dir, MANIFEST + TMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            CRC32 checksum = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(fos, checksum)));
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(CURRENT_VERSION);
+            out.writeLong(nextSequence);
+            out.writeLong(nextFileId);
+
+            out.writeInt(newState.segments.length);
+            for (Segment segment : newState.segments) {
+                out.writeLong(segment.sequence);
+                out.writeLong(segment.fileId);
+            }
+
+            RangeDeletions deletions = newState.deletions;
+            out.writeInt(deletions.size());
+            for (int i = 0; i < deletions.size(); i++) {
+                out.writeLong(deletions.beginFirst[i]);
+                out.writeLong(deletions.beginSecond[i]);
+                out.writeLong(deletions.endFirst[i]);
+                out.writeLong(deletions.endSecond[i]);
+                out.writeLong(deletions.sequence[i]);
+            }
+            out.flush();
+
+            // The checksum is not part of the checksummed data
+            new DataOutputStream(fos).writeLong(checksum.getValue());
+            fos.getChannel().force(true);
+        }
+
+        Files.move(tmpFile.toPath(), new File(dir, MANIFEST).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    private State readManifest(File manifest) throws IOException {
+        byte[] data = Files.readAllBytes(manifest.toPath());
+        if (data.length < Long.BYTES) {
+            throw new IOException("Corrupted index manifest " + manifest);
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data, 0, data.length - Long.BYTES);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.getLong(data.length - Long.BYTES) != checksum.getValue()) {
+            throw new IOException("Corrupted index manifest " + manifest);
+        }
+
+        if (in.getInt() != MANIFEST_MAGIC) {
+            throw new IOException("Invalid index manifest " + manifest);
+        }
+        int version = in.getInt();
+        if (version != CURRENT_VERSION) {
+            throw new IOException("Unsupported index manifest version " + version + " in " + manifest);
+        }
+        nextSequence = in.getLong();
+        nextFileId = in.getLong();
+
+        int segmentsCount = in.getInt();
+        Segment[] segments = new Segment[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            long sequence = in.getLong();
+            long fileId = in.getLong();
+            segments[i] = Segment.open(segmentFile(fileId), sequence, fileId);
+        }
+
+        int deletionsCount = in.getInt();
+        RangeDeletions.Builder deletions = new RangeDeletions.Builder();
+        long[] deletionSequences = new long[deletionsCount];
+        for (int i = 0; i < deletionsCount; i++) {
+            deletions.add(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+            deletionSequences[i] = in.getLong();
+        }
+        return new State(segments, deletions.build(deletionSequences));
+    }
+
+    private void deleteUnreferencedFiles(State current) {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(MANIFEST);
+        for (Segment segment : current.segments) {
+            referenced.add(segment.file.getName());
+        }
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!referenced.contains(file.getName())) {
+                log.info("Deleting unreferenced index file {}", file);
+                if (!file.delete()) {
+                    log.warn("Failed to delete unreferenced index file {}", file);
+                }
+            }
+        }
+    }
+
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Immutable view of the index, shared by the readers.
+     */
+    private static final class State {
+        // Ordered from the newest to the oldest
+        final Segment[] segments;
+        final RangeDeletions deletions;
+
+        State(Segment[] segments, RangeDeletions deletions) {
+            this.segments = segments;
+            this.deletions = deletions;
+        }
+
+        long lookup(long first, long second) {
+            for (Segment segment : segments) {
+                int idx = segment.find(first, second);
+                if (idx >= 0) {
+                    if (deletions.find(first, second, segment.sequence) >= 0) {
+                        return TOMBSTONE;
+                    }
+                    return segment.value(idx);
+                }
+            }
+            return TOMBSTONE;
+        }
+
+        /**
+         * @return the index of the last record of the segment lesser than the given key and not deleted by a range
+         *         deletion, or -1 if there is none
+         */
+        int floorIndex(Segment segment, long first, long second) {
+            int idx = segment.lowerBound(first, second) - 1;
+            while (idx >= 0) {
+                int deletion = deletions.find(segment.first(idx), segment.second(idx), segment.sequence);
+                if (deletion < 0) {
+                    return idx;
+                }
+                // Skip the whole deleted range
+                idx = segment.lowerBound(deletions.beginFirst[deletion], deletions.beginSecond[deletion]) - 1;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the index of the first record of the segment bigger or equal than the given key and not deleted by
+         *         a range deletion, or -1 if there is none
+         */
+        int ceilIndex(Segment segment, long first, long second) {
+            int idx = segment.lowerBound(first, second);
+            while (idx < segment.size) {
+                int deletion = deletions.find(segment.first(idx), segment.second(idx), segment.sequence);
+                if (deletion < 0) {
+                    return idx;
+                }
+                // The end of the deleted range is not included in the range
+                idx = segment.lowerBound(deletions.endFirst[deletion], deletions.endSecond[deletion]);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Sorted, immutable file of (first, second, value) records, mapped in memory.
+     */
+    private static final class Segment {
+        final long sequence;
+        final long fileId;
+        final File file;
+        final int size;
+
+        private final ByteBuffer buffer;
+        private final long[] fenceFirst;
+        private final long[] fenceSecond;
+
+        private Segment(File file, long sequence, long fileId, ByteBuffer buffer, int size) {
+            this.file = file;
+            this.sequence = sequence;
+            this.fileId = fileId;
+            this.buffer = buffer;
+            this.size = size;
+
+            int fences = (size + FENCE_INTERVAL - 1) / FENCE_INTERVAL;
+            this.fenceFirst = new long[fences];
+            this.fenceSecond = new long[fences];
+            for (int i = 0; i < fences; i++) {
+                fenceFirst[i] = first(i * FENCE_INTERVAL);
+                fenceSecond[i] = second(i * FENCE_INTERVAL);
+            }
+        }
+
+        /**
+         * @return a segment over the given records, in groups of (first, second, value), that is not backed by a file
+         */
+        static Segment inHeap(long[] records, int count, long sequence) {
+            ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_HEADER_SIZE + count * RECORD_SIZE);
+            buffer.putInt(SEGMENT_MAGIC).putInt(CURRENT_VERSION).putLong(count);
+            for (int i = 0; i < count * 3; i++) {
+                buffer.putLong(records[i]);
+            }
+            return new Segment(null, sequence, -1L, buffer, count);
+        }
+
+        static Segment open(File file, long sequence, long fileId) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                if (fileSize < SEGMENT_HEADER_SIZE) {
+                    throw new IOException("Invalid index segment " + file);
+                }
+
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+                long size = buffer.getLong(8);
+                if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(4) != CURRENT_VERSION
+                        || fileSize != SEGMENT_HEADER_SIZE + size * RECORD_SIZE) {
+                    throw new IOException("Invalid index segment " + file);
+                }
+                return new Segment(file, sequence, fileId, buffer, (int) size);
+            }
+        }
+
+        void unmap() {
+            if (buffer.isDirect()) {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+
+        long first(int idx) {
+            return buffer.getLong(SEGMENT_HEADER_SIZE + idx * RECORD_SIZE);
+        }
+
+        long second(int idx) {
+            return buffer.getLong(SEGMENT_HEADER_SIZE + idx * RECORD_SIZE + 8);
+        }
+
+        long value(int idx) {
+            return buffer.getLong(SEGMENT_HEADER_SIZE + idx * RECORD_SIZE + 16);
+        }
+
+        int find(long first, long second) {
+            int idx = lowerBound(first, second);
+            if (idx < size && first(idx) == first && second(idx) == second) {
+                return idx;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the index of the first record whose key is bigger or equal than the given key
+         */
+        int lowerBound(long first, long second) {
+            // Find the last fence that is not bigger than the key, in heap
+            int low = 0;
+            int high = fenceFirst.length - 1;
+            int fence = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (compare(fenceFirst[mid], fenceSecond[mid], first, second) <= 0) {
+                    fence = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            if (fence < 0) {
+                return 0;
+            }
+
+            int blockStart = fence * FENCE_INTERVAL;
+            int blockEnd = Math.min(blockStart + FENCE_INTERVAL, size);
+
+            // With dense entry ids, the record is at the same distance from the fence as the entry id
+            if (fenceFirst[fence] == first) {
+                long distance = second - fenceSecond[fence];
+                if (distance >= 0 && distance < blockEnd - blockStart) {
+                    int guess = blockStart + (int) distance;
+                    if (first(guess) == first && second(guess) == second) {
+                        return guess;
+                    }
+                }
+            }
+
+            low = blockStart;
+            high = blockEnd;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(first(mid), second(mid), first, second) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Write the records, in key order, to a temporary file that is renamed as a segment once synced.
+     */
+    private final class SegmentWriter implements AutoCloseable {
+        private final long sequence;
+        private final long fileId;
+        private final File tmpFile;
+        private final FileChannel channel;
+        private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long count;
+        private boolean finished;
+
+        SegmentWriter(long sequence, long fileId) throws IOException {
+            this.sequence = sequence;
+            this.fileId = fileId;
+            this.tmpFile = new File(dir, SEGMENT_PREFIX + fileId + TMP_SUFFIX);
+            this.channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            // The header is written when the records count is known
+            writeBuffer.position(SEGMENT_HEADER_SIZE);
+        }
+
+        void append(long first, long second, long value) throws IOException {
+            if (writeBuffer.remaining() < RECORD_SIZE) {
+                flushBuffer();
+            }
+            writeBuffer.putLong(first).putLong(second).putLong(value);
+            count++;
+        }
+
+        /**
+         * @return the new segment, or null if no record was appended
+         */
+        Segment finish() throws IOException {
+            flushBuffer();
+            finished = true;
+            if (count == 0) {
+                channel.close();
+                Files.delete(tmpFile.toPath());
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putInt(CURRENT_VERSION).putLong(count).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.close();
+
+            File file = segmentFile(fileId);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return Segment.open(file, sequence, fileId);
+        }
+
+        private void flushBuffer() throws IOException {
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            writeBuffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Iterate over the visible records of a set of segments, in key order.
+     */
+    private static final class MergingIterator {
+        private final RangeDeletions deletions;
+        private final PriorityQueue<Cursor> queue;
+        private final boolean includeTombstones;
+        private final long lastFirst;
+        private final long lastSecond;
+        private final boolean bounded;
+
+        long first;
+        long second;
+        long value;
+
+        private long nextFirst;
+        private long nextSecond;
+        private long nextValue;
+        private boolean hasNext;
+
+        MergingIterator(State s, Segment[] segments, byte[] firstKey, byte[] lastKey, boolean includeTombstones) {
+            this.deletions = s.deletions;
+            this.includeTombstones = includeTombstones;
+            this.bounded = lastKey != null;
+            this.lastFirst = bounded ? ArrayUtil.getLong(lastKey, 0) : 0;
+            this.lastSecond = bounded ? ArrayUtil.getLong(lastKey, 8) : 0;
+
+            // For the same key, the record of the newest segment comes first
+            this.queue = new PriorityQueue<>(Math.max(1, segments.length), (a, b) -> {
+                int res = compare(a.first, a.second, b.first, b.second);
+                return res != 0 ? res : Long.compare(b.segment.sequence, a.segment.sequence);
+            });
+            for (Segment segment : segments) {
+                int idx = firstKey != null
+                        ? segment.lowerBound(ArrayUtil.getLong(firstKey, 0), ArrayUtil.getLong(firstKey, 8))
+                        : 0;
+                Cursor cursor = new Cursor(segment, idx);
+                if (cursor.valid()) {
+                    queue.add(cursor);
+                }
+            }
+            advance();
+        }
+
+        boolean hasNext() {
+            return hasNext;
+        }
+
+        void next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            advance();
+        }
+
+        // Make the staged record current, and stage the next visible record
+        private void advance() {
+            first = nextFirst;
+            second = nextSecond;
+            value = nextValue;
+            hasNext = false;
+
+            while (!queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                long f = cursor.first;
+                long s = cursor.second;
+                long v = cursor.segment.value(cursor.idx);
+                boolean deleted = deletions.find(f, s, cursor.segment.sequence) >= 0;
+                moveForward(cursor);
+
+                // Skip the older versions of the same key
+                while (!queue.isEmpty() && queue.peek().first == f && queue.peek().second == s) {
+                    moveForward(queue.poll());
+                }
+
+                if (bounded && compare(f, s, lastFirst, lastSecond) >= 0) {
+                    queue.clear();
+                    break;
+                }
+
+                if (deleted || (v == TOMBSTONE && !includeTombstones)) {
+                    continue;
+                }
+
+                nextFirst = f;
+                nextSecond = s;
+                nextValue = v;
+                hasNext = true;
+                break;
+            }
+        }
+
+        private void moveForward(Cursor cursor) {
+            cursor.idx++;
+            if (cursor.valid()) {
+                queue.add(cursor);
+            }
+        }
+
+        private static final class Cursor {
+            final Segment segment;
+            int idx;
+            long first;
+            long second;
+
+            Cursor(Segment segment, int idx) {
+                this.segment = segment;
+                this.idx = idx;
+            }
+
+            boolean valid() {
+                if (idx >= segment.size) {
+                    return false;
+                }
+                first = segment.first(idx);
+                second = segment.second(idx);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Immutable set of the deleted key ranges, sorted by the range begin key.
+     *
+     * <p>A range deletion applies to the records of the segments that are older than the deletion.
+     */
+    static final class RangeDeletions {
+        static final RangeDeletions EMPTY = new RangeDeletions(new long[0], new long[0], new long[0], new long[0],
+                new long[0]);
+
+        final long[] beginFirst;
+        final long[] beginSecond;
+        final long[] endFirst;
+        final long[] endSecond;
+        final long[] sequence;
+
+        // Biggest end key among the ranges up to each position, to stop the backward scan early
+        private final long[] maxEndFirst;
+        private final long[] maxEndSecond;
+
+        private RangeDeletions(long[] beginFirst, long[] beginSecond, long[] endFirst, long[] endSecond,
+                               long[] sequence) {
+            int size = beginFirst.length;
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(beginFirst[a], beginSecond[a], beginFirst[b], beginSecond[b]));
+
+            this.beginFirst = new long[size];
+            this.beginSecond = new long[size];
+            this.endFirst = new long[size];
+            this.endSecond = new long[size];
+            this.sequence = new long[size];
+            this.maxEndFirst = new long[size];
+            this.maxEndSecond = new long[size];
+            for (int i = 0; i < size; i++) {
+                int j = order[i];
+                this.beginFirst[i] = beginFirst[j];
+                this.beginSecond[i] = beginSecond[j];
+                this.endFirst[i] = endFirst[j];
+                this.endSecond[i] = endSecond[j];
+                this.sequence[i] = sequence[j];
+
+                if (i == 0 || compare(endFirst[j], endSecond[j], maxEndFirst[i - 1], maxEndSecond[i - 1]) > 0) {
+                    maxEndFirst[i] = endFirst[j];
+                    maxEndSecond[i] = endSecond[j];
+                } else {
+                    maxEndFirst[i] = maxEndFirst[i - 1];
+                    maxEndSecond[i] = maxEndSecond[i - 1];
+                }
+            }
+        }
+
+        int size() {
+            return beginFirst.length;
+        }
+
+        boolean isEmpty() {
+            return beginFirst.length == 0;
+        }
+
+        /**
+         * @return the position of a range deletion that covers the key of a record in a segment with the given
+         *         sequence, or -1 if the record is not deleted
+         */
+        int find(long first, long second, long segmentSequence) {
+            // Find the last range beginning before the key
+            int low = 0;
+            int high = beginFirst.length - 1;
+            int idx = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (compare(beginFirst[mid], beginSecond[mid], first, second) <= 0) {
+                    idx = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            for (int i = idx; i >= 0; i--) {
+                if (compare(maxEndFirst[i], maxEndSecond[i], first, second) <= 0) {
+                    // None of the preceding ranges reaches the key
+                    return -1;
+                }
+                if (sequence[i] > segmentSequence && compare(endFirst[i], endSecond[i], first, second) > 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        RangeDeletions with(Builder added, long addedSequence) {
+            Builder builder = new Builder();
+            long[] sequences = new long[size() + added.size()];
+            for (int i = 0; i < size(); i++) {
+                builder.add(beginFirst[i], beginSecond[i], endFirst[i], endSecond[i]);
+                sequences[i] = sequence[i];
+            }
+            for (int i = 0; i < added.size(); i++) {
+                builder.add(added.ranges[i * 4], added.ranges[i * 4 + 1], added.ranges[i * 4 + 2],
+                        added.ranges[i * 4 + 3]);
+                sequences[size() + i] = addedSequence;
+            }
+            return builder.build(sequences);
+        }
+
+        /**
+         * Drop the range deletions that don't apply to any of the segments anymore.
+         */
+        RangeDeletions prune(Segment[] segments) {
+            long oldestSequence = Long.MAX_VALUE;
+            for (Segment segment : segments) {
+                oldestSequence = Math.min(oldestSequence, segment.sequence);
+            }
+
+            Builder builder = new Builder();
+            long[] sequences = new long[size()];
+            int count = 0;
+            for (int i = 0; i < size(); i++) {
+                if (sequence[i] > oldestSequence) {
+                    builder.add(beginFirst[i], beginSecond[i], endFirst[i], endSecond[i]);
+                    sequences[count++] = sequence[i];
+                }
+            }
+
+            if (count == size()) {
+                return this;
+            }
+            return builder.build(Arrays.copyOf(sequences, count));
+        }
+
+        static final class Builder {
+            private long[] ranges = new long[16];
+            private int size;
+
+            void add(long beginFirst, long beginSecond, long endFirst, long endSecond) {
+                if ((size + 1) * 4 > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                }
+                ranges[size * 4] = beginFirst;
+                ranges[size * 4 + 1] = beginSecond;
+                ranges[size * 4 + 2] = endFirst;
+                ranges[size * 4 + 3] = endSecond;
+                size++;
+            }
+
+            int size() {
+                return size;
+            }
+
+            boolean isEmpty() {
+                return size == 0;
+            }
+
+            void clear() {
+                size = 0;
+            }
+
+            RangeDeletions build(long[] sequences) {
+                long[] bf = new long[size];
+                long[] bs = new long[size];
+                long[] ef = new long[size];
+                long[] es = new long[size];
+                for (int i = 0; i < size; i++) {
+                    bf[i] = ranges[i * 4];
+                    bs[i] = ranges[i * 4 + 1];
+                    ef[i] = ranges[i * 4 + 2];
+                    es[i] = ranges[i * 4 + 3];
+                }
+                return new RangeDeletions(bf, bs, ef, es, sequences);
+            }
+        }
+    }
+
+    /**
+     * Key of a pending single update.
+     */
+    private static final class PendingKey implements Comparable<PendingKey> {
+        final long first;
+        final long second;
+
+        PendingKey(long first, long second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public int compareTo(PendingKey other) {
+            return compare(first, second, other.first, other.second);
+        }
+    }
+
+    /**
+     * Batch that keeps the updates in heap until flushed.
+     */
+    private final class MappedFileBatch implements Batch {
+        // Records in groups of (first, second, value, position in batch)
+        private long[] records = new long[4 * 1024];
+        private int count;
+        private long position;
+        private final RangeDeletions.Builder deletions = new RangeDeletions.Builder();
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            checkKey(key);
+            checkArgument(value.length == VALUE_SIZE, "Only values of %s bytes are supported", VALUE_SIZE);
+            long location = ArrayUtil.getLong(value, 0);
+            checkArgument(location != TOMBSTONE, "Invalid value %s", location);
+            add(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8), location);
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            checkKey(key);
+            add(ArrayUtil.getLong(key, 0), ArrayUtil.getLong(key, 8), TOMBSTONE);
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            checkKey(beginKey);
+            checkKey(endKey);
+            long beginFirst = ArrayUtil.getLong(beginKey, 0);
+            long beginSecond = ArrayUtil.getLong(beginKey, 8);
+            long endFirst = ArrayUtil.getLong(endKey, 0);
+            long endSecond = ArrayUtil.getLong(endKey, 8);
+
+            // The updates already in the batch are deleted as well
+            int retained = 0;
+            for (int i = 0; i < count; i++) {
+                int src = i * 4;
+                boolean inRange = compare(records[src], records[src + 1], beginFirst, beginSecond) >= 0
+                        && compare(records[src], records[src + 1], endFirst, endSecond) < 0;
+                if (!inRange) {
+                    System.arraycopy(records, src, records, retained * 4, 4);
+                    retained++;
+                }
+            }
+            count = retained;
+
+            deletions.add(beginFirst, beginSecond, endFirst, endSecond);
+        }
+
+        private void add(long first, long second, long value) {
+            if ((count + 1) * 4 > records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            int idx = count * 4;
+            records[idx] = first;
+            records[idx + 1] = second;
+            records[idx + 2] = value;
+            records[idx + 3] = position++;
+            count++;
+        }
+
+        @Override
+        public void clear() {
+            count = 0;
+            position = 0;
+            deletions.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0 || !deletions.isEmpty()) {
+                writeBatch(records, count, deletions);
+            }
+            clear();
+        }
+
+        @Override
+        public int batchCount() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            clear();
+        }
+    }
+}
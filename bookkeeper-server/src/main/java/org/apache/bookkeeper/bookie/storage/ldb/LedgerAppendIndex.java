@@ -0,0 +1,236 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * Positions of the write cache entries, grouped per ledger in append order.
+ *
+ * <p>The entries of a ledger are normally appended with increasing entry ids, so the entries
+ * of each ledger are already sorted: iterating the ledgers by ledger id gives all the entries
+ * sorted by (ledgerId, entryId), sorting only the ledger ids instead of all the entries. The
+ * few ledgers whose entries were appended out of order, or more than once, are sorted on their
+ * own during the iteration.
+ *
+ * <p>The positions are stored in fixed size chunks, which are recycled with the per-ledger
+ * holders when the index is cleared, so that filling the write cache again doesn't allocate
+ * new memory. The pools keep as many of them as the last fill used, so the memory taken by an
+ * unusual fill, with many small ledgers for instance, is released by the next one.
+ */
+class LedgerAppendIndex {
+
+    /**
+     * Consumer of the position of an entry in the write cache.
+     */
+    interface EntryPositionConsumer {
+        void accept(long ledgerId, long entryId, long offset, long length) throws IOException;
+    }
+
+    private static final int CHUNK_ENTRIES = 256;
+    // Each entry is stored as (entryId, offset, length)
+    private static final int ENTRY_FIELDS = 3;
+
+    private final ConcurrentLongHashMap<LedgerEntries> ledgers = ConcurrentLongHashMap.<LedgerEntries>newBuilder()
+            .expectedItems(4096)
+            .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+            .build();
+
+    // Write cache index, holding the latest position of the entries appended more than once
+    private final ConcurrentLongLongPairHashMap entriesIndex;
+
+    // Recycled chunks and ledger holders, guarded by the index monitor
+    private final ArrayDeque<long[]> freeChunks = new ArrayDeque<>();
+    private final ArrayDeque<LedgerEntries> freeLedgers = new ArrayDeque<>();
+    // Chunks and ledger holders allocated since the last clear, guarded by the index monitor
+    private int chunksUsed;
+    private int ledgersUsed;
+    private final LongFunction<LedgerEntries> ledgerEntriesProvider = this::allocateLedgerEntries;
+
+    // Buffers reused across the iterations, which are done by a single thread at a time
+    private long[] sortedLedgerIds = new long[0];
+    private int sortedLedgersCount;
+    private long[] unorderedEntries = new long[0];
+
+    LedgerAppendIndex(ConcurrentLongLongPairHashMap entriesIndex) {
+        this.entriesIndex = entriesIndex;
+    }
+
+    void add(long ledgerId, long entryId, long offset, long length) {
+        LedgerEntries ledgerEntries = ledgers.get(ledgerId);
+        if (ledgerEntries == null) {
+            ledgerEntries = ledgers.computeIfAbsent(ledgerId, ledgerEntriesProvider);
+        }
+        ledgerEntries.add(entryId, offset, length);
+    }
+
+    /**
+     * Iterate over the positions of all the entries, sorted by (ledgerId, entryId), skipping the
+     * deleted ledgers. The index must not be modified during the iteration.
+     */
+    void forEach(ConcurrentLongHashSet deletedLedgers, EntryPositionConsumer consumer) throws IOException {
+        if (sortedLedgerIds.length < ledgers.size()) {
+            sortedLedgerIds = new long[(int) ledgers.size() * 2];
+        }
+
+        sortedLedgersCount = 0;
+        ledgers.forEach((ledgerId, ledgerEntries) -> {
+            if (!deletedLedgers.contains(ledgerId)) {
+                sortedLedgerIds[sortedLedgersCount++] = ledgerId;
+            }
+        });
+        Arrays.sort(sortedLedgerIds, 0, sortedLedgersCount);
+
+        for (int i = 0; i < sortedLedgersCount; i++) {
+            LedgerEntries ledgerEntries = ledgers.get(sortedLedgerIds[i]);
+            if (ledgerEntries.ordered) {
+                ledgerEntries.forEach(consumer);
+            } else {
+                forEachUnordered(ledgerEntries, consumer);
+            }
+        }
+    }
+
+    private void forEachUnordered(LedgerEntries ledgerEntries, EntryPositionConsumer consumer) throws IOException {
+        long ledgerId = ledgerEntries.ledgerId;
+        int arrayLen = ledgerEntries.count * 4;
+        if (unorderedEntries.length < arrayLen) {
+            unorderedEntries = new long[arrayLen * 2];
+        }
+
+        int idx = 0;
+        for (int i = 0; i < ledgerEntries.count; i++) {
+            long[] chunk = ledgerEntries.chunks[i / CHUNK_ENTRIES];
+            int pos = (i % CHUNK_ENTRIES) * ENTRY_FIELDS;
+            unorderedEntries[idx++] = ledgerId;
+            unorderedEntries[idx++] = chunk[pos];
+            unorderedEntries[idx++] = chunk[pos + 1];
+            unorderedEntries[idx++] = chunk[pos + 2];
+        }
+        ArrayGroupSort.sort(unorderedEntries, 0, arrayLen);
+
+        for (int i = 0; i < arrayLen; i += 4) {
+            long entryId = unorderedEntries[i + 1];
+            long offset = unorderedEntries[i + 2];
+            boolean duplicated = (i + 4 < arrayLen && unorderedEntries[i + 5] == entryId)
+                    || (i > 0 && unorderedEntries[i - 3] == entryId);
+            if (duplicated) {
+                // The entry was appended more than once, only keep the latest copy
+                LongPair latest = entriesIndex.get(ledgerId, entryId);
+                if (latest == null || latest.first != offset) {
+                    continue;
+                }
+            }
+            consumer.accept(ledgerId, entryId, offset, unorderedEntries[i + 3]);
+        }
+    }
+
+    void clear() {
+        synchronized (this) {
+            ledgers.forEach((ledgerId, ledgerEntries) -> ledgerEntries.recycle());
+            trimPool(freeChunks, chunksUsed);
+            trimPool(freeLedgers, ledgersUsed);
+            chunksUsed = 0;
+            ledgersUsed = 0;
+        }
+        ledgers.clear();
+    }
+
+    private static void trimPool(ArrayDeque<?> pool, int highWaterMark) {
+        while (pool.size() > highWaterMark) {
+            pool.poll();
+        }
+    }
+
+    private synchronized long[] allocateChunk() {
+        chunksUsed++;
+        long[] chunk = freeChunks.poll();
+        return chunk != null ? chunk : new long[CHUNK_ENTRIES * ENTRY_FIELDS];
+    }
+
+    private synchronized LedgerEntries allocateLedgerEntries(long ledgerId) {
+        ledgersUsed++;
+        LedgerEntries ledgerEntries = freeLedgers.poll();
+        if (ledgerEntries == null) {
+            ledgerEntries = new LedgerEntries();
+        }
+        ledgerEntries.ledgerId = ledgerId;
+        return ledgerEntries;
+    }
+
+    private final class LedgerEntries {
+        private long ledgerId;
+        private long[][] chunks = new long[1][];
+        private int count;
+        private long lastEntryId = -1;
+        private boolean ordered = true;
+
+        synchronized void add(long entryId, long offset, long length) {
+            int chunkIdx = count / CHUNK_ENTRIES;
+            int pos = (count % CHUNK_ENTRIES) * ENTRY_FIELDS;
+            if (pos == 0) {
+                if (chunkIdx == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                }
+                chunks[chunkIdx] = allocateChunk();
+            }
+
+            long[] chunk = chunks[chunkIdx];
+            chunk[pos] = entryId;
+            chunk[pos + 1] = offset;
+            chunk[pos + 2] = length;
+            count++;
+
+            if (entryId > lastEntryId) {
+                lastEntryId = entryId;
+            } else {
+                ordered = false;
+            }
+        }
+
+        void forEach(EntryPositionConsumer consumer) throws IOException {
+            for (int i = 0; i < count; i++) {
+                long[] chunk = chunks[i / CHUNK_ENTRIES];
+                int pos = (i % CHUNK_ENTRIES) * ENTRY_FIELDS;
+                consumer.accept(ledgerId, chunk[pos], chunk[pos + 1], chunk[pos + 2]);
+            }
+        }
+
+        // Called holding the index monitor
+        void recycle() {
+            for (int i = 0; i < chunks.length && chunks[i] != null; i++) {
+                freeChunks.add(chunks[i]);
+                chunks[i] = null;
+            }
+            count = 0;
+            lastEntryId = -1;
+            ordered = true;
+            freeLedgers.add(this);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -43,7 +44,6 @@ import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
-import org.apache.bookkeeper.util.BookKeeperConstants;
 import org.apache.bookkeeper.util.DiskChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -199,10 +199,13 @@ public class LedgersIndexRebuildOp {
     }
 
     private List<Journal> getJournals(ServerConfiguration conf) throws IOException {
-        List<Journal> journals = Lists.newArrayListWithCapacity(conf.getJournalDirs().length);
+        List<File> journalDirs = Journal.getStripeDirectories(
+                Arrays.asList(BookieImpl.getCurrentDirectories(conf.getJournalDirs())),
+                conf.getJournalStripesPerDirectory());
+        List<Journal> journals = Lists.newArrayListWithCapacity(journalDirs.size());
         int idx = 0;
-        for (File journalDir : conf.getJournalDirs()) {
-            journals.add(new Journal(idx++, new File(journalDir, BookKeeperConstants.CURRENT_DIR), conf,
+        for (File journalDir : journalDirs) {
+            journals.add(new Journal(idx++, journalDir, conf,
                     new LedgerDirsManager(conf, conf.getLedgerDirs(),
                             new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
         }
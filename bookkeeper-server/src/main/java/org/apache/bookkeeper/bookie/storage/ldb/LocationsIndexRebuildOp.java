@@ -88,8 +88,8 @@ public class LocationsIndexRebuildOp {
             Set<Long> activeLedgers = getActiveLedgers(conf, KeyValueStorageRocksDB.factory, iBasePath);
             LOG.info("Found {} active ledgers in ledger manager", activeLedgers.size());
 
-            KeyValueStorage newIndex = KeyValueStorageRocksDB.factory.newKeyValueStorage(iBasePath, "locations",
-                    DbConfigType.Default, conf);
+            KeyValueStorage newIndex = DbLedgerStorage.getEntryLocationIndexStorageFactory(conf)
+                    .newKeyValueStorage(iBasePath, "locations", DbConfigType.Default, conf);
 
             int totalEntryLogs = entryLogs.size();
             int completedEntryLogs = 0;
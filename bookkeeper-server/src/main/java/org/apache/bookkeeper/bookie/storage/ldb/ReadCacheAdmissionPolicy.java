@@ -0,0 +1,90 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+/**
+ * Policy that decides which entries are inserted in the {@link ReadCache}.
+ *
+ * <p>The read cache segments are always evicted in FIFO order. The policy sits in
+ * front of the segment ring and can reject entries that are unlikely to be read
+ * again, so that they don't push out of the cache the entries that are frequently
+ * accessed.
+ *
+ * <p>Implementations must be thread-safe and cheap, since they are invoked on every
+ * read cache operation.
+ */
+public interface ReadCacheAdmissionPolicy {
+
+    /**
+     * Policy that admits every entry, leaving the segment ring as a plain FIFO cache.
+     */
+    ReadCacheAdmissionPolicy ADMIT_ALL = new ReadCacheAdmissionPolicy() {
+        @Override
+        public void recordAccess(long ledgerId, long entryId) {
+        }
+
+        @Override
+        public boolean admit(long ledgerId, long entryId) {
+            return true;
+        }
+
+        @Override
+        public void recordEviction(long ledgerId, long entryId) {
+        }
+
+        @Override
+        public boolean needsEvictedEntries() {
+            return false;
+        }
+    };
+
+    /**
+     * Record a lookup of an entry in the read cache, regardless of whether it was found.
+     */
+    void recordAccess(long ledgerId, long entryId);
+
+    /**
+     * Decide whether an entry should be inserted in the read cache.
+     *
+     * @return true if the entry should be inserted, false if it should be discarded
+     */
+    boolean admit(long ledgerId, long entryId);
+
+    /**
+     * Record that an entry was evicted from the read cache because its segment was rolled over.
+     */
+    void recordEviction(long ledgerId, long entryId);
+
+    /**
+     * Record the number of entries evicted by a segment roll-over, before they are passed one by one to
+     * {@link #recordEviction(long, long)}, if the policy needs them.
+     */
+    default void recordEvictions(long count) {
+    }
+
+    /**
+     * Whether the policy needs each evicted entry passed to {@link #recordEviction(long, long)}. The read cache
+     * walks the index of the evicted segment, under its write lock, only for the policies that need it.
+     */
+    default boolean needsEvictedEntries() {
+        return true;
+    }
+}
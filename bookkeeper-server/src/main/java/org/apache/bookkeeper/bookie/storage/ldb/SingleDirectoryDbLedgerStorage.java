@@ -26,6 +26,7 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.protobuf.ByteString;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.buffer.ByteBuf;
@@ -35,19 +36,26 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.StampedLock;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
@@ -56,7 +64,9 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.CompactableLedgerStorage;
+import org.apache.bookkeeper.bookie.DefaultEntryLogger;
 import org.apache.bookkeeper.bookie.EntryLocation;
+import org.apache.bookkeeper.bookie.ForegroundLatencyMonitor;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.GarbageCollectorThread;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
@@ -78,7 +88,9 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.ThreadRegistry;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,21 +111,15 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final GarbageCollectorThread gcThread;
 
-    // Write cache where all new entries are inserted into
-    protected volatile WriteCache writeCache;
-
-    // Write cache that is used to swap with writeCache during flushes
-    protected volatile WriteCache writeCacheBeingFlushed;
+    // Write cache segments where all new entries are inserted into, flushed in background as they fill up
+    private final WriteCacheRing writeCacheRing;
 
     // Cache where we insert entries for speculative reading
-    private final ReadCache readCache;
-
-    private final StampedLock writeCacheRotationLock = new StampedLock();
+    private ReadCache readCache;
 
     protected final ReentrantLock flushMutex = new ReentrantLock();
 
     protected final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
 
     private static String dbStoragerExecutorName = "db-storage";
     private final ExecutorService executor = Executors.newSingleThreadExecutor(
@@ -123,6 +129,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
 
+    // Executor used for asynchronous read-ahead, null when read-ahead is done on the reading thread
+    private final ExecutorService readAheadExecutor;
+
+    // First entry id of the asynchronous read-ahead in progress for each ledger
+    private final ConcurrentLongLongHashMap pendingReadAheads;
+
+    // Executor used to flush the write cache in shards, null when the flush is done on the checkpoint thread
+    private final ExecutorService flushExecutor;
+    private final int flushShards;
+    // Shards can be appended concurrently only when every ledger is written to its own entry log
+    private final boolean parallelEntryLogAppend;
+    // Entry log locations of the entries of each flush shard, only accessed holding the flush mutex
+    private long[][] flushLocations;
+
     private final CopyOnWriteArrayList<LedgerDeletionListener> ledgerDeletionListeners = Lists
             .newCopyOnWriteArrayList();
 
@@ -133,12 +153,40 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final long readCacheMaxSize;
     private final int readAheadCacheBatchSize;
     private final long readAheadCacheBatchBytesSize;
+    private final boolean adaptiveReadAhead;
+    private final int readAheadCacheMaxBatchSize;
 
     private final long maxThrottleTimeNanos;
+    private final long maxBackpressureDelayNanos;
+    // Number of segments waiting to be flushed above which the writes are delayed
+    private final int backpressureThresholdSegments;
 
     private final DbLedgerStorageStats dbLedgerStorageStats;
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int DEFAULT_WRITE_CACHE_SEGMENTS = 2;
+    private static final long DEFAULT_WRITE_CACHE_MAX_BACKPRESSURE_DELAY_MICROS = 1000;
+
+    private static final int DEFAULT_READ_AHEAD_CACHE_ASYNC_THREADS = 0;
+    private static final int DEFAULT_FLUSH_THREADS = 1;
+    // More shards than threads, so that appending a shard overlaps with building the index of the previous ones
+    private static final int FLUSH_SHARDS_PER_THREAD = 4;
+    private static final int DEFAULT_READ_AHEAD_CACHE_ASYNC_MAX_PENDING = 1024;
+
+    // Max growth of the adaptive read-ahead batch, relative to the configured batch size
+    private static final int DEFAULT_READ_AHEAD_CACHE_MAX_BATCH_SIZE_FACTOR = 8;
+
+    // A single stripe keeps the original read cache implementation
+    private static final int DEFAULT_READ_AHEAD_CACHE_STRIPES = 1;
+
+    // Max number of entries looked up and read together from the entry logs when reading a batch of entries
+    private static final int LOCATIONS_LOOKUP_BATCH_SIZE = 64;
+
+    private static final String READ_CACHE_ADMISSION_POLICY_ALL = "all";
+    private static final String READ_CACHE_ADMISSION_POLICY_TINYLFU = "tinylfu";
+
+    // Average entry size assumed when sizing the frequency sketch of the read cache admission policy
+    private static final int READ_CACHE_ADMISSION_POLICY_ENTRY_SIZE = 1024;
 
     private final long maxReadAheadBytesSize;
 
@@ -173,27 +221,54 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("indexDir", indexBaseDir);
 
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        int writeCacheSegments = conf.getInt(DbLedgerStorage.WRITE_CACHE_SEGMENTS, DEFAULT_WRITE_CACHE_SEGMENTS);
+        this.writeCacheRing = new WriteCacheRing(allocator, writeCacheMaxSize, writeCacheSegments,
+                conf.getBoolean(DbLedgerStorage.WRITE_CACHE_LEDGER_ORDERED_INDEX, false),
+                this::triggerBackgroundFlush);
         this.singleLedgerDirs = conf.getLedgerDirs().length == 1;
 
         readCacheMaxSize = readCacheSize;
         this.readAheadCacheBatchSize = readAheadCacheBatchSize;
         this.readAheadCacheBatchBytesSize = readAheadCacheBatchBytesSize;
+        this.adaptiveReadAhead = conf.getBoolean(DbLedgerStorage.READ_AHEAD_CACHE_ADAPTIVE, false);
+        this.readAheadCacheMaxBatchSize = (int) DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.READ_AHEAD_CACHE_MAX_BATCH_SIZE,
+                (long) readAheadCacheBatchSize * DEFAULT_READ_AHEAD_CACHE_MAX_BATCH_SIZE_FACTOR);
 
         // Do not attempt to perform read-ahead more than half the total size of the cache
         maxReadAheadBytesSize = readCacheMaxSize / 2;
 
+        int readAheadThreads = conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_ASYNC_THREADS,
+                DEFAULT_READ_AHEAD_CACHE_ASYNC_THREADS);
+        if (readAheadThreads > 0) {
+            int maxPendingReadAheads = conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_ASYNC_MAX_PENDING,
+                    DEFAULT_READ_AHEAD_CACHE_ASYNC_MAX_PENDING);
+            readAheadExecutor = new ThreadPoolExecutor(readAheadThreads, readAheadThreads,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxPendingReadAheads),
+                    new DefaultThreadFactory("db-storage-readahead"));
+            pendingReadAheads = ConcurrentLongLongHashMap.newBuilder()
+                    .expectedItems(maxPendingReadAheads)
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                    .build();
+        } else {
+            readAheadExecutor = null;
+            pendingReadAheads = null;
+        }
+
         long maxThrottleTimeMillis = conf.getLong(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS,
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
-
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        // With 2 segments there is no room for a gradual backpressure, the writes are only throttled when
+        // both segments are full
+        maxBackpressureDelayNanos = writeCacheSegments > 2 ? TimeUnit.MICROSECONDS.toNanos(
+                conf.getLong(DbLedgerStorage.WRITE_CACHE_MAX_BACKPRESSURE_DELAY_MICROS,
+                        DEFAULT_WRITE_CACHE_MAX_BACKPRESSURE_DELAY_MICROS)) : 0;
+        backpressureThresholdSegments = (writeCacheSegments - 1) / 2;
 
         ledgerIndex = new LedgerMetadataIndex(conf,
                 KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
         entryLocationIndex = new EntryLocationIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+                DbLedgerStorage.getEntryLocationIndexStorageFactory(conf), indexBaseDir, ledgerIndexDirStatsLogger);
 
         transientLedgerInfoCache = ConcurrentLongHashMap.<TransientLedgerInfo>newBuilder()
                 .expectedItems(16 * 1024)
@@ -204,17 +279,39 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
 
         this.entryLogger = entryLogger;
+
+        int flushThreads = conf.getInt(DbLedgerStorage.FLUSH_THREADS, DEFAULT_FLUSH_THREADS);
+        if (flushThreads > 1) {
+            flushExecutor = Executors.newFixedThreadPool(flushThreads, new DefaultThreadFactory("db-storage-flush"));
+            flushShards = flushThreads * FLUSH_SHARDS_PER_THREAD;
+            parallelEntryLogAppend = conf.isEntryLogPerLedgerEnabled() && entryLogger instanceof DefaultEntryLogger;
+        } else {
+            flushExecutor = null;
+            flushShards = 1;
+            parallelEntryLogAppend = false;
+        }
+
         gcThread = new GarbageCollectorThread(conf,
                 ledgerManager, ledgerDirsManager, this, entryLogger, ledgerIndexDirStatsLogger);
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             ledgerIndexDirStatsLogger,
-            () -> writeCache.size() + writeCacheBeingFlushed.size(),
-            () -> writeCache.count() + writeCacheBeingFlushed.count(),
+            () -> writeCacheRing.size(),
+            () -> writeCacheRing.count(),
             () -> readCache.size(),
             () -> readCache.count()
         );
 
+        ReadCacheAdmissionPolicy readCacheAdmissionPolicy = new InstrumentedReadCacheAdmissionPolicy(
+                newReadCacheAdmissionPolicy(conf, readCacheMaxSize), dbLedgerStorageStats);
+        int readCacheStripes = conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_STRIPES,
+                DEFAULT_READ_AHEAD_CACHE_STRIPES);
+        if (readCacheStripes > 1) {
+            readCache = new StripedReadCache(allocator, readCacheMaxSize, readCacheStripes, readCacheAdmissionPolicy);
+        } else {
+            readCache = new DefaultReadCache(allocator, readCacheMaxSize, readCacheAdmissionPolicy);
+        }
+
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
 
         executor.submit(() -> {
@@ -230,6 +327,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    private static ReadCacheAdmissionPolicy newReadCacheAdmissionPolicy(ServerConfiguration conf,
+                                                                        long readCacheMaxSize) {
+        String policy = conf.getString(DbLedgerStorage.READ_AHEAD_CACHE_ADMISSION_POLICY,
+                READ_CACHE_ADMISSION_POLICY_ALL);
+        if (READ_CACHE_ADMISSION_POLICY_TINYLFU.equalsIgnoreCase(policy)) {
+            int expectedEntries = (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1, readCacheMaxSize / READ_CACHE_ADMISSION_POLICY_ENTRY_SIZE));
+            log.info("Using TinyLFU read cache admission policy, sized for {} entries", expectedEntries);
+            return new TinyLfuAdmissionPolicy(expectedEntries);
+        } else if (READ_CACHE_ADMISSION_POLICY_ALL.equalsIgnoreCase(policy)) {
+            return ReadCacheAdmissionPolicy.ADMIT_ALL;
+        } else {
+            throw new IllegalArgumentException("Unknown read cache admission policy: " + policy);
+        }
+    }
+
     @Override
     public void initialize(ServerConfiguration conf, LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
             LedgerDirsManager indexDirsManager, StatsLogger statsLogger,
@@ -247,6 +360,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     @Override
     public void setCheckpointer(Checkpointer checkpointer) { }
 
+    @Override
+    public void setForegroundLatencyMonitor(ForegroundLatencyMonitor foregroundLatencyMonitor) {
+        gcThread.setForegroundLatencyMonitor(foregroundLatencyMonitor);
+    }
+
     /**
      * Evict all the ledger info object that were not used recently.
      */
@@ -339,6 +457,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             flush();
 
             gcThread.shutdown();
+            if (flushExecutor != null) {
+                flushExecutor.shutdown();
+                flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdownNow();
+                readAheadExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
             entryLogger.close();
 
             cleanupExecutor.shutdown();
@@ -347,8 +473,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             ledgerIndex.close();
             entryLocationIndex.close();
 
-            writeCache.close();
-            writeCacheBeingFlushed.close();
+            writeCacheRing.close();
             readCache.close();
             executor.shutdown();
 
@@ -377,25 +502,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return false;
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
-            }
-        }
-
-        boolean inCache = localWriteCache.hasEntry(ledgerId, entryId)
-             || localWriteCacheBeingFlushed.hasEntry(ledgerId, entryId)
+        // Recent entries could be found in any of the write cache segments not yet flushed
+        boolean inCache = writeCacheRing.hasEntry(ledgerId, entryId)
              || readCache.hasEntry(ledgerId, entryId);
 
         if (inCache) {
@@ -474,26 +582,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             log.debug("Add entry. {}@{}, lac = {}", ledgerId, entryId, lac);
         }
 
-        // First we try to do an optimistic locking to get access to the current write cache.
-        // This is based on the fact that the write cache is only being rotated (swapped) every 1 minute. During the
-        // rest of the time, we can have multiple thread using the optimistic lock here without interfering.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        boolean inserted = false;
-
-        inserted = writeCache.put(ledgerId, entryId, entry);
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // The write cache was rotated while we were inserting. We need to acquire the proper read lock and repeat
-            // the operation because we might have inserted in a write cache that was already being flushed and cleared,
-            // without being sure about this last entry being flushed or not.
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                inserted = writeCache.put(ledgerId, entryId, entry);
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
-            }
-        }
+        applyWriteCacheBackpressure();
 
-        if (!inserted) {
+        if (!writeCacheRing.put(ledgerId, entryId, entry)) {
             triggerFlushAndAddEntry(ledgerId, entryId, entry);
         }
 
@@ -511,33 +602,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
 
         while (System.nanoTime() < absoluteTimeoutNanos) {
-            // Write cache is full, we need to trigger a flush so that it gets rotated
-            // If the flush has already been triggered or flush has already switched the
-            // cache, we don't need to trigger another flush
-            if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
-                // Trigger an early flush in background
-                log.info("Write cache is full, triggering flush");
-                executor.execute(() -> {
-                        long startTime = System.nanoTime();
-                        try {
-                            flush();
-                        } catch (IOException e) {
-                            log.error("Error during flush", e);
-                        } finally {
-                            flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        }
-                    });
-            }
+            // All the write cache segments are full, make sure they're being flushed so that
+            // they can be reused
+            triggerBackgroundFlush();
 
-            long stamp = writeCacheRotationLock.readLock();
-            try {
-                if (writeCache.put(ledgerId, entryId, entry)) {
-                    // We succeeded in putting the entry in write cache in the
-                    recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
-                    return;
-                }
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
+            if (writeCacheRing.put(ledgerId, entryId, entry)) {
+                // We succeeded in putting the entry in write cache in the
+                recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
+                return;
             }
 
             // Wait some time and try again
@@ -555,6 +627,53 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         throw new OperationRejectedException();
     }
 
+    /**
+     * Delay the write in proportion to the number of write cache segments waiting to be flushed, once more than
+     * half of them are, so that the writers slow down gradually instead of being blocked when the write cache is
+     * full.
+     */
+    private void applyWriteCacheBackpressure() {
+        if (maxBackpressureDelayNanos <= 0) {
+            return;
+        }
+
+        int pendingSegments = writeCacheRing.getPendingFlushSegments();
+        if (pendingSegments <= backpressureThresholdSegments) {
+            return;
+        }
+
+        int maxPendingSegments = writeCacheRing.getSegmentsCount() - 1;
+        long delayNanos = maxBackpressureDelayNanos * (pendingSegments - backpressureThresholdSegments)
+                / (maxPendingSegments - backpressureThresholdSegments);
+        long startTime = MathUtils.nowInNano();
+        LockSupport.parkNanos(delayNanos);
+        recordSuccessfulEvent(dbLedgerStorageStats.getWriteCacheBackpressureStats(), startTime);
+    }
+
+    /**
+     * Flush the sealed write cache segments in background, unless a background flush is already pending.
+     */
+    private void triggerBackgroundFlush() {
+        if (hasFlushBeenTriggered.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                long startTime = System.nanoTime();
+                // Allow the flush to be triggered again for the segments sealed from now on
+                hasFlushBeenTriggered.set(false);
+                flushMutex.lock();
+                try {
+                    while (flushOldestWriteCacheSegment()) {
+                        // Flush until there are no more sealed segments
+                    }
+                } catch (IOException e) {
+                    log.error("Error during flush", e);
+                } finally {
+                    flushMutex.unlock();
+                    flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                }
+            });
+        }
+    }
+
     @Override
     public ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException {
         long startTime = MathUtils.nowInNano();
@@ -577,32 +696,113 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
+        ByteBuf entry = getCachedEntry(ledgerId, entryId);
+        if (entry != null) {
+            return entry;
+        }
+
+        // Read from main storage
+        long entryLocation;
+        long locationIndexStartNano = MathUtils.nowInNano();
+        try {
+            entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
+            if (entryLocation == 0) {
+                // Only a negative result while in limbo equates to unknown
+                throwIfLimbo(ledgerId);
+
+                throw new NoEntryException(ledgerId, entryId);
             }
+        } finally {
+            dbLedgerStorageStats.getReadFromLocationIndexTime().addLatency(
+                    MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
         }
 
-        // First try to read from the write cache of recent entries
-        ByteBuf entry = localWriteCache.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
+        entry = readFromEntryLog(ledgerId, entryId, entryLocation);
+        readCache.put(ledgerId, entryId, entry);
+
+        // Try to read more entries
+        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+        readAhead(ledgerId, entryId, nextEntryLocation);
+
+        return entry;
+    }
+
+    /**
+     * Read consecutive entries, looking up in batch the locations of the entries that are not cached.
+     *
+     * <p>The entries read for the batch are not inserted in the read cache and don't trigger a read-ahead, since
+     * the reader is already getting the following entries.
+     */
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        List<ByteBuf> entries = new ArrayList<>();
+        if (firstEntryId < 0 || maxCount <= 1) {
+            entries.add(getEntry(ledgerId, firstEntryId));
+            return entries;
         }
 
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
+        long startTime = MathUtils.nowInNano();
+        long size = 0;
+        // Entries read together from the entry log, ahead of the current one
+        List<ByteBuf> readEntries = Collections.emptyList();
+        int readEntriesIdx = 0;
+        try {
+            for (long entryId = firstEntryId; entries.size() < maxCount && size < maxSize; entryId++) {
+                ByteBuf entry;
+                if (readEntriesIdx < readEntries.size()) {
+                    entry = readEntries.get(readEntriesIdx++);
+                } else {
+                    try {
+                        entry = getCachedEntry(ledgerId, entryId);
+                        if (entry == null) {
+                            readEntries = readEntriesFromEntryLog(ledgerId, entryId,
+                                    Math.min(maxCount - entries.size(), LOCATIONS_LOOKUP_BATCH_SIZE));
+                            readEntriesIdx = 0;
+                            if (readEntries.isEmpty()) {
+                                if (entries.isEmpty()) {
+                                    // Only a negative result while in limbo equates to unknown
+                                    throwIfLimbo(ledgerId);
+
+                                    throw new NoEntryException(ledgerId, entryId);
+                                }
+                                break;
+                            }
+                            entry = readEntries.get(readEntriesIdx++);
+                        }
+                    } catch (IOException | BookieException e) {
+                        if (entries.isEmpty()) {
+                            throw e;
+                        }
+                        // Return the entries read so far
+                        break;
+                    }
+                }
+
+                entries.add(entry);
+                size += entry.readableBytes();
+            }
+
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            return entries;
+        } catch (IOException e) {
+            recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            throw e;
+        } finally {
+            for (int i = readEntriesIdx; i < readEntries.size(); i++) {
+                ReferenceCountUtil.release(readEntries.get(i));
+            }
+        }
+    }
+
+    /**
+     * Get the entry from the write cache segments, where it might also be waiting to be flushed, or from the
+     * read cache.
+     *
+     * @return the entry, or null if it's not cached
+     */
+    private ByteBuf getCachedEntry(long ledgerId, long entryId) {
+        ByteBuf entry = writeCacheRing.get(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getWriteCacheHitCounter().inc();
             return entry;
@@ -610,49 +810,139 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         dbLedgerStorageStats.getWriteCacheMissCounter().inc();
 
-        // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getReadCacheHitCounter().inc();
+            if (adaptiveReadAhead) {
+                // A ledger with no info has no read-ahead history to record the hit against, so don't create
+                // one on the hot path
+                TransientLedgerInfo ledgerInfo = transientLedgerInfoCache.get(ledgerId);
+                if (ledgerInfo != null && ledgerInfo.recordCachedRead(entryId)) {
+                    dbLedgerStorageStats.getReadAheadConsumedEntriesCounter().inc();
+                }
+            }
             return entry;
         }
 
         dbLedgerStorageStats.getReadCacheMissCounter().inc();
+        return null;
+    }
 
-        // Read from main storage
-        long entryLocation;
+    /**
+     * Read up to {@code count} consecutive entries from the entry logs, looking up their locations in batch and
+     * reading the entries stored back-to-back together.
+     *
+     * @return the entries read, stopping at the first entry that is not found
+     */
+    private List<ByteBuf> readEntriesFromEntryLog(long ledgerId, long firstEntryId, int count) throws IOException {
+        long[] locations;
         long locationIndexStartNano = MathUtils.nowInNano();
         try {
-            entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
-            if (entryLocation == 0) {
-                // Only a negative result while in limbo equates to unknown
-                throwIfLimbo(ledgerId);
-
-                throw new NoEntryException(ledgerId, entryId);
-            }
+            locations = entryLocationIndex.getLocations(ledgerId, firstEntryId, count);
         } finally {
             dbLedgerStorageStats.getReadFromLocationIndexTime().addLatency(
                     MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
         }
 
+        int found = 0;
+        while (found < locations.length && locations[found] != 0) {
+            found++;
+        }
+        if (found == 0) {
+            return Collections.emptyList();
+        }
+
         long readEntryStartNano = MathUtils.nowInNano();
         try {
-            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+            return entryLogger.readEntries(ledgerId, firstEntryId, Arrays.copyOf(locations, found));
         } finally {
             dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
                     MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
         }
+    }
 
-        readCache.put(ledgerId, entryId, entry);
+    private ByteBuf readFromEntryLog(long ledgerId, long entryId, long entryLocation) throws IOException {
+        long readEntryStartNano = MathUtils.nowInNano();
+        try {
+            return entryLogger.readEntry(ledgerId, entryId, entryLocation);
+        } finally {
+            dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
+                    MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+        }
+    }
 
-        // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+    private void readAhead(long ledgerId, long entryId, long nextEntryLocation) {
+        TransientLedgerInfo ledgerInfo;
+        int batchSize;
+        long batchBytesSize;
+        if (adaptiveReadAhead) {
+            ledgerInfo = getOrAddLedgerInfo(ledgerId);
+            batchSize = ledgerInfo.nextReadAheadBatchSize(entryId, readAheadCacheBatchSize,
+                    readAheadCacheMaxBatchSize, dbLedgerStorageStats.getReadAheadEfficiencyStats());
+            if (batchSize <= 0) {
+                return;
+            }
 
-        return entry;
+            // Scale the bytes limit along with the entries limit
+            batchBytesSize = readAheadCacheBatchBytesSize > 0 && readAheadCacheBatchSize > 0
+                    ? readAheadCacheBatchBytesSize * batchSize / readAheadCacheBatchSize
+                    : readAheadCacheBatchBytesSize;
+        } else {
+            ledgerInfo = null;
+            batchSize = readAheadCacheBatchSize;
+            batchBytesSize = readAheadCacheBatchBytesSize;
+        }
+
+        long firstEntryId = entryId + 1;
+        if (readAheadExecutor == null) {
+            int count = fillReadAheadCache(ledgerId, firstEntryId, nextEntryLocation, batchSize, batchBytesSize);
+            recordReadAhead(ledgerInfo, firstEntryId, count);
+            return;
+        }
+
+        // Coalesce with a read-ahead of the same ledger that is already going to prefetch this entry
+        long pendingFirstEntryId = pendingReadAheads.putIfAbsent(ledgerId, firstEntryId);
+        boolean tracked = pendingFirstEntryId < 0;
+        if (!tracked && firstEntryId >= pendingFirstEntryId && firstEntryId < pendingFirstEntryId + batchSize) {
+            dbLedgerStorageStats.getReadAheadCoalescedCounter().inc();
+            return;
+        }
+
+        try {
+            readAheadExecutor.execute(() -> {
+                try {
+                    int count = fillReadAheadCache(ledgerId, firstEntryId, nextEntryLocation, batchSize,
+                            batchBytesSize);
+                    recordReadAhead(ledgerInfo, firstEntryId, count);
+                } finally {
+                    if (tracked) {
+                        pendingReadAheads.remove(ledgerId, firstEntryId);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many pending read-ahead, the entries will be read on demand
+            if (tracked) {
+                pendingReadAheads.remove(ledgerId, firstEntryId);
+            }
+            dbLedgerStorageStats.getReadAheadRejectedCounter().inc();
+        }
     }
 
-    private void fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation) {
+    private void recordReadAhead(TransientLedgerInfo ledgerInfo, long firstEntryId, int count) {
+        if (ledgerInfo != null) {
+            ledgerInfo.recordReadAhead(firstEntryId, count);
+            dbLedgerStorageStats.getReadAheadPrefetchedEntriesCounter().addCount(count);
+        }
+    }
+
+    /**
+     * Read the entries following the given location in the entry log and insert them in the read cache.
+     *
+     * @return the number of entries inserted in the read cache
+     */
+    private int fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation,
+                                   int batchSize, long batchBytesSize) {
         long readAheadStartNano = MathUtils.nowInNano();
         int count = 0;
         long size = 0;
@@ -662,7 +952,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
 
-            while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
+            while (chargeReadAheadCache(count, size, batchSize, batchBytesSize)
+                    && currentEntryLogId == firstEntryLogId) {
                 ByteBuf entry = entryLogger.readEntry(orginalLedgerId,
                         firstEntryId, currentEntryLocation);
 
@@ -688,6 +979,25 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     ReferenceCountUtil.release(entry);
                 }
             }
+
+            if (chargeReadAheadCache(count, size, batchSize, batchBytesSize)) {
+                // The following entries are not contiguous in the entry log, look up their locations in batch and
+                // read the ones stored close to each other together
+                List<ByteBuf> entries = readEntriesFromEntryLog(orginalLedgerId, firstEntryId, batchSize - count);
+                for (ByteBuf entry : entries) {
+                    try {
+                        if (chargeReadAheadCache(count, size, batchSize, batchBytesSize)) {
+                            readCache.put(orginalLedgerId, firstEntryId, entry);
+
+                            count++;
+                            firstEntryId++;
+                            size += entry.readableBytes();
+                        }
+                    } finally {
+                        ReferenceCountUtil.release(entry);
+                    }
+                }
+            }
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Exception during read ahead for ledger: {}: e", orginalLedgerId, e);
@@ -698,15 +1008,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             dbLedgerStorageStats.getReadAheadTime().addLatency(
                     MathUtils.elapsedNanos(readAheadStartNano), TimeUnit.NANOSECONDS);
         }
+        return count;
     }
 
     protected boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes) {
+        return chargeReadAheadCache(currentReadAheadCount, currentReadAheadBytes, readAheadCacheBatchSize,
+                readAheadCacheBatchBytesSize);
+    }
+
+    private boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes,
+                                         int batchSize, long batchBytesSize) {
         // compatible with old logic
-        boolean chargeSizeCondition = currentReadAheadCount < readAheadCacheBatchSize
+        boolean chargeSizeCondition = currentReadAheadCount < batchSize
                 && currentReadAheadBytes < maxReadAheadBytesSize;
-        if (chargeSizeCondition && readAheadCacheBatchBytesSize > 0) {
+        if (chargeSizeCondition && batchBytesSize > 0) {
             // exact limits limit the size and count for each batch
-            chargeSizeCondition = currentReadAheadBytes < readAheadCacheBatchBytesSize;
+            chargeSizeCondition = currentReadAheadBytes < batchBytesSize;
         }
         return chargeSizeCondition;
     }
@@ -714,42 +1031,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     public ByteBuf getLastEntry(long ledgerId) throws IOException, BookieException {
         throwIfLimbo(ledgerId);
 
-        long stamp = writeCacheRotationLock.readLock();
-        try {
-            // First try to read from the write cache of recent entries
-            ByteBuf entry = writeCache.getLastEntry(ledgerId);
-            if (entry != null) {
+        // First try to read from the write cache segments of recent entries
+        ByteBuf entry = writeCacheRing.getLastEntry(ledgerId);
+        if (entry != null) {
+            if (log.isDebugEnabled()) {
+                long foundLedgerId = entry.readLong(); // ledgedId
+                long entryId = entry.readLong();
+                entry.resetReaderIndex();
                 if (log.isDebugEnabled()) {
-                    long foundLedgerId = entry.readLong(); // ledgedId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache: {}@{}", ledgerId, foundLedgerId,
-                                entryId);
-                    }
+                    log.debug("Found last entry for ledger {} in write cache: {}@{}", ledgerId, foundLedgerId,
+                            entryId);
                 }
-
-                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-                return entry;
             }
 
-            // If there's a flush going on, the entry might be in the flush buffer
-            entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
-            if (entry != null) {
-                if (log.isDebugEnabled()) {
-                    entry.readLong(); // ledgedId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId, entryId);
-                    }
-                }
-
-                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-                return entry;
-            }
-        } finally {
-            writeCacheRotationLock.unlockRead(stamp);
+            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+            return entry;
         }
 
         dbLedgerStorageStats.getWriteCacheMissCounter().inc();
@@ -774,12 +1070,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     @VisibleForTesting
     boolean isFlushRequired() {
-        long stamp = writeCacheRotationLock.readLock();
-        try {
-            return !writeCache.isEmpty();
-        } finally {
-            writeCacheRotationLock.unlockRead(stamp);
-        }
+        return !writeCacheRing.isEmpty();
     }
 
     @Override
@@ -801,39 +1092,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         try {
-            if (writeCache.isEmpty()) {
-                return;
-            }
-            // Swap the write cache so that writes can continue to happen while the flush is
-            // ongoing
-            swapWriteCache();
-
-            long sizeToFlush = writeCacheBeingFlushed.size();
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing entries. count: {} -- size {} Mb", writeCacheBeingFlushed.count(),
-                        sizeToFlush / 1024.0 / 1024);
+            // Seal the active segment so that all the entries added so far can be flushed
+            long sealedSequence;
+            while ((sealedSequence = writeCacheRing.sealActiveSegment()) < 0) {
+                // All the other segments are waiting to be flushed, make room for the active one
+                flushOldestWriteCacheSegment();
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            // The segments flushed in background are in the entry log and location index already, but the
+            // ledger index still needs to be flushed before the checkpoint can be marked complete
+            while (writeCacheRing.getFlushedSequence() < sealedSequence) {
+                flushOldestWriteCacheSegment();
             }
 
             long ledgerIndexStartTime = MathUtils.nowInNano();
@@ -842,18 +1111,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             lastCheckpoint = thisCheckpoint;
 
-            // Discard all the entry from the write cache, since they're now persisted
-            writeCacheBeingFlushed.clear();
-
-            double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
-            double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
-
             if (log.isDebugEnabled()) {
-                log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
+                log.debug("Flushing done time {} s",
+                        MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1));
             }
 
             recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
-            dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
         } catch (IOException e) {
             recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
             // Leave IOExecption as it is
@@ -874,8 +1137,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                         log.warn("Failed to cleanup db indexes", t);
                     }
                 });
-
-                isFlushOngoing.set(false);
             } finally {
                 flushMutex.unlock();
             }
@@ -883,28 +1144,172 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     }
 
     /**
-     * Swap the current write cache with the replacement cache.
+     * Flush the oldest sealed write cache segment into the entry log and the location index, and release it.
+     * Must be called holding the flush mutex.
+     *
+     * @return false if there was no sealed segment to flush
      */
-    private void swapWriteCache() {
-        long stamp = writeCacheRotationLock.writeLock();
-        try {
-            // First, swap the current write-cache map with an empty one so that writes will
-            // go on unaffected. Only a single flush is happening at the same time
-            WriteCache tmp = writeCacheBeingFlushed;
-            writeCacheBeingFlushed = writeCache;
-            writeCache = tmp;
-
-            // since the cache is switched, we can allow flush to be triggered
-            hasFlushBeenTriggered.set(false);
-        } finally {
+    private boolean flushOldestWriteCacheSegment() throws IOException {
+        WriteCache segment = writeCacheRing.beginFlush();
+        if (segment == null) {
+            return false;
+        }
+
+        long startTime = MathUtils.nowInNano();
+        long sizeToFlush = segment.size();
+        if (log.isDebugEnabled()) {
+            log.debug("Flushing entries. count: {} -- size {} Mb", segment.count(),
+                    sizeToFlush / 1024.0 / 1024);
+        }
+
+        // Write all the pending entries into the entry logger and collect the offset
+        // position for each entry
+
+        List<Batch> batches;
+        if (flushExecutor != null) {
+            batches = flushWriteCacheInShards(segment);
+        } else {
+            Batch batch = entryLocationIndex.newBatch(entryLogger::flush);
+            segment.forEach((ledgerId, entryId, entry) -> {
+                long location = entryLogger.addEntry(ledgerId, entry);
+                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+            });
+            batches = Collections.singletonList(batch);
+        }
+
+        long entryLoggerStart = MathUtils.nowInNano();
+        entryLogger.flush();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+
+        long batchFlushStartTime = MathUtils.nowInNano();
+        for (Batch batch : batches) {
+            batch.flush();
+            batch.close();
+        }
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+        if (log.isDebugEnabled()) {
+            log.debug("DB batch flushed time : {} s",
+                    MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // Discard all the entry from the write cache segment, since they're now persisted
+        writeCacheRing.endFlush();
+
+        if (log.isDebugEnabled()) {
+            double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+            log.debug("Write cache segment flushed time {} s -- Written {} MB/s", flushTimeSeconds,
+                    sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds);
+        }
+        dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
+        return true;
+    }
+
+    /**
+     * Append the entries of the write cache to the entry log and build the location index batches,
+     * splitting the work in shards of whole ledgers. The entries of each ledger are still appended
+     * in order, one after the other.
+     *
+     * <p>When every ledger has its own entry log, the shards are appended in parallel. Otherwise the
+     * shards are appended one after the other by the calling thread, while the index batches of the
+     * shards already appended are built in background.
+     *
+     * @return the location index batches, to be flushed after the entry log
+     */
+    private List<Batch> flushWriteCacheInShards(WriteCache cache) throws IOException {
+        long sortStartTime = MathUtils.nowInNano();
+        try (WriteCache.SortedShards shards = cache.sortInShards(flushShards, flushExecutor)) {
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushSortStats(), sortStartTime);
+
+            int shardsCount = shards.count();
+            if (flushLocations == null || flushLocations.length != shardsCount) {
+                flushLocations = new long[shardsCount][];
+            }
+            for (int i = 0; i < shardsCount; i++) {
+                if (flushLocations[i] == null || flushLocations[i].length < shards.size(i)) {
+                    flushLocations[i] = new long[shards.size(i) * 2];
+                }
+            }
+
+            Batch[] batches = new Batch[shardsCount];
+            List<Future<?>> tasks = new ArrayList<>(shardsCount);
+            Throwable failure = null;
             try {
-                isFlushOngoing.set(true);
-            } finally {
-                writeCacheRotationLock.unlockWrite(stamp);
+                for (int i = 0; i < shardsCount; i++) {
+                    final int shard = i;
+                    if (parallelEntryLogAppend) {
+                        tasks.add(flushExecutor.submit(() -> {
+                            appendShard(shards, shard);
+                            batches[shard] = buildShardIndexBatch(shards, shard);
+                            return null;
+                        }));
+                    } else {
+                        appendShard(shards, shard);
+                        tasks.add(flushExecutor.submit(() -> {
+                            batches[shard] = buildShardIndexBatch(shards, shard);
+                            return null;
+                        }));
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            // Always wait for all the submitted tasks, since they're using the write cache content
+            for (Future<?> task : tasks) {
+                try {
+                    Uninterruptibles.getUninterruptibly(task);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
             }
+
+            if (failure != null) {
+                for (Batch batch : batches) {
+                    if (batch != null) {
+                        batch.close();
+                    }
+                }
+
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                throw new IOException("Failed to flush the write cache", failure);
+            }
+
+            return Arrays.asList(batches);
         }
     }
 
+    private void appendShard(WriteCache.SortedShards shards, int shard) throws IOException {
+        long startTime = MathUtils.nowInNano();
+        long[] locations = flushLocations[shard];
+        MutableInt idx = new MutableInt();
+        shards.forEach(shard, (ledgerId, entryId, entry) -> {
+            locations[idx.intValue()] = entryLogger.addEntry(ledgerId, entry);
+            idx.increment();
+        });
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogAppendStats(), startTime);
+    }
+
+    private Batch buildShardIndexBatch(WriteCache.SortedShards shards, int shard) throws IOException {
+        long startTime = MathUtils.nowInNano();
+        long[] locations = flushLocations[shard];
+        Batch batch = entryLocationIndex.newBatch(entryLogger::flush);
+        try {
+            for (int i = 0; i < shards.size(shard); i++) {
+                entryLocationIndex.addLocation(batch, shards.ledgerId(shard, i), shards.entryId(shard, i),
+                        locations[i]);
+            }
+        } catch (IOException | RuntimeException e) {
+            batch.close();
+            throw e;
+        }
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexBuildStats(), startTime);
+        return batch;
+    }
+
     @Override
     public void flush() throws IOException {
         Checkpoint cp = checkpointSource.newCheckpoint();
@@ -921,12 +1326,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         // Delete entries from this ledger that are still in the write cache
-        long stamp = writeCacheRotationLock.readLock();
-        try {
-            writeCache.deleteLedger(ledgerId);
-        } finally {
-            writeCacheRotationLock.unlockRead(stamp);
-        }
+        writeCacheRing.deleteLedger(ledgerId);
 
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
@@ -967,6 +1367,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // flush operation to be completed before updating the index with the compacted
         // entries, by blocking on the flushMutex.
         flushMutex.lock();
+        if (entryLocationIndex.isRangeEncoding()) {
+            // With range encoding, the entries being flushed and the compacted entries might
+            // share the same range record, which is read, updated and written back by both.
+            // The flush mutex is kept locked so that none of the updates is lost.
+            try {
+                entryLocationIndex.updateLocations(locations);
+            } finally {
+                flushMutex.unlock();
+            }
+            return;
+        }
         flushMutex.unlock();
 
         // We don't need to keep the flush mutex locked here while updating the DB.
@@ -0,0 +1,315 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.bookkeeper.bookie.storage.ldb.WriteCache.align64;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read cache implementation that is partitioned in multiple independent stripes.
+ *
+ * <p>Each ledger is assigned to a single stripe, based on the ledger id. Every
+ * stripe has its own ring of segments, its own per-segment indexes and its own
+ * lock, so that inserting entries or rolling over a segment in one stripe does
+ * not interfere with the operations on the other stripes.
+ *
+ * <p>Lookups never take the stripe lock. Each segment is read optimistically and the
+ * read is validated against the lock of that segment, whose write lock is only held
+ * while the segment is cleared by a roll-over. A lookup that overlaps with the clear
+ * treats the segment as already evicted, so readers never wait for a roll-over.
+ */
+public class StripedReadCache implements ReadCache {
+    private static final Logger log = LoggerFactory.getLogger(StripedReadCache.class);
+
+    private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+
+    private final Stripe[] stripes;
+    private final ByteBufAllocator allocator;
+    private final ReadCacheAdmissionPolicy admissionPolicy;
+
+    public StripedReadCache(ByteBufAllocator allocator, long maxCacheSize, int stripesCount) {
+        this(allocator, maxCacheSize, stripesCount, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    public StripedReadCache(ByteBufAllocator allocator, long maxCacheSize, int stripesCount, int maxSegmentSize) {
+        this(allocator, maxCacheSize, stripesCount, maxSegmentSize, ReadCacheAdmissionPolicy.ADMIT_ALL);
+    }
+
+    public StripedReadCache(ByteBufAllocator allocator, long maxCacheSize, int stripesCount,
+                            ReadCacheAdmissionPolicy admissionPolicy) {
+        this(allocator, maxCacheSize, stripesCount, DEFAULT_MAX_SEGMENT_SIZE, admissionPolicy);
+    }
+
+    public StripedReadCache(ByteBufAllocator allocator, long maxCacheSize, int stripesCount, int maxSegmentSize,
+                            ReadCacheAdmissionPolicy admissionPolicy) {
+        checkArgument(stripesCount > 0, "The number of stripes must be positive");
+        this.allocator = allocator;
+        this.admissionPolicy = admissionPolicy;
+
+        long stripeSize = maxCacheSize / stripesCount;
+        int segmentsCount = Math.max(2, (int) (stripeSize / maxSegmentSize));
+        int segmentSize = (int) (stripeSize / segmentsCount);
+        int indexConcurrencyLevel = Math.max(2, 2 * Runtime.getRuntime().availableProcessors() / stripesCount);
+
+        stripes = new Stripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe(segmentsCount, segmentSize, indexConcurrencyLevel);
+        }
+
+        log.info("Created striped read cache with {} stripes, {} segments per stripe of {} bytes", stripesCount,
+                segmentsCount, segmentSize);
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    @Override
+    public void put(long ledgerId, long entryId, ByteBuf entry) {
+        if (!admissionPolicy.admit(ledgerId, entryId)) {
+            return;
+        }
+
+        getStripe(ledgerId).put(ledgerId, entryId, entry);
+    }
+
+    @Override
+    public ByteBuf get(long ledgerId, long entryId) {
+        admissionPolicy.recordAccess(ledgerId, entryId);
+        return getStripe(ledgerId).get(ledgerId, entryId);
+    }
+
+    @Override
+    public boolean hasEntry(long ledgerId, long entryId) {
+        return getStripe(ledgerId).hasEntry(ledgerId, entryId);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.count();
+        }
+        return count;
+    }
+
+    private Stripe getStripe(long ledgerId) {
+        return stripes[MathUtils.signSafeMod(ledgerId, stripes.length)];
+    }
+
+    private final class Stripe {
+        private final ByteBuf[] cacheSegments;
+        private final ConcurrentLongLongPairHashMap[] cacheIndexes;
+
+        private volatile int currentSegmentIdx;
+        private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
+
+        private final int segmentSize;
+
+        // Segment roll-over is the only operation that takes the write lock. The inserts
+        // take the read lock, so that no insert is still copying into the segment being cleared
+        private final StampedLock lock = new StampedLock();
+        // Changes the stamp of a segment, and fails the optimistic reads of the segment, when it is cleared
+        private final StampedLock[] segmentLocks;
+
+        Stripe(int segmentsCount, int segmentSize, int indexConcurrencyLevel) {
+            this.segmentSize = segmentSize;
+            this.cacheSegments = new ByteBuf[segmentsCount];
+            this.cacheIndexes = new ConcurrentLongLongPairHashMap[segmentsCount];
+            this.segmentLocks = new StampedLock[segmentsCount];
+
+            for (int i = 0; i < segmentsCount; i++) {
+                cacheSegments[i] = Unpooled.directBuffer(segmentSize, segmentSize);
+                cacheIndexes[i] = ConcurrentLongLongPairHashMap.newBuilder()
+                        .expectedItems(4096)
+                        .concurrencyLevel(indexConcurrencyLevel)
+                        .build();
+                segmentLocks[i] = new StampedLock();
+            }
+        }
+
+        void close() {
+            for (ByteBuf segment : cacheSegments) {
+                ReferenceCountUtil.safeRelease(segment);
+            }
+        }
+
+        void put(long ledgerId, long entryId, ByteBuf entry) {
+            int entrySize = entry.readableBytes();
+            int alignedSize = align64(entrySize);
+
+            if (entrySize > segmentSize) {
+                log.warn("entrySize {} > segmentSize {}, skip update read cache!", entrySize, segmentSize);
+                return;
+            }
+
+            long stamp = lock.readLock();
+            try {
+                int offset = currentSegmentOffset.getAndAdd(alignedSize);
+                if (offset + entrySize <= segmentSize) {
+                    // Copy entry into read cache segment
+                    int segmentIdx = currentSegmentIdx;
+                    cacheSegments[segmentIdx].setBytes(offset, entry, entry.readerIndex(), entrySize);
+                    cacheIndexes[segmentIdx].put(ledgerId, entryId, offset, entrySize);
+                    return;
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+
+            // We could not insert in segment, we need to get the write lock and roll-over to the
+            // next segment. Only the operations on this stripe are affected.
+            stamp = lock.writeLock();
+            try {
+                int offset = currentSegmentOffset.getAndAdd(alignedSize);
+                if (offset + entrySize > segmentSize) {
+                    // Rollover to next segment
+                    int nextSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.length;
+                    clearSegment(nextSegmentIdx);
+                    currentSegmentIdx = nextSegmentIdx;
+                    currentSegmentOffset.set(alignedSize);
+                    offset = 0;
+                }
+
+                // Copy entry into read cache segment
+                int segmentIdx = currentSegmentIdx;
+                cacheSegments[segmentIdx].setBytes(offset, entry, entry.readerIndex(), entrySize);
+                cacheIndexes[segmentIdx].put(ledgerId, entryId, offset, entrySize);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Called with the write lock held, before the segment is reused for new entries
+        private void clearSegment(int segmentIdx) {
+            long stamp = segmentLocks[segmentIdx].writeLock();
+            try {
+                ConcurrentLongLongPairHashMap evictedIndex = cacheIndexes[segmentIdx];
+                admissionPolicy.recordEvictions(evictedIndex.size());
+                if (admissionPolicy.needsEvictedEntries()) {
+                    evictedIndex.forEach((evictedLedgerId, evictedEntryId, evictedOffset, evictedSize) ->
+                            admissionPolicy.recordEviction(evictedLedgerId, evictedEntryId));
+                }
+                evictedIndex.clear();
+            } finally {
+                segmentLocks[segmentIdx].unlockWrite(stamp);
+            }
+        }
+
+        ByteBuf get(long ledgerId, long entryId) {
+            // We need to check all the segments, starting from the current one and looking
+            // backward to minimize the checks for recently inserted entries
+            int size = cacheSegments.length;
+            int currentIdx = currentSegmentIdx;
+            for (int i = 0; i < size; i++) {
+                int segmentIdx = (currentIdx + (size - i)) % size;
+
+                long stamp = segmentLocks[segmentIdx].tryOptimisticRead();
+                if (stamp == 0) {
+                    // The segment is being cleared, its entries are already evicted
+                    continue;
+                }
+
+                LongPair res = cacheIndexes[segmentIdx].get(ledgerId, entryId);
+                if (res != null) {
+                    int entryOffset = (int) res.first;
+                    int entryLen = (int) res.second;
+
+                    ByteBuf entry = allocator.buffer(entryLen, entryLen);
+                    entry.writeBytes(cacheSegments[segmentIdx], entryOffset, entryLen);
+                    if (segmentLocks[segmentIdx].validate(stamp)) {
+                        return entry;
+                    }
+
+                    // The segment was rolled over while we were reading, the content might have been overwritten
+                    ReferenceCountUtil.release(entry);
+                }
+            }
+
+            // Entry not found in any segment
+            return null;
+        }
+
+        boolean hasEntry(long ledgerId, long entryId) {
+            int size = cacheSegments.length;
+            int currentIdx = currentSegmentIdx;
+            for (int i = 0; i < size; i++) {
+                int segmentIdx = (currentIdx + (size - i)) % size;
+
+                long stamp = segmentLocks[segmentIdx].tryOptimisticRead();
+                if (stamp != 0 && cacheIndexes[segmentIdx].get(ledgerId, entryId) != null
+                        && segmentLocks[segmentIdx].validate(stamp)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long size() {
+            long stamp = lock.readLock();
+            try {
+                long size = 0;
+                for (int i = 0; i < cacheIndexes.length; i++) {
+                    if (i == currentSegmentIdx) {
+                        size += Math.min(currentSegmentOffset.get(), segmentSize);
+                    } else if (!cacheIndexes[i].isEmpty()) {
+                        size += segmentSize;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (ConcurrentLongLongPairHashMap index : cacheIndexes) {
+                count += index.size();
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Frequency based admission policy for the read cache, in the style of TinyLFU.
+ *
+ * <p>The access frequency of the entries is estimated with a count-min sketch of
+ * 4-bit counters, keyed on (ledgerId, entryId). All the counters are periodically
+ * halved, so that the frequencies reflect the recent history.
+ *
+ * <p>The read cache evicts whole segments in FIFO order, so there is no single
+ * victim to compare a candidate entry against. Instead, the policy keeps a moving
+ * average of the frequency of the entries evicted from the cache and rejects a
+ * candidate entry when the entries being evicted are significantly more popular
+ * than the candidate. Entries that are read only once, like the ones of a backlog
+ * scan, stop evicting the entries read by many tailing consumers.
+ *
+ * <p>The sketch is updated without synchronization. Concurrent updates might be
+ * lost, which only makes the frequency estimates slightly less precise.
+ *
+ * <p>The count-min sketch (seeds, masks, increment and reset logic) is adapted from
+ * {@code com.github.benmanes.caffeine.cache.FrequencySketch} of the Caffeine library
+ * (https://github.com/ben-manes/caffeine), Copyright 2015 Ben Manes, licensed under
+ * the Apache License, Version 2.0.
+ */
+public class TinyLfuAdmissionPolicy implements ReadCacheAdmissionPolicy {
+
+    private static final long[] SEED = new long[] {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    // A candidate is rejected only if it was accessed less than the evicted entries by more than this margin,
+    // so that the read-ahead entries are still admitted when all the entries are read only once
+    private static final int ADMISSION_TOLERANCE = 1;
+
+    // Weight of each evicted entry in the moving average of the evicted entries frequency
+    private static final double EVICTION_FREQUENCY_ALPHA = 1.0 / 1024;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+
+    private int size;
+    private volatile double evictedFrequency;
+
+    /**
+     * @param expectedEntries the expected number of entries in the read cache
+     */
+    public TinyLfuAdmissionPolicy(int expectedEntries) {
+        checkArgument(expectedEntries > 0, "The expected number of entries must be positive");
+        int tableSize = Integer.highestOneBit(Math.max(expectedEntries, 64) - 1) << 1;
+        tableSize = Math.min(tableSize, 1 << 30);
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * tableSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void recordAccess(long ledgerId, long entryId) {
+        increment(key(ledgerId, entryId));
+    }
+
+    @Override
+    public boolean admit(long ledgerId, long entryId) {
+        int candidateFrequency = frequency(key(ledgerId, entryId));
+        return evictedFrequency <= candidateFrequency + ADMISSION_TOLERANCE;
+    }
+
+    @Override
+    public void recordEviction(long ledgerId, long entryId) {
+        int victimFrequency = frequency(key(ledgerId, entryId));
+        double current = evictedFrequency;
+        evictedFrequency = current + (victimFrequency - current) * EVICTION_FREQUENCY_ALPHA;
+    }
+
+    /**
+     * @return the estimated number of recent accesses to the given entry
+     */
+    public int frequency(long ledgerId, long entryId) {
+        return frequency(key(ledgerId, entryId));
+    }
+
+    private static long key(long ledgerId, long entryId) {
+        return ledgerId * 0x9e3779b97f4a7c15L + entryId;
+    }
+
+    private int frequency(long key) {
+        int hash = spread(Long.hashCode(key));
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    private void increment(long key) {
+        int hash = spread(Long.hashCode(key));
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && (++size >= sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        long value = table[i];
+        if ((value & mask) != mask) {
+            table[i] = value + (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve all the counters, to age the frequencies.
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -30,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
 import org.apache.bookkeeper.common.util.Watchable;
 import org.apache.bookkeeper.common.util.Watcher;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 
 /**
  * This class borrows the logic from FileInfo.
@@ -42,6 +43,15 @@ class TransientLedgerInfo extends Watchable<LastAddConfirmedUpdateNotification>
 
     static final long NOT_ASSIGNED_LAC = Long.MIN_VALUE;
 
+    // Max distance between two reads to consider them part of a sequential scan
+    private static final long READ_AHEAD_SEQUENTIAL_MAX_STRIDE = 2;
+    // Read-ahead is grown when at least this percentage of the prefetched entries were read
+    private static final int READ_AHEAD_GROW_EFFICIENCY = 75;
+    // Read-ahead is shrunk when less than this percentage of the prefetched entries were read
+    private static final int READ_AHEAD_SHRINK_EFFICIENCY = 25;
+    // Number of sequential cache misses after which a disabled read-ahead is re-enabled
+    private static final int READ_AHEAD_REENABLE_SEQUENTIAL_MISSES = 2;
+
     // lac
     private volatile long lac = NOT_ASSIGNED_LAC;
     // request from explicit lac requests
@@ -55,6 +65,17 @@ class TransientLedgerInfo extends Watchable<LastAddConfirmedUpdateNotification>
 
     private long lastAccessed;
 
+    // Read-ahead access pattern tracking, guarded by readAheadLock
+    private final Object readAheadLock = new Object();
+    private long lastReadEntryId = -1;
+    private int readAheadBatchSize = -1;
+    private int sequentialMisses = 0;
+    private long readAheadFirstEntryId = -1;
+    private long readAheadLastEntryId = -1;
+    private long lastConsumedEntryId = -1;
+    private int readAheadPrefetchedCount = 0;
+    private int readAheadConsumedCount = 0;
+
     /**
      * Construct an Watchable with zero watchers.
      */
@@ -137,6 +158,84 @@ class TransientLedgerInfo extends Watchable<LastAddConfirmedUpdateNotification>
         setLastAddConfirmed(explicitLacValue);
     }
 
+    /**
+     * Record a read of an entry that was found in the read cache.
+     *
+     * @return true if the entry was prefetched by the last read-ahead on this ledger
+     */
+    boolean recordCachedRead(long entryId) {
+        synchronized (readAheadLock) {
+            lastReadEntryId = entryId;
+            if (entryId >= readAheadFirstEntryId && entryId <= readAheadLastEntryId
+                    && entryId > lastConsumedEntryId) {
+                lastConsumedEntryId = entryId;
+                readAheadConsumedCount++;
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Compute the number of entries to read-ahead after a read cache miss.
+     *
+     * <p>The read-ahead batch grows while the ledger is read sequentially and most of the prefetched
+     * entries are consumed, it shrinks when few of them are consumed and it's disabled for ledgers
+     * that are read randomly. A disabled read-ahead is enabled again once the ledger is read
+     * sequentially.
+     *
+     * @param entryId the entry that was not found in the read cache
+     * @param initialBatchSize the batch size to use for a ledger with no access history
+     * @param maxBatchSize the max batch size
+     * @param efficiencyStats stats where to record the percentage of entries consumed from the previous read-ahead
+     * @return the number of entries to read-ahead, 0 to skip the read-ahead
+     */
+    int nextReadAheadBatchSize(long entryId, int initialBatchSize, int maxBatchSize,
+                               OpStatsLogger efficiencyStats) {
+        synchronized (readAheadLock) {
+            boolean sequential = lastReadEntryId >= 0 && entryId > lastReadEntryId
+                    && entryId - lastReadEntryId <= READ_AHEAD_SEQUENTIAL_MAX_STRIDE;
+            lastReadEntryId = entryId;
+
+            if (readAheadBatchSize < 0) {
+                readAheadBatchSize = initialBatchSize;
+            } else if (readAheadPrefetchedCount > 0) {
+                int efficiency = readAheadConsumedCount * 100 / readAheadPrefetchedCount;
+                efficiencyStats.registerSuccessfulValue(efficiency);
+
+                if (sequential && efficiency >= READ_AHEAD_GROW_EFFICIENCY) {
+                    readAheadBatchSize = Math.min(maxBatchSize, readAheadBatchSize * 2);
+                } else if (efficiency < READ_AHEAD_SHRINK_EFFICIENCY) {
+                    readAheadBatchSize /= 2;
+                }
+            } else if (readAheadBatchSize == 0) {
+                sequentialMisses = sequential ? sequentialMisses + 1 : 0;
+                if (sequentialMisses >= READ_AHEAD_REENABLE_SEQUENTIAL_MISSES) {
+                    sequentialMisses = 0;
+                    readAheadBatchSize = 1;
+                }
+            }
+
+            readAheadPrefetchedCount = 0;
+            readAheadConsumedCount = 0;
+            return readAheadBatchSize;
+        }
+    }
+
+    /**
+     * Record the range of entries that were prefetched in the read cache.
+     */
+    void recordReadAhead(long firstEntryId, int count) {
+        synchronized (readAheadLock) {
+            readAheadFirstEntryId = firstEntryId;
+            readAheadLastEntryId = firstEntryId + count - 1;
+            lastConsumedEntryId = firstEntryId - 1;
+            readAheadPrefetchedCount = count;
+            readAheadConsumedCount = 0;
+        }
+    }
+
     boolean isStale() {
         return (lastAccessed + TimeUnit.MINUTES.toMillis(LEDGER_INFO_CACHING_TIME_MINUTES)) < System
                 .currentTimeMillis();
@@ -27,6 +27,12 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
@@ -48,7 +54,9 @@ import org.slf4j.LoggerFactory;
  * until the cache is cleared.
  *
  * <p>There is the possibility to iterate through the stored entries in an ordered
- * way, by (ledgerId, entry).
+ * way, by (ledgerId, entry). By default all the entries are sorted for each iteration.
+ * With the ledger ordered index, the entries are also grouped per ledger in append order,
+ * so that the iteration only needs to sort the ledger ids.
  */
 public class WriteCache implements Closeable {
 
@@ -85,12 +93,26 @@ public class WriteCache implements Closeable {
 
     private final ByteBufAllocator allocator;
 
+    // Entries grouped per ledger, null if the entries are sorted on each iteration
+    private final LedgerAppendIndex ledgerAppendIndex;
+
+    // Default maxSegmentSize set to 1Gb
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize) {
-        // Default maxSegmentSize set to 1Gb
-        this(allocator, maxCacheSize, 1 * 1024 * 1024 * 1024);
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    /**
+     * @param ledgerOrderedIndex whether to keep the entries grouped per ledger in append order, to iterate
+     *                           over them without sorting all the entries
+     */
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize,
+                      boolean ledgerOrderedIndex) {
         checkArgument(maxSegmentSize > 0);
 
         long alignedMaxSegmentSize = alignToPowerOfTwo(maxSegmentSize);
@@ -105,6 +127,7 @@ public class WriteCache implements Closeable {
         this.segmentsCount = 1 + (int) (maxCacheSize / maxSegmentSize);
 
         this.cacheSegments = new ByteBuf[segmentsCount];
+        this.ledgerAppendIndex = ledgerOrderedIndex ? new LedgerAppendIndex(index) : null;
 
         for (int i = 0; i < segmentsCount - 1; i++) {
             // All intermediate segments will be full-size
@@ -122,6 +145,9 @@ public class WriteCache implements Closeable {
         index.clear();
         lastEntryMap.clear();
         deletedLedgers.clear();
+        if (ledgerAppendIndex != null) {
+            ledgerAppendIndex.clear();
+        }
     }
 
     @Override
@@ -178,6 +204,9 @@ public class WriteCache implements Closeable {
         }
 
         index.put(ledgerId, entryId, offset, size);
+        if (ledgerAppendIndex != null) {
+            ledgerAppendIndex.add(ledgerId, entryId, offset, size);
+        }
         cacheCount.increment();
         cacheSize.addAndGet(size);
         return true;
@@ -221,6 +250,27 @@ public class WriteCache implements Closeable {
         sortedEntriesLock.lock();
 
         try {
+            if (ledgerAppendIndex != null) {
+                ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
+                for (int i = 0; i < segmentsCount; i++) {
+                    entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+                }
+
+                long startTime = MathUtils.nowInNano();
+                ledgerAppendIndex.forEach(deletedLedgers, (ledgerId, entryId, offset, length) -> {
+                    int localOffset = (int) (offset & segmentOffsetMask);
+                    int segmentIdx = (int) (offset >>> segmentOffsetBits);
+                    ByteBuf entry = entrySegments[segmentIdx];
+                    entry.setIndex(localOffset, localOffset + (int) length);
+                    consumer.accept(ledgerId, entryId, entry);
+                });
+
+                if (log.isDebugEnabled()) {
+                    log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+                }
+                return;
+            }
+
             int entriesToSort = (int) index.size();
             int arrayLen = entriesToSort * 4;
             if (sortedEntries == null || sortedEntries.length < arrayLen) {
@@ -281,6 +331,144 @@ public class WriteCache implements Closeable {
         }
     }
 
+    /**
+     * Split the entries in shards of whole ledgers and sort each shard by (ledgerId, entryId),
+     * sorting the shards in parallel with the given executor. With the ledger ordered index, the
+     * entries are already sorted and are only split in shards.
+     *
+     * <p>The write cache must not be modified until the returned shards are closed.
+     */
+    public SortedShards sortInShards(int shardsCount, ExecutorService executor) throws IOException {
+        checkArgument(shardsCount > 0, "The number of shards must be positive");
+        sortedEntriesLock.lock();
+
+        try {
+            if (shardEntries == null || shardEntries.length != shardsCount) {
+                shardEntries = new long[shardsCount][];
+                shardSizes = new int[shardsCount];
+            }
+
+            int expectedShardLen = (int) Math.min(Integer.MAX_VALUE / 2, 4 * (index.size() / shardsCount + 1));
+            for (int i = 0; i < shardsCount; i++) {
+                if (shardEntries[i] == null || shardEntries[i].length < expectedShardLen) {
+                    shardEntries[i] = new long[expectedShardLen * 2];
+                }
+                shardSizes[i] = 0;
+            }
+
+            if (ledgerAppendIndex != null) {
+                // The entries are already sorted
+                ledgerAppendIndex.forEach(deletedLedgers, (ledgerId, entryId, offset, length) ->
+                        addToShard(shardsCount, ledgerId, entryId, offset, length));
+                return new SortedShards(shardsCount);
+            }
+
+            index.forEach((ledgerId, entryId, offset, length) -> {
+                if (deletedLedgers.contains(ledgerId)) {
+                    // Ignore deleted ledgers
+                    return;
+                }
+
+                addToShard(shardsCount, ledgerId, entryId, offset, length);
+            });
+
+            List<Future<?>> sortTasks = new ArrayList<>(shardsCount);
+            for (int i = 0; i < shardsCount; i++) {
+                long[] entries = shardEntries[i];
+                int entriesLen = shardSizes[i];
+                sortTasks.add(executor.submit(() -> ArrayGroupSort.sort(entries, 0, entriesLen)));
+            }
+            for (Future<?> task : sortTasks) {
+                task.get();
+            }
+
+            return new SortedShards(shardsCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sortedEntriesLock.unlock();
+            throw new IOException("Interrupted while sorting the write cache", e);
+        } catch (ExecutionException e) {
+            sortedEntriesLock.unlock();
+            throw new IOException("Failed to sort the write cache", e.getCause());
+        } catch (Throwable t) {
+            sortedEntriesLock.unlock();
+            throw t;
+        }
+    }
+
+    private void addToShard(int shardsCount, long ledgerId, long entryId, long offset, long length) {
+        int shard = MathUtils.signSafeMod(ledgerId, shardsCount);
+        int idx = shardSizes[shard];
+        long[] entries = shardEntries[shard];
+        if (idx + 4 > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+            shardEntries[shard] = entries;
+        }
+
+        entries[idx] = ledgerId;
+        entries[idx + 1] = entryId;
+        entries[idx + 2] = offset;
+        entries[idx + 3] = length;
+        shardSizes[shard] = idx + 4;
+    }
+
+    /**
+     * Entries of the write cache split in shards, each containing all the entries of a subset
+     * of the ledgers, sorted by (ledgerId, entryId).
+     *
+     * <p>Different shards can be iterated concurrently by different threads.
+     */
+    public final class SortedShards implements Closeable {
+        private final int shardsCount;
+
+        private SortedShards(int shardsCount) {
+            this.shardsCount = shardsCount;
+        }
+
+        public int count() {
+            return shardsCount;
+        }
+
+        public int size(int shard) {
+            return shardSizes[shard] / 4;
+        }
+
+        public long ledgerId(int shard, int idx) {
+            return shardEntries[shard][idx * 4];
+        }
+
+        public long entryId(int shard, int idx) {
+            return shardEntries[shard][idx * 4 + 1];
+        }
+
+        public void forEach(int shard, EntryConsumer consumer) throws IOException {
+            ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
+            for (int i = 0; i < segmentsCount; i++) {
+                entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+            }
+
+            long[] entries = shardEntries[shard];
+            int entriesLen = shardSizes[shard];
+            for (int i = 0; i < entriesLen; i += 4) {
+                long ledgerId = entries[i];
+                long entryId = entries[i + 1];
+                long offset = entries[i + 2];
+                long length = entries[i + 3];
+
+                int localOffset = (int) (offset & segmentOffsetMask);
+                int segmentIdx = (int) (offset >>> segmentOffsetBits);
+                ByteBuf entry = entrySegments[segmentIdx];
+                entry.setIndex(localOffset, localOffset + (int) length);
+                consumer.accept(ledgerId, entryId, entry);
+            }
+        }
+
+        @Override
+        public void close() {
+            sortedEntriesLock.unlock();
+        }
+    }
+
     public long size() {
         return cacheSize.get();
     }
@@ -306,6 +494,8 @@ public class WriteCache implements Closeable {
     private final ReentrantLock sortedEntriesLock = new ReentrantLock();
     private long[] sortedEntries;
     private int sortedEntriesIdx;
+    private long[][] shardEntries;
+    private int[] shardSizes;
 
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
@@ -0,0 +1,360 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ring of {@link WriteCache} segments.
+ *
+ * <p>New entries are inserted into the active segment. When the active segment is full, it is sealed
+ * and the next free segment becomes the active one, so that the sealed segments can be flushed in
+ * background, in order, while the writes continue. A segment is free again once it has been flushed
+ * and cleared.
+ *
+ * <p>The segments are identified by an increasing sequence number: the segments in
+ * [flushedSequence, activeSequence) are sealed and waiting to be flushed, and the segment of
+ * {@code sequence} is stored in the slot {@code sequence % segmentsCount}.
+ *
+ * <p>The threads accessing a segment register themselves in the segment users count, instead of
+ * taking a lock. The flush waits for the writers of a sealed segment to be done before reading it,
+ * and waits for the readers of a flushed segment to be done before clearing it. The last user of a
+ * segment wakes up the waiting flush.
+ */
+class WriteCacheRing implements Closeable {
+
+    private final WriteCache[] segments;
+    private final AtomicInteger[] users;
+    private final int segmentsCount;
+    private final Runnable segmentSealedListener;
+
+    // The flush waiting for the users of a segment to be done, notified by the last user
+    private final Object noUsersLock = new Object();
+    private volatile boolean awaitingNoUsers = false;
+
+    // Sequence of the segment where the new entries are inserted
+    private volatile long activeSequence = 0;
+    // The segments before this sequence are flushed, their entries are in the location index
+    private volatile long flushedSequence = 0;
+    // The segments before this sequence are flushed and cleared, their slots can be reused
+    private volatile long releasedSequence = 0;
+
+    /**
+     * @param segmentSealedListener notified, on the writer thread, every time a full segment is sealed
+     */
+    WriteCacheRing(ByteBufAllocator allocator, long maxCacheSize, int segmentsCount, boolean ledgerOrderedIndex,
+                   Runnable segmentSealedListener) {
+        checkArgument(segmentsCount >= 2, "The write cache needs at least 2 segments");
+        this.segmentsCount = segmentsCount;
+        this.segments = new WriteCache[segmentsCount];
+        this.users = new AtomicInteger[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            segments[i] = new WriteCache(allocator, maxCacheSize / segmentsCount, WriteCache.DEFAULT_MAX_SEGMENT_SIZE,
+                    ledgerOrderedIndex);
+            users[i] = new AtomicInteger();
+        }
+        this.segmentSealedListener = segmentSealedListener;
+    }
+
+    int getSegmentsCount() {
+        return segmentsCount;
+    }
+
+    /**
+     * Insert an entry into the active segment, sealing it and moving to the next segment if it's full.
+     *
+     * @return false if there are no free segments left to accommodate the entry
+     */
+    boolean put(long ledgerId, long entryId, ByteBuf entry) {
+        while (true) {
+            long sequence = activeSequence;
+            int slot = slot(sequence);
+            boolean inserted = false;
+
+            users[slot].incrementAndGet();
+            try {
+                if (sequence != activeSequence) {
+                    // The segment was sealed in the meantime, retry with the new active segment
+                    continue;
+                }
+                inserted = segments[slot].put(ledgerId, entryId, entry);
+            } finally {
+                releaseUser(slot);
+            }
+
+            if (inserted) {
+                return true;
+            }
+
+            if (!rotate(sequence)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean rotate(long sequence) {
+        synchronized (this) {
+            if (sequence != activeSequence) {
+                // Already rotated by another writer
+                return true;
+            }
+
+            if (segments[slot(sequence)].isEmpty()) {
+                // The entry doesn't fit even in an empty segment
+                return false;
+            }
+
+            if (sequence + 1 - releasedSequence >= segmentsCount) {
+                // All the other segments are waiting to be flushed
+                return false;
+            }
+
+            activeSequence = sequence + 1;
+        }
+
+        segmentSealedListener.run();
+        return true;
+    }
+
+    /**
+     * Seal the active segment, even if not full, so that all the entries inserted so far can be flushed.
+     *
+     * @return the sequence before which all the segments need to be flushed to persist the entries inserted so
+     *         far, or -1 if there is no free segment to replace the active one
+     */
+    synchronized long sealActiveSegment() {
+        long sequence = activeSequence;
+        if (segments[slot(sequence)].isEmpty()) {
+            return sequence;
+        }
+
+        if (sequence + 1 - releasedSequence >= segmentsCount) {
+            return -1;
+        }
+
+        activeSequence = sequence + 1;
+        return sequence + 1;
+    }
+
+    long getFlushedSequence() {
+        return flushedSequence;
+    }
+
+    /**
+     * @return the number of sealed segments waiting to be flushed
+     */
+    int getPendingFlushSegments() {
+        return (int) (activeSequence - flushedSequence);
+    }
+
+    /**
+     * Get the oldest sealed segment, once all the writers inserting into it are done.
+     *
+     * <p>This must be called by a single thread at a time, followed by {@link #endFlush()} when the segment
+     * content is persisted.
+     *
+     * @return the segment to flush, or null if there are no sealed segments
+     */
+    WriteCache beginFlush() {
+        long sequence = flushedSequence;
+        if (sequence >= activeSequence) {
+            return null;
+        }
+
+        int slot = slot(sequence);
+        awaitNoUsers(slot);
+        return segments[slot];
+    }
+
+    /**
+     * Release the segment returned by {@link #beginFlush()}, after its entries have been added to the location
+     * index.
+     */
+    void endFlush() {
+        long sequence = flushedSequence;
+        int slot = slot(sequence);
+
+        // From now on the readers will look up the entries in the location index
+        flushedSequence = sequence + 1;
+        awaitNoUsers(slot);
+        segments[slot].clear();
+        releasedSequence = sequence + 1;
+    }
+
+    ByteBuf get(long ledgerId, long entryId) {
+        long active = activeSequence;
+        for (long sequence = active; isReadable(sequence, active); sequence--) {
+            int slot = slot(sequence);
+            if (!acquireForRead(sequence, slot)) {
+                break;
+            }
+            try {
+                ByteBuf entry = segments[slot].get(ledgerId, entryId);
+                if (entry != null) {
+                    return entry;
+                }
+            } finally {
+                releaseUser(slot);
+            }
+        }
+        return null;
+    }
+
+    boolean hasEntry(long ledgerId, long entryId) {
+        long active = activeSequence;
+        for (long sequence = active; isReadable(sequence, active); sequence--) {
+            int slot = slot(sequence);
+            if (!acquireForRead(sequence, slot)) {
+                break;
+            }
+            try {
+                if (segments[slot].hasEntry(ledgerId, entryId)) {
+                    return true;
+                }
+            } finally {
+                releaseUser(slot);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the last entry of the ledger in the most recent segment that has entries of the ledger
+     */
+    ByteBuf getLastEntry(long ledgerId) {
+        long active = activeSequence;
+        for (long sequence = active; isReadable(sequence, active); sequence--) {
+            int slot = slot(sequence);
+            if (!acquireForRead(sequence, slot)) {
+                break;
+            }
+            try {
+                ByteBuf entry = segments[slot].getLastEntry(ledgerId);
+                if (entry != null) {
+                    return entry;
+                }
+            } finally {
+                releaseUser(slot);
+            }
+        }
+        return null;
+    }
+
+    void deleteLedger(long ledgerId) {
+        long active = activeSequence;
+        for (long sequence = active; isReadable(sequence, active); sequence--) {
+            int slot = slot(sequence);
+            if (!acquireForRead(sequence, slot)) {
+                break;
+            }
+            try {
+                segments[slot].deleteLedger(ledgerId);
+            } finally {
+                releaseUser(slot);
+            }
+        }
+    }
+
+    /**
+     * @return true if there are no entries waiting to be flushed
+     */
+    boolean isEmpty() {
+        return getPendingFlushSegments() == 0 && segments[slot(activeSequence)].isEmpty();
+    }
+
+    long size() {
+        long size = 0;
+        for (WriteCache segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    long count() {
+        long count = 0;
+        for (WriteCache segment : segments) {
+            count += segment.count();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        for (WriteCache segment : segments) {
+            segment.close();
+        }
+    }
+
+    private boolean isReadable(long sequence, long active) {
+        return sequence >= 0 && sequence > active - segmentsCount;
+    }
+
+    private boolean acquireForRead(long sequence, int slot) {
+        users[slot].incrementAndGet();
+        if (sequence < flushedSequence) {
+            // This segment and the older ones are already in the location index
+            releaseUser(slot);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseUser(int slot) {
+        if (users[slot].decrementAndGet() == 0 && awaitingNoUsers) {
+            synchronized (noUsersLock) {
+                noUsersLock.notifyAll();
+            }
+        }
+    }
+
+    private void awaitNoUsers(int slot) {
+        if (users[slot].get() == 0) {
+            return;
+        }
+        boolean interrupted = false;
+        awaitingNoUsers = true;
+        try {
+            synchronized (noUsersLock) {
+                while (users[slot].get() != 0) {
+                    try {
+                        noUsersLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            awaitingNoUsers = false;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % segmentsCount);
+    }
+}
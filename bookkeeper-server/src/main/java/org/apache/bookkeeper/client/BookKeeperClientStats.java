@@ -83,6 +83,9 @@ public interface BookKeeperClientStats {
     String CHANNEL_START_TLS_OP = "START_TLS";
     String CHANNEL_TIMEOUT_START_TLS_OP = "TIMEOUT_START_TLS";
     String TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER = "TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String CHANNEL_CONCURRENCY_LIMIT = "CONCURRENCY_LIMIT";
+    String CHANNEL_CONCURRENCY_LIMIT_QUEUE_WAIT = "CONCURRENCY_LIMIT_QUEUE_WAIT";
+    String CHANNEL_CONCURRENCY_LIMIT_REJECTED = "CONCURRENCY_LIMIT_REJECTED";
 
     String NETTY_EXCEPTION_CNT = "NETTY_EXCEPTION_CNT";
     String CLIENT_CHANNEL_WRITE_WAIT = "CLIENT_CHANNEL_WRITE_WAIT";
@@ -0,0 +1,173 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Tracks the read latency the client observes from every bookie.
+ *
+ * <p>For every bookie it keeps an exponentially weighted moving average of the read latency, used to
+ * pick the replica a read goes to first, and a window of the most recent samples, used to estimate
+ * the 99th percentile latency that bounds how long to wait before a speculative read. Stats that
+ * have not been refreshed for {@link #STATS_EXPIRY_NANOS} are forgotten, so a bookie that was slow
+ * once gets a new chance to be read from.
+ */
+class BookieReadLatencyTracker {
+
+    static final double EWMA_ALPHA = 0.1;
+    static final int WINDOW_SIZE = 128;
+    static final long STATS_EXPIRY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    // the percentile is only recomputed after this many new samples
+    private static final int PERCENTILE_REFRESH_SAMPLES = 16;
+
+    private final ConcurrentHashMap<BookieId, LatencyStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Record the latency of a successful read from a bookie.
+     *
+     * @param bookie the bookie that answered
+     * @param latencyNanos the time from sending the read to receiving the answer
+     */
+    void recordReadLatency(BookieId bookie, long latencyNanos) {
+        stats.computeIfAbsent(bookie, b -> new LatencyStats()).record(latencyNanos, MathUtils.nowInNano());
+    }
+
+    /**
+     * Get the moving average of the read latency of a bookie.
+     *
+     * @return the average latency in nanos, -1 if there is no recent read from the bookie
+     */
+    long getReadLatencyEwmaNanos(BookieId bookie) {
+        LatencyStats s = getRecentStats(bookie);
+        return null == s ? -1L : s.getEwmaNanos();
+    }
+
+    /**
+     * Get the 99th percentile of the recent read latencies of a bookie.
+     *
+     * @return the percentile in nanos, -1 if there is no recent read from the bookie
+     */
+    long getReadLatencyP99Nanos(BookieId bookie) {
+        LatencyStats s = getRecentStats(bookie);
+        return null == s ? -1L : s.getP99Nanos();
+    }
+
+    /**
+     * Move the replica with the lowest average read latency to the head of the read sequence.
+     *
+     * <p>Only replicas without failure history are candidates, and a replica is moved only if it is
+     * known to be faster than the replica at the head. A head replica without recent stats stays
+     * where the placement policy put it, so it gets probed and its latency becomes known.
+     *
+     * @param ensemble the ensemble of the entry
+     * @param writeSet the read sequence, reordered in place
+     * @param bookiesHealthInfo the failure history of the bookies
+     */
+    void moveFastestReplicaFirst(List<BookieId> ensemble, DistributionSchedule.WriteSet writeSet,
+                                 BookiesHealthInfo bookiesHealthInfo) {
+        if (writeSet.size() < 2) {
+            return;
+        }
+        long fastestLatency = getReadLatencyEwmaNanos(ensemble.get(writeSet.get(0)));
+        if (fastestLatency < 0) {
+            return;
+        }
+        int fastest = 0;
+        for (int i = 1; i < writeSet.size(); i++) {
+            BookieId bookie = ensemble.get(writeSet.get(i));
+            if (bookiesHealthInfo.getBookieFailureHistory(bookie) >= 0) {
+                continue;
+            }
+            long latency = getReadLatencyEwmaNanos(bookie);
+            if (latency >= 0 && latency < fastestLatency) {
+                fastestLatency = latency;
+                fastest = i;
+            }
+        }
+        if (fastest > 0) {
+            writeSet.moveAndShift(fastest, 0);
+        }
+    }
+
+    private LatencyStats getRecentStats(BookieId bookie) {
+        LatencyStats s = stats.get(bookie);
+        if (null == s) {
+            return null;
+        }
+        if (s.isExpired(MathUtils.nowInNano())) {
+            stats.remove(bookie, s);
+            return null;
+        }
+        return s;
+    }
+
+    /**
+     * Read latency stats of one bookie.
+     */
+    private static class LatencyStats {
+        private final long[] window = new long[WINDOW_SIZE];
+        private int numSamples = 0;
+        private int samplesSinceRefresh = 0;
+        private double ewmaNanos;
+        private long p99Nanos;
+        private volatile long lastUpdateNanos;
+
+        synchronized void record(long latencyNanos, long nowNanos) {
+            if (numSamples == 0) {
+                ewmaNanos = latencyNanos;
+                p99Nanos = latencyNanos;
+            } else {
+                ewmaNanos += EWMA_ALPHA * (latencyNanos - ewmaNanos);
+            }
+            window[numSamples % WINDOW_SIZE] = latencyNanos;
+            numSamples++;
+            samplesSinceRefresh++;
+            lastUpdateNanos = nowNanos;
+        }
+
+        synchronized long getEwmaNanos() {
+            return (long) ewmaNanos;
+        }
+
+        synchronized long getP99Nanos() {
+            if (samplesSinceRefresh >= PERCENTILE_REFRESH_SAMPLES
+                    || (samplesSinceRefresh > 0 && numSamples < WINDOW_SIZE)) {
+                int size = Math.min(numSamples, WINDOW_SIZE);
+                long[] sorted = Arrays.copyOf(window, size);
+                Arrays.sort(sorted);
+                p99Nanos = sorted[(int) Math.ceil(size * 0.99) - 1];
+                samplesSinceRefresh = 0;
+            }
+            return p99Nanos;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return nowNanos - lastUpdateNanos > STATS_EXPIRY_NANOS;
+        }
+    }
+}
@@ -33,6 +33,7 @@ class ClientInternalConf {
 
     final Optional<SpeculativeRequestExecutionPolicy> readSpeculativeRequestPolicy;
     final Optional<SpeculativeRequestExecutionPolicy> readLACSpeculativeRequestPolicy;
+    final Optional<BookieReadLatencyTracker> readLatencyTracker;
 
     final int explicitLacInterval;
     final long waitForWriteSetMs;
@@ -85,7 +86,20 @@ class ClientInternalConf {
         this.enableStickyReads = conf.isStickyReadsEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        if (conf.isLatencyAwareReadEnabled() && !conf.isStickyReadsEnabled()) {
+            this.readLatencyTracker = Optional.of(new BookieReadLatencyTracker());
+        } else {
+            this.readLatencyTracker = Optional.<BookieReadLatencyTracker>empty();
+        }
+        if (conf.getFirstSpeculativeReadTimeout() > 0 && readLatencyTracker.isPresent()) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new LatencyAwareSpeculativeRequestExecutionPolicy(
+                                        readLatencyTracker.get(),
+                                        conf.getMinSpeculativeReadTimeout(),
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
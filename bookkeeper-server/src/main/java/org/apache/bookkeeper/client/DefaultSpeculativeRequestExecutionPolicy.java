@@ -73,7 +73,7 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
         return scheduleSpeculativeRead(scheduler, requestExecutor, firstSpeculativeRequestTimeout);
     }
 
-    private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
+    ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
                                          final SpeculativeRequestExecutor requestExecutor,
                                          final int speculativeRequestTimeout) {
         try {
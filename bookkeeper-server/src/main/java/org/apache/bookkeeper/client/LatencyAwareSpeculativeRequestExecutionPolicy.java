@@ -0,0 +1,72 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} that derives the first speculative read timeout from the
+ * observed read latency of the replica the read was sent to.
+ *
+ * <p>The first speculative read is issued once the read has been outstanding for longer than the 99th
+ * percentile latency of its replica, bounded by {@code minSpeculativeRequestTimeout} and
+ * {@code maxSpeculativeRequestTimeout}. Without latency stats for the replica, it falls back to
+ * {@code firstSpeculativeRequestTimeout}. The following speculative reads back off as in
+ * {@link DefaultSpeculativeRequestExecutionPolicy}.
+ */
+class LatencyAwareSpeculativeRequestExecutionPolicy extends DefaultSpeculativeRequestExecutionPolicy {
+
+    private final BookieReadLatencyTracker latencyTracker;
+    final int minSpeculativeRequestTimeout;
+
+    LatencyAwareSpeculativeRequestExecutionPolicy(BookieReadLatencyTracker latencyTracker,
+                                                  int minSpeculativeRequestTimeout,
+                                                  int firstSpeculativeRequestTimeout,
+                                                  int maxSpeculativeRequestTimeout,
+                                                  float backoffMultiplier) {
+        super(firstSpeculativeRequestTimeout, maxSpeculativeRequestTimeout, backoffMultiplier);
+        this.latencyTracker = latencyTracker;
+        this.minSpeculativeRequestTimeout = Math.max(1, minSpeculativeRequestTimeout);
+    }
+
+    @Override
+    public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
+            final SpeculativeRequestExecutor requestExecutor) {
+        return scheduleSpeculativeRead(scheduler, requestExecutor,
+                getFirstSpeculativeRequestTimeout(requestExecutor));
+    }
+
+    int getFirstSpeculativeRequestTimeout(SpeculativeRequestExecutor requestExecutor) {
+        if (!(requestExecutor instanceof ReadOpBase.LedgerEntryRequest)) {
+            return firstSpeculativeRequestTimeout;
+        }
+        BookieId firstReplica = ((ReadOpBase.LedgerEntryRequest) requestExecutor).firstReplica;
+        long p99Nanos = null == firstReplica ? -1L : latencyTracker.getReadLatencyP99Nanos(firstReplica);
+        if (p99Nanos < 0) {
+            return firstSpeculativeRequestTimeout;
+        }
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(p99Nanos) + 1;
+        return (int) Math.max(minSpeculativeRequestTimeout, Math.min(maxSpeculativeRequestTimeout, p99Millis));
+    }
+}
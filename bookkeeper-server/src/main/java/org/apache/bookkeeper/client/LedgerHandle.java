@@ -45,13 +45,15 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
@@ -99,10 +101,9 @@ public class LedgerHandle implements WriteHandle {
     final ClientContext clientCtx;
 
     final byte[] ledgerKey;
-    private Versioned<LedgerMetadata> versionedMetadata;
+    private volatile Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
     final ExecutorService executor;
-    long lastAddPushed;
     boolean notSupportBatch;
 
     private enum HandleState {
@@ -110,7 +111,7 @@ public class LedgerHandle implements WriteHandle {
         CLOSED
     }
 
-    private HandleState handleState = HandleState.OPEN;
+    private volatile HandleState handleState = HandleState.OPEN;
     private final CompletableFuture<Void> closePromise = new CompletableFuture<>();
 
     /**
@@ -118,6 +119,8 @@ public class LedgerHandle implements WriteHandle {
       * This value is used by readers, the LAC protocol
       */
     volatile long lastAddConfirmed;
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_CONFIRMED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddConfirmed");
 
      /**
       * Next entryId which is expected to move forward during {@link #sendAddSuccessCallbacks() }. This is important
@@ -137,7 +140,18 @@ public class LedgerHandle implements WriteHandle {
      */
     private int stickyBookieIndex;
 
-    long length;
+    /**
+     * Last entry id pushed to the bookies and the length of the ledger up to that entry. Adds claim
+     * their entry id and ledger length by swapping in the next sequence, so concurrent writers do not
+     * serialize on the handle. Closing the handle seals the sequence, after which no add can claim an
+     * entry id.
+     */
+    private final AtomicReference<AddSequence> addSequence;
+    // number of adds published to pendingAddOps, compared against AddSequence#claimedAdds on drain
+    private final LongAdder publishedAdds = new LongAdder();
+    // number of drains waiting on the handle monitor for claimed adds to be published
+    private final AtomicInteger drainsWaiting = new AtomicInteger();
+
     final DigestManager macManager;
     final DistributionSchedule distributionSchedule;
     final RateLimiter throttler;
@@ -182,16 +196,17 @@ public class LedgerHandle implements WriteHandle {
         this.clientCtx = clientCtx;
 
         this.versionedMetadata = versionedMetadata;
-        this.pendingAddOps = new ConcurrentLinkedQueue<PendingAddOp>();
+        this.pendingAddOps = new PendingAddOpQueue();
         this.writeFlags = writeFlags;
 
         LedgerMetadata metadata = versionedMetadata.getValue();
         if (metadata.isClosed()) {
-            lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
-            length = metadata.getLength();
+            lastAddConfirmed = metadata.getLastEntryId();
+            addSequence = new AtomicReference<>(
+                    new AddSequence(lastAddConfirmed, metadata.getLength(), 0L, true));
         } else {
-            lastAddConfirmed = lastAddPushed = INVALID_ENTRY_ID;
-            length = 0;
+            lastAddConfirmed = INVALID_ENTRY_ID;
+            addSequence = new AtomicReference<>(new AddSequence(INVALID_ENTRY_ID, 0L, 0L, false));
         }
 
         this.pendingAddsSequenceHead = lastAddConfirmed;
@@ -320,11 +335,11 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
-    synchronized void setLastAddConfirmed(long lac) {
+    void setLastAddConfirmed(long lac) {
         this.lastAddConfirmed = lac;
     }
 
@@ -332,8 +347,12 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
-        return lastAddPushed;
+    public long getLastAddPushed() {
+        return addSequence.get().lastAddPushed;
+    }
+
+    void setLastAddPushed(long entryId) {
+        addSequence.updateAndGet(sequence -> sequence.withLastAddPushed(entryId));
     }
 
     /**
@@ -364,8 +383,9 @@ public class LedgerHandle implements WriteHandle {
                 versionedMetadata = newMetadata;
                 LedgerMetadata metadata = versionedMetadata.getValue();
                 if (metadata.isClosed()) {
-                    lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
-                    length = metadata.getLength();
+                    lastAddConfirmed = metadata.getLastEntryId();
+                    addSequence.updateAndGet(sequence -> sequence.withLastAddPushed(metadata.getLastEntryId())
+                            .withLength(metadata.getLength()).seal());
                 }
                 return true;
             } else {
@@ -388,7 +408,7 @@ public class LedgerHandle implements WriteHandle {
      *
      * @return the count of fragments
      */
-    public synchronized long getNumFragments() {
+    public long getNumFragments() {
         return getLedgerMetadata().getAllEnsembles().size();
     }
 
@@ -398,7 +418,7 @@ public class LedgerHandle implements WriteHandle {
      *
      * @return count of unique bookies
      */
-    public synchronized long getNumBookies() {
+    public long getNumBookies() {
         Map<Long, ? extends List<BookieId>> m = getLedgerMetadata().getAllEnsembles();
         Set<BookieId> s = Sets.newHashSet();
         for (List<BookieId> aList : m.values()) {
@@ -422,9 +442,12 @@ public class LedgerHandle implements WriteHandle {
      * @param delta
      * @return the length of the ledger after the addition
      */
-    synchronized long addToLength(long delta) {
-        this.length += delta;
-        return this.length;
+    long addToLength(long delta) {
+        return addSequence.updateAndGet(sequence -> sequence.withLength(sequence.length + delta)).length;
+    }
+
+    void setLength(long length) {
+        addSequence.updateAndGet(sequence -> sequence.withLength(length));
     }
 
     /**
@@ -433,8 +456,8 @@ public class LedgerHandle implements WriteHandle {
      * @return the length of the ledger in bytes
      */
     @Override
-    public synchronized long getLength() {
-        return this.length;
+    public long getLength() {
+        return addSequence.get().length;
     }
 
     /**
@@ -504,7 +527,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return getLedgerMetadata().isClosed();
     }
 
@@ -553,14 +576,17 @@ public class LedgerHandle implements WriteHandle {
 
                     synchronized (LedgerHandle.this) {
                         prevHandleState = handleState;
+                        handleState = HandleState.CLOSED;
+                        // no add can claim an entry id once sealed, so none is left behind by the drain
+                        addSequence.updateAndGet(AddSequence::seal);
 
                         // drain pending adds first
                         pendingAdds = drainPendingAddsAndAdjustLength();
 
                         // taking the length must occur after draining, as draining changes the length
-                        lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
-                        finalLength = LedgerHandle.this.length;
-                        handleState = HandleState.CLOSED;
+                        lastEntry = LedgerHandle.this.lastAddConfirmed;
+                        setLastAddPushed(lastEntry);
+                        finalLength = getLength();
                     }
 
                     // error out all pending adds during closing, the callbacks shouldn't be
@@ -1421,17 +1447,7 @@ public class LedgerHandle implements WriteHandle {
     public CompletableFuture<Void> force() {
         CompletableFuture<Void> result = new CompletableFuture<>();
         ForceLedgerOp op = new ForceLedgerOp(this, clientCtx.getBookieClient(), getCurrentEnsemble(), result);
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (!isHandleWritable()) {
-                wasClosed = true;
-            }
-        }
-
-        if (wasClosed) {
+        if (!isHandleWritable()) {
             // make sure the callback is triggered in main worker pool
             try {
                 executeOrdered(new Runnable() {
@@ -1584,23 +1600,23 @@ public class LedgerHandle implements WriteHandle {
             throttler.acquire();
         }
 
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
-            } else {
-                wasClosed = true;
+        // claiming from the add sequence fails once the ledger is closed, so no add can
+        // be pushed past the last entry of a closed ledger
+        AddSequence sequence = isHandleWritable()
+                ? claimAddSequence(addSequence, op.payload.readableBytes()) : null;
+        if (sequence != null) {
+            op.setEntryId(sequence.lastAddPushed);
+            op.setLedgerLength(sequence.length);
+            pendingAddOps.add(op);
+            publishedAdds.increment();
+            // a drain registers as waiting before checking the published adds, so either it sees
+            // this add or this add sees it waiting
+            if (drainsWaiting.get() > 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
             }
-        }
-
-        if (wasClosed) {
+        } else {
             // make sure the callback is triggered in main worker pool
             try {
                 executeOrdered(new Runnable() {
@@ -1641,15 +1657,33 @@ public class LedgerHandle implements WriteHandle {
 
     }
 
-    synchronized void updateLastConfirmed(long lac, long len) {
-        if (lac > lastAddConfirmed) {
-            lastAddConfirmed = lac;
+    @VisibleForTesting
+    static AddSequence claimAddSequence(AtomicReference<AddSequence> addSequence, int entryLength) {
+        while (true) {
+            AddSequence current = addSequence.get();
+            if (current.sealed) {
+                return null;
+            }
+            AddSequence next = current.next(entryLength);
+            if (addSequence.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    void updateLastConfirmed(long lac, long len) {
+        long current;
+        do {
+            current = lastAddConfirmed;
+        } while (lac > current && !LAST_ADD_CONFIRMED_UPDATER.compareAndSet(this, current, lac));
+        if (lac > current) {
             lacUpdateHitsCounter.inc();
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
-        length = Math.max(length, len);
+        addSequence.updateAndGet(sequence -> sequence.lastAddPushed >= lac && sequence.length >= len ? sequence
+                : sequence.withLastAddPushed(Math.max(sequence.lastAddPushed, lac))
+                        .withLength(Math.max(sequence.length, len)));
     }
 
     /**
@@ -1985,7 +2019,7 @@ public class LedgerHandle implements WriteHandle {
             isClosed = metadata.isClosed();
             if (isClosed) {
                 lastAddConfirmed = metadata.getLastEntryId();
-                length = metadata.getLength();
+                setLength(metadata.getLength());
             }
         }
         if (isClosed) {
@@ -2070,6 +2104,26 @@ public class LedgerHandle implements WriteHandle {
     }
 
     synchronized List<PendingAddOp> drainPendingAddsAndAdjustLength() {
+        // adds publish their op right after claiming the entry id, wait for those in between
+        long claimedAdds = addSequence.get().claimedAdds;
+        if (publishedAdds.sum() < claimedAdds) {
+            boolean interrupted = false;
+            drainsWaiting.incrementAndGet();
+            try {
+                while (publishedAdds.sum() < claimedAdds) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                drainsWaiting.decrementAndGet();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
         PendingAddOp pendingAddOp;
         List<PendingAddOp> opsDrained = new ArrayList<PendingAddOp>(pendingAddOps.size());
         while ((pendingAddOp = pendingAddOps.poll()) != null) {
@@ -2309,6 +2363,40 @@ public class LedgerHandle implements WriteHandle {
         }
     }
 
+    /**
+     * Immutable position of the add sequence of a ledger handle.
+     */
+    static final class AddSequence {
+        final long lastAddPushed;
+        final long length;
+        // number of adds that claimed an entry id from the sequence so far
+        final long claimedAdds;
+        final boolean sealed;
+
+        AddSequence(long lastAddPushed, long length, long claimedAdds, boolean sealed) {
+            this.lastAddPushed = lastAddPushed;
+            this.length = length;
+            this.claimedAdds = claimedAdds;
+            this.sealed = sealed;
+        }
+
+        AddSequence next(int entryLength) {
+            return new AddSequence(lastAddPushed + 1, length + entryLength, claimedAdds + 1, false);
+        }
+
+        AddSequence withLastAddPushed(long lastAddPushed) {
+            return new AddSequence(lastAddPushed, length, claimedAdds, sealed);
+        }
+
+        AddSequence withLength(long length) {
+            return new AddSequence(lastAddPushed, length, claimedAdds, sealed);
+        }
+
+        AddSequence seal() {
+            return new AddSequence(lastAddPushed, length, claimedAdds, true);
+        }
+    }
+
     /**
      * Get the current ensemble from the ensemble list. The current ensemble
      * is the last ensemble in the list. The ledger handle uses this ensemble when
@@ -0,0 +1,132 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free queue of pending add ops ordered by entry id.
+ *
+ * <p>Writers claim their entry ids without holding a lock, so two writers may publish their ops
+ * out of order. The queue keeps them sorted, so the head is always the lowest pending entry id and
+ * {@link LedgerHandle#sendAddSuccessCallbacks()} acknowledges the adds in entry id order. The entry
+ * id of an op must not change while it is in the queue.
+ *
+ * <p>The size is tracked aside from the set, as {@link ConcurrentSkipListSet#size()} walks the whole
+ * set. It may lag behind the set while ops are added or removed concurrently.
+ */
+class PendingAddOpQueue extends AbstractQueue<PendingAddOp> {
+
+    private final ConcurrentSkipListSet<PendingAddOp> ops =
+            new ConcurrentSkipListSet<>(new LedgerHandleAdv.PendingOpsComparator());
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public boolean offer(PendingAddOp op) {
+        if (ops.add(op)) {
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public PendingAddOp poll() {
+        PendingAddOp op = ops.pollFirst();
+        if (op != null) {
+            size.decrementAndGet();
+        }
+        return op;
+    }
+
+    @Override
+    public PendingAddOp peek() {
+        if (ops.isEmpty()) {
+            return null;
+        }
+        try {
+            return ops.first();
+        } catch (NoSuchElementException e) {
+            // the last op was removed concurrently
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return ops.contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (ops.remove(o)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<PendingAddOp> iterator() {
+        Iterator<PendingAddOp> iterator = ops.iterator();
+        return new Iterator<PendingAddOp>() {
+            private PendingAddOp last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public PendingAddOp next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                // removing through the set tells whether a concurrent poll took the op first
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                PendingAddOpQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of pending add ops, in constant time.
+     */
+    @Override
+    public int size() {
+        return Math.max(size.get(), 0);
+    }
+}
@@ -104,6 +104,10 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
         heardFromHosts.add(rctx.to);
         heardFromHostsBitSet.set(rctx.bookieIndex, true);
+        if (clientCtx.getConf().readLatencyTracker.isPresent()) {
+            clientCtx.getConf().readLatencyTracker.get()
+                    .recordReadLatency(rctx.to, MathUtils.elapsedNanos(rctx.sentTimeNanos));
+        }
 
         buffer.retain();
         // if entry has completed don't handle twice
@@ -33,6 +33,7 @@ import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks;
+import org.apache.bookkeeper.util.MathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -121,6 +122,8 @@ public abstract class ReadOpBase implements Runnable {
 
         final List<BookieId> ensemble;
         final DistributionSchedule.WriteSet writeSet;
+        // replica the first read is sent to, the write set can be recycled before the read completes
+        final BookieId firstReplica;
 
 
         LedgerEntryRequest(List<BookieId> ensemble, final long eId) {
@@ -135,6 +138,11 @@ public abstract class ReadOpBase implements Runnable {
             } else {
                 writeSet = lh.getWriteSetForReadOperation(eId);
             }
+            if (clientCtx.getConf().readLatencyTracker.isPresent()) {
+                clientCtx.getConf().readLatencyTracker.get()
+                        .moveFastestReplicaFirst(ensemble, writeSet, lh.getBookiesHealthInfo());
+            }
+            firstReplica = writeSet.size() > 0 ? ensemble.get(writeSet.get(0)) : null;
         }
 
         public void close() {
@@ -272,12 +280,14 @@ public abstract class ReadOpBase implements Runnable {
         final int bookieIndex;
         final BookieId to;
         final PendingReadOp.LedgerEntryRequest entry;
+        final long sentTimeNanos;
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, PendingReadOp.LedgerEntryRequest entry) {
             this.bookieIndex = bookieIndex;
             this.to = to;
             this.entry = entry;
+            this.sentTimeNanos = MathUtils.nowInNano();
         }
 
         @Override
@@ -98,6 +98,15 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_TCP_USER_TIMEOUT_MILLIS = "clientTcpUserTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
     protected static final String USE_V2_WIRE_PROTOCOL = "useV2WireProtocol";
+    protected static final String BATCH_ADD_ENABLED = "batchAddEnabled";
+    protected static final String BATCH_ADD_MAX_ENTRIES = "batchAddMaxEntries";
+    protected static final String BATCH_ADD_MAX_BYTES = "batchAddMaxBytes";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_ENABLED = "bookieConcurrencyLimitEnabled";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_INITIAL = "bookieConcurrencyLimitInitial";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_MIN = "bookieConcurrencyLimitMin";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_MAX = "bookieConcurrencyLimitMax";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_SIZE = "bookieConcurrencyLimitMaxQueueSize";
+    protected static final String BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_WAIT_MS = "bookieConcurrencyLimitMaxQueueWaitMs";
     protected static final String NETTY_USE_POOLED_BUFFERS = "nettyUsePooledBuffers";
 
     // Read Parameters
@@ -115,6 +124,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String LATENCY_AWARE_READ_ENABLED = "latencyAwareReadEnabled";
+    protected static final String MIN_SPECULATIVE_READ_TIMEOUT = "minSpeculativeReadTimeout";
     protected static final String RECOVERY_BATCH_READ_ENABLED = "recoveryBatchReadEnabled";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
@@ -602,6 +613,205 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the adds to a bookie of consecutive entries of the same ledger are sent in batched add requests.
+     *
+     * <p>Only used with the v2 wire protocol. The entries are batched while they wait for the channel to write
+     * them, so it does not delay the adds. All the bookies must support the batched add requests.
+     *
+     * @return whether the adds are sent in batched add requests
+     */
+    public boolean isBatchAddEnabled() {
+        return getBoolean(BATCH_ADD_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable sending the adds of consecutive entries of the same ledger in batched add requests.
+     *
+     * @param enabled
+     *          whether to send the adds in batched add requests
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchAddEnabled(boolean enabled) {
+        setProperty(BATCH_ADD_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries of a batched add request.
+     *
+     * @return the max number of entries of a batched add request
+     */
+    public int getBatchAddMaxEntries() {
+        return getInt(BATCH_ADD_MAX_ENTRIES, 64);
+    }
+
+    /**
+     * Set the max number of entries of a batched add request.
+     *
+     * @param maxEntries
+     *          max number of entries of a batched add request
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchAddMaxEntries(int maxEntries) {
+        setProperty(BATCH_ADD_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the max size in bytes of the entries of a batched add request. It must be lower than the netty max
+     * frame size of the bookies.
+     *
+     * @return the max size in bytes of the entries of a batched add request
+     */
+    public int getBatchAddMaxBytes() {
+        return getInt(BATCH_ADD_MAX_BYTES, 256 * 1024);
+    }
+
+    /**
+     * Set the max size in bytes of the entries of a batched add request.
+     *
+     * @param maxBytes
+     *          max size in bytes of the entries of a batched add request
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchAddMaxBytes(int maxBytes) {
+        setProperty(BATCH_ADD_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * Whether the adds and reads in flight to a bookie are bounded by an adaptive concurrency limit.
+     *
+     * <p>The limit of each channel follows the round trip time of its requests: it grows while the bookie
+     * answers as fast as without load, and shrinks when the bookie queues the requests or they time out.
+     * Requests over the limit wait in a bounded queue. They fail with a TooManyRequestsException when the
+     * queue is full, when they waited longer than {@link #getBookieConcurrencyLimitMaxQueueWaitMs()}, or
+     * right away when the caller allows to fail fast, so reads go to another replica of the entry.
+     *
+     * @return whether the requests to a bookie are bounded by an adaptive concurrency limit
+     */
+    public boolean isBookieConcurrencyLimitEnabled() {
+        return getBoolean(BOOKIE_CONCURRENCY_LIMIT_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the adaptive concurrency limit of the requests in flight to a bookie.
+     *
+     * @param enabled
+     *          whether to bound the requests to a bookie by an adaptive concurrency limit
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitEnabled(boolean enabled) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the initial concurrency limit of a channel to a bookie.
+     *
+     * @return the initial concurrency limit of a channel to a bookie
+     */
+    public int getBookieConcurrencyLimitInitial() {
+        return getInt(BOOKIE_CONCURRENCY_LIMIT_INITIAL, 50);
+    }
+
+    /**
+     * Set the initial concurrency limit of a channel to a bookie.
+     *
+     * @param limit
+     *          initial concurrency limit of a channel to a bookie
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitInitial(int limit) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_INITIAL, limit);
+        return this;
+    }
+
+    /**
+     * Get the min concurrency limit of a channel to a bookie.
+     *
+     * @return the min concurrency limit of a channel to a bookie
+     */
+    public int getBookieConcurrencyLimitMin() {
+        return getInt(BOOKIE_CONCURRENCY_LIMIT_MIN, 4);
+    }
+
+    /**
+     * Set the min concurrency limit of a channel to a bookie.
+     *
+     * @param limit
+     *          min concurrency limit of a channel to a bookie
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitMin(int limit) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_MIN, limit);
+        return this;
+    }
+
+    /**
+     * Get the max concurrency limit of a channel to a bookie.
+     *
+     * @return the max concurrency limit of a channel to a bookie
+     */
+    public int getBookieConcurrencyLimitMax() {
+        return getInt(BOOKIE_CONCURRENCY_LIMIT_MAX, 1000);
+    }
+
+    /**
+     * Set the max concurrency limit of a channel to a bookie.
+     *
+     * @param limit
+     *          max concurrency limit of a channel to a bookie
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitMax(int limit) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_MAX, limit);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests of a channel waiting for the concurrency limit.
+     *
+     * @return the max number of requests waiting for the concurrency limit
+     */
+    public int getBookieConcurrencyLimitMaxQueueSize() {
+        return getInt(BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_SIZE, 1000);
+    }
+
+    /**
+     * Set the max number of requests of a channel waiting for the concurrency limit.
+     *
+     * @param maxQueueSize
+     *          max number of requests waiting for the concurrency limit
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitMaxQueueSize(int maxQueueSize) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_SIZE, maxQueueSize);
+        return this;
+    }
+
+    /**
+     * Get the max time in milliseconds a request waits for the concurrency limit before it fails.
+     *
+     * @return the max time in milliseconds a request waits for the concurrency limit
+     */
+    public long getBookieConcurrencyLimitMaxQueueWaitMs() {
+        return getLong(BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_WAIT_MS, 100L);
+    }
+
+    /**
+     * Set the max time in milliseconds a request waits for the concurrency limit before it fails.
+     *
+     * @param maxQueueWaitMs
+     *          max time in milliseconds a request waits for the concurrency limit
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieConcurrencyLimitMaxQueueWaitMs(long maxQueueWaitMs) {
+        setProperty(BOOKIE_CONCURRENCY_LIMIT_MAX_QUEUE_WAIT_MS, maxQueueWaitMs);
+        return this;
+    }
+
     /**
      * Get the socket read timeout. This is the number of
      * seconds we wait without hearing a response from a bookie
@@ -1204,6 +1414,60 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If latency aware reads are enabled or not.
+     *
+     * @return true if latency aware reads are enabled, otherwise false.
+     */
+    public boolean isLatencyAwareReadEnabled() {
+        return getBoolean(LATENCY_AWARE_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable latency aware reads.
+     *
+     * <p>If this flag is enabled, the client tracks the read latency of every bookie it reads from.
+     * The first read of an entry goes to the replica with the lowest average latency, among the
+     * replicas without recent failures. The speculative read timeout of an entry is the observed
+     * 99th percentile latency of that replica, bounded by {@link #getMinSpeculativeReadTimeout()}
+     * and {@link #getMaxSpeculativeReadTimeout()}. Until a replica has been read from, the
+     * speculative read timeout is {@link #getFirstSpeculativeReadTimeout()}.
+     *
+     * <p>Latency aware reads are ignored when sticky reads are enabled, and speculative reads are
+     * still disabled when the first speculative read timeout is 0.
+     *
+     * @param enabled the flag to enable/disable latency aware reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the min speculative read timeout used by latency aware reads.
+     *
+     * @return min speculative read timeout.
+     */
+    public int getMinSpeculativeReadTimeout() {
+        return getInt(MIN_SPECULATIVE_READ_TIMEOUT, 2);
+    }
+
+    /**
+     * Set the min speculative read timeout used by latency aware reads.
+     *
+     * <p>It keeps a replica that answers very fast from triggering speculative reads on every
+     * small hiccup.
+     *
+     * @param timeout
+     *          min speculative read timeout.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMinSpeculativeReadTimeout(int timeout) {
+        setProperty(MIN_SPECULATIVE_READ_TIMEOUT, timeout);
+        return this;
+    }
+
     /**
      * If recovery batch read enabled or not.
      * @return
@@ -97,14 +97,19 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String MINOR_COMPACTION_INTERVAL = "minorCompactionInterval";
     protected static final String MINOR_COMPACTION_THRESHOLD = "minorCompactionThreshold";
     protected static final String MINOR_COMPACTION_MAX_TIME_MILLIS = "minorCompactionMaxTimeMillis";
+    protected static final String MINOR_COMPACTION_MAX_IO_BYTES = "minorCompactionMaxIoBytes";
     protected static final String MAJOR_COMPACTION_INTERVAL = "majorCompactionInterval";
     protected static final String MAJOR_COMPACTION_THRESHOLD = "majorCompactionThreshold";
     protected static final String MAJOR_COMPACTION_MAX_TIME_MILLIS = "majorCompactionMaxTimeMillis";
+    protected static final String MAJOR_COMPACTION_MAX_IO_BYTES = "majorCompactionMaxIoBytes";
     protected static final String IS_THROTTLE_BY_BYTES = "isThrottleByBytes";
     protected static final String COMPACTION_MAX_OUTSTANDING_REQUESTS = "compactionMaxOutstandingRequests";
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_JOURNAL_SYNC_LATENCY_TARGET_MS = "compactionJournalSyncLatencyTargetMs";
+    protected static final String COMPACTION_READ_LATENCY_TARGET_MS = "compactionReadLatencyTargetMs";
+    protected static final String COMPACTION_MAX_RATE_MULTIPLIER = "compactionMaxRateMultiplier";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
@@ -116,6 +121,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
     protected static final String GC_ENTRYLOGMETADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
+    protected static final String GC_ENTRYLOG_METADATA_LOAD_THREADS = "gcEntryLogMetadataLoadThreads";
     protected static final String USE_TARGET_ENTRYLOG_SIZE_FOR_GC = "useTargetEntryLogSizeForGc";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
@@ -145,6 +151,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
     protected static final String JOURNAL_WRITE_BUFFER_SIZE = "journalWriteBufferSizeKB";
+    protected static final String JOURNAL_GATHER_WRITE_MIN_SIZE = "journalGatherWriteMinSize";
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
     protected static final String NUM_JOURNAL_CALLBACK_THREADS = "numJournalCallbackThreads";
     protected static final String JOURNAL_FORMAT_VERSION_TO_WRITE = "journalFormatVersionToWrite";
@@ -152,6 +159,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_MAX_MEMORY_SIZE_MB = "journalMaxMemorySizeMb";
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
+    protected static final String JOURNAL_GROUP_COMMIT_POLICY = "journalGroupCommitPolicy";
+    protected static final String JOURNAL_GROUP_COMMIT_TARGET_LATENCY_USEC = "journalGroupCommitTargetLatencyUSec";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
@@ -169,6 +178,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
 
     protected static final String JOURNAL_DIR = "journalDirectory";
     protected static final String JOURNAL_DIRS = "journalDirectories";
+    protected static final String JOURNAL_STRIPES_PER_DIRECTORY = "journalStripesPerDirectory";
     protected static final String LEDGER_DIRS = "ledgerDirectories";
     protected static final String INDEX_DIRS = "indexDirectories";
     protected static final String ALLOW_STORAGE_EXPANSION = "allowStorageExpansion";
@@ -235,6 +245,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String REQUEST_TIMER_NO_OF_TICKS = "requestTimerNumTicks";
 
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
+    protected static final String ENTRY_LOG_MMAP_ENABLED = "entryLogMmapEnabled";
+    protected static final String ENTRY_LOG_MMAP_CACHE_MAX_SIZE = "entryLogMmapCacheMaxSizeBytes";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
     // Whether the bookie should use its hostname or ipaddress for the
     // registration.
@@ -343,6 +355,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         "maxOperationNumbersInSingleRocksdbWriteBatch";
 
     protected static final String SKIP_REPLAY_JOURNAL_INVALID_RECORD = "skipReplayJournalInvalidRecord";
+    protected static final String JOURNAL_REPLAY_THREADS = "journalReplayThreads";
 
     protected static final String MAX_BATCH_READ_SIZE = "maxBatchReadSize";
     protected static final int DEFAULT_MAX_BATCH_READ_SIZE = 5 * 1024 * 1024; // 5MB
@@ -564,6 +577,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of threads loading the metadata of the entry logs missing from the entrylog metadata-map,
+     * like on the first garbage collection after a restart without persisted metadata. The metadata is read
+     * from the ledgers map index at the end of the entry logs, or by scanning the entry logs without it.
+     *
+     * @return number of threads loading the entrylog metadata (default: 1)
+     */
+    public int getGcEntryLogMetadataLoadThreads() {
+        return getInt(GC_ENTRYLOG_METADATA_LOAD_THREADS, 1);
+    }
+
+    /**
+     * Set the number of threads loading the metadata of the entry logs missing from the entrylog metadata-map.
+     *
+     * @param numThreads number of threads loading the entrylog metadata
+     * @return server configuration.
+     */
+    public ServerConfiguration setGcEntryLogMetadataLoadThreads(int numThreads) {
+        this.setProperty(GC_ENTRYLOG_METADATA_LOAD_THREADS, numThreads);
+        return this;
+    }
+
     public boolean isUseTargetEntryLogSizeForGc() {
         return getBoolean(USE_TARGET_ENTRYLOG_SIZE_FOR_GC, false);
     }
@@ -862,6 +897,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the min size of the entries written to the journal files straight from their buffers, with a
+     * gathering write, instead of being copied to the journal write buffer.
+     *
+     * <p>The smaller entries, and the entries on heap, are still copied, as gathering many small buffers costs
+     * more than copying them.
+     *
+     * @return min size of the gathered entries in bytes, or 0 to copy all the entries
+     */
+    public int getJournalGatherWriteMinSize() {
+        return this.getInt(JOURNAL_GATHER_WRITE_MIN_SIZE, 0);
+    }
+
+    /**
+     * Set the min size of the entries written to the journal files straight from their buffers.
+     *
+     * @param minSize min size of the gathered entries in bytes, or 0 to copy all the entries
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalGatherWriteMinSize(int minSize) {
+        setProperty(JOURNAL_GATHER_WRITE_MIN_SIZE, minSize);
+        return this;
+    }
+
     /**
      * Max number of older journal files kept.
      *
@@ -1012,6 +1071,48 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getString(JOURNAL_CHANNEL_PROVIDER, "org.apache.bookkeeper.bookie.DefaultFileChannelProvider");
     }
 
+    /**
+     * Set the class name of the policy deciding when the journal flushes the group of entries it buffered.
+     *
+     * @param journalGroupCommitPolicy class name of a {@link org.apache.bookkeeper.bookie.GroupCommitPolicy}
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalGroupCommitPolicy(String journalGroupCommitPolicy) {
+        this.setProperty(JOURNAL_GROUP_COMMIT_POLICY, journalGroupCommitPolicy);
+        return this;
+    }
+
+    /**
+     * Get the class name of the policy deciding when the journal flushes the group of entries it buffered.
+     * The default policy uses the static max group wait and buffered writes thresholds.
+     *
+     * @return class name of a {@link org.apache.bookkeeper.bookie.GroupCommitPolicy}
+     */
+    public String getJournalGroupCommitPolicy() {
+        return this.getString(JOURNAL_GROUP_COMMIT_POLICY, "org.apache.bookkeeper.bookie.DefaultGroupCommitPolicy");
+    }
+
+    /**
+     * Set the add latency, in microseconds, the adaptive group commit policy tries to stay under.
+     *
+     * @param targetLatencyUSec target latency of the journal adds, in microseconds
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalGroupCommitTargetLatencyUSec(long targetLatencyUSec) {
+        this.setProperty(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_USEC, targetLatencyUSec);
+        return this;
+    }
+
+    /**
+     * Get the add latency, in microseconds, the adaptive group commit policy tries to stay under, grouping
+     * the entries for the time left by the fsyncs. Default is 5ms.
+     *
+     * @return target latency of the journal adds, in microseconds
+     */
+    public long getJournalGroupCommitTargetLatencyUSec() {
+        return this.getLong(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_USEC, 5000);
+    }
+
     /**
      * Get reuse journal files.
      * @return
@@ -1393,6 +1494,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return journalDirs;
     }
 
+    /**
+     * Get the number of journals striped in each journal directory.
+     *
+     * <p>Each stripe is a journal with its own files, writer thread and force write thread, and the ledgers
+     * are spread across all the journals of the bookie. Striping a journal directory scales the journal
+     * past a single fsync stream on devices handling parallel fsyncs, such as NVMe disks.
+     *
+     * @return number of journals per journal directory
+     */
+    public int getJournalStripesPerDirectory() {
+        return this.getInt(JOURNAL_STRIPES_PER_DIRECTORY, 1);
+    }
+
+    /**
+     * Set the number of journals striped in each journal directory.
+     *
+     * @param stripes
+     *          number of journals per journal directory
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalStripesPerDirectory(int stripes) {
+        this.setProperty(JOURNAL_STRIPES_PER_DIRECTORY, stripes);
+        return this;
+    }
+
     /**
      * Get dir names to store ledger data.
      *
@@ -1757,6 +1883,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum bytes of I/O of a major compaction run, counting the bytes read from the compacted entry
+     * logs and the bytes of live entries written again. If {@literal <=}0 the thread will run until all
+     * compaction is completed.
+     *
+     * @return limit
+     *           The number of bytes of I/O of a compaction run.
+     */
+    public long getMajorCompactionMaxIoBytes() {
+        return getLong(MAJOR_COMPACTION_MAX_IO_BYTES, -1);
+    }
+
+    /**
+     * Set the maximum bytes of I/O of a major compaction run.
+     *
+     * @see #getMajorCompactionMaxIoBytes()
+     *
+     * @param majorCompactionMaxIoBytes
+     *           The number of bytes of I/O of a compaction run.
+     *
+     * @return  server configuration
+     */
+    public ServerConfiguration setMajorCompactionMaxIoBytes(long majorCompactionMaxIoBytes) {
+        setProperty(MAJOR_COMPACTION_MAX_IO_BYTES, majorCompactionMaxIoBytes);
+        return this;
+    }
+
     /**
      * Get interval to run minor compaction, in seconds.
      *
@@ -1834,6 +1987,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum bytes of I/O of a minor compaction run, counting the bytes read from the compacted entry
+     * logs and the bytes of live entries written again. If {@literal <=}0 the thread will run until all
+     * compaction is completed.
+     *
+     * @return limit
+     *           The number of bytes of I/O of a compaction run.
+     */
+    public long getMinorCompactionMaxIoBytes() {
+        return getLong(MINOR_COMPACTION_MAX_IO_BYTES, -1);
+    }
+
+    /**
+     * Set the maximum bytes of I/O of a minor compaction run.
+     *
+     * @see #getMinorCompactionMaxIoBytes()
+     *
+     * @param minorCompactionMaxIoBytes
+     *           The number of bytes of I/O of a compaction run.
+     *
+     * @return  server configuration
+     */
+    public ServerConfiguration setMinorCompactionMaxIoBytes(long minorCompactionMaxIoBytes) {
+        setProperty(MINOR_COMPACTION_MAX_IO_BYTES, minorCompactionMaxIoBytes);
+        return this;
+    }
+
     /**
      * Get whether force compaction is allowed when disk full or almost full.
      *
@@ -1943,6 +2123,52 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the entry logs that are sealed, i.e. rotated and flushed, are read through
+     * memory mappings instead of buffered read channels.
+     * Default is false
+     *
+     * @return whether the sealed entry logs are memory mapped
+     */
+    public boolean isEntryLogMmapEnabled() {
+        return getBoolean(ENTRY_LOG_MMAP_ENABLED, false);
+    }
+
+    /**
+     * Set whether the sealed entry logs are read through memory mappings.
+     *
+     * @param enabled
+     *          whether the sealed entry logs are memory mapped
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapEnabled(boolean enabled) {
+        setProperty(ENTRY_LOG_MMAP_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max total size of the memory mapped entry logs of an entry logger. The least recently
+     * used mappings are unmapped beyond it.
+     * Default is 8GB
+     *
+     * @return max size of the mapped entry logs, in bytes
+     */
+    public long getEntryLogMmapCacheMaxSize() {
+        return getLong(ENTRY_LOG_MMAP_CACHE_MAX_SIZE, 8L * 1024 * 1024 * 1024);
+    }
+
+    /**
+     * Set the max total size of the memory mapped entry logs of an entry logger.
+     *
+     * @param maxSize
+     *          max size of the mapped entry logs, in bytes
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapCacheMaxSize(long maxSize) {
+        setProperty(ENTRY_LOG_MMAP_CACHE_MAX_SIZE, maxSize);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle write requests.
      *
@@ -2973,6 +3199,72 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the target of the p99 latency of the journal fsyncs for the compaction. The compaction rate is lowered
+     * while the journal fsyncs are slower than the target. Default is 0, the journal fsyncs are not considered.
+     *
+     * @return the target p99 latency of the journal fsyncs, in milliseconds
+     */
+    public long getCompactionJournalSyncLatencyTargetMs() {
+        return getLong(COMPACTION_JOURNAL_SYNC_LATENCY_TARGET_MS, 0);
+    }
+
+    /**
+     * Set the target of the p99 latency of the journal fsyncs for the compaction.
+     *
+     * @param latencyMs the target p99 latency of the journal fsyncs, in milliseconds
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionJournalSyncLatencyTargetMs(long latencyMs) {
+        setProperty(COMPACTION_JOURNAL_SYNC_LATENCY_TARGET_MS, latencyMs);
+        return this;
+    }
+
+    /**
+     * Get the target of the p99 latency of the entry reads for the compaction. The compaction rate is lowered
+     * while the entry reads are slower than the target. Default is 0, the entry reads are not considered.
+     *
+     * @return the target p99 latency of the entry reads, in milliseconds
+     */
+    public long getCompactionReadLatencyTargetMs() {
+        return getLong(COMPACTION_READ_LATENCY_TARGET_MS, 0);
+    }
+
+    /**
+     * Set the target of the p99 latency of the entry reads for the compaction.
+     *
+     * @param latencyMs the target p99 latency of the entry reads, in milliseconds
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionReadLatencyTargetMs(long latencyMs) {
+        setProperty(COMPACTION_READ_LATENCY_TARGET_MS, latencyMs);
+        return this;
+    }
+
+    /**
+     * Get the max compaction rate, as a multiple of the configured compaction rate, that the compaction can
+     * speed up to while the foreground latency is well below its targets. Default is 4.
+     *
+     * @return the max compaction rate multiplier
+     */
+    public int getCompactionMaxRateMultiplier() {
+        return getInt(COMPACTION_MAX_RATE_MULTIPLIER, 4);
+    }
+
+    /**
+     * Set the max compaction rate, as a multiple of the configured compaction rate.
+     *
+     * @param multiplier the max compaction rate multiplier
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionMaxRateMultiplier(int multiplier) {
+        setProperty(COMPACTION_MAX_RATE_MULTIPLIER, multiplier);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -3190,6 +3482,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         if (getSkipListArenaChunkSize() < getSkipListArenaMaxAllocSize()) {
             throw new ConfigurationException("Arena max allocation size should be smaller than the chunk size.");
         }
+        if (getJournalStripesPerDirectory() < 1) {
+            throw new ConfigurationException("Invalid journal stripes per directory : "
+                    + getJournalStripesPerDirectory());
+        }
         if (getJournalAlignmentSize() < 512 || getJournalAlignmentSize() % 512 != 0) {
             throw new ConfigurationException("Invalid journal alignment size : " + getJournalAlignmentSize());
         }
@@ -4037,6 +4333,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getBoolean(SKIP_REPLAY_JOURNAL_INVALID_RECORD, false);
     }
 
+    /**
+     * Get the number of threads applying the journal records to the ledger storage when replaying the journal
+     * on startup.
+     *
+     * <p>The journal files are read on a single thread, and the records are applied by the thread of their
+     * ledger, so the records of a ledger are applied in order. With 1 thread, the records are applied by the
+     * reading thread.
+     *
+     * @return number of journal replay threads
+     */
+    public int getJournalReplayThreads() {
+        return this.getInt(JOURNAL_REPLAY_THREADS, 1);
+    }
+
+    /**
+     * Set the number of threads applying the journal records to the ledger storage when replaying the journal.
+     *
+     * @param numThreads number of journal replay threads
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalReplayThreads(int numThreads) {
+        this.setProperty(JOURNAL_REPLAY_THREADS, numThreads);
+        return this;
+    }
+
     /**
      * Get default rocksdb conf.
      *
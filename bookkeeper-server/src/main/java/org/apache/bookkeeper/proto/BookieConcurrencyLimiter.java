@@ -0,0 +1,158 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.stats.Counter;
+
+/**
+ * Adaptive limit of the requests in flight to a bookie, following the TCP Vegas congestion avoidance.
+ *
+ * <p>The limiter tracks the lowest round trip time of the requests, as the latency of the bookie without
+ * load, and estimates from each sample how many requests are queued at the bookie:
+ * {@code limit * (1 - rttNoLoad / rtt)}. The limit grows while the estimated queue is short, and shrinks
+ * when it gets long or a request times out. The no load round trip time is probed again every
+ * {@link #PROBE_INTERVAL_SAMPLES} samples, so it follows the bookie when its latency changes.
+ *
+ * <p>The limit does not grow while less than half of it is used, so a lightly used channel does not build
+ * up a limit it has never been tested against.
+ */
+class BookieConcurrencyLimiter {
+
+    static final int PROBE_INTERVAL_SAMPLES = 1000;
+    static final double DROP_BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    // sum of the limits of the channels to the bookie
+    private final Counter limitCounter;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private long rttNoLoadNanos = 0L;
+    private int samplesSinceProbe = 0;
+    private boolean closed = false;
+
+    BookieConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Counter limitCounter) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limitCounter = limitCounter;
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        limitCounter.addCount(limit);
+    }
+
+    /**
+     * Take a slot for a request, if there are less requests in flight than the limit.
+     *
+     * @return true if the request can be sent
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the slot of a request that was not sent.
+     */
+    void cancel() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * Return the slot of a completed request and adapt the limit to its round trip time.
+     *
+     * @param rttNanos time from sending the request to its completion
+     * @param dropped whether the request timed out
+     */
+    void release(long rttNanos, boolean dropped) {
+        int inflightBefore = inflight.getAndDecrement();
+        synchronized (this) {
+            double newLimit = dropped ? estimatedLimit * DROP_BACKOFF_RATIO : vegasLimit(rttNanos, inflightBefore);
+            setEstimatedLimit(newLimit);
+        }
+    }
+
+    private double vegasLimit(long rttNanos, int inflightBefore) {
+        if (rttNanos <= 0) {
+            return estimatedLimit;
+        }
+        if (++samplesSinceProbe >= PROBE_INTERVAL_SAMPLES || rttNoLoadNanos == 0L || rttNanos < rttNoLoadNanos) {
+            rttNoLoadNanos = rttNanos;
+            samplesSinceProbe = 0;
+        }
+        double log = Math.max(1.0, Math.log10(estimatedLimit));
+        double alpha = 3 * log;
+        double beta = 6 * log;
+        double queueSize = Math.ceil(estimatedLimit * (1 - (double) rttNoLoadNanos / rttNanos));
+        boolean appLimited = inflightBefore * 2 < estimatedLimit;
+        if (queueSize <= log) {
+            return appLimited ? estimatedLimit : estimatedLimit + beta;
+        } else if (queueSize < alpha) {
+            return appLimited ? estimatedLimit : estimatedLimit + log;
+        } else if (queueSize > beta) {
+            return estimatedLimit - log;
+        } else {
+            return estimatedLimit;
+        }
+    }
+
+    private void setEstimatedLimit(double newLimit) {
+        if (closed) {
+            return;
+        }
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+        int oldLimit = limit;
+        int intLimit = (int) estimatedLimit;
+        if (intLimit != oldLimit) {
+            limit = intLimit;
+            limitCounter.addCount(intLimit - oldLimit);
+        }
+    }
+
+    /**
+     * Remove the limit of this limiter from the limit reported for the bookie.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            limitCounter.addCount(-limit);
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInflight() {
+        return inflight.get();
+    }
+}
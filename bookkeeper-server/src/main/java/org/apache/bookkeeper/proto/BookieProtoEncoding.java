@@ -36,6 +36,8 @@ import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
@@ -193,6 +195,35 @@ public class BookieProtoEncoding {
                         masterKey, packet);
             }
 
+            case BookieProtocol.BATCH_ADD_ENTRY: {
+                byte[] masterKey = readMasterKey(packet);
+                int numEntries = packet.readInt();
+                if (numEntries <= 0 || numEntries > packet.readableBytes() / 4) {
+                    throw new IllegalStateException("Received invalid batched add request with "
+                            + numEntries + " entries");
+                }
+                // Check the sizes of all the entries before creating any request
+                int entryPos = packet.readerIndex() + numEntries * 4;
+                for (int i = 0; i < numEntries; i++) {
+                    int entrySize = packet.getInt(packet.readerIndex() + i * 4);
+                    if (entrySize < 16 || entrySize > packet.writerIndex() - entryPos) {
+                        throw new IllegalStateException("Received invalid batched add request with entry size "
+                                + entrySize);
+                    }
+                    entryPos += entrySize;
+                }
+                List<BookieProtocol.ParsedAddRequest> requests = new ArrayList<>(numEntries);
+                entryPos = packet.readerIndex() + numEntries * 4;
+                for (int i = 0; i < numEntries; i++) {
+                    int entrySize = packet.getInt(packet.readerIndex() + i * 4);
+                    ByteBuf entry = packet.slice(entryPos, entrySize);
+                    requests.add(BookieProtocol.ParsedAddRequest.create(
+                            version, entry.getLong(0), entry.getLong(8), flags, masterKey, entry));
+                    entryPos += entrySize;
+                }
+                return requests;
+            }
+
             case BookieProtocol.READENTRY:
                 ledgerId = packet.readLong();
                 entryId = packet.readLong();
@@ -565,7 +596,25 @@ public class BookieProtoEncoding {
                 } else {
                     result = reqPreV3.decode(buffer);
                 }
-                ctx.fireChannelRead(result);
+                if (result instanceof List) {
+                    // A batched add request is processed as the add requests of its entries
+                    List<?> requests = (List<?>) result;
+                    int next = 0;
+                    try {
+                        while (next < requests.size()) {
+                            ctx.fireChannelRead(requests.get(next++));
+                        }
+                    } finally {
+                        // The requests that were not handed to the next handler are not released by it
+                        for (int i = next; i < requests.size(); i++) {
+                            BookieProtocol.ParsedAddRequest request = (BookieProtocol.ParsedAddRequest) requests.get(i);
+                            request.release();
+                            request.recycle();
+                        }
+                    }
+                } else {
+                    ctx.fireChannelRead(result);
+                }
             } finally {
                 ReferenceCountUtil.release(msg);
             }
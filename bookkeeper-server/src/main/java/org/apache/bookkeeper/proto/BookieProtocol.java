@@ -134,6 +134,12 @@ public interface BookieProtocol {
     byte WRITE_LAC = 5;
     byte GET_BOOKIE_INFO = 6;
     byte BATCH_READ_ENTRY = 7;
+    /**
+     * The Batched add entry request payload is the master key, the 4-byte number of entries, the 4-byte size of
+     * each entry and then the entries of the same ledger, each exactly as in an Add entry request. The bookie
+     * processes it as the Add entry requests of its entries, and sends an Add entry response for each of them.
+     */
+    byte BATCH_ADD_ENTRY = 8;
 
     /**
      * The error code that indicates success.
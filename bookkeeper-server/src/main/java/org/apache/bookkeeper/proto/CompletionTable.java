@@ -0,0 +1,417 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+
+/**
+ * Table of the in-flight operations of a channel, keyed either by txn id, or by (ledger id, entry id) for the
+ * requests of the v2 protocol.
+ *
+ * <p>The keys are primitive fields of the completions themselves, and the completions are linked both in the
+ * chains of a hash table and in the slots of a hashed wheel of their deadlines, so tracking an operation
+ * allocates nothing and expiring the timed out operations only visits the slots of the elapsed ticks, instead
+ * of scanning all the in-flight operations.
+ *
+ * <p>Several completions may have the same key, when the same entry is read several times with the v2
+ * protocol. They are removed in the order they were added.
+ *
+ * <p>The table is split in sections, each guarded by its own lock.
+ */
+class CompletionTable<V extends CompletionTable.Completion<V>> {
+
+    /**
+     * Entry id of the keys made of a txn id.
+     */
+    static final long TXN_ID_KEY = Long.MIN_VALUE;
+
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int WHEEL_SIZE = 1024;
+
+    private static final int NUM_SECTIONS = 16;
+    private static final int MIN_SECTION_CAPACITY = 16;
+    private static final long HASH_MIXER = 0xc6a4a7935bd1e995L;
+
+    /**
+     * An operation tracked by the table.
+     */
+    abstract static class Completion<V extends Completion<V>> {
+        // Key of the completion, only set by the table
+        long keyId;
+        long keyEntryId;
+        OperationType keyOperationType;
+        long deadlineNanos;
+
+        // Links of the completion in the table
+        int wheelSlot;
+        V nextInBucket;
+        V prevInSlot;
+        V nextInSlot;
+    }
+
+    private final Section<V>[] sections;
+
+    @SuppressWarnings("unchecked")
+    CompletionTable() {
+        long nowTick = tick(System.nanoTime());
+        sections = new Section[NUM_SECTIONS];
+        for (int i = 0; i < NUM_SECTIONS; i++) {
+            sections[i] = new Section<>(nowTick);
+        }
+    }
+
+    static long hash(long id, long entryId) {
+        long hash = id * HASH_MIXER;
+        hash ^= hash >>> 47;
+        hash *= HASH_MIXER;
+        hash += 31 + (entryId * HASH_MIXER);
+        hash ^= hash >>> 47;
+        hash *= HASH_MIXER;
+        return hash;
+    }
+
+    static long tick(long nanos) {
+        return Math.floorDiv(nanos, TICK_NANOS);
+    }
+
+    private Section<V> getSection(long hash) {
+        return sections[(int) (hash >>> 32) & (NUM_SECTIONS - 1)];
+    }
+
+    /**
+     * Track an operation of the v3 protocol, or a batched read of the v2 protocol.
+     */
+    void putByTxnId(long txnId, OperationType operationType, V completion, long deadlineNanos) {
+        put(txnId, TXN_ID_KEY, operationType, completion, deadlineNanos);
+    }
+
+    /**
+     * Track an operation of the v2 protocol.
+     */
+    void putByEntry(long ledgerId, long entryId, OperationType operationType, V completion, long deadlineNanos) {
+        put(ledgerId, entryId, operationType, completion, deadlineNanos);
+    }
+
+    private void put(long id, long entryId, OperationType operationType, V completion, long deadlineNanos) {
+        completion.keyId = id;
+        completion.keyEntryId = entryId;
+        completion.keyOperationType = operationType;
+        completion.deadlineNanos = deadlineNanos;
+        long h = hash(id, entryId);
+        getSection(h).put(completion, (int) h);
+    }
+
+    /**
+     * Remove the oldest completion of a txn id.
+     *
+     * @return the completion, or null if there is none
+     */
+    V removeByTxnId(long txnId, OperationType operationType) {
+        return remove(txnId, TXN_ID_KEY, operationType);
+    }
+
+    /**
+     * Remove the oldest completion of an entry.
+     *
+     * @return the completion, or null if there is none
+     */
+    V removeByEntry(long ledgerId, long entryId, OperationType operationType) {
+        return remove(ledgerId, entryId, operationType);
+    }
+
+    private V remove(long id, long entryId, OperationType operationType) {
+        long h = hash(id, entryId);
+        return getSection(h).remove(id, entryId, operationType, null, (int) h);
+    }
+
+    /**
+     * Remove a completion if it is still in the table.
+     *
+     * @return true if the completion was in the table
+     */
+    boolean remove(V completion) {
+        return remove(completion, completion.keyId, completion.keyEntryId, completion.keyOperationType);
+    }
+
+    /**
+     * Remove a completion if it is still in the table under the given key, the completion may have been
+     * reused for another operation in the meantime.
+     *
+     * @return true if the completion was in the table
+     */
+    boolean remove(V completion, long id, long entryId, OperationType operationType) {
+        long h = hash(id, entryId);
+        return getSection(h).remove(id, entryId, operationType, completion, (int) h) != null;
+    }
+
+    /**
+     * Check if a completion is still in the table under the given key.
+     */
+    boolean contains(V completion, long id, long entryId, OperationType operationType) {
+        long h = hash(id, entryId);
+        return getSection(h).contains(id, entryId, operationType, completion, (int) h);
+    }
+
+    /**
+     * Remove the completions whose deadline has passed.
+     *
+     * @param nowNanos the current time
+     * @param timeoutCallback called on each removed completion, outside of the locks of the table
+     * @return the number of removed completions
+     */
+    int removeExpired(long nowNanos, Consumer<V> timeoutCallback) {
+        int expired = 0;
+        for (Section<V> section : sections) {
+            V completion = section.removeExpired(nowNanos);
+            while (completion != null) {
+                // The completion may be reused as soon as the callback ran
+                V next = completion.nextInSlot;
+                completion.nextInSlot = null;
+                timeoutCallback.accept(completion);
+                completion = next;
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Remove all the completions.
+     *
+     * @param callback called on each removed completion, outside of the locks of the table
+     */
+    void removeAll(Consumer<V> callback) {
+        for (Section<V> section : sections) {
+            V completion = section.removeAll();
+            while (completion != null) {
+                V next = completion.nextInSlot;
+                completion.nextInSlot = null;
+                callback.accept(completion);
+                completion = next;
+            }
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Section<V> section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    private static final class Section<V extends Completion<V>> {
+        private Object[] buckets = new Object[MIN_SECTION_CAPACITY];
+        private final Object[] wheel = new Object[WHEEL_SIZE];
+        // The tick of the last expiration, its slot may still hold completions expiring in the same tick
+        private long lastTick;
+        private volatile int size = 0;
+
+        Section(long nowTick) {
+            this.lastTick = nowTick;
+        }
+
+        synchronized void put(V completion, int hash) {
+            completion.nextInBucket = null;
+            int bucket = hash & (buckets.length - 1);
+            V last = bucket(bucket);
+            if (last == null) {
+                buckets[bucket] = completion;
+            } else {
+                while (last.nextInBucket != null) {
+                    last = last.nextInBucket;
+                }
+                last.nextInBucket = completion;
+            }
+
+            // A completion whose deadline already passed is expired on the next expiration
+            int slot = (int) (Math.max(tick(completion.deadlineNanos), lastTick) & (WHEEL_SIZE - 1));
+            V head = slot(slot);
+            completion.wheelSlot = slot;
+            completion.prevInSlot = null;
+            completion.nextInSlot = head;
+            if (head != null) {
+                head.prevInSlot = completion;
+            }
+            wheel[slot] = completion;
+
+            size++;
+            if (size > buckets.length * 3 / 4) {
+                rehash(buckets.length * 2);
+            }
+        }
+
+        // Remove the oldest completion of the key, or the given completion if not null
+        synchronized V remove(long id, long entryId, OperationType operationType, V expected, int hash) {
+            int bucket = hash & (buckets.length - 1);
+            V prev = null;
+            V completion = bucket(bucket);
+            while (completion != null) {
+                if (completion.keyId == id && completion.keyEntryId == entryId
+                        && completion.keyOperationType == operationType
+                        && (expected == null || completion == expected)) {
+                    if (prev == null) {
+                        buckets[bucket] = completion.nextInBucket;
+                    } else {
+                        prev.nextInBucket = completion.nextInBucket;
+                    }
+                    completion.nextInBucket = null;
+                    unlinkFromWheel(completion);
+                    size--;
+                    if (buckets.length > MIN_SECTION_CAPACITY && size < buckets.length / 8) {
+                        rehash(buckets.length / 2);
+                    }
+                    return completion;
+                }
+                prev = completion;
+                completion = completion.nextInBucket;
+            }
+            return null;
+        }
+
+        synchronized boolean contains(long id, long entryId, OperationType operationType, V expected, int hash) {
+            V completion = bucket(hash & (buckets.length - 1));
+            while (completion != null) {
+                if (completion == expected) {
+                    return completion.keyId == id && completion.keyEntryId == entryId
+                            && completion.keyOperationType == operationType;
+                }
+                completion = completion.nextInBucket;
+            }
+            return false;
+        }
+
+        // Returns the expired completions, linked by their nextInSlot field
+        synchronized V removeExpired(long nowNanos) {
+            if (size == 0) {
+                lastTick = tick(nowNanos);
+                return null;
+            }
+            long nowTick = tick(nowNanos);
+            long fromTick = nowTick - lastTick >= WHEEL_SIZE ? nowTick - WHEEL_SIZE + 1 : lastTick;
+            V expired = null;
+            for (long t = fromTick; t <= nowTick; t++) {
+                int slot = (int) (t & (WHEEL_SIZE - 1));
+                V completion = slot(slot);
+                while (completion != null) {
+                    V next = completion.nextInSlot;
+                    if (completion.deadlineNanos - nowNanos <= 0) {
+                        unlinkFromWheel(completion);
+                        unlinkFromBucket(completion);
+                        size--;
+                        completion.nextInSlot = expired;
+                        expired = completion;
+                    }
+                    completion = next;
+                }
+            }
+            lastTick = nowTick;
+            return expired;
+        }
+
+        // Returns all the completions, linked by their nextInSlot field
+        synchronized V removeAll() {
+            V all = null;
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                V completion = slot(slot);
+                while (completion != null) {
+                    V next = completion.nextInSlot;
+                    completion.prevInSlot = null;
+                    completion.nextInBucket = null;
+                    completion.nextInSlot = all;
+                    all = completion;
+                    completion = next;
+                }
+                wheel[slot] = null;
+            }
+            buckets = new Object[MIN_SECTION_CAPACITY];
+            size = 0;
+            return all;
+        }
+
+        private void unlinkFromWheel(V completion) {
+            if (completion.prevInSlot == null) {
+                wheel[completion.wheelSlot] = completion.nextInSlot;
+            } else {
+                completion.prevInSlot.nextInSlot = completion.nextInSlot;
+            }
+            if (completion.nextInSlot != null) {
+                completion.nextInSlot.prevInSlot = completion.prevInSlot;
+            }
+            completion.prevInSlot = null;
+            completion.nextInSlot = null;
+        }
+
+        private void unlinkFromBucket(V completion) {
+            long h = hash(completion.keyId, completion.keyEntryId);
+            int bucket = (int) h & (buckets.length - 1);
+            V prev = null;
+            V current = bucket(bucket);
+            while (current != completion) {
+                prev = current;
+                current = current.nextInBucket;
+            }
+            if (prev == null) {
+                buckets[bucket] = completion.nextInBucket;
+            } else {
+                prev.nextInBucket = completion.nextInBucket;
+            }
+            completion.nextInBucket = null;
+        }
+
+        private void rehash(int capacity) {
+            Object[] oldBuckets = buckets;
+            buckets = new Object[capacity];
+            // Keep the completions of a key in the order they were added
+            Object[] tails = new Object[capacity];
+            for (Object head : oldBuckets) {
+                @SuppressWarnings("unchecked")
+                V completion = (V) head;
+                while (completion != null) {
+                    V next = completion.nextInBucket;
+                    completion.nextInBucket = null;
+                    int bucket = (int) hash(completion.keyId, completion.keyEntryId) & (capacity - 1);
+                    @SuppressWarnings("unchecked")
+                    V tail = (V) tails[bucket];
+                    if (tail == null) {
+                        buckets[bucket] = completion;
+                    } else {
+                        tail.nextInBucket = completion;
+                    }
+                    tails[bucket] = completion;
+                    completion = next;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V bucket(int bucket) {
+            return (V) buckets[bucket];
+        }
+
+        @SuppressWarnings("unchecked")
+        private V slot(int slot) {
+            return (V) wheel[slot];
+        }
+    }
+}
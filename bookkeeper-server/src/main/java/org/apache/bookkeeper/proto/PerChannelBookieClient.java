@@ -79,15 +79,16 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -145,8 +146,6 @@ import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -187,13 +186,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long getBookieInfoTimeoutNanos;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-            ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().autoShrink(true).build();
-
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    private final CompletionTable<CompletionValue> completions = new CompletionTable<>();
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -314,10 +307,45 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "the number of failed tls handshakes"
     )
     private final Counter failedTlsHandshakeCounter;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT,
+        help = "the concurrency limit of the add_entry and read_entry requests to the bookie"
+    )
+    private final Counter concurrencyLimitCounter;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT_QUEUE_WAIT,
+        help = "the time requests waited for the concurrency limit of the bookie"
+    )
+    private final OpStatsLogger concurrencyLimitQueueWaitOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT_REJECTED,
+        help = "the number of requests failed with TooManyRequestsException by the concurrency limit of the bookie"
+    )
+    private final Counter concurrencyLimitRejectedCounter;
 
     private final boolean useV2WireProtocol;
     private final boolean preserveMdcForTaskExecution;
 
+    // Max number of entries of a batched add request, 1 if the adds are not batched
+    private final int batchAddMaxEntries;
+    private final int batchAddMaxBytes;
+    // Adds of the v2 protocol waiting for the channel to write them in batched add requests
+    private final Object pendingAddsLock = new Object();
+    private PendingAdds pendingAdds = new PendingAdds();
+    private PendingAdds sparePendingAdds = new PendingAdds();
+    private final Runnable writePendingAddsTask = this::writePendingAdds;
+
+    // Adaptive limit of the adds and reads in flight, null if the requests are not limited
+    private final BookieConcurrencyLimiter concurrencyLimiter;
+    private final int concurrencyLimitMaxQueueSize;
+    private final long concurrencyLimitMaxQueueWaitNanos;
+    // Requests waiting for the concurrency limit
+    private final ConcurrentLinkedDeque<LimitedRequest> limitedRequests = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger numLimitedRequests = new AtomicInteger();
+    // Only one thread drains the requests waiting for the limit, the others ask it to drain again
+    private final AtomicBoolean drainingLimitedRequests = new AtomicBoolean();
+    private final AtomicBoolean drainLimitedRequestsRequested = new AtomicBoolean();
+
     /**
      * The following member variables do not need to be concurrent, or volatile
      * because they are always updated under a lock.
@@ -404,6 +432,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
+        this.batchAddMaxEntries = useV2WireProtocol && conf.isBatchAddEnabled()
+                ? Math.max(conf.getBatchAddMaxEntries(), 1) : 1;
+        this.batchAddMaxBytes = conf.getBatchAddMaxBytes();
 
         this.authProviderFactory = authProviderFactory;
         this.extRegistry = extRegistry;
@@ -442,6 +473,22 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         activeTlsChannelCounter = statsLogger.getCounter(BookKeeperClientStats.ACTIVE_TLS_CHANNEL_COUNTER);
         failedConnectionCounter = statsLogger.getCounter(BookKeeperClientStats.FAILED_CONNECTION_COUNTER);
         failedTlsHandshakeCounter = statsLogger.getCounter(BookKeeperClientStats.FAILED_TLS_HANDSHAKE_COUNTER);
+        concurrencyLimitCounter = statsLogger.getCounter(BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT);
+        concurrencyLimitQueueWaitOpLogger =
+                statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT_QUEUE_WAIT);
+        concurrencyLimitRejectedCounter =
+                statsLogger.getCounter(BookKeeperClientStats.CHANNEL_CONCURRENCY_LIMIT_REJECTED);
+
+        if (conf.isBookieConcurrencyLimitEnabled()) {
+            this.concurrencyLimiter = new BookieConcurrencyLimiter(conf.getBookieConcurrencyLimitInitial(),
+                    conf.getBookieConcurrencyLimitMin(), conf.getBookieConcurrencyLimitMax(),
+                    concurrencyLimitCounter);
+        } else {
+            this.concurrencyLimiter = null;
+        }
+        this.concurrencyLimitMaxQueueSize = conf.getBookieConcurrencyLimitMaxQueueSize();
+        this.concurrencyLimitMaxQueueWaitNanos =
+                TimeUnit.MILLISECONDS.toNanos(conf.getBookieConcurrencyLimitMaxQueueWaitMs());
 
         this.pcbcPool = pcbcPool;
 
@@ -527,7 +574,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        return completions.size();
     }
 
     protected ChannelFuture connect() {
@@ -688,12 +735,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void writeLac(final long ledgerId, final byte[] masterKey, final long lac, ByteBufList toSend, WriteLacCallback cb,
             Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.WRITE_LAC);
-        // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new WriteLacCompletion(completionKey, cb,
-                                                     ctx, ledgerId));
+        final WriteLacCompletion completion = new WriteLacCompletion(cb, ctx, ledgerId);
+        putCompletionByTxnId(txnId, OperationType.WRITE_LAC, completion);
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -718,7 +761,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setWriteLacRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, writeLacRequest);
+        writeAndFlush(channel, completion, writeLacRequest);
     }
 
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
@@ -730,12 +773,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return;
         }
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.FORCE_LEDGER);
-        // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new ForceLedgerCompletion(completionKey, cb,
-                                                     ctx, ledgerId));
+        final ForceLedgerCompletion completion = new ForceLedgerCompletion(cb, ctx, ledgerId);
+        putCompletionByTxnId(txnId, OperationType.FORCE_LEDGER, completion);
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -749,7 +788,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setForceLedgerRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, forceLedgerRequest);
+        writeAndFlush(channel, completion, forceLedgerRequest);
     }
 
     /**
@@ -776,14 +815,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void addEntry(final long ledgerId, byte[] masterKey, final long entryId, ReferenceCounted toSend, WriteCallback cb,
                   Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final AddCompletion completion;
         if (useV2WireProtocol) {
             if (writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
                 LOG.error("invalid writeflags {} for v2 protocol", writeFlags);
                 cb.writeComplete(BKException.Code.IllegalOpException, ledgerId, entryId, bookieId, ctx);
                 return;
             }
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.ADD_ENTRY);
+            completion = acquireAddCompletion(cb, ctx, ledgerId, entryId);
+            putCompletionByEntry(ledgerId, entryId, OperationType.ADD_ENTRY, completion);
 
             if (toSend instanceof ByteBuf) {
                 request = ((ByteBuf) toSend).retainedDuplicate();
@@ -792,7 +832,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.ADD_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -835,34 +874,239 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setHeader(headerBuilder)
                     .setAddRequest(addBuilder)
                     .build();
+
+            completion = acquireAddCompletion(cb, ctx, ledgerId, entryId);
+            putCompletionByTxnId(txnId, OperationType.ADD_ENTRY, completion);
         }
 
-        putCompletionKeyValue(completionKey,
-                              acquireAddCompletion(completionKey,
-                                                   cb, ctx, ledgerId, entryId));
         final Channel c = channel;
         if (c == null) {
             // usually checked in writeAndFlush, but we have extra check
             // because we need to release toSend.
-            errorOut(completionKey);
+            errorOut(completion);
             ReferenceCountUtil.release(toSend);
             return;
+        } else if (admit(completion, request, allowFastFail)) {
+            sendAdd(c, completion, request, allowFastFail);
+        }
+    }
+
+    private void sendAdd(Channel c, AddCompletion completion, Object request, boolean allowFastFail) {
+        if (batchAddMaxEntries > 1 && (!allowFastFail || c.isWritable())) {
+            // The entry is written with the other adds waiting for the channel
+            addPendingAdd(c, completion, request, completion.ledgerId, completion.entryId);
         } else {
             // addEntry times out on backpressure
-            writeAndFlush(c, completionKey, request, allowFastFail);
+            writeAndFlush(c, completion, request, allowFastFail);
+        }
+    }
+
+    private void addPendingAdd(Channel c, AddCompletion completion, Object request, long ledgerId, long entryId) {
+        boolean scheduleWrite;
+        synchronized (pendingAddsLock) {
+            scheduleWrite = pendingAdds.size == 0;
+            pendingAdds.add(completion, request, ledgerId, entryId);
+        }
+        if (scheduleWrite) {
+            c.eventLoop().execute(writePendingAddsTask);
+        }
+    }
+
+    /**
+     * Write the pending adds, with the consecutive entries of the same ledger in batched add requests.
+     */
+    private void writePendingAdds() {
+        PendingAdds adds;
+        synchronized (pendingAddsLock) {
+            adds = pendingAdds;
+            pendingAdds = sparePendingAdds != null ? sparePendingAdds : new PendingAdds();
+            sparePendingAdds = null;
+        }
+
+        final Channel c = channel;
+        if (c == null) {
+            LOG.warn("Add of {} entries failed: channel == null", adds.size);
+            for (int i = 0; i < adds.size; i++) {
+                ReferenceCountUtil.release(adds.requests[i]);
+                errorOutAdd(adds.completions[i], adds.ledgerIds[i], adds.entryIds[i]);
+            }
+        }
+        int start = 0;
+        while (c != null && start < adds.size) {
+            int end = start + 1;
+            int firstHeader = v2AddHeader(adds.requests[start]);
+            long bytes = v2AddPayloadBytes(adds.requests[start]);
+            while (firstHeader != 0 && end < adds.size && end - start < batchAddMaxEntries
+                    && adds.ledgerIds[end] == adds.ledgerIds[start]
+                    && v2AddHeader(adds.requests[end]) == firstHeader
+                    && bytes + v2AddPayloadBytes(adds.requests[end]) <= batchAddMaxBytes) {
+                bytes += v2AddPayloadBytes(adds.requests[end]);
+                end++;
+            }
+            if (end - start == 1) {
+                writeAndFlush(c, adds.completions[start], adds.requests[start]);
+            } else {
+                writeBatchedAdd(c, adds, start, end, firstHeader, (int) bytes);
+            }
+            start = end;
+        }
+
+        adds.clear();
+        synchronized (pendingAddsLock) {
+            sparePendingAdds = adds;
+        }
+    }
+
+    private void writeBatchedAdd(Channel c, PendingAdds adds, int start, int end, int firstHeader,
+                                 int payloadBytes) {
+        final int numEntries = end - start;
+        final AddCompletion[] batchCompletions = Arrays.copyOfRange(adds.completions, start, end);
+        final long ledgerId = adds.ledgerIds[start];
+        final long[] entryIds = Arrays.copyOfRange(adds.entryIds, start, end);
+
+        ByteBufList request = newBatchedAddRequest(allocator, adds.requests, start, end, firstHeader, payloadBytes);
+
+        try {
+            final long startTime = MathUtils.nowInNano();
+            ChannelPromise promise = c.newPromise().addListener(future -> {
+                if (future.isSuccess()) {
+                    nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    for (int i = 0; i < numEntries; i++) {
+                        if (completions.contains(batchCompletions[i], ledgerId, entryIds[i],
+                                OperationType.ADD_ENTRY)) {
+                            batchCompletions[i].setOutstanding();
+                        }
+                    }
+                } else {
+                    nettyOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                }
+            });
+            c.writeAndFlush(request, promise);
+        } catch (Throwable e) {
+            LOG.warn("Batched add of {} entries of ledger {} failed", numEntries, ledgerId, e);
+            for (int i = 0; i < numEntries; i++) {
+                errorOutAdd(batchCompletions[i], ledgerId, entryIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Build a batched add request out of v2 add requests of consecutive entries of a ledger, which are released.
+     *
+     * @param firstHeader the packet header shared by the add requests
+     * @param payloadBytes the size of the entries of the add requests
+     */
+    static ByteBufList newBatchedAddRequest(ByteBufAllocator allocator, Object[] requests, int start, int end,
+                                            int firstHeader, int payloadBytes) {
+        int numEntries = end - start;
+        int headerSize = 4 + BookieProtocol.MASTER_KEY_LENGTH + 4 + 4 * numEntries;
+        ByteBuf header = allocator.buffer(4 + headerSize);
+        header.writeInt(headerSize + payloadBytes);
+        header.writeInt(BookieProtocol.PacketHeader.toInt(BookieProtocol.PacketHeader.getVersion(firstHeader),
+                BookieProtocol.BATCH_ADD_ENTRY,
+                BookieProtocol.PacketHeader.getFlags(firstHeader)));
+        ByteBuf firstRequest = requests[start] instanceof ByteBuf
+                ? (ByteBuf) requests[start] : ((ByteBufList) requests[start]).getBuffer(0);
+        header.writeBytes(firstRequest, firstRequest.readerIndex() + 8, BookieProtocol.MASTER_KEY_LENGTH);
+        header.writeInt(numEntries);
+        for (int i = start; i < end; i++) {
+            header.writeInt(v2AddPayloadBytes(requests[i]));
+        }
+        ByteBufList request = ByteBufList.get(header);
+        for (int i = start; i < end; i++) {
+            addV2AddPayload(request, requests[i]);
+        }
+        return request;
+    }
+
+    // The completion of a pending add may have been done and reused by another operation
+    private void errorOutAdd(AddCompletion completion, long ledgerId, long entryId) {
+        if (completions.remove(completion, ledgerId, entryId, OperationType.ADD_ENTRY)) {
+            completion.errorOut();
+        }
+    }
+
+    // Size of the frame header and master key of a v2 add request, before the entry
+    private static final int V2_ADD_PREFIX_BYTES = 4 + 4 + BookieProtocol.MASTER_KEY_LENGTH;
+
+    // Packet header of a v2 add request, or 0 if the request can not be batched
+    static int v2AddHeader(Object request) {
+        ByteBuf first = request instanceof ByteBuf ? (ByteBuf) request : ((ByteBufList) request).getBuffer(0);
+        if (first.readableBytes() < V2_ADD_PREFIX_BYTES) {
+            return 0;
+        }
+        return first.getInt(first.readerIndex() + 4);
+    }
+
+    static int v2AddPayloadBytes(Object request) {
+        int bytes = request instanceof ByteBuf
+                ? ((ByteBuf) request).readableBytes() : ((ByteBufList) request).readableBytes();
+        return bytes - V2_ADD_PREFIX_BYTES;
+    }
+
+    // Move the entry of a v2 add request to a batched add request
+    private static void addV2AddPayload(ByteBufList batch, Object request) {
+        if (request instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) request;
+            batch.add(buf.retainedSlice(buf.readerIndex() + V2_ADD_PREFIX_BYTES,
+                    buf.readableBytes() - V2_ADD_PREFIX_BYTES));
+        } else {
+            ByteBufList list = (ByteBufList) request;
+            ByteBuf first = list.getBuffer(0);
+            if (first.readableBytes() > V2_ADD_PREFIX_BYTES) {
+                batch.add(first.retainedSlice(first.readerIndex() + V2_ADD_PREFIX_BYTES,
+                        first.readableBytes() - V2_ADD_PREFIX_BYTES));
+            }
+            for (int i = 1; i < list.size(); i++) {
+                batch.add(list.getBuffer(i).retain());
+            }
+        }
+        ReferenceCountUtil.release(request);
+    }
+
+    /**
+     * Adds waiting to be written, with the keys of their completions when they were added.
+     */
+    private static final class PendingAdds {
+        private static final int INITIAL_CAPACITY = 64;
+
+        AddCompletion[] completions = new AddCompletion[INITIAL_CAPACITY];
+        Object[] requests = new Object[INITIAL_CAPACITY];
+        long[] ledgerIds = new long[INITIAL_CAPACITY];
+        long[] entryIds = new long[INITIAL_CAPACITY];
+        int size = 0;
+
+        void add(AddCompletion completion, Object request, long ledgerId, long entryId) {
+            if (size == completions.length) {
+                int capacity = size * 2;
+                completions = Arrays.copyOf(completions, capacity);
+                requests = Arrays.copyOf(requests, capacity);
+                ledgerIds = Arrays.copyOf(ledgerIds, capacity);
+                entryIds = Arrays.copyOf(entryIds, capacity);
+            }
+            completions[size] = completion;
+            requests[size] = request;
+            ledgerIds[size] = ledgerId;
+            entryIds[size] = entryId;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(completions, 0, size, null);
+            Arrays.fill(requests, 0, size, null);
+            size = 0;
         }
     }
 
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final ReadLacCompletion completion = new ReadLacCompletion(cb, ctx, ledgerId);
         if (useV2WireProtocol) {
             request = BookieProtocol.ReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                                                      ledgerId, 0, (short) 0, null);
-            completionKey = acquireV2Key(ledgerId, 0, OperationType.READ_LAC);
+            putCompletionByEntry(ledgerId, 0, OperationType.READ_LAC, completion);
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_LAC);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -875,17 +1119,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setHeader(headerBuilder)
                     .setReadLacRequest(readLacBuilder)
                     .build();
+            putCompletionByTxnId(txnId, OperationType.READ_LAC, completion);
         }
-        putCompletionKeyValue(completionKey,
-                              new ReadLacCompletion(completionKey, cb,
-                                                    ctx, ledgerId));
-        writeAndFlush(channel, completionKey, request);
+        writeAndFlush(channel, completion, request);
     }
 
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        final GetListOfEntriesOfLedgerCompletion completion = new GetListOfEntriesOfLedgerCompletion(cb, ledgerId);
+        putCompletionByTxnId(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER, completion);
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -897,7 +1139,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final Request getListOfEntriesOfLedgerRequest = Request.newBuilder().setHeader(headerBuilder)
                 .setGetListOfEntriesOfLedgerRequest(getListOfEntriesOfLedgerRequestBuilder).build();
 
-        writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
+        writeAndFlush(channel, completion, getListOfEntriesOfLedgerRequest);
     }
 
     /**
@@ -939,14 +1181,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                    byte[] masterKey,
                                    boolean allowFastFail) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final ReadCompletion readCompletion;
         if (useV2WireProtocol) {
             request = BookieProtocol.ReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, entryId, (short) flags, masterKey);
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.READ_ENTRY);
+            readCompletion = new ReadCompletion(cb, ctx, ledgerId, entryId);
+            putCompletionByEntry(ledgerId, entryId, OperationType.READ_ENTRY, readCompletion);
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -1000,12 +1242,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setHeader(headerBuilder)
                     .setReadRequest(readBuilder)
                     .build();
-        }
 
-        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId);
-        putCompletionKeyValue(completionKey, readCompletion);
+            readCompletion = new ReadCompletion(cb, ctx, ledgerId, entryId);
+            putCompletionByTxnId(txnId, OperationType.READ_ENTRY, readCompletion);
+        }
 
-        writeAndFlush(channel, completionKey, request, allowFastFail);
+        // long poll reads wait at the bookie on purpose, they are not bounded by the concurrency limit
+        if (null != timeOutInMillis || admit(readCompletion, request, allowFastFail)) {
+            writeAndFlush(channel, readCompletion, request, allowFastFail);
+        }
     }
 
     public void batchReadEntries(final long ledgerId,
@@ -1035,28 +1280,26 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                      byte[] masterKey,
                                      boolean allowFastFail) {
         Object request;
-        CompletionKey completionKey;
         final long txnId = getTxnId();
         if (useV2WireProtocol) {
             request = BookieProtocol.BatchedReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, startEntryId, (short) flags, masterKey, txnId, maxCount, maxSize);
-            completionKey = new TxnCompletionKey(txnId, OperationType.BATCH_READ_ENTRY);
         } else {
             throw new UnsupportedOperationException("Unsupported batch read entry operation for v3 protocol.");
         }
         BatchedReadCompletion readCompletion = new BatchedReadCompletion(
-                completionKey, cb, ctx, ledgerId, startEntryId);
-        putCompletionKeyValue(completionKey, readCompletion);
+                cb, ctx, ledgerId, startEntryId);
+        putCompletionByTxnId(txnId, OperationType.BATCH_READ_ENTRY, readCompletion);
 
-        writeAndFlush(channel, completionKey, request, allowFastFail);
+        if (admit(readCompletion, request, allowFastFail)) {
+            writeAndFlush(channel, readCompletion, request, allowFastFail);
+        }
     }
 
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
-                              new GetBookieInfoCompletion(
-                                      completionKey, cb, ctx));
+        final GetBookieInfoCompletion completion = new GetBookieInfoCompletion(cb, ctx);
+        putCompletionByTxnId(txnId, OperationType.GET_BOOKIE_INFO, completion);
 
         // Build the request and calculate the total size to be included in the packet.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -1072,17 +1315,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setGetBookieInfoRequest(getBookieInfoBuilder)
                 .build();
 
-        writeAndFlush(channel, completionKey, getBookieInfoRequest);
+        writeAndFlush(channel, completion, getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
-
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        int timedOutOperations = completions.removeExpired(MathUtils.nowInNano(), CompletionValue::timeout);
+        drainLimitedRequests();
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1121,6 +1359,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         } finally {
             closeLock.writeLock().unlock();
         }
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.close();
+        }
 
         if (channel != null && channel.pipeline().get(SslHandler.class) != null) {
             activeTlsChannelCounter.dec();
@@ -1168,18 +1409,18 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void writeAndFlush(final Channel channel,
-                               final CompletionKey key,
+                               final CompletionValue completion,
                                final Object request) {
-        writeAndFlush(channel, key, request, false);
+        writeAndFlush(channel, completion, request, false);
     }
 
     private void writeAndFlush(final Channel channel,
-                           final CompletionKey key,
+                           final CompletionValue completion,
                            final Object request,
                            final boolean allowFastFail) {
         if (channel == null) {
             LOG.warn("Operation {} failed: channel == null", StringUtils.requestToString(request));
-            errorOut(key);
+            errorOut(completion);
             return;
         }
 
@@ -1193,18 +1434,21 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             LOG.warn("Operation {} failed: TooManyRequestsException",
                     StringUtils.requestToString(request));
 
-            errorOut(key, BKException.Code.TooManyRequestsException);
+            errorOut(completion, BKException.Code.TooManyRequestsException);
             return;
         }
 
         try {
             final long startTime = MathUtils.nowInNano();
+            // The completion may be done and reused by another operation once the request is written
+            final long keyId = completion.keyId;
+            final long keyEntryId = completion.keyEntryId;
+            final OperationType keyOperationType = completion.keyOperationType;
 
             ChannelPromise promise = channel.newPromise().addListener(future -> {
                 if (future.isSuccess()) {
                     nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                    CompletionValue completion = completionObjects.get(key);
-                    if (completion != null) {
+                    if (completions.contains(completion, keyId, keyEntryId, keyOperationType)) {
                         completion.setOutstanding();
                     }
                 } else {
@@ -1214,33 +1458,27 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             channel.writeAndFlush(request, promise);
         } catch (Throwable e) {
             LOG.warn("Operation {} failed", StringUtils.requestToString(request), e);
-            errorOut(key);
+            errorOut(completion);
         }
     }
 
-    void errorOut(final CompletionKey key) {
+    void errorOut(final CompletionValue completion) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
+            LOG.debug("Removing completion of {} for ledger {}, entry {}",
+                    completion.keyOperationType, completion.ledgerId, completion.entryId);
         }
-        CompletionValue completion = completionObjects.remove(key);
-        if (completion != null) {
+        if (completions.remove(completion)) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
-    void errorOut(final CompletionKey key, final int rc) {
+    void errorOut(final CompletionValue completion, final int rc) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
+            LOG.debug("Removing completion of {} for ledger {}, entry {}",
+                    completion.keyOperationType, completion.ledgerId, completion.entryId);
         }
-        CompletionValue completion = completionObjects.remove(key);
-        if (completion != null) {
+        if (completions.remove(completion)) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1269,13 +1507,117 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
+        completions.removeAll(completion -> completion.errorOut(rc));
+        // release the requests of the failed completions still waiting for the concurrency limit
+        drainLimitedRequests();
+    }
+
+    /**
+     * Admit an add or a read within the concurrency limit of the bookie.
+     *
+     * <p>Over the limit, the request fails with a TooManyRequestsException if the caller allows to fail fast
+     * or too many requests are waiting already, so it can be sent to another bookie. Otherwise it waits for
+     * a request in flight to complete.
+     *
+     * @return true if the request can be written now, false if it waits or failed
+     */
+    private boolean admit(CompletionValue completion, Object request, boolean allowFastFail) {
+        if (concurrencyLimiter == null) {
+            return true;
         }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
+        if (limitedRequests.isEmpty() && concurrencyLimiter.tryAcquire()) {
+            completion.setAdmitted();
+            return true;
+        }
+        if (allowFastFail || numLimitedRequests.get() >= concurrencyLimitMaxQueueSize) {
+            concurrencyLimitRejectedCounter.inc();
+            errorOut(completion, BKException.Code.TooManyRequestsException);
+            ReferenceCountUtil.release(request);
+            return false;
+        }
+        numLimitedRequests.incrementAndGet();
+        limitedRequests.addLast(new LimitedRequest(completion, request));
+        // a request may have completed since the limit was checked
+        drainLimitedRequests();
+        return false;
+    }
+
+    /**
+     * Write the requests waiting for the concurrency limit, while the limit allows it. The requests that
+     * completed while they waited, timed out for instance, are dropped, and the requests that waited longer
+     * than the max queue wait fail with a TooManyRequestsException.
+     *
+     * <p>It is called from the submitters, the completions and the timeout checker, but a single thread drains
+     * at a time, so the requests are sent in their queue order. A thread that finds another one draining leaves
+     * the work to it, and the drainer drains again before leaving if it was asked to meanwhile.
+     */
+    private void drainLimitedRequests() {
+        if (concurrencyLimiter == null) {
+            return;
+        }
+        drainLimitedRequestsRequested.set(true);
+        while (drainLimitedRequestsRequested.get() && drainingLimitedRequests.compareAndSet(false, true)) {
+            try {
+                drainLimitedRequestsRequested.set(false);
+                drainLimitedRequestsWithinLimit();
+            } finally {
+                drainingLimitedRequests.set(false);
+            }
+        }
+    }
+
+    private void drainLimitedRequestsWithinLimit() {
+        LimitedRequest r;
+        while ((r = limitedRequests.peekFirst()) != null) {
+            boolean completed = !completions.contains(r.completion, r.keyId, r.keyEntryId, r.keyOperationType);
+            long waitNanos = MathUtils.elapsedNanos(r.enqueueTimeNanos);
+            if (!completed && waitNanos <= concurrencyLimitMaxQueueWaitNanos && !concurrencyLimiter.tryAcquire()) {
+                return;
+            }
+            limitedRequests.pollFirst();
+            numLimitedRequests.decrementAndGet();
+            if (completed) {
+                ReferenceCountUtil.release(r.request);
+            } else if (waitNanos > concurrencyLimitMaxQueueWaitNanos) {
+                concurrencyLimitRejectedCounter.inc();
+                concurrencyLimitQueueWaitOpLogger.registerFailedEvent(waitNanos, TimeUnit.NANOSECONDS);
+                errorOut(r.completion, BKException.Code.TooManyRequestsException);
+                ReferenceCountUtil.release(r.request);
+            } else {
+                concurrencyLimitQueueWaitOpLogger.registerSuccessfulEvent(waitNanos, TimeUnit.NANOSECONDS);
+                r.completion.setAdmitted();
+                Channel c = channel;
+                if (c == null) {
+                    errorOut(r.completion);
+                    ReferenceCountUtil.release(r.request);
+                } else if (r.completion instanceof AddCompletion) {
+                    sendAdd(c, (AddCompletion) r.completion, r.request, false);
+                } else {
+                    writeAndFlush(c, r.completion, r.request, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * A request waiting for the concurrency limit of the bookie.
+     */
+    private static final class LimitedRequest {
+        final CompletionValue completion;
+        final Object request;
+        final long enqueueTimeNanos;
+        // The completion may be done and reused by another operation while the request waits
+        final long keyId;
+        final long keyEntryId;
+        final OperationType keyOperationType;
+
+        LimitedRequest(CompletionValue completion, Object request) {
+            this.completion = completion;
+            this.request = request;
+            this.enqueueTimeNanos = MathUtils.nowInNano();
+            this.keyId = completion.keyId;
+            this.keyEntryId = completion.keyEntryId;
+            this.keyOperationType = completion.keyOperationType;
         }
     }
 
@@ -1399,14 +1741,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key;
+        CompletionValue completionValue;
         if (OperationType.BATCH_READ_ENTRY == operationType) {
-            key = new TxnCompletionKey(((BookieProtocol.BatchedReadResponse) response).getRequestId(), operationType);
+            completionValue = completions.removeByTxnId(
+                    ((BookieProtocol.BatchedReadResponse) response).getRequestId(), operationType);
         } else {
-            key = acquireV2Key(response.ledgerId, response.entryId, operationType);
+            completionValue = completions.removeByEntry(response.ledgerId, response.entryId, operationType);
         }
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1523,8 +1864,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        final CompletionValue completionValue = completions.removeByTxnId(header.getTxnId(), header.getOperation());
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1549,8 +1889,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 }
             });
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1645,7 +1983,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     // visible for testing
-    abstract class CompletionValue {
+    abstract class CompletionValue extends CompletionTable.Completion<CompletionValue> {
         private final OpStatsLogger opLogger;
         private final OpStatsLogger timeoutOpLogger;
         private final String operationName;
@@ -1654,6 +1992,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         protected long ledgerId;
         protected long entryId;
         protected long startTime;
+        // Whether the request holds a slot of the concurrency limit, taken at admittedTime
+        protected boolean admitted = false;
+        protected long admittedTime;
 
         public CompletionValue(String operationName,
                                Object ctx,
@@ -1674,7 +2015,23 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             return MathUtils.elapsedNanos(startTime);
         }
 
+        void setAdmitted() {
+            admittedTime = MathUtils.nowInNano();
+            admitted = true;
+        }
+
         void logOpResult(int rc) {
+            if (admitted) {
+                long rttNanos = MathUtils.elapsedNanos(admittedTime);
+                admitted = false;
+                if (rc == BKException.Code.OK || rc == BKException.Code.TimeoutException) {
+                    concurrencyLimiter.release(rttNanos, rc == BKException.Code.TimeoutException);
+                } else {
+                    // the other errors may not have reached the bookie, they tell nothing of its latency
+                    concurrencyLimiter.cancel();
+                }
+                drainLimitedRequests();
+            }
             if (rc != BKException.Code.OK) {
                 opLogger.registerFailedEvent(latency(), TimeUnit.NANOSECONDS);
             } else {
@@ -1687,13 +2044,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return readEntryTimeoutNanos;
         }
 
         void timeout() {
@@ -1761,8 +2113,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class WriteLacCompletion extends CompletionValue {
         final WriteLacCallback cb;
 
-        public WriteLacCompletion(final CompletionKey key,
-                                  final WriteLacCallback originalCallback,
+        public WriteLacCompletion(final WriteLacCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("WriteLAC",
@@ -1776,7 +2127,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.writeLacComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1810,8 +2160,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ForceLedgerCompletion extends CompletionValue {
         final ForceLedgerCallback cb;
 
-        public ForceLedgerCompletion(final CompletionKey key,
-                                  final ForceLedgerCallback originalCallback,
+        public ForceLedgerCompletion(final ForceLedgerCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("ForceLedger",
@@ -1825,7 +2174,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.forceLedgerComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1860,8 +2208,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadLacCompletion extends CompletionValue {
         final ReadLacCallback cb;
 
-        public ReadLacCompletion(final CompletionKey key,
-                                 ReadLacCallback originalCallback,
+        public ReadLacCompletion(ReadLacCallback originalCallback,
                                  final Object ctx, final long ledgerId) {
             super("ReadLAC", ctx, ledgerId, BookieProtocol.LAST_ADD_CONFIRMED,
                   readLacOpLogger, readLacTimeoutOpLogger);
@@ -1874,7 +2221,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.readLacComplete(
                                 rc, ledgerId, lacBuffer, lastEntryBuffer, ctx);
-                        key.release();
                     }
                 };
         }
@@ -1920,8 +2266,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadCompletion extends CompletionValue {
         final ReadEntryCallback cb;
 
-        public ReadCompletion(final CompletionKey key,
-                              final ReadEntryCallback originalCallback,
+        public ReadCompletion(final ReadEntryCallback originalCallback,
                               final Object originalCtx,
                               long ledgerId, final long entryId) {
             super("Read", originalCtx, ledgerId, entryId,
@@ -1936,7 +2281,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         originalCallback.readEntryComplete(rc,
                                                            ledgerId, entryId,
                                                            buffer, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -2023,8 +2367,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         final BatchedReadEntryCallback cb;
 
-        public BatchedReadCompletion(final CompletionKey key,
-                                     final BatchedReadEntryCallback originalCallback,
+        public BatchedReadCompletion(final BatchedReadEntryCallback originalCallback,
                                      final Object originalCtx,
                                      long ledgerId, final long entryId) {
             super("BatchedRead", originalCtx, ledgerId, entryId,
@@ -2041,7 +2384,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     originalCallback.readEntriesComplete(rc,
                             ledgerId, entryId,
                             bufList, originalCtx);
-                    key.release();
                 }
             };
         }
@@ -2099,14 +2441,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class StartTLSCompletion extends CompletionValue {
         final StartTLSCallback cb;
 
-        public StartTLSCompletion(final CompletionKey key) {
+        public StartTLSCompletion() {
             super("StartTLS", null, -1, -1,
                   startTLSOpLogger, startTLSTimeoutOpLogger);
             this.cb = new StartTLSCallback() {
                 @Override
                 public void startTLSComplete(int rc, Object ctx) {
                     logOpResult(rc);
-                    key.release();
                 }
             };
         }
@@ -2151,8 +2492,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetBookieInfoCompletion extends CompletionValue {
         final GetBookieInfoCallback cb;
 
-        public GetBookieInfoCompletion(final CompletionKey key,
-                                       final GetBookieInfoCallback origCallback,
+        public GetBookieInfoCompletion(final GetBookieInfoCallback origCallback,
                                        final Object origCtx) {
             super("GetBookieInfo", origCtx, 0L, 0L,
                   getBookieInfoOpLogger, getBookieInfoTimeoutOpLogger);
@@ -2162,19 +2502,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                                   Object ctx) {
                     logOpResult(rc);
                     origCallback.getBookieInfoComplete(rc, bInfo, origCtx);
-                    key.release();
                 }
             };
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= getBookieInfoTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return getBookieInfoTimeoutNanos;
         }
 
         @Override
@@ -2211,8 +2545,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetListOfEntriesOfLedgerCompletion extends CompletionValue {
         final GetListOfEntriesOfLedgerCallback cb;
 
-        public GetListOfEntriesOfLedgerCompletion(final CompletionKey key,
-                final GetListOfEntriesOfLedgerCallback origCallback, final long ledgerId) {
+        public GetListOfEntriesOfLedgerCompletion(final GetListOfEntriesOfLedgerCallback origCallback, final long ledgerId) {
             super("GetListOfEntriesOfLedger", null, ledgerId, 0L, getListOfEntriesOfLedgerCompletionOpLogger,
                     getListOfEntriesOfLedgerCompletionTimeoutOpLogger);
             this.cb = new GetListOfEntriesOfLedgerCallback() {
@@ -2221,7 +2554,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger) {
                     logOpResult(rc);
                     origCallback.getListOfEntriesOfLedgerComplete(rc, ledgerId, availabilityOfEntriesOfLedger);
-                    key.release();
                 }
             };
         }
@@ -2270,12 +2602,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         };
 
-    AddCompletion acquireAddCompletion(final CompletionKey key,
-                                       final WriteCallback originalCallback,
+    AddCompletion acquireAddCompletion(final WriteCallback originalCallback,
                                        final Object originalCtx,
                                        final long ledgerId, final long entryId) {
         AddCompletion completion = addCompletionRecycler.get();
-        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId);
+        completion.reset(originalCallback, originalCtx, ledgerId, entryId);
         return completion;
     }
 
@@ -2283,7 +2614,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class AddCompletion extends CompletionValue implements WriteCallback {
         final Recycler.Handle<AddCompletion> handle;
 
-        CompletionKey key = null;
         WriteCallback originalCallback = null;
 
         AddCompletion(Recycler.Handle<AddCompletion> handle) {
@@ -2291,16 +2621,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.handle = handle;
         }
 
-        void reset(final CompletionKey key,
-                   final WriteCallback originalCallback,
+        void reset(final WriteCallback originalCallback,
                    final Object originalCtx,
                    final long ledgerId, final long entryId) {
-            this.key = key;
             this.originalCallback = originalCallback;
             this.ctx = originalCtx;
             this.ledgerId = ledgerId;
             this.entryId = entryId;
             this.startTime = MathUtils.nowInNano();
+            this.admitted = false;
         }
 
         @Override
@@ -2309,18 +2638,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                   Object ctx) {
             logOpResult(rc);
             originalCallback.writeComplete(rc, ledgerId, entryId, addr, ctx);
-            key.release();
             handle.recycle(this);
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
         }
 
         @Override
@@ -2369,50 +2692,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visable for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new TxnCompletionKey(txnId, operationType);
-    }
-
-    class TxnCompletionKey extends CompletionKey {
-        final long txnId;
-
-        public TxnCompletionKey(long txnId, OperationType operationType) {
-            super(operationType);
-            this.txnId = txnId;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof TxnCompletionKey)) {
-                return false;
-            }
-            TxnCompletionKey that = (TxnCompletionKey) obj;
-            return this.txnId == that.txnId && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return ((int) txnId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("TxnId(%d), OperationType(%s)", txnId, operationType);
-        }
-
-    }
-
-    abstract class CompletionKey {
-        OperationType operationType;
-
-        CompletionKey(OperationType operationType) {
-            this.operationType = operationType;
-        }
-
-        public void release() {}
-    }
-
     /**
      * Note : Helper functions follow
      */
@@ -2446,85 +2725,21 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
-        }
+    private void putCompletionByTxnId(long txnId, OperationType operationType, CompletionValue completion) {
+        completions.putByTxnId(txnId, operationType, completion, completion.startTime + completion.timeoutNanos());
     }
 
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
-        }
-        return completionValue;
+    // The v2 protocol has no txn id, several requests may be in flight for the same entry
+    private void putCompletionByEntry(long ledgerId, long entryId, OperationType operationType,
+                                      CompletionValue completion) {
+        completions.putByEntry(ledgerId, entryId, operationType, completion,
+                completion.startTime + completion.timeoutNanos());
     }
 
     private long getTxnId() {
         return txnIdGenerator.incrementAndGet();
     }
 
-    private final Recycler<EntryCompletionKey> v2KeyRecycler = new Recycler<EntryCompletionKey>() {
-            @Override
-            protected EntryCompletionKey newObject(
-                    Recycler.Handle<EntryCompletionKey> handle) {
-                return new EntryCompletionKey(handle);
-            }
-        };
-
-    EntryCompletionKey acquireV2Key(long ledgerId, long entryId,
-                             OperationType operationType) {
-        EntryCompletionKey key = v2KeyRecycler.get();
-        key.reset(ledgerId, entryId, operationType);
-        return key;
-    }
-
-    private class EntryCompletionKey extends CompletionKey {
-        private final Handle<EntryCompletionKey> recyclerHandle;
-        long ledgerId;
-        long entryId;
-
-        private EntryCompletionKey(Handle<EntryCompletionKey> handle) {
-            super(null);
-            this.recyclerHandle = handle;
-        }
-
-        void reset(long ledgerId, long entryId, OperationType operationType) {
-            this.ledgerId = ledgerId;
-            this.entryId = entryId;
-            this.operationType = operationType;
-        }
-
-        @Override
-        public boolean equals(Object object) {
-            if (!(object instanceof EntryCompletionKey)) {
-                return  false;
-            }
-            EntryCompletionKey that = (EntryCompletionKey) object;
-            return this.entryId == that.entryId
-                && this.ledgerId == that.ledgerId
-                && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%d:%d %s", ledgerId, entryId, operationType);
-        }
-
-        @Override
-        public void release() {
-            recyclerHandle.recycle(this);
-        }
-    }
-
     Request.Builder withRequestContext(Request.Builder builder) {
         if (preserveMdcForTaskExecution) {
             return appendRequestContext(builder);
@@ -2691,9 +2906,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         LOG.info("Initializing TLS to {}", channel);
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
-                              new StartTLSCompletion(completionKey));
+        final StartTLSCompletion completion = new StartTLSCompletion();
+        putCompletionByTxnId(txnId, OperationType.START_TLS, completion);
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                 .setVersion(ProtocolVersion.VERSION_THREE)
@@ -2702,7 +2916,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         h.setHeader(headerBuilder.build());
         h.setStartTLSRequest(BookkeeperProtocol.StartTLSRequest.newBuilder().build());
         state = ConnectionState.START_TLS;
-        writeAndFlush(channel, completionKey, h.build());
+        writeAndFlush(channel, completion, h.build());
     }
 
     private void failTLS(int rc) {
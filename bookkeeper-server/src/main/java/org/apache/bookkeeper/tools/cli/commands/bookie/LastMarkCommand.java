@@ -22,6 +22,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.bookie.Journal;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.bookie.LogMark;
@@ -61,10 +64,12 @@ public class LastMarkCommand extends BookieCommand<CliFlags> {
             LedgerDirsManager dirsManager = new LedgerDirsManager(
                     conf, conf.getLedgerDirs(),
                     new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
-            File[] journalDirs = conf.getJournalDirs();
+            List<File> journalDirs = Journal.getStripeDirectories(
+                    Arrays.asList(BookieImpl.getCurrentDirectories(conf.getJournalDirs())),
+                    conf.getJournalStripesPerDirectory());
 
-            for (int idx = 0; idx < journalDirs.length; idx++) {
-                Journal journal = new Journal(idx, journalDirs[idx], conf, dirsManager);
+            for (int idx = 0; idx < journalDirs.size(); idx++) {
+                Journal journal = new Journal(idx, journalDirs.get(idx), conf, dirsManager);
                 LogMark lastLogMark = journal.getLastLogMark().getCurMark();
                 LOG.info("LastLogMark : Journal Id - {}({}.txn), Pos - {}",
                     lastLogMark.getLogFileId(),
@@ -25,16 +25,17 @@ import io.netty.buffer.Unpooled;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.bookie.Journal;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.tools.cli.helpers.BookieCommand;
 import org.apache.bookkeeper.tools.framework.CliFlags;
 import org.apache.bookkeeper.tools.framework.CliSpec;
-import org.apache.bookkeeper.util.BookKeeperConstants;
 import org.apache.bookkeeper.util.DiskChecker;
 import org.apache.bookkeeper.util.EntryFormatter;
 import org.apache.bookkeeper.util.LedgerIdFormatter;
@@ -176,10 +177,13 @@ public class ReadJournalCommand extends BookieCommand<ReadJournalCommand.ReadJou
 
     private synchronized List<Journal> getJournals(ServerConfiguration conf) throws IOException {
         if (null == journals) {
-            journals = Lists.newArrayListWithCapacity(conf.getJournalDirs().length);
+            List<File> journalDirs = Journal.getStripeDirectories(
+                    Arrays.asList(BookieImpl.getCurrentDirectories(conf.getJournalDirs())),
+                    conf.getJournalStripesPerDirectory());
+            journals = Lists.newArrayListWithCapacity(journalDirs.size());
             int idx = 0;
-            for (File journalDir : conf.getJournalDirs()) {
-                journals.add(new Journal(idx++, new File(journalDir, BookKeeperConstants.CURRENT_DIR), conf,
+            for (File journalDir : journalDirs) {
+                journals.add(new Journal(idx++, journalDir, conf,
                          new LedgerDirsManager(conf, conf.getLedgerDirs(),
                                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
             }
@@ -8,6 +8,10 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,6 +26,14 @@ public class WriteCacheTest {
         DOUBLE_WRITECACHE
     }
 
+    enum ForEachEnum {
+        ORDERED,
+        UNORDERED,
+        DUPLICATED,
+        DELETED_LEDGER,
+        CLEARED
+    }
+
     @ParameterizedTest
     @MethodSource("argsError")
     public void testWriteCacheError(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, long ledgerId, long entryId, ByteBuf entry, Class<? extends Throwable> expectedException) {
@@ -92,6 +104,47 @@ public class WriteCacheTest {
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("argsForEach")
+    public void testForEachLedgerOrderedIndex(ForEachEnum forEachEnum, int ledgers, int entriesPerLedger) throws IOException {
+        // The ledger ordered index must give the same entries, in the same order, as sorting all the entries
+        try (WriteCache sortedCache = new WriteCache(UnpooledByteBufAllocator.DEFAULT, 1024 * 1024, 64 * 1024);
+             WriteCache orderedCache = new WriteCache(UnpooledByteBufAllocator.DEFAULT, 1024 * 1024, 64 * 1024, true)) {
+            for (WriteCache writeCache : new WriteCache[] {sortedCache, orderedCache}) {
+                if (forEachEnum == ForEachEnum.CLEARED) {
+                    // The chunks and ledger holders of the first fill are reused by the second one
+                    fill(writeCache, ForEachEnum.UNORDERED, ledgers + 3, entriesPerLedger * 2, "old");
+                    writeCache.clear();
+                }
+                fill(writeCache, forEachEnum, ledgers, entriesPerLedger, "new");
+            }
+
+            List<String> sortedEntries = getEntries(sortedCache);
+            List<String> orderedEntries = getEntries(orderedCache);
+
+            assertEquals(sortedEntries, orderedEntries);
+            assertEquals(forEachEnum == ForEachEnum.DELETED_LEDGER ? (ledgers - 1) * entriesPerLedger : ledgers * entriesPerLedger,
+                    orderedEntries.size());
+            for (String entry : orderedEntries) {
+                assertTrue(entry.endsWith("new"), entry);
+            }
+        }
+    }
+
+    static Stream<Arguments> argsForEach() {
+        return Stream.of(
+                Arguments.of(ForEachEnum.ORDERED, 1, 10), // T14
+                Arguments.of(ForEachEnum.ORDERED, 5, 300), // T15
+                Arguments.of(ForEachEnum.UNORDERED, 1, 10), // T16
+                Arguments.of(ForEachEnum.UNORDERED, 5, 300), // T17
+                Arguments.of(ForEachEnum.DUPLICATED, 1, 10), // T18
+                Arguments.of(ForEachEnum.DUPLICATED, 5, 300), // T19
+                Arguments.of(ForEachEnum.DELETED_LEDGER, 5, 300), // T20
+                Arguments.of(ForEachEnum.CLEARED, 1, 10), // T21
+                Arguments.of(ForEachEnum.CLEARED, 5, 300) // T22
+        );
+    }
+
     static Stream<Arguments> args() {
         return Stream.of(
 //                Arguments.of(UnpooledByteBufAllocator.DEFAULT, 5L * 1024, 1024, WriteCacheEnum.EMPTY_WRITECACHE, 0, 0, getEmptyByteBuf(11), true, 0, 1), // T4
@@ -106,6 +159,34 @@ public class WriteCacheTest {
         );
     }
 
+    private static void fill(WriteCache writeCache, ForEachEnum forEachEnum, int ledgers, int entriesPerLedger, String version) {
+        // The ledgers are interleaved, as they are when written by several clients
+        for (int e = 0; e < entriesPerLedger; e++) {
+            for (int l = ledgers - 1; l >= 0; l--) {
+                long entryId = e;
+                if (forEachEnum == ForEachEnum.UNORDERED) {
+                    // Swap the consecutive entries of each ledger
+                    entryId = e % 2 == 0 && e + 1 < entriesPerLedger ? e + 1 : (e % 2 == 1 ? e - 1 : e);
+                }
+                if (forEachEnum == ForEachEnum.DUPLICATED && e % 3 == 0) {
+                    assertTrue(writeCache.put(l, entryId, getByteBuf(16, l + "@" + entryId + "-old")));
+                }
+                assertTrue(writeCache.put(l, entryId, getByteBuf(16, l + "@" + entryId + "-" + version)));
+            }
+        }
+
+        if (forEachEnum == ForEachEnum.DELETED_LEDGER) {
+            writeCache.deleteLedger(ledgers / 2);
+        }
+    }
+
+    private static List<String> getEntries(WriteCache writeCache) throws IOException {
+        List<String> entries = new ArrayList<>();
+        writeCache.forEach((ledgerId, entryId, entry) -> entries.add(ledgerId + ":" + entryId + ":" + entry.toString(StandardCharsets.UTF_8)));
+
+        return entries;
+    }
+
     private static ByteBuf getEmptyByteBuf(int capacity) {
         return UnpooledByteBufAllocator.DEFAULT.directBuffer(capacity);
     }
@@ -0,0 +1,128 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class EntryLocationIndexRangeEncodingTest {
+    @TempDir
+    Path basePath;
+
+    public enum IndexEnum {
+        BATCH,
+        SINGLE_ADDS,
+        RELOCATED,
+        LEGACY_RECORDS,
+        LEGACY_RECORDS_EXTENDED
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testGetLocationAfterReopen(IndexEnum indexEnum, long ledgerId, long entryId, long expectedLocation,
+                                    long expectedLastEntry) throws IOException {
+        // The records written before enabling the range encoding are read as a fallback
+        boolean legacy = indexEnum == IndexEnum.LEGACY_RECORDS || indexEnum == IndexEnum.LEGACY_RECORDS_EXTENDED;
+
+        try (EntryLocationIndex index = getIndex(!legacy)) {
+            switch (indexEnum) {
+                case BATCH:
+                    try (Batch batch = index.newBatch()) {
+                        for (long e = 0; e < 200; e++) {
+                            index.addLocation(batch, 1, e, getLocation(1, e));
+                        }
+                        index.addLocation(batch, 2, 70, getLocation(2, 70));
+                        batch.flush();
+                    }
+                    break;
+                case RELOCATED:
+                    for (long e = 0; e < 10; e++) {
+                        index.addLocation(1, e, getLocation(1, e));
+                    }
+                    index.addLocation(1, 5, 42);
+                    break;
+                case SINGLE_ADDS:
+                case LEGACY_RECORDS:
+                case LEGACY_RECORDS_EXTENDED:
+                default:
+                    for (long e = 0; e < 10; e++) {
+                        index.addLocation(1, e, getLocation(1, e));
+                    }
+                    break;
+            }
+        }
+
+        try (EntryLocationIndex index = getIndex(true)) {
+            if (indexEnum == IndexEnum.LEGACY_RECORDS_EXTENDED) {
+                index.addLocation(1, 10, getLocation(1, 10));
+            }
+
+            assertEquals(expectedLocation, index.getLocation(ledgerId, entryId));
+            assertEquals(expectedLastEntry, index.getLastEntryInLedger(ledgerId));
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(IndexEnum.BATCH, 1, 0, getLocation(1, 0), 199), // T1
+                Arguments.of(IndexEnum.BATCH, 1, 199, getLocation(1, 199), 199), // T2
+                Arguments.of(IndexEnum.BATCH, 1, 200, 0, 199), // T3
+                Arguments.of(IndexEnum.BATCH, 2, 70, getLocation(2, 70), 70), // T4
+                Arguments.of(IndexEnum.BATCH, 2, 64, 0, 70), // T5
+                Arguments.of(IndexEnum.BATCH, 2, 71, 0, 70), // T6
+                Arguments.of(IndexEnum.SINGLE_ADDS, 1, 9, getLocation(1, 9), 9), // T7
+                Arguments.of(IndexEnum.RELOCATED, 1, 5, 42, 9), // T8
+                Arguments.of(IndexEnum.RELOCATED, 1, 4, getLocation(1, 4), 9), // T9
+                Arguments.of(IndexEnum.RELOCATED, 1, 6, getLocation(1, 6), 9), // T10
+                Arguments.of(IndexEnum.LEGACY_RECORDS, 1, 3, getLocation(1, 3), 9), // T11
+                Arguments.of(IndexEnum.LEGACY_RECORDS_EXTENDED, 1, 3, getLocation(1, 3), 10), // T12
+                Arguments.of(IndexEnum.LEGACY_RECORDS_EXTENDED, 1, 10, getLocation(1, 10), 10) // T13
+        );
+    }
+
+    @Test
+    void testEntriesFlushedBeforeEarlyBatchFlush() throws IOException {
+        AtomicInteger entriesFlushes = new AtomicInteger();
+
+        try (EntryLocationIndex index = getIndex(true)) {
+            try (Batch batch = index.newBatch(entriesFlushes::incrementAndGet)) {
+                index.addLocation(batch, 1, 0, getLocation(1, 0));
+                index.addLocation(batch, 2, 0, getLocation(2, 0));
+                assertEquals(0, entriesFlushes.get());
+
+                // Reading back the first range flushes the batch, after the entries
+                index.addLocation(batch, 1, 1, getLocation(1, 1));
+                assertEquals(1, entriesFlushes.get());
+
+                batch.flush();
+            }
+
+            assertEquals(getLocation(1, 0), index.getLocation(1, 0));
+            assertEquals(getLocation(1, 1), index.getLocation(1, 1));
+            assertEquals(getLocation(2, 0), index.getLocation(2, 0));
+        }
+    }
+
+    private EntryLocationIndex getIndex(boolean rangeEncoding) throws IOException {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, rangeEncoding);
+
+        return new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, basePath.toString(),
+                NullStatsLogger.INSTANCE);
+    }
+
+    private static long getLocation(long ledgerId, long entryId) {
+        return (ledgerId << 32) + 1024 + entryId * 104;
+    }
+}
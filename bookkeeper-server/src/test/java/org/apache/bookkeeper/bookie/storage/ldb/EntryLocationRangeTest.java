@@ -0,0 +1,137 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class EntryLocationRangeTest {
+    public enum RecordEnum {
+        VALID,
+        TRUNCATED,
+        HEADER_ONLY,
+        WRONG_VERSION
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testRoundTrip(long[] locations, int expectedLastIndex) throws IOException {
+        EntryLocationRange range = new EntryLocationRange();
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i] != 0) {
+                range.set(i, locations[i]);
+            }
+        }
+
+        byte[] array = new byte[EntryLocationRange.MAX_SERIALIZED_SIZE];
+        int length = range.serialize(array);
+
+        // A range is never mistaken for a single location
+        assertNotEquals(Long.BYTES, length);
+        assertTrue(EntryLocationRange.isRange(length));
+
+        EntryLocationRange decoded = new EntryLocationRange();
+        decoded.deserialize(array, length);
+        for (int i = 0; i < EntryLocationRange.ENTRIES_PER_RANGE; i++) {
+            long expected = i < locations.length ? locations[i] : 0;
+
+            assertEquals(expected, decoded.get(i), "Entry " + i);
+            assertEquals(expected, EntryLocationRange.getLocation(array, length, i), "Entry " + i);
+        }
+        assertEquals(expectedLastIndex, EntryLocationRange.lastIndex(array, length));
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(new long[] {}, -1), // T1
+                Arguments.of(new long[] {1}, 0), // T2
+                Arguments.of(getContiguousLocations(), EntryLocationRange.ENTRIES_PER_RANGE - 1), // T3
+                Arguments.of(getSparseLocations(), EntryLocationRange.ENTRIES_PER_RANGE - 1), // T4
+                // Entries relocated to an older entry log have negative deltas
+                Arguments.of(new long[] {(9L << 32) + 1024, (2L << 32) + 4096, (9L << 32) + 1128}, 2) // T5
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsError")
+    void testDeserializeError(RecordEnum recordEnum, Class<? extends Throwable> expectedException) {
+        EntryLocationRange range = new EntryLocationRange();
+        range.set(0, 1L << 40);
+        range.set(1, (1L << 40) + 100);
+
+        byte[] array = new byte[EntryLocationRange.MAX_SERIALIZED_SIZE];
+        int length = range.serialize(array);
+
+        switch (recordEnum) {
+            case TRUNCATED:
+                length--;
+                break;
+            case HEADER_ONLY:
+                length = 4;
+                break;
+            case WRONG_VERSION:
+                array[0] = 0;
+                break;
+            case VALID:
+            default:
+                break;
+        }
+
+        try {
+            new EntryLocationRange().deserialize(array, length);
+            EntryLocationRange.getLocation(array, length, 1);
+        } catch (Exception e) {
+            assertEquals(expectedException, e.getClass());
+
+            return;
+        }
+
+        assertNull(expectedException);
+    }
+
+    static Stream<Arguments> argsError() {
+        return Stream.of(
+                Arguments.of(RecordEnum.VALID, null), // T1
+                Arguments.of(RecordEnum.TRUNCATED, IOException.class), // T2
+                Arguments.of(RecordEnum.HEADER_ONLY, IOException.class), // T3
+                Arguments.of(RecordEnum.WRONG_VERSION, IOException.class) // T4
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsFirstEntry")
+    void testFirstEntryOfRange(long entryId, long expected) {
+        assertEquals(expected, EntryLocationRange.firstEntryOfRange(entryId));
+    }
+
+    static Stream<Arguments> argsFirstEntry() {
+        return Stream.of(
+                Arguments.of(0, 0), // T1
+                Arguments.of(63, 0), // T2
+                Arguments.of(64, 64), // T3
+                Arguments.of(191, 128) // T4
+        );
+    }
+
+    private static long[] getContiguousLocations() {
+        long[] locations = new long[EntryLocationRange.ENTRIES_PER_RANGE];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = (5L << 32) + 1024 + i * 104L;
+        }
+
+        return locations;
+    }
+
+    private static long[] getSparseLocations() {
+        long[] locations = new long[EntryLocationRange.ENTRIES_PER_RANGE];
+        locations[3] = 1L << 32;
+        locations[40] = 1;
+        locations[63] = Long.MAX_VALUE;
+
+        return locations;
+    }
+}
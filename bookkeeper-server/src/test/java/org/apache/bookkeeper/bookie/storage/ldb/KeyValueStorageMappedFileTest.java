@@ -0,0 +1,280 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class KeyValueStorageMappedFileTest {
+    private static final String SUB_PATH = "locations";
+
+    @TempDir
+    Path basePath;
+
+    public enum StorageEnum {
+        EMPTY,
+        UNSORTED_BATCH,
+        OVERRIDDEN,
+        OVERRIDDEN_COMPACTED,
+        RANGE_DELETED,
+        INTERRUPTED_BATCH
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testGetAfterReopen(StorageEnum storageEnum, long ledgerId, long entryId, long expected) throws IOException {
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            switch (storageEnum) {
+                case UNSORTED_BATCH:
+                    try (Batch batch = storage.newBatch()) {
+                        // Not in key order, the segment is sorted on flush
+                        for (long e = 2999; e >= 0; e--) {
+                            batch.put(getKey(1, e), getValue(getLocation(1, e)));
+                        }
+                        batch.put(getKey(2, 5), getValue(getLocation(2, 5)));
+                        batch.flush();
+                    }
+                    break;
+                case OVERRIDDEN:
+                case OVERRIDDEN_COMPACTED:
+                    storage.put(getKey(1, 1), getValue(100));
+                    storage.put(getKey(1, 2), getValue(200));
+                    storage.put(getKey(1, 1), getValue(101));
+                    storage.delete(getKey(1, 2));
+
+                    if (storageEnum == StorageEnum.OVERRIDDEN_COMPACTED) {
+                        storage.compact();
+                    }
+                    break;
+                case RANGE_DELETED:
+                    try (Batch batch = storage.newBatch()) {
+                        for (long l = 1; l <= 3; l++) {
+                            for (long e = 0; e < 10; e++) {
+                                batch.put(getKey(l, e), getValue(getLocation(l, e)));
+                            }
+                        }
+                        batch.flush();
+                    }
+
+                    try (Batch batch = storage.newBatch()) {
+                        batch.deleteRange(getKey(2, 0), getKey(2, Long.MAX_VALUE));
+                        batch.flush();
+                    }
+                    break;
+                case INTERRUPTED_BATCH:
+                    storage.put(getKey(1, 1), getValue(100));
+                    break;
+                case EMPTY:
+                default:
+                    break;
+            }
+        }
+
+        if (storageEnum == StorageEnum.INTERRUPTED_BATCH) {
+            // Files of a batch that crashed before updating the manifest
+            writeGarbage(new File(getDir(), "segment-1000.idx.tmp"));
+            writeGarbage(new File(getDir(), "segment-1001.idx"));
+        }
+
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            byte[] value = storage.get(getKey(ledgerId, entryId));
+
+            if (expected < 0) {
+                assertNull(value);
+            } else {
+                assertNotNull(value);
+                assertEquals(expected, ArrayUtil.getLong(value, 0));
+            }
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(StorageEnum.EMPTY, 1, 1, -1), // T1
+                Arguments.of(StorageEnum.UNSORTED_BATCH, 1, 0, getLocation(1, 0)), // T2
+                Arguments.of(StorageEnum.UNSORTED_BATCH, 1, 2999, getLocation(1, 2999)), // T3
+                Arguments.of(StorageEnum.UNSORTED_BATCH, 1, 3000, -1), // T4
+                Arguments.of(StorageEnum.UNSORTED_BATCH, 2, 5, getLocation(2, 5)), // T5
+                Arguments.of(StorageEnum.UNSORTED_BATCH, 2, 4, -1), // T6
+                Arguments.of(StorageEnum.OVERRIDDEN, 1, 1, 101), // T7
+                Arguments.of(StorageEnum.OVERRIDDEN, 1, 2, -1), // T8
+                Arguments.of(StorageEnum.OVERRIDDEN_COMPACTED, 1, 1, 101), // T9
+                Arguments.of(StorageEnum.OVERRIDDEN_COMPACTED, 1, 2, -1), // T10
+                Arguments.of(StorageEnum.RANGE_DELETED, 1, 9, getLocation(1, 9)), // T11
+                Arguments.of(StorageEnum.RANGE_DELETED, 2, 0, -1), // T12
+                Arguments.of(StorageEnum.RANGE_DELETED, 2, 9, -1), // T13
+                Arguments.of(StorageEnum.RANGE_DELETED, 3, 0, getLocation(3, 0)), // T14
+                Arguments.of(StorageEnum.INTERRUPTED_BATCH, 1, 1, 100), // T15
+                Arguments.of(StorageEnum.INTERRUPTED_BATCH, 1, 2, -1) // T16
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsError")
+    void testPutError(boolean readOnly, byte[] key, byte[] value, Class<? extends Throwable> expectedException)
+            throws IOException {
+        getStorage(false).close();
+
+        try (KeyValueStorageMappedFile storage = getStorage(readOnly)) {
+            storage.put(key, value);
+        } catch (Exception e) {
+            assertEquals(expectedException, e.getClass());
+
+            return;
+        }
+
+        assertNull(expectedException);
+    }
+
+    static Stream<Arguments> argsError() {
+        return Stream.of(
+                Arguments.of(false, new byte[8], getValue(100), IllegalArgumentException.class), // T1
+                Arguments.of(false, getKey(1, 1), new byte[16], IllegalArgumentException.class), // T2
+                Arguments.of(false, getKey(1, 1), getValue(-1), IllegalArgumentException.class), // T3
+                Arguments.of(true, getKey(1, 1), getValue(100), IOException.class), // T4
+                Arguments.of(false, getKey(1, 1), getValue(100), null) // T5
+        );
+    }
+
+    @Test
+    void testFloorCeilAfterRangeDeletion() throws IOException {
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            for (long l = 1; l <= 3; l++) {
+                storage.put(getKey(l, 0), getValue(getLocation(l, 0)));
+            }
+
+            try (Batch batch = storage.newBatch()) {
+                batch.deleteRange(getKey(2, 0), getKey(2, Long.MAX_VALUE));
+                batch.flush();
+            }
+        }
+
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            assertArrayEquals(getKey(1, 0), storage.getFloor(getKey(2, 5)).getKey());
+            assertArrayEquals(getKey(3, 0), storage.getCeil(getKey(2, 5)).getKey());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsPending")
+    void testPendingWrites(boolean sync, long ledgerId, long entryId, long expected, long expectedSynced)
+            throws IOException {
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            try (Batch batch = storage.newBatch()) {
+                for (long e = 0; e < 10; e++) {
+                    batch.put(getKey(1, e), getValue(getLocation(1, e)));
+                }
+                batch.flush();
+            }
+            storage.put(getKey(1, 3), getValue(103));
+            storage.put(getKey(2, 0), getValue(getLocation(2, 0)));
+            storage.delete(getKey(1, 9));
+
+            if (sync) {
+                storage.sync();
+            }
+
+            // The single updates are visible to the writer before being written
+            assertEquals(expected, getLocation(storage, ledgerId, entryId));
+            assertArrayEquals(getKey(1, 8), storage.getFloor(getKey(2, 0)).getKey());
+            assertArrayEquals(getKey(2, 0), storage.getCeil(getKey(1, 9)).getKey());
+            assertEquals(10, countRecords(storage));
+
+            try (KeyValueStorageMappedFile reader = getStorage(true)) {
+                assertEquals(expectedSynced, getLocation(reader, ledgerId, entryId));
+            }
+        }
+    }
+
+    static Stream<Arguments> argsPending() {
+        return Stream.of(
+                Arguments.of(false, 1, 3, 103, getLocation(1, 3)), // T1
+                Arguments.of(false, 2, 0, getLocation(2, 0), -1), // T2
+                Arguments.of(false, 1, 9, -1, getLocation(1, 9)), // T3
+                Arguments.of(false, 1, 4, getLocation(1, 4), getLocation(1, 4)), // T4
+                Arguments.of(true, 1, 3, 103, 103), // T5
+                Arguments.of(true, 2, 0, getLocation(2, 0), getLocation(2, 0)), // T6
+                Arguments.of(true, 1, 9, -1, -1) // T7
+        );
+    }
+
+    @Test
+    void testInterruptedBatchFilesAreDeleted() throws IOException {
+        getStorage(false).close();
+
+        File tmpSegment = new File(getDir(), "segment-1000.idx.tmp");
+        File orphanSegment = new File(getDir(), "segment-1001.idx");
+        writeGarbage(tmpSegment);
+        writeGarbage(orphanSegment);
+
+        try (KeyValueStorageMappedFile storage = getStorage(false)) {
+            assertFalse(tmpSegment.exists());
+            assertFalse(orphanSegment.exists());
+            assertEquals(0, storage.count());
+        }
+    }
+
+    private static long getLocation(KeyValueStorageMappedFile storage, long ledgerId, long entryId)
+            throws IOException {
+        byte[] value = storage.get(getKey(ledgerId, entryId));
+
+        return value != null ? ArrayUtil.getLong(value, 0) : -1;
+    }
+
+    private static int countRecords(KeyValueStorageMappedFile storage) throws IOException {
+        int count = 0;
+        try (KeyValueStorage.CloseableIterator<Entry<byte[], byte[]>> it = storage.iterator()) {
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private KeyValueStorageMappedFile getStorage(boolean readOnly) throws IOException {
+        return new KeyValueStorageMappedFile(basePath.toString(), SUB_PATH, new ServerConfiguration(), readOnly);
+    }
+
+    private File getDir() {
+        return new File(basePath.toFile(), SUB_PATH);
+    }
+
+    private static long getLocation(long ledgerId, long entryId) {
+        return (ledgerId << 32) + entryId * 100;
+    }
+
+    private static byte[] getKey(long ledgerId, long entryId) {
+        byte[] key = new byte[16];
+        ArrayUtil.setLong(key, 0, ledgerId);
+        ArrayUtil.setLong(key, 8, entryId);
+
+        return key;
+    }
+
+    private static byte[] getValue(long location) {
+        byte[] value = new byte[8];
+        ArrayUtil.setLong(value, 0, location);
+
+        return value;
+    }
+
+    private static void writeGarbage(File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+    }
+}
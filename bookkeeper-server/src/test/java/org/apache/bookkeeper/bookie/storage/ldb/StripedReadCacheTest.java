@@ -0,0 +1,154 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class StripedReadCacheTest {
+    private static final int ENTRY_SIZE = 64;
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int ENTRIES_PER_SEGMENT = SEGMENT_SIZE / ENTRY_SIZE;
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testGetDuringRollOver(long ledgerId, long entryId, boolean expectedFound) throws Exception {
+        CountDownLatch rollOverStarted = new CountDownLatch(1);
+        CountDownLatch rollOverReleased = new CountDownLatch(1);
+
+        // The roll-over to the second segment blocks while it clears the segment
+        ReadCacheAdmissionPolicy policy = mock(ReadCacheAdmissionPolicy.class);
+        when(policy.admit(anyLong(), anyLong())).thenReturn(true);
+        doAnswer(invocation -> {
+            rollOverStarted.countDown();
+            rollOverReleased.await();
+
+            return null;
+        }).when(policy).recordEvictions(anyLong());
+
+        try (StripedReadCache cache = new StripedReadCache(UnpooledByteBufAllocator.DEFAULT, 4 * SEGMENT_SIZE, 1,
+                SEGMENT_SIZE, policy)) {
+            for (int i = 0; i < ENTRIES_PER_SEGMENT; i++) {
+                cache.put(1, i, getEntry(1, i));
+            }
+
+            Thread writer = new Thread(() -> cache.put(2, 0, getEntry(2, 0)), "writer");
+            writer.start();
+            rollOverStarted.await();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                ByteBuf entry = cache.get(ledgerId, entryId);
+
+                assertEquals(expectedFound, cache.hasEntry(ledgerId, entryId));
+                if (expectedFound) {
+                    assertEquals(getEntry(ledgerId, entryId), entry);
+                    entry.release();
+                } else {
+                    assertNull(entry);
+                }
+            });
+
+            rollOverReleased.countDown();
+            writer.join();
+
+            assertTrue(cache.hasEntry(2, 0));
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(1, 0, true), // T1
+                Arguments.of(1, ENTRIES_PER_SEGMENT - 1, true), // T2
+                Arguments.of(1, ENTRIES_PER_SEGMENT, false), // T3
+                Arguments.of(2, 0, false) // T4
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsConcurrent")
+    void testConcurrentGetsDuringRollOvers(int stripes, int readers, int entries) {
+        AtomicLong lastEntryId = new AtomicLong(-1);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+
+        try (StripedReadCache cache = new StripedReadCache(UnpooledByteBufAllocator.DEFAULT,
+                (long) stripes * 4 * SEGMENT_SIZE, stripes, SEGMENT_SIZE)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                // Every entry read back from a segment must not have been overwritten by a roll-over
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < readers; i++) {
+                    Thread reader = new Thread(() -> {
+                        try {
+                            while (!done.get()) {
+                                long last = lastEntryId.get();
+                                if (last < 0) {
+                                    continue;
+                                }
+                                long entryId = ThreadLocalRandom.current().nextLong(last + 1);
+                                long ledgerId = entryId % stripes;
+                                ByteBuf entry = cache.get(ledgerId, entryId);
+                                if (entry != null) {
+                                    assertEquals(getEntry(ledgerId, entryId), entry);
+                                    entry.release();
+                                }
+                            }
+                        } catch (Throwable t) {
+                            synchronized (failures) {
+                                failures.add(t);
+                            }
+                        }
+                    }, "reader-" + i);
+                    threads.add(reader);
+                    reader.start();
+                }
+
+                for (long entryId = 0; entryId < entries; entryId++) {
+                    cache.put(entryId % stripes, entryId, getEntry(entryId % stripes, entryId));
+                    lastEntryId.set(entryId);
+                }
+                done.set(true);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            });
+
+            assertTrue(failures.isEmpty(), failures::toString);
+            assertTrue(cache.hasEntry((entries - 1) % stripes, entries - 1));
+        }
+    }
+
+    static Stream<Arguments> argsConcurrent() {
+        return Stream.of(
+                Arguments.of(1, 1, 100_000), // T1
+                Arguments.of(1, 4, 100_000), // T2
+                Arguments.of(4, 4, 100_000) // T3
+        );
+    }
+
+    private static ByteBuf getEntry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        while (entry.isWritable()) {
+            entry.writeLong(ledgerId);
+            entry.writeLong(entryId);
+        }
+
+        return entry;
+    }
+}
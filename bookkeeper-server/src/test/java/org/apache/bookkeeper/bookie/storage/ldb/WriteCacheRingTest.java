@@ -0,0 +1,281 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class WriteCacheRingTest {
+    private static final int ENTRY_SIZE = 64;
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int ENTRIES_PER_SEGMENT = SEGMENT_SIZE / ENTRY_SIZE;
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testBackpressureWhenAllSegmentsFull(int segmentsCount, boolean ledgerOrderedIndex) throws IOException {
+        AtomicInteger sealedSegments = new AtomicInteger();
+        Set<Long> index = ConcurrentHashMap.newKeySet();
+
+        try (WriteCacheRing ring = getRing(segmentsCount, ledgerOrderedIndex, sealedSegments::incrementAndGet)) {
+            long entryId = 0;
+            while (ring.put(1, entryId, getEntry(1, entryId))) {
+                entryId++;
+            }
+
+            // Every segment is full, and no segment is left to replace the active one
+            assertEquals(segmentsCount * ENTRIES_PER_SEGMENT, entryId);
+            assertEquals(segmentsCount - 1, sealedSegments.get());
+            assertEquals(segmentsCount - 1, ring.getPendingFlushSegments());
+            assertEquals(-1, ring.sealActiveSegment());
+            assertFalse(ring.put(1, entryId, getEntry(1, entryId)));
+            for (long e = 0; e < entryId; e++) {
+                assertTrue(ring.hasEntry(1, e));
+            }
+
+            // Flushing the oldest segment makes room for the rejected entry
+            assertTrue(flushOldestSegment(ring, index));
+            assertTrue(ring.put(1, entryId, getEntry(1, entryId)));
+            assertEquals(segmentsCount, sealedSegments.get());
+
+            for (long e = 0; e <= entryId; e++) {
+                assertTrue(ring.hasEntry(1, e) != index.contains(getKey(1, e)));
+            }
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(2, false), // T1
+                Arguments.of(4, false), // T2
+                Arguments.of(4, true), // T3
+                Arguments.of(8, true) // T4
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsConcurrent")
+    void testReadsDuringFlush(int segmentsCount, int readers, int entries) {
+        Set<Long> index = ConcurrentHashMap.newKeySet();
+        AtomicLong lastEntryId = new AtomicLong(-1);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+
+        try (WriteCacheRing ring = getRing(segmentsCount, true, () -> { })) {
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                // An entry is always found either in the ring or in the location index, as the ledger storage
+                // looks it up
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < readers; i++) {
+                    threads.add(startThread("reader-" + i, failures, () -> {
+                        while (!done.get()) {
+                            long last = lastEntryId.get();
+                            if (last < 0) {
+                                continue;
+                            }
+                            long entryId = ThreadLocalRandom.current().nextLong(last + 1);
+                            ByteBuf entry = ring.get(1, entryId);
+                            if (entry != null) {
+                                assertEquals(getEntry(1, entryId), entry);
+                                entry.release();
+                            } else {
+                                assertTrue(index.contains(getKey(1, entryId)), "Lost entry " + entryId);
+                            }
+                        }
+                    }));
+                }
+
+                ReentrantLock flushMutex = new ReentrantLock();
+                threads.add(startThread("flusher", failures, () -> {
+                    while (!done.get()) {
+                        flushAll(ring, index, flushMutex);
+                    }
+                }));
+
+                for (long entryId = 0; entryId < entries; entryId++) {
+                    while (!ring.put(1, entryId, getEntry(1, entryId))) {
+                        Thread.yield();
+                    }
+                    lastEntryId.set(entryId);
+                }
+                done.set(true);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            });
+
+            assertTrue(failures.isEmpty(), failures::toString);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsConcurrent")
+    void testCheckpointWhileWritersFillTheRing(int segmentsCount, int writers, int entries) {
+        Set<Long> index = ConcurrentHashMap.newKeySet();
+        AtomicLongArray lastEntryIds = new AtomicLongArray(writers);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+        ReentrantLock flushMutex = new ReentrantLock();
+        AtomicInteger checkpoints = new AtomicInteger();
+        for (int i = 0; i < writers; i++) {
+            lastEntryIds.set(i, -1);
+        }
+
+        try (WriteCacheRing ring = getRing(segmentsCount, false, () -> { })) {
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                List<Thread> threads = new ArrayList<>();
+                threads.add(startThread("flusher", failures, () -> {
+                    while (!done.get()) {
+                        flushAll(ring, index, flushMutex);
+                    }
+                }));
+
+                // Every entry added before a checkpoint starts must be in the location index once it completes,
+                // as done by SingleDirectoryDbLedgerStorage#checkpoint
+                threads.add(startThread("checkpoint", failures, () -> {
+                    do {
+                        long[] added = new long[writers];
+                        for (int i = 0; i < writers; i++) {
+                            added[i] = lastEntryIds.get(i);
+                        }
+
+                        flushMutex.lock();
+                        try {
+                            long sealedSequence;
+                            while ((sealedSequence = ring.sealActiveSegment()) < 0) {
+                                flushOldestSegment(ring, index);
+                            }
+                            while (ring.getFlushedSequence() < sealedSequence) {
+                                assertTrue(flushOldestSegment(ring, index));
+                            }
+                        } finally {
+                            flushMutex.unlock();
+                        }
+
+                        for (int i = 0; i < writers; i++) {
+                            for (long entryId = 0; entryId <= added[i]; entryId++) {
+                                assertTrue(index.contains(getKey(i, entryId)), "Lost entry " + i + "@" + entryId);
+                            }
+                        }
+                        checkpoints.incrementAndGet();
+                    } while (!done.get());
+                }));
+
+                List<Thread> writerThreads = new ArrayList<>();
+                for (int i = 0; i < writers; i++) {
+                    long ledgerId = i;
+                    writerThreads.add(startThread("writer-" + i, failures, () -> {
+                        for (long entryId = 0; entryId < entries; entryId++) {
+                            while (!ring.put(ledgerId, entryId, getEntry(ledgerId, entryId))) {
+                                Thread.yield();
+                            }
+                            lastEntryIds.set((int) ledgerId, entryId);
+                        }
+                    }));
+                }
+                for (Thread thread : writerThreads) {
+                    thread.join();
+                }
+                done.set(true);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            });
+
+            assertTrue(failures.isEmpty(), failures::toString);
+            assertTrue(checkpoints.get() > 0);
+        }
+    }
+
+    static Stream<Arguments> argsConcurrent() {
+        return Stream.of(
+                Arguments.of(2, 1, 10_000), // T1
+                Arguments.of(4, 2, 10_000), // T2
+                Arguments.of(4, 8, 10_000) // T3
+        );
+    }
+
+    private static WriteCacheRing getRing(int segmentsCount, boolean ledgerOrderedIndex, Runnable listener) {
+        return new WriteCacheRing(UnpooledByteBufAllocator.DEFAULT, (long) segmentsCount * SEGMENT_SIZE,
+                segmentsCount, ledgerOrderedIndex, listener);
+    }
+
+    private static void flushAll(WriteCacheRing ring, Set<Long> index, ReentrantLock flushMutex)
+            throws IOException {
+        flushMutex.lock();
+        try {
+            while (flushOldestSegment(ring, index)) {
+                // Keep flushing until there is no sealed segment left
+            }
+        } finally {
+            flushMutex.unlock();
+        }
+    }
+
+    // Same sequence as SingleDirectoryDbLedgerStorage#flushOldestWriteCacheSegment, the set standing for the
+    // location index
+    private static boolean flushOldestSegment(WriteCacheRing ring, Set<Long> index) throws IOException {
+        WriteCache segment = ring.beginFlush();
+        if (segment == null) {
+            return false;
+        }
+
+        segment.forEach((ledgerId, entryId, entry) -> {
+            assertEquals(getEntry(ledgerId, entryId), entry);
+            index.add(getKey(ledgerId, entryId));
+        });
+        ring.endFlush();
+
+        return true;
+    }
+
+    private static Thread startThread(String name, List<Throwable> failures, ThrowingRunnable runnable) {
+        Thread thread = new Thread(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                synchronized (failures) {
+                    failures.add(t);
+                }
+            }
+        }, name);
+        thread.start();
+
+        return thread;
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static long getKey(long ledgerId, long entryId) {
+        return (ledgerId << 32) + entryId;
+    }
+
+    private static ByteBuf getEntry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        while (entry.isWritable()) {
+            entry.writeLong(ledgerId);
+            entry.writeLong(entryId);
+        }
+
+        return entry;
+    }
+}
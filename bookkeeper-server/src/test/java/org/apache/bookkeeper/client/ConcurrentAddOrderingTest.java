@@ -0,0 +1,203 @@
+package org.apache.bookkeeper.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.apache.bookkeeper.client.LedgerHandle.AddSequence;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class ConcurrentAddOrderingTest {
+    private static final int ENTRY_LENGTH = 100;
+
+    @Test
+    void testQueueIsOrderedByEntryId() {
+        PendingAddOpQueue queue = new PendingAddOpQueue();
+        PendingAddOp second = getPendingAddOp(2);
+
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+
+        queue.add(getPendingAddOp(3));
+        queue.add(second);
+        queue.add(getPendingAddOp(1));
+
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.peek().entryId);
+        assertEquals(1, queue.poll().entryId);
+        assertEquals(2, queue.size());
+        assertTrue(queue.remove(second));
+        assertFalse(queue.remove(second));
+        assertFalse(queue.contains(second));
+        assertEquals(1, queue.size());
+
+        // Ops removed through the iterator are not counted anymore
+        queue.add(second);
+        Iterator<PendingAddOp> iterator = queue.iterator();
+        assertEquals(2, iterator.next().entryId);
+        iterator.remove();
+        assertEquals(1, queue.size());
+        assertEquals(3, queue.poll().entryId);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testConcurrentAddsAreAcknowledgedInOrder(int writers, int addsPerWriter) {
+        AtomicReference<AddSequence> sequence = new AtomicReference<>(getOpenSequence());
+        PendingAddOpQueue queue = new PendingAddOpQueue();
+        int totalAdds = writers * addsPerWriter;
+        List<Long> acknowledged = new ArrayList<>(totalAdds);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            // Acknowledge the head of the queue only once it is the next entry, as
+            // LedgerHandle#sendAddSuccessCallbacks does
+            Thread acknowledger = new Thread(() -> {
+                long next = 0;
+                while (next < totalAdds) {
+                    PendingAddOp head = queue.peek();
+                    if (head == null || head.entryId != next) {
+                        Thread.yield();
+                        continue;
+                    }
+                    queue.poll();
+                    acknowledged.add(head.entryId);
+                    next++;
+                }
+            }, "acknowledger");
+            acknowledger.setDaemon(true);
+            acknowledger.start();
+
+            List<Throwable> failures = runWriters(writers, () -> {
+                for (int i = 0; i < addsPerWriter; i++) {
+                    AddSequence claimed = LedgerHandle.claimAddSequence(sequence, ENTRY_LENGTH);
+                    queue.add(getPendingAddOp(claimed.lastAddPushed));
+                }
+            });
+            assertTrue(failures.isEmpty(), failures::toString);
+
+            acknowledger.join();
+        });
+
+        assertEquals(totalAdds, acknowledged.size());
+        for (int i = 0; i < totalAdds; i++) {
+            assertEquals(i, acknowledged.get(i).longValue());
+        }
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertEquals(totalAdds - 1, sequence.get().lastAddPushed);
+        assertEquals((long) totalAdds * ENTRY_LENGTH, sequence.get().length);
+        assertEquals(totalAdds, sequence.get().claimedAdds);
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testNoAddIsClaimedAfterSeal(int writers, int addsPerWriter) {
+        AtomicReference<AddSequence> sequence = new AtomicReference<>(getOpenSequence());
+        PendingAddOpQueue queue = new PendingAddOpQueue();
+        AtomicInteger claimedAdds = new AtomicInteger();
+        CountDownLatch claimingStarted = new CountDownLatch(writers);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Thread sealer = new Thread(() -> {
+                try {
+                    claimingStarted.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sequence.updateAndGet(AddSequence::seal);
+            }, "sealer");
+            sealer.start();
+
+            List<Throwable> failures = runWriters(writers, () -> {
+                AddSequence claimed;
+                int adds = 0;
+                while ((claimed = LedgerHandle.claimAddSequence(sequence, ENTRY_LENGTH)) != null) {
+                    queue.add(getPendingAddOp(claimed.lastAddPushed));
+                    claimedAdds.incrementAndGet();
+                    if (++adds == addsPerWriter) {
+                        claimingStarted.countDown();
+                    }
+                }
+            });
+            assertTrue(failures.isEmpty(), failures::toString);
+
+            sealer.join();
+        });
+
+        AddSequence sealed = sequence.get();
+
+        assertTrue(sealed.sealed);
+        assertNull(LedgerHandle.claimAddSequence(sequence, ENTRY_LENGTH));
+        assertSame(sealed, sequence.get());
+
+        // Every claimed add was published, with no gap up to the last entry pushed
+        assertEquals(claimedAdds.get(), sealed.claimedAdds);
+        assertEquals(claimedAdds.get() - 1, sealed.lastAddPushed);
+        assertEquals((long) claimedAdds.get() * ENTRY_LENGTH, sealed.length);
+        assertEquals(claimedAdds.get(), queue.size());
+        for (long entryId = 0; entryId <= sealed.lastAddPushed; entryId++) {
+            assertEquals(entryId, queue.poll().entryId);
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(1, 1000), // T1
+                Arguments.of(2, 1000), // T2
+                Arguments.of(8, 1000), // T3
+                Arguments.of(32, 100) // T4
+        );
+    }
+
+    private static List<Throwable> runWriters(int writers, Runnable writer) throws InterruptedException {
+        CyclicBarrier start = new CyclicBarrier(writers);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    writer.run();
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            }, "writer-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return failures;
+    }
+
+    private static AddSequence getOpenSequence() {
+        return new AddSequence(LedgerHandle.INVALID_ENTRY_ID, 0L, 0L, false);
+    }
+
+    private static PendingAddOp getPendingAddOp(long entryId) {
+        PendingAddOp op = mock(PendingAddOp.class);
+        op.entryId = entryId;
+
+        return op;
+    }
+}
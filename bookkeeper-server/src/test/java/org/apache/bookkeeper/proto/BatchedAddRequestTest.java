@@ -0,0 +1,212 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
+import org.apache.bookkeeper.proto.BookieProtocol.ParsedAddRequest;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class BatchedAddRequestTest {
+    private static final byte[] MASTER_KEY = "batched-add-test-key".getBytes(StandardCharsets.UTF_8);
+
+    private final BookieProtoEncoding.RequestEnDeCoderPreV3 decoder =
+            new BookieProtoEncoding.RequestEnDeCoderPreV3(null);
+
+    public enum RequestEnum {
+        BUFFER,
+        // Requests made of several buffers, as sent with a digest
+        BUFFER_LIST
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testBatchedAddRoundTrip(RequestEnum requestEnum, short flags, String[] payloads, int start, int end)
+            throws Exception {
+        Object[] requests = new Object[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            requests[i] = getAddRequest(requestEnum, 7, 10 + i, flags, payloads[i]);
+        }
+
+        int header = PerChannelBookieClient.v2AddHeader(requests[start]);
+        int payloadBytes = 0;
+        for (int i = start; i < end; i++) {
+            assertEquals(header, PerChannelBookieClient.v2AddHeader(requests[i]));
+            payloadBytes += PerChannelBookieClient.v2AddPayloadBytes(requests[i]);
+        }
+
+        ByteBufList batch = PerChannelBookieClient.newBatchedAddRequest(UnpooledByteBufAllocator.DEFAULT, requests,
+                start, end, header, payloadBytes);
+        ByteBuf frame = ByteBufList.coalesce(batch);
+        batch.release();
+
+        assertEquals(frame.readableBytes() - 4, frame.readInt());
+        int batchHeader = frame.getInt(frame.readerIndex());
+        assertEquals(BookieProtocol.BATCH_ADD_ENTRY, PacketHeader.getOpCode(batchHeader));
+        assertEquals(flags, PacketHeader.getFlags(batchHeader));
+
+        List<?> adds = (List<?>) decoder.decode(frame);
+
+        assertEquals(end - start, adds.size());
+        for (int i = 0; i < adds.size(); i++) {
+            ParsedAddRequest add = (ParsedAddRequest) adds.get(i);
+            ByteBuf data = add.getData();
+
+            assertEquals(7, add.getLedgerId());
+            assertEquals(10 + start + i, add.getEntryId());
+            assertEquals(flags == BookieProtocol.FLAG_RECOVERY_ADD, add.isRecoveryAdd());
+            assertArrayEquals(MASTER_KEY, add.getMasterKey());
+            assertEquals(payloads[start + i], data.toString(data.readerIndex() + 16, data.readableBytes() - 16,
+                    StandardCharsets.UTF_8));
+
+            add.release();
+            add.recycle();
+        }
+        frame.release();
+
+        // The requests in the batch were released with it, the others are left untouched
+        for (int i = 0; i < requests.length; i++) {
+            if (requests[i] instanceof ByteBuf) {
+                assertEquals(i >= start && i < end ? 0 : 1, ((ByteBuf) requests[i]).refCnt());
+            }
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(RequestEnum.BUFFER, (short) 0, new String[] {"a"}, 0, 1), // T1
+                Arguments.of(RequestEnum.BUFFER, (short) 0, new String[] {"first", "second", ""}, 0, 3), // T2
+                Arguments.of(RequestEnum.BUFFER, BookieProtocol.FLAG_RECOVERY_ADD,
+                        new String[] {"first", "second"}, 0, 2), // T3
+                Arguments.of(RequestEnum.BUFFER_LIST, (short) 0, new String[] {"first", "second", ""}, 0, 3), // T4
+                Arguments.of(RequestEnum.BUFFER, (short) 0, new String[] {"a", "b", "c", "d"}, 1, 3) // T5
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsError")
+    void testBatchedAddDecodeError(int entryCount, int[] entrySizes, int payloadBytes,
+                                   Class<? extends Throwable> expectedException) {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(PacketHeader.toInt(BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.BATCH_ADD_ENTRY,
+                (short) 0));
+        frame.writeBytes(MASTER_KEY);
+        frame.writeInt(entryCount);
+        for (int size : entrySizes) {
+            frame.writeInt(size);
+        }
+        frame.writeZero(payloadBytes);
+
+        try {
+            ((List<?>) decoder.decode(frame)).forEach(add -> ((ParsedAddRequest) add).release());
+        } catch (Exception e) {
+            assertEquals(expectedException, e.getClass());
+
+            return;
+        }
+
+        assertNull(expectedException);
+    }
+
+    static Stream<Arguments> argsError() {
+        return Stream.of(
+                Arguments.of(0, new int[] {}, 0, IllegalStateException.class), // T1
+                // Entry smaller than its ledger and entry ids
+                Arguments.of(1, new int[] {8}, 8, IllegalStateException.class), // T2
+                Arguments.of(2, new int[] {16, 32}, 40, IllegalStateException.class), // T3
+                Arguments.of(1, new int[] {-16}, 16, IllegalStateException.class), // T4
+                Arguments.of(1000, new int[] {}, 0, IllegalStateException.class), // T5
+                Arguments.of(2, new int[] {16, 32}, 48, null) // T6
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsFireError")
+    void testUnfiredRequestsAreReleased(int entries, int failingRead, int expectedRefCnt) throws Exception {
+        Object[] requests = new Object[entries];
+        int payloadBytes = 0;
+        for (int i = 0; i < entries; i++) {
+            requests[i] = getAddRequest(RequestEnum.BUFFER, 7, i, (short) 0, "entry-" + i);
+            payloadBytes += PerChannelBookieClient.v2AddPayloadBytes(requests[i]);
+        }
+        ByteBufList batch = PerChannelBookieClient.newBatchedAddRequest(UnpooledByteBufAllocator.DEFAULT, requests,
+                0, entries, PerChannelBookieClient.v2AddHeader(requests[0]), payloadBytes);
+        ByteBuf frame = ByteBufList.coalesce(batch);
+        batch.release();
+        // The frame length is stripped before the request decoder
+        frame.readInt();
+
+        // The next handler fails to take the request of the given read
+        List<Object> handed = new ArrayList<>();
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.fireChannelRead(any())).thenAnswer(invocation -> {
+            handed.add(invocation.getArgument(0));
+            if (handed.size() == failingRead) {
+                throw new IllegalStateException("Failed to handle the request");
+            }
+
+            return ctx;
+        });
+
+        try {
+            new BookieProtoEncoding.RequestDecoder(ExtensionRegistry.newInstance()).channelRead(ctx, frame);
+            assertEquals(0, failingRead);
+        } catch (IllegalStateException e) {
+            assertNotEquals(0, failingRead);
+        }
+
+        // Only the requests handed to the next handler still reference the frame
+        assertEquals(expectedRefCnt, frame.refCnt());
+        assertEquals(expectedRefCnt, handed.size());
+        for (Object request : handed) {
+            ((ParsedAddRequest) request).release();
+            ((ParsedAddRequest) request).recycle();
+        }
+        assertEquals(0, frame.refCnt());
+    }
+
+    static Stream<Arguments> argsFireError() {
+        return Stream.of(
+                Arguments.of(4, 0, 4), // T1
+                Arguments.of(4, 1, 1), // T2
+                Arguments.of(4, 2, 2), // T3
+                Arguments.of(4, 4, 4), // T4
+                Arguments.of(1, 1, 1) // T5
+        );
+    }
+
+    private static Object getAddRequest(RequestEnum requestEnum, long ledgerId, long entryId, short flags,
+                                        String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+
+        // Frame size, header, master key and the ledger and entry ids that start the entry
+        ByteBuf prefix = Unpooled.buffer();
+        prefix.writeInt(4 + BookieProtocol.MASTER_KEY_LENGTH + 16 + data.length);
+        prefix.writeInt(PacketHeader.toInt(BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.ADDENTRY, flags));
+        prefix.writeBytes(MASTER_KEY);
+        prefix.writeLong(ledgerId);
+        prefix.writeLong(entryId);
+
+        if (requestEnum == RequestEnum.BUFFER_LIST) {
+            return ByteBufList.get(prefix, Unpooled.wrappedBuffer(data));
+        }
+        prefix.writeBytes(data);
+
+        return prefix;
+    }
+}
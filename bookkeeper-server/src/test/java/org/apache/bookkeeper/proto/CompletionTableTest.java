@@ -0,0 +1,175 @@
+package org.apache.bookkeeper.proto;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class CompletionTableTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long WHEEL_NANOS = CompletionTable.WHEEL_SIZE * CompletionTable.TICK_NANOS;
+
+    private CompletionTable<TestCompletion> table;
+    private long now;
+
+    public enum KeyEnum {
+        TXN_ID,
+        ENTRY
+    }
+
+    static final class TestCompletion extends CompletionTable.Completion<TestCompletion> {
+        final int id;
+
+        TestCompletion(int id) {
+            this.id = id;
+        }
+    }
+
+    @BeforeEach
+    public void resetTable() {
+        table = new CompletionTable<>();
+        now = System.nanoTime();
+    }
+
+    @ParameterizedTest
+    @MethodSource("args")
+    void testPutRemove(KeyEnum putKey, KeyEnum removeKey, long id, long entryId, OperationType operationType,
+                       boolean expectedFound) {
+        TestCompletion completion = getCompletion(1);
+        put(putKey, 1, 5, OperationType.ADD_ENTRY, completion, now + SECOND);
+
+        TestCompletion removed = removeKey == KeyEnum.TXN_ID
+                ? table.removeByTxnId(id, operationType) : table.removeByEntry(id, entryId, operationType);
+
+        if (expectedFound) {
+            assertSame(completion, removed);
+            assertEquals(0, table.size());
+        } else {
+            assertNull(removed);
+            assertEquals(1, table.size());
+        }
+    }
+
+    static Stream<Arguments> args() {
+        return Stream.of(
+                Arguments.of(KeyEnum.TXN_ID, KeyEnum.TXN_ID, 1, 0, OperationType.ADD_ENTRY, true), // T1
+                Arguments.of(KeyEnum.TXN_ID, KeyEnum.TXN_ID, 2, 0, OperationType.ADD_ENTRY, false), // T2
+                Arguments.of(KeyEnum.TXN_ID, KeyEnum.TXN_ID, 1, 0, OperationType.READ_ENTRY, false), // T3
+                // An entry key never matches a txn id key
+                Arguments.of(KeyEnum.TXN_ID, KeyEnum.ENTRY, 1, 5, OperationType.ADD_ENTRY, false), // T4
+                Arguments.of(KeyEnum.ENTRY, KeyEnum.TXN_ID, 1, 0, OperationType.ADD_ENTRY, false), // T5
+                Arguments.of(KeyEnum.ENTRY, KeyEnum.ENTRY, 1, 5, OperationType.ADD_ENTRY, true), // T6
+                Arguments.of(KeyEnum.ENTRY, KeyEnum.ENTRY, 1, 6, OperationType.ADD_ENTRY, false), // T7
+                Arguments.of(KeyEnum.ENTRY, KeyEnum.ENTRY, 2, 5, OperationType.ADD_ENTRY, false) // T8
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("argsTimeout")
+    void testRemoveExpired(long deadlineOffset, long nowOffset, int expectedExpired) {
+        TestCompletion completion = getCompletion(1);
+        table.putByTxnId(1, OperationType.ADD_ENTRY, completion, now + deadlineOffset);
+
+        List<TestCompletion> expired = new ArrayList<>();
+        int removed = table.removeExpired(now + nowOffset, expired::add);
+
+        assertEquals(expectedExpired, removed);
+        assertEquals(expectedExpired, expired.size());
+        assertEquals(1 - expectedExpired, table.size());
+        if (expectedExpired > 0) {
+            assertSame(completion, expired.get(0));
+            assertNull(table.removeByTxnId(1, OperationType.ADD_ENTRY));
+        }
+    }
+
+    static Stream<Arguments> argsTimeout() {
+        return Stream.of(
+                Arguments.of(SECOND, SECOND / 2, 0), // T1
+                Arguments.of(SECOND, SECOND, 1), // T2
+                Arguments.of(SECOND, 3 * SECOND, 1), // T3
+                Arguments.of(-SECOND, 0, 1), // T4
+                // Further than a whole turn of the wheel
+                Arguments.of(2 * WHEEL_NANOS, WHEEL_NANOS + SECOND, 0), // T5
+                Arguments.of(2 * WHEEL_NANOS, 2 * WHEEL_NANOS, 1) // T6
+        );
+    }
+
+    @Test
+    void testDuplicateKeysAreRemovedOldestFirst() {
+        List<TestCompletion> duplicates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            duplicates.add(getCompletion(i));
+            table.putByEntry(1, 0, OperationType.READ_ENTRY, duplicates.get(i), now + SECOND);
+        }
+
+        // Grow the table, so that the chains are rehashed
+        for (int i = 0; i < 1000; i++) {
+            table.putByEntry(2, i, OperationType.READ_ENTRY, getCompletion(100 + i), now + SECOND);
+        }
+
+        for (TestCompletion completion : duplicates) {
+            assertSame(completion, table.removeByEntry(1, 0, OperationType.READ_ENTRY));
+        }
+        assertNull(table.removeByEntry(1, 0, OperationType.READ_ENTRY));
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    void testRemoveExactCompletion() {
+        TestCompletion first = getCompletion(1);
+        TestCompletion second = getCompletion(2);
+        table.putByEntry(1, 0, OperationType.READ_ENTRY, first, now + SECOND);
+        table.putByEntry(1, 0, OperationType.READ_ENTRY, second, now + SECOND);
+
+        assertTrue(table.remove(second));
+        assertFalse(table.remove(second));
+        assertFalse(table.contains(second, 1, 0, OperationType.READ_ENTRY));
+        assertTrue(table.contains(first, 1, 0, OperationType.READ_ENTRY));
+
+        // The completion is reused for another operation, and is not expired with its old deadline
+        assertTrue(table.remove(first));
+        table.putByTxnId(7, OperationType.ADD_ENTRY, first, now + 10 * SECOND);
+
+        assertFalse(table.remove(first, 1, 0, OperationType.READ_ENTRY));
+        assertTrue(table.contains(first, 7, CompletionTable.TXN_ID_KEY, OperationType.ADD_ENTRY));
+        assertEquals(0, table.removeExpired(now + 2 * SECOND, completion -> fail()));
+    }
+
+    @Test
+    void testRemoveAll() {
+        for (int i = 0; i < 100; i++) {
+            table.putByTxnId(i, OperationType.ADD_ENTRY, getCompletion(i), now + i * SECOND);
+        }
+
+        boolean[] removed = new boolean[100];
+        table.removeAll(completion -> removed[completion.id] = true);
+
+        for (boolean r : removed) {
+            assertTrue(r);
+        }
+        assertEquals(0, table.size());
+        assertEquals(0, table.removeExpired(now + 200 * SECOND, completion -> fail()));
+    }
+
+    private void put(KeyEnum key, long id, long entryId, OperationType operationType, TestCompletion completion,
+                     long deadlineNanos) {
+        if (key == KeyEnum.TXN_ID) {
+            table.putByTxnId(id, operationType, completion, deadlineNanos);
+        } else {
+            table.putByEntry(id, entryId, operationType, completion, deadlineNanos);
+        }
+    }
+
+    private static TestCompletion getCompletion(int id) {
+        return new TestCompletion(id);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.nativeio.AsyncIO;
+import org.apache.bookkeeper.common.util.nativeio.IoUringAsyncIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.common.util.nativeio.ThreadPoolAsyncIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the I/O engines of the direct I/O entry logger, reading batches of random blocks of
+ * a file opened with O_DIRECT. The sync engine reads the blocks of a batch one after the other,
+ * as the entry logger read threads do, while the other engines keep the whole batch in flight.
+ *
+ * <p>The score is in batches per second. The directory must be on a filesystem supporting O_DIRECT,
+ * e.g. a local disk, or {@code -p directory=/dev/shm} for tmpfs on Linux 6.6+ to only measure the
+ * overhead of the engines.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class DirectIOEngineBenchmark {
+
+    private static final long FILE_SIZE = 256 * 1024 * 1024;
+    private static final int ALIGNMENT = 4096;
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({"sync", "threadpool", "io_uring"})
+        public String engine;
+
+        @Param({"4096", "65536"})
+        public int blockSize;
+
+        @Param({"1", "16"})
+        public int inFlight;
+
+        @Param({"/tmp"})
+        public String directory;
+
+        private NativeIO nativeIO;
+        private AsyncIO asyncIO;
+        private File file;
+        private int fd;
+        private long[] buffers;
+        private CompletableFuture<?>[] futures;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            nativeIO = new NativeIOImpl();
+            file = File.createTempFile("direct-io-engine", ".log", new File(directory));
+
+            int writeFd = nativeIO.open(file.getPath(),
+                    NativeIO.O_CREAT | NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+            int writeSize = 1024 * 1024;
+            long writeBuffer = nativeIO.posix_memalign(ALIGNMENT, writeSize);
+            for (long offset = 0; offset < FILE_SIZE; offset += writeSize) {
+                nativeIO.pwrite(writeFd, writeBuffer, writeSize, offset);
+            }
+            nativeIO.free(writeBuffer);
+            nativeIO.fsync(writeFd);
+            nativeIO.close(writeFd);
+
+            fd = nativeIO.open(file.getPath(), NativeIO.O_RDONLY | NativeIO.O_DIRECT, 00644);
+            buffers = new long[inFlight];
+            for (int i = 0; i < inFlight; i++) {
+                buffers[i] = nativeIO.posix_memalign(ALIGNMENT, blockSize);
+            }
+            futures = new CompletableFuture<?>[inFlight];
+
+            switch (engine) {
+            case "sync":
+                break;
+            case "threadpool":
+                asyncIO = new ThreadPoolAsyncIO(nativeIO, inFlight, "benchmark-io");
+                break;
+            case "io_uring":
+                if (!IoUringAsyncIO.isSupported()) {
+                    throw new IllegalStateException("io_uring not supported, errno: "
+                            + IoUringAsyncIO.probeResult());
+                }
+                asyncIO = new IoUringAsyncIO(inFlight, "benchmark-io");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            if (asyncIO != null) {
+                asyncIO.close();
+            }
+            for (long buffer : buffers) {
+                nativeIO.free(buffer);
+            }
+            nativeIO.close(fd);
+            file.delete();
+        }
+
+        long randomOffset() {
+            return ThreadLocalRandom.current().nextLong(FILE_SIZE / blockSize) * blockSize;
+        }
+    }
+
+    @Benchmark
+    public long readBatch(TestState s) throws Exception {
+        long bytes = 0;
+        if (s.asyncIO == null) {
+            for (int i = 0; i < s.inFlight; i++) {
+                bytes += s.nativeIO.pread(s.fd, s.buffers[i], s.blockSize, s.randomOffset());
+            }
+            return bytes;
+        }
+
+        for (int i = 0; i < s.inFlight; i++) {
+            s.futures[i] = s.asyncIO.pread(s.fd, s.buffers[i], s.blockSize, s.randomOffset());
+        }
+        for (int i = 0; i < s.inFlight; i++) {
+            bytes += (Long) s.futures[i].get();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.storage.ldb.DefaultReadCache;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadCache;
+import org.apache.bookkeeper.bookie.storage.ldb.StripedReadCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the default read cache with the striped read cache, with multiple threads
+ * concurrently inserting and reading back entries of their own ledgers, which is the
+ * access pattern of tailing readers.
+ *
+ * <p>The cache is kept small, so that segments are frequently rolled over.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class ReadCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    private static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int ENTRY_SIZE = 1024;
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Param({"1", "16"})
+        public int stripes;
+
+        private final AtomicLong ledgerIdGenerator = new AtomicLong();
+        private ReadCache cache;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            if (stripes > 1) {
+                cache = new StripedReadCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, stripes, SEGMENT_SIZE);
+            } else {
+                cache = new DefaultReadCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, SEGMENT_SIZE);
+            }
+            entry = Unpooled.directBuffer(ENTRY_SIZE, ENTRY_SIZE);
+            entry.writerIndex(ENTRY_SIZE);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+            entry.release();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private long ledgerId;
+        private long lastEntryId;
+
+        @Setup(Level.Trial)
+        public void setup(CacheState s) {
+            ledgerId = s.ledgerIdGenerator.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void putAndGet(CacheState s, ReaderState r) {
+        long entryId = r.lastEntryId++;
+        s.cache.put(r.ledgerId, entryId, s.entry.duplicate());
+
+        // Read one of the recently inserted entries
+        long readEntryId = entryId - ThreadLocalRandom.current().nextLong(Math.min(entryId + 1, 100));
+        ReferenceCountUtil.release(s.cache.get(r.ledgerId, readEntryId));
+    }
+
+    @Benchmark
+    public boolean hasEntry(CacheState s, ReaderState r) {
+        long entryId = r.lastEntryId++;
+        if (entryId % 10 == 0) {
+            s.cache.put(r.ledgerId, entryId, s.entry.duplicate());
+        }
+        return s.cache.hasEntry(r.ledgerId, entryId - entryId % 10);
+    }
+}
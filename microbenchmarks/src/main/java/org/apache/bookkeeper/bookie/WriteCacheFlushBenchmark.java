@@ -0,0 +1,108 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the iteration of the write cache entries done by a flush, with the default layout,
+ * where all the entries are sorted with {@link org.apache.bookkeeper.bookie.storage.ldb.ArrayGroupSort}
+ * (see {@link GroupSortBenchmark} for the sort alone), and with the ledger ordered index, where
+ * only the ledger ids are sorted.
+ *
+ * <p>Each invocation refills the write cache, as a flush is always followed by new writes. Run with
+ * {@code -prof gc} to compare the allocations.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class WriteCacheFlushBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    private static final int ENTRY_SIZE = 256;
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({"false", "true"})
+        public boolean ledgerOrderedIndex;
+
+        @Param({"100000", "500000"})
+        public int entries;
+
+        @Param({"100", "10000"})
+        public int ledgers;
+
+        private WriteCache cache;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new WriteCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, 1024 * 1024 * 1024,
+                    ledgerOrderedIndex);
+            entry = Unpooled.directBuffer(ENTRY_SIZE);
+            entry.writerIndex(ENTRY_SIZE);
+        }
+
+        @Setup(Level.Invocation)
+        public void fill() {
+            cache.clear();
+            // Interleave the ledgers, as the writes of many clients do
+            for (int i = 0; i < entries; i++) {
+                cache.put(i % ledgers, i / ledgers, entry);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public void flushIteration(TestState s, Blackhole bh) throws IOException {
+        s.cache.forEach((ledgerId, entryId, entry) -> {
+            bh.consume(ledgerId);
+            bh.consume(entryId);
+            bh.consume(entry);
+        });
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.common.util.nativeio;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous positioned I/O, allowing many requests to be in flight at the same time.
+ *
+ * <p>The returned futures complete with the number of bytes transferred, or exceptionally with a
+ * {@link NativeIOException}.
+ */
+public interface AsyncIO extends AutoCloseable {
+
+    CompletableFuture<Long> pread(int fd, long pointer, long size, long offset);
+
+    CompletableFuture<Long> pwrite(int fd, long pointer, int count, long offset);
+
+    /**
+     * Wait for the requests in flight to complete and release the resources.
+     */
+    @Override
+    void close();
+}
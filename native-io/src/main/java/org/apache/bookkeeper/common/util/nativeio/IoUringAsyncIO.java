@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.common.util.nativeio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link AsyncIO} based on an io_uring submission and completion queue pair.
+ *
+ * <p>The requests are submitted by the calling threads and completed by a single completion thread,
+ * so that up to {@code queueDepth} requests can be in flight without a thread per request. The number
+ * of requests in flight is bounded by the queue depth, and the submitters block when it's reached.
+ *
+ * <p>The submitters queue their requests, and the first of them flushes the queue to the kernel with a
+ * single system call, including the requests queued by the others while it was waiting for the lock.
+ *
+ * <p>{@link #isSupported()} must be checked before creating an instance, since io_uring might not be
+ * available in the running kernel, or might be disabled.
+ */
+public class IoUringAsyncIO implements AsyncIO {
+
+    // Operation codes shared with the JNI code
+    private static final int OP_READ = 0;
+    private static final int OP_WRITE = 1;
+    private static final int OP_NOP = 2;
+
+    // User data of the request waking up the completion thread on close
+    private static final long CLOSE_USER_DATA = -1L;
+
+    private static final int MAX_COMPLETIONS_BATCH = 256;
+
+    private static final int PROBE_RESULT = probe();
+
+    private final long ring;
+    private final int queueDepth;
+    private final Semaphore inFlight;
+    private final Thread completionThread;
+
+    // Guarded by this
+    private final CompletableFuture<Long>[] pending;
+    private final int[] pendingOps;
+    private final int[] freeSlots;
+    private int freeSlotsCount;
+    // Slots of the requests queued and not flushed yet, in queue order
+    private final int[] queuedSlots;
+    private int queuedCount;
+    private boolean flushing = false;
+    private boolean closed = false;
+    private boolean ringClosed = false;
+
+    private static int probe() {
+        try {
+            return NativeIOJni.io_uring_probe();
+        } catch (Throwable t) {
+            // The native library could not be loaded, or doesn't include io_uring support
+            return -1;
+        }
+    }
+
+    /**
+     * @return true if io_uring can be used, as checked once when this class is loaded
+     */
+    public static boolean isSupported() {
+        return PROBE_RESULT == 0;
+    }
+
+    /**
+     * @return the error number of the io_uring availability check, 0 if io_uring is supported, or -1 if the
+     *         native library is not available
+     */
+    public static int probeResult() {
+        return PROBE_RESULT;
+    }
+
+    @SuppressWarnings("unchecked")
+    public IoUringAsyncIO(int queueDepth, String name) throws NativeIOException {
+        if (!isSupported()) {
+            throw new NativeIOException("io_uring is not supported", PROBE_RESULT);
+        }
+
+        this.ring = NativeIOJni.io_uring_create(queueDepth);
+        this.queueDepth = queueDepth;
+        this.inFlight = new Semaphore(queueDepth);
+        this.pending = new CompletableFuture[queueDepth];
+        this.pendingOps = new int[queueDepth];
+        this.freeSlots = new int[queueDepth];
+        for (int i = 0; i < queueDepth; i++) {
+            freeSlots[i] = i;
+        }
+        this.freeSlotsCount = queueDepth;
+        this.queuedSlots = new int[queueDepth];
+        this.queuedCount = 0;
+
+        this.completionThread = new Thread(this::processCompletions, name);
+        this.completionThread.setDaemon(true);
+        this.completionThread.start();
+    }
+
+    @Override
+    public CompletableFuture<Long> pread(int fd, long pointer, long size, long offset) {
+        return submit(OP_READ, fd, pointer, (int) size, offset);
+    }
+
+    @Override
+    public CompletableFuture<Long> pwrite(int fd, long pointer, int count, long offset) {
+        return submit(OP_WRITE, fd, pointer, count, offset);
+    }
+
+    private CompletableFuture<Long> submit(int op, int fd, long pointer, int len, long offset) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        inFlight.acquireUninterruptibly();
+
+        synchronized (this) {
+            if (closed) {
+                inFlight.release();
+                future.completeExceptionally(new NativeIOException("io_uring is closed"));
+                return future;
+            }
+
+            int slot = freeSlots[--freeSlotsCount];
+            pending[slot] = future;
+            pendingOps[slot] = op;
+            try {
+                NativeIOJni.io_uring_queue(ring, op, fd, pointer, len, offset, slot);
+            } catch (NativeIOException e) {
+                pending[slot] = null;
+                freeSlots[freeSlotsCount++] = slot;
+                inFlight.release();
+                future.completeExceptionally(e);
+                return future;
+            }
+            queuedSlots[queuedCount++] = slot;
+
+            if (flushing) {
+                // The thread that is going to flush will submit this request too
+                return future;
+            }
+            flushing = true;
+        }
+
+        // Let the submitters waiting for the lock queue their requests, before flushing them all at once
+        flush();
+        return future;
+    }
+
+    private void flush() {
+        List<CompletableFuture<Long>> failed = null;
+        NativeIOException error = null;
+        synchronized (this) {
+            flushing = false;
+            int submitted;
+            try {
+                submitted = NativeIOJni.io_uring_flush(ring);
+            } catch (NativeIOException e) {
+                submitted = 0;
+                error = e;
+            }
+
+            // The requests that were not submitted were taken back from the kernel, so their slots are free
+            for (int i = submitted; i < queuedCount; i++) {
+                int slot = queuedSlots[i];
+                if (failed == null) {
+                    failed = new ArrayList<>(queuedCount - submitted);
+                }
+                failed.add(pending[slot]);
+                pending[slot] = null;
+                freeSlots[freeSlotsCount++] = slot;
+            }
+            queuedCount = 0;
+        }
+
+        if (failed != null) {
+            if (error == null) {
+                error = new NativeIOException("Failed to submit to io_uring");
+            }
+            // Complete the futures outside the lock, so that their callbacks can submit new requests
+            for (CompletableFuture<Long> future : failed) {
+                inFlight.release();
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private void processCompletions() {
+        long[] userData = new long[MAX_COMPLETIONS_BATCH];
+        int[] results = new int[MAX_COMPLETIONS_BATCH];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MAX_COMPLETIONS_BATCH];
+        int[] ops = new int[MAX_COMPLETIONS_BATCH];
+
+        while (true) {
+            int count;
+            try {
+                count = NativeIOJni.io_uring_wait(ring, 1, userData, results);
+            } catch (NativeIOException e) {
+                // Only happens if the ring is unusable, fail all the requests in flight
+                failPending(e);
+                return;
+            }
+
+            boolean closing = false;
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    if (userData[i] == CLOSE_USER_DATA) {
+                        closing = true;
+                        futures[i] = null;
+                        continue;
+                    }
+                    int slot = (int) userData[i];
+                    futures[i] = pending[slot];
+                    ops[i] = pendingOps[slot];
+                    pending[slot] = null;
+                    freeSlots[freeSlotsCount++] = slot;
+                }
+            }
+
+            // Complete the futures outside the lock, so that their callbacks can submit new requests
+            for (int i = 0; i < count; i++) {
+                @SuppressWarnings("unchecked")
+                CompletableFuture<Long> future = (CompletableFuture<Long>) futures[i];
+                if (future == null) {
+                    continue;
+                }
+                futures[i] = null;
+                inFlight.release();
+
+                int res = results[i];
+                if (res >= 0) {
+                    future.complete((long) res);
+                } else {
+                    String message = ops[i] == OP_READ ? "Failed to read from file" : "Failed to write on file";
+                    future.completeExceptionally(new NativeIOException(message, -res));
+                }
+            }
+
+            if (closing) {
+                return;
+            }
+        }
+    }
+
+    private void failPending(NativeIOException e) {
+        List<CompletableFuture<Long>> failed = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (int slot = 0; slot < queueDepth; slot++) {
+                if (pending[slot] != null) {
+                    failed.add(pending[slot]);
+                    pending[slot] = null;
+                    freeSlots[freeSlotsCount++] = slot;
+                }
+            }
+        }
+
+        // Complete the futures outside the lock, so that their callbacks don't run holding it
+        for (CompletableFuture<Long> future : failed) {
+            inFlight.release();
+            future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Wait for the requests in flight, the new ones are rejected
+        inFlight.acquireUninterruptibly(queueDepth);
+        synchronized (this) {
+            if (ringClosed) {
+                inFlight.release(queueDepth);
+                return;
+            }
+            closed = true;
+            ringClosed = true;
+        }
+        inFlight.release(queueDepth);
+
+        if (completionThread.isAlive()) {
+            try {
+                wakeUpCompletionThread();
+            } catch (NativeIOException e) {
+                // The completion thread can't be woken up and stays blocked waiting on the ring, so the ring is
+                // leaked rather than destroyed under it. There's no request left for the thread to complete.
+                return;
+            }
+            joinCompletionThread();
+        }
+
+        // The completion thread has exited, nothing reads the ring anymore
+        NativeIOJni.io_uring_destroy(ring);
+    }
+
+    private synchronized void wakeUpCompletionThread() throws NativeIOException {
+        NativeIOJni.io_uring_queue(ring, OP_NOP, -1, 0, 0, 0, CLOSE_USER_DATA);
+        NativeIOJni.io_uring_flush(ring);
+    }
+
+    private void joinCompletionThread() {
+        // The ring can't be destroyed while the completion thread might still be reading it
+        boolean interrupted = false;
+        while (completionThread.isAlive()) {
+            try {
+                completionThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
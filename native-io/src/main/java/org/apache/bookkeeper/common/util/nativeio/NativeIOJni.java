@@ -48,6 +48,40 @@ class NativeIOJni {
 
     static native int close(int fd) throws NativeIOException;
 
+    /**
+     * Check whether io_uring, with the read and write operations, is available.
+     *
+     * @return 0 if io_uring is available, the error number otherwise
+     */
+    static native int io_uring_probe();
+
+    static native long io_uring_create(int entries) throws NativeIOException;
+
+    /**
+     * Queue a request, without making it visible to the kernel until the next {@link #io_uring_flush(long)}.
+     */
+    static native void io_uring_queue(long ring, int op, int fd, long pointer, int len, long offset, long userData)
+            throws NativeIOException;
+
+    /**
+     * Submit the queued requests with a single system call. The requests the kernel did not take are removed
+     * from the submission queue, so they are never executed.
+     *
+     * @return the number of requests submitted, the first ones queued
+     * @throws NativeIOException if none of the queued requests could be submitted
+     */
+    static native int io_uring_flush(long ring) throws NativeIOException;
+
+    /**
+     * Reap the available completions, waiting for at least {@code minComplete} of them.
+     *
+     * @return the number of completions stored in the arrays
+     */
+    static native int io_uring_wait(long ring, int minComplete, long[] userData, int[] results)
+            throws NativeIOException;
+
+    static native void io_uring_destroy(long ring);
+
     static {
         try {
             if (SystemUtils.IS_OS_MAC_OSX) {
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.common.util.nativeio;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AsyncIO} running the blocking calls of {@link NativeIO} on a pool of threads.
+ *
+ * <p>This is the fallback when io_uring is not available: each request in flight needs its own thread.
+ */
+public class ThreadPoolAsyncIO implements AsyncIO {
+
+    private final NativeIO nativeIO;
+    private final ExecutorService executor;
+
+    public ThreadPoolAsyncIO(NativeIO nativeIO, int numThreads, String name) {
+        this.nativeIO = nativeIO;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> pread(int fd, long pointer, long size, long offset) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        execute(future, () -> future.complete(nativeIO.pread(fd, pointer, size, offset)));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Long> pwrite(int fd, long pointer, int count, long offset) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        execute(future, () -> future.complete((long) nativeIO.pwrite(fd, pointer, count, offset)));
+        return future;
+    }
+
+    private interface Operation {
+        void run() throws NativeIOException;
+    }
+
+    private void execute(CompletableFuture<Long> future, Operation operation) {
+        try {
+            executor.execute(() -> {
+                try {
+                    operation.run();
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new NativeIOException("I/O thread pool is shut down"));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -26,6 +26,15 @@
 #include <string.h>
 #include <unistd.h>
 
+#if defined(__linux__) && defined(__has_include)
+#if __has_include(<linux/io_uring.h>)
+#define HAVE_IO_URING 1
+#include <linux/io_uring.h>
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#endif
+#endif
+
 #include <org_apache_bookkeeper_common_util_nativeio_NativeIOJni.h>
 
 #ifdef _WIN32
@@ -311,3 +320,345 @@ JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJ
      free((const void*) pointer);
 }
 
+
+/*
+ * io_uring support, using the raw system calls so that there's no dependency on liburing.
+ *
+ * The requests are queued and then flushed to the kernel in batches, with one system call per batch. The
+ * submissions are serialized by the caller, and the completions are reaped by a single thread.
+ */
+
+// Operation codes shared with IoUringAsyncIO
+#define BK_IO_URING_OP_READ 0
+#define BK_IO_URING_OP_WRITE 1
+#define BK_IO_URING_OP_NOP 2
+
+#define BK_IO_URING_MAX_COMPLETIONS 256
+
+#ifdef HAVE_IO_URING
+
+struct bk_io_uring {
+    int ring_fd;
+
+    unsigned *sq_head;
+    unsigned *sq_tail;
+    unsigned *sq_mask;
+    unsigned *sq_entries;
+    unsigned *sq_array;
+    struct io_uring_sqe *sqes;
+
+    unsigned *cq_head;
+    unsigned *cq_tail;
+    unsigned *cq_mask;
+    struct io_uring_cqe *cqes;
+
+    void *sq_ring_ptr;
+    size_t sq_ring_size;
+    void *cq_ring_ptr;
+    size_t cq_ring_size;
+    size_t sqes_size;
+
+    // Tail of the queued entries, ahead of the tail published to the kernel until they're flushed
+    unsigned sqe_tail;
+};
+
+static int sys_io_uring_setup(unsigned entries, struct io_uring_params *params) {
+    return (int) syscall(__NR_io_uring_setup, entries, params);
+}
+
+static int sys_io_uring_enter(int ring_fd, unsigned to_submit, unsigned min_complete, unsigned flags) {
+    return (int) syscall(__NR_io_uring_enter, ring_fd, to_submit, min_complete, flags, NULL, 0);
+}
+
+static int sys_io_uring_register(int ring_fd, unsigned opcode, void *arg, unsigned nr_args) {
+    return (int) syscall(__NR_io_uring_register, ring_fd, opcode, arg, nr_args);
+}
+
+static void bk_io_uring_unmap(struct bk_io_uring *ring) {
+    if (ring->sqes != NULL && ring->sqes != MAP_FAILED) {
+        munmap(ring->sqes, ring->sqes_size);
+    }
+    if (ring->cq_ring_ptr != NULL && ring->cq_ring_ptr != MAP_FAILED && ring->cq_ring_ptr != ring->sq_ring_ptr) {
+        munmap(ring->cq_ring_ptr, ring->cq_ring_size);
+    }
+    if (ring->sq_ring_ptr != NULL && ring->sq_ring_ptr != MAP_FAILED) {
+        munmap(ring->sq_ring_ptr, ring->sq_ring_size);
+    }
+}
+
+static int bk_io_uring_map(struct bk_io_uring *ring, struct io_uring_params *p) {
+    ring->sq_ring_size = p->sq_off.array + p->sq_entries * sizeof(unsigned);
+    ring->cq_ring_size = p->cq_off.cqes + p->cq_entries * sizeof(struct io_uring_cqe);
+    if (p->features & IORING_FEAT_SINGLE_MMAP) {
+        if (ring->cq_ring_size > ring->sq_ring_size) {
+            ring->sq_ring_size = ring->cq_ring_size;
+        }
+        ring->cq_ring_size = ring->sq_ring_size;
+    }
+
+    ring->sq_ring_ptr = mmap(NULL, ring->sq_ring_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                             ring->ring_fd, IORING_OFF_SQ_RING);
+    if (ring->sq_ring_ptr == MAP_FAILED) {
+        return -1;
+    }
+
+    if (p->features & IORING_FEAT_SINGLE_MMAP) {
+        ring->cq_ring_ptr = ring->sq_ring_ptr;
+    } else {
+        ring->cq_ring_ptr = mmap(NULL, ring->cq_ring_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                                 ring->ring_fd, IORING_OFF_CQ_RING);
+        if (ring->cq_ring_ptr == MAP_FAILED) {
+            return -1;
+        }
+    }
+
+    ring->sqes_size = p->sq_entries * sizeof(struct io_uring_sqe);
+    ring->sqes = mmap(NULL, ring->sqes_size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE,
+                      ring->ring_fd, IORING_OFF_SQES);
+    if (ring->sqes == MAP_FAILED) {
+        return -1;
+    }
+
+    char *sq = (char *) ring->sq_ring_ptr;
+    ring->sq_head = (unsigned *) (sq + p->sq_off.head);
+    ring->sq_tail = (unsigned *) (sq + p->sq_off.tail);
+    ring->sq_mask = (unsigned *) (sq + p->sq_off.ring_mask);
+    ring->sq_entries = (unsigned *) (sq + p->sq_off.ring_entries);
+    ring->sq_array = (unsigned *) (sq + p->sq_off.array);
+
+    char *cq = (char *) ring->cq_ring_ptr;
+    ring->cq_head = (unsigned *) (cq + p->cq_off.head);
+    ring->cq_tail = (unsigned *) (cq + p->cq_off.tail);
+    ring->cq_mask = (unsigned *) (cq + p->cq_off.ring_mask);
+    ring->cqes = (struct io_uring_cqe *) (cq + p->cq_off.cqes);
+    return 0;
+}
+
+#endif
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_probe
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1probe
+    (JNIEnv * env, jclass clazz) {
+#ifdef HAVE_IO_URING
+    struct io_uring_params params;
+    memset(&params, 0, sizeof(params));
+    int ring_fd = sys_io_uring_setup(2, &params);
+    if (ring_fd < 0) {
+        return errno;
+    }
+
+    // The read and write operations on plain buffers were added after io_uring itself
+    size_t probe_size = sizeof(struct io_uring_probe) + 256 * sizeof(struct io_uring_probe_op);
+    struct io_uring_probe *probe = calloc(1, probe_size);
+    int res = 0;
+    if (probe == NULL) {
+        res = ENOMEM;
+    } else if (sys_io_uring_register(ring_fd, IORING_REGISTER_PROBE, probe, 256) < 0) {
+        res = errno;
+    } else if (probe->last_op < IORING_OP_WRITE
+               || !(probe->ops[IORING_OP_READ].flags & IO_URING_OP_SUPPORTED)
+               || !(probe->ops[IORING_OP_WRITE].flags & IO_URING_OP_SUPPORTED)) {
+        res = ENOTSUP;
+    }
+    free(probe);
+    close(ring_fd);
+    return res;
+#else
+    return ENOSYS;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_create
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1create
+    (JNIEnv * env, jclass clazz, jint entries) {
+#ifdef HAVE_IO_URING
+    struct bk_io_uring *ring = calloc(1, sizeof(struct bk_io_uring));
+    if (ring == NULL) {
+        throwExceptionWithErrno(env, "Failed to allocate io_uring");
+        return 0;
+    }
+
+    struct io_uring_params params;
+    memset(&params, 0, sizeof(params));
+    ring->ring_fd = sys_io_uring_setup(entries, &params);
+    if (ring->ring_fd < 0) {
+        throwExceptionWithErrno(env, "Failed to setup io_uring");
+        free(ring);
+        return 0;
+    }
+
+    if (bk_io_uring_map(ring, &params) != 0) {
+        throwExceptionWithErrno(env, "Failed to map io_uring");
+        bk_io_uring_unmap(ring);
+        close(ring->ring_fd);
+        free(ring);
+        return 0;
+    }
+    ring->sqe_tail = *ring->sq_tail;
+    return (jlong) ring;
+#else
+    throwException(env, "io_uring is not available");
+    return 0;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_queue
+ * Signature: (JIIJIJJ)V
+ */
+JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1queue
+    (JNIEnv * env, jclass clazz, jlong handle, jint op, jint fd, jlong pointer, jint len, jlong offset,
+     jlong userData) {
+#ifdef HAVE_IO_URING
+    struct bk_io_uring *ring = (struct bk_io_uring *) handle;
+
+    unsigned tail = ring->sqe_tail;
+    unsigned head = __atomic_load_n(ring->sq_head, __ATOMIC_ACQUIRE);
+    if (tail - head >= *ring->sq_entries) {
+        errno = EBUSY;
+        throwExceptionWithErrno(env, "io_uring submission queue is full");
+        return;
+    }
+
+    unsigned index = tail & *ring->sq_mask;
+    struct io_uring_sqe *sqe = &ring->sqes[index];
+    memset(sqe, 0, sizeof(*sqe));
+    switch (op) {
+    case BK_IO_URING_OP_READ:
+        sqe->opcode = IORING_OP_READ;
+        break;
+    case BK_IO_URING_OP_WRITE:
+        sqe->opcode = IORING_OP_WRITE;
+        break;
+    default:
+        sqe->opcode = IORING_OP_NOP;
+        break;
+    }
+    sqe->fd = fd;
+    sqe->addr = (unsigned long) pointer;
+    sqe->len = len;
+    sqe->off = offset;
+    sqe->user_data = userData;
+
+    ring->sq_array[index] = index;
+    // Not visible to the kernel until the next flush
+    ring->sqe_tail = tail + 1;
+#else
+    throwException(env, "io_uring is not available");
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_flush
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1flush
+    (JNIEnv * env, jclass clazz, jlong handle) {
+#ifdef HAVE_IO_URING
+    struct bk_io_uring *ring = (struct bk_io_uring *) handle;
+
+    // Everything published before was either consumed or taken back, so the head is the published tail
+    unsigned head = __atomic_load_n(ring->sq_head, __ATOMIC_ACQUIRE);
+    unsigned tail = ring->sqe_tail;
+    if (tail == head) {
+        return 0;
+    }
+    __atomic_store_n(ring->sq_tail, tail, __ATOMIC_RELEASE);
+
+    int res;
+    unsigned submittedHead = head;
+    do {
+        res = sys_io_uring_enter(ring->ring_fd, tail - submittedHead, 0, 0);
+        submittedHead = __atomic_load_n(ring->sq_head, __ATOMIC_ACQUIRE);
+    } while (res < 0 && errno == EINTR && submittedHead != tail);
+    int err = errno;
+
+    if (submittedHead != tail) {
+        // Take back the entries the kernel didn't consume, the caller fails them and they must never run
+        __atomic_store_n(ring->sq_tail, submittedHead, __ATOMIC_RELEASE);
+        ring->sqe_tail = submittedHead;
+    }
+
+    jint submitted = (jint) (submittedHead - head);
+    if (submitted == 0 && res < 0) {
+        errno = err;
+        throwExceptionWithErrno(env, "Failed to submit to io_uring");
+    }
+    return submitted;
+#else
+    throwException(env, "io_uring is not available");
+    return 0;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_wait
+ * Signature: (JI[J[I)I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1wait
+    (JNIEnv * env, jclass clazz, jlong handle, jint minComplete, jlongArray userDataArray, jintArray resultsArray) {
+#ifdef HAVE_IO_URING
+    struct bk_io_uring *ring = (struct bk_io_uring *) handle;
+    jlong userData[BK_IO_URING_MAX_COMPLETIONS];
+    jint results[BK_IO_URING_MAX_COMPLETIONS];
+
+    jsize max = (*env)->GetArrayLength(env, userDataArray);
+    if (max > BK_IO_URING_MAX_COMPLETIONS) {
+        max = BK_IO_URING_MAX_COMPLETIONS;
+    }
+
+    unsigned head = *ring->cq_head;
+    unsigned tail = __atomic_load_n(ring->cq_tail, __ATOMIC_ACQUIRE);
+    while (head == tail && minComplete > 0) {
+        int res = sys_io_uring_enter(ring->ring_fd, 0, minComplete, IORING_ENTER_GETEVENTS);
+        if (res < 0 && errno != EINTR) {
+            throwExceptionWithErrno(env, "Failed to wait for io_uring completions");
+            return 0;
+        }
+        tail = __atomic_load_n(ring->cq_tail, __ATOMIC_ACQUIRE);
+    }
+
+    jint count = 0;
+    while (head != tail && count < max) {
+        struct io_uring_cqe *cqe = &ring->cqes[head & *ring->cq_mask];
+        userData[count] = (jlong) cqe->user_data;
+        results[count] = cqe->res;
+        count++;
+        head++;
+    }
+    __atomic_store_n(ring->cq_head, head, __ATOMIC_RELEASE);
+
+    (*env)->SetLongArrayRegion(env, userDataArray, 0, count, userData);
+    (*env)->SetIntArrayRegion(env, resultsArray, 0, count, results);
+    return count;
+#else
+    throwException(env, "io_uring is not available");
+    return 0;
+#endif
+}
+
+/*
+ * Class:     org_apache_bookkeeper_common_util_nativeio_NativeIOJni
+ * Method:    io_uring_destroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_apache_bookkeeper_common_util_nativeio_NativeIOJni_io_1uring_1destroy
+    (JNIEnv * env, jclass clazz, jlong handle) {
+#ifdef HAVE_IO_URING
+    struct bk_io_uring *ring = (struct bk_io_uring *) handle;
+    bk_io_uring_unmap(ring);
+    close(ring->ring_fd);
+    free(ring);
+#endif
+}
@@ -17,6 +17,7 @@ package org.apache.bookkeeper.tools.perf.journal;
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_COPIED_BYTES;
 
 import com.beust.jcommander.Parameter;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -50,6 +51,7 @@ import org.apache.bookkeeper.bookie.Journal;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.Stats;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -177,12 +179,31 @@ public class JournalWriter implements Runnable {
         )
         public int numJournalCallbackThreads = 8;
 
+        @Parameter(
+            names = {
+                "-gms", "--gather-write-min-size"
+            },
+            description = "Min size of the entries written from their buffers instead of being copied,"
+                + " 0 to copy all the entries"
+        )
+        public int gatherWriteMinSize = 0;
+
+        @Parameter(
+            names = {
+                "-dp", "--direct-payload"
+            },
+            description = "Append entries in direct buffers, as received by a bookie, instead of heap buffers"
+        )
+        public boolean directPayload = false;
+
     }
 
 
     // stats
     private final LongAdder recordsWritten = new LongAdder();
     private final LongAdder bytesWritten = new LongAdder();
+    // journal counters of the bytes copied to the write buffers
+    private Counter[] copiedBytesCounters;
 
     private final ServerConfiguration conf;
     private final Flags flags;
@@ -240,7 +261,12 @@ public class JournalWriter implements Runnable {
             NullStatsLogger.INSTANCE
         );
         Journal[] journals = new Journal[flags.journalDirs.size()];
+        copiedBytesCounters = new Counter[journals.length];
         for (int i = 0; i < journals.length; i++) {
+            // the prometheus provider returns the counter registered by the journal
+            copiedBytesCounters[i] = statsLogger.scope(JOURNAL_SCOPE)
+                .scopeLabel("journalIndex", String.valueOf(i))
+                .getCounter(JOURNAL_WRITE_COPIED_BYTES);
             Journal journal = new Journal(
                 i,
                 new File(flags.journalDirs.get(i)),
@@ -355,7 +381,12 @@ public class JournalWriter implements Runnable {
         final int numJournals = journals.length;
         byte[] payload = new byte[flags.recordSize];
         ThreadLocalRandom.current().nextBytes(payload);
-        ByteBuf payloadBuf = Unpooled.wrappedBuffer(payload);
+        ByteBuf payloadBuf;
+        if (flags.directPayload) {
+            payloadBuf = Unpooled.directBuffer(payload.length).writeBytes(payload);
+        } else {
+            payloadBuf = Unpooled.wrappedBuffer(payload);
+        }
         long[] entryIds = new long[numLedgersForThisThread];
         Arrays.fill(entryIds, 0L);
         while (true) {
@@ -429,6 +460,7 @@ public class JournalWriter implements Runnable {
         long oldTime = System.nanoTime();
 
         Histogram reportHistogram = null;
+        long oldCopiedBytes = getCopiedBytes();
 
         while (true) {
             try {
@@ -444,15 +476,19 @@ public class JournalWriter implements Runnable {
             long now = System.nanoTime();
             double elapsed = (now - oldTime) / 1e9;
 
-            double rate = recordsWritten.sumThenReset() / elapsed;
+            long records = recordsWritten.sumThenReset();
+            double rate = records / elapsed;
+            long copiedBytes = getCopiedBytes();
+            double copiedBytesPerAdd = records > 0 ? (copiedBytes - oldCopiedBytes) / (double) records : 0;
             double throughput = bytesWritten.sumThenReset() / elapsed / 1024 / 1024;
 
             reportHistogram = recorder.getIntervalHistogram(reportHistogram);
 
             log.info(
-                    "Throughput written : {}  records/s --- {} MB/s --- Latency: mean:"
+                    "Throughput written : {}  records/s --- {} MB/s --- Copied : {} bytes/add --- Latency: mean:"
                         + " {} ms - med: {} - 95pct: {} - 99pct: {} - 99.9pct: {} - 99.99pct: {} - Max: {}",
                     throughputFormat.format(rate), throughputFormat.format(throughput),
+                    throughputFormat.format(copiedBytesPerAdd),
                     dec.format(reportHistogram.getMean() / 1000.0),
                     dec.format(reportHistogram.getValueAtPercentile(50) / 1000.0),
                     dec.format(reportHistogram.getValueAtPercentile(95) / 1000.0),
@@ -464,10 +500,19 @@ public class JournalWriter implements Runnable {
             reportHistogram.reset();
 
             oldTime = now;
+            oldCopiedBytes = copiedBytes;
         }
 
     }
 
+    private long getCopiedBytes() {
+        long copiedBytes = 0;
+        for (Counter counter : copiedBytesCounters) {
+            copiedBytes += counter.get();
+        }
+        return copiedBytes;
+    }
+
     private static void updateServerConf(ServerConfiguration conf, Flags flags) {
 
         conf.setJournalWriteBufferSizeKB(flags.writeBufferSizeKB);
@@ -476,6 +521,7 @@ public class JournalWriter implements Runnable {
         conf.setNumJournalCallbackThreads(flags.numJournalCallbackThreads);
         conf.setJournalQueueSize(flags.journalQueueSize);
         conf.setJournalSyncData(flags.journalSyncEnabled);
+        conf.setJournalGatherWriteMinSize(flags.gatherWriteMinSize);
         conf.setLedgerDirNames(flags.journalDirs.toArray(new String[0]));
         conf.setStatsProviderClass(PrometheusMetricsProvider.class);
         File[] currentDirs = BookieImpl.getCurrentDirectories(conf.getLedgerDirs());